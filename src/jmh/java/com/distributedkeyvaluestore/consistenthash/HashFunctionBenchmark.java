@@ -0,0 +1,87 @@
+package com.distributedkeyvaluestore.consistenthash;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the hash functions the ring can be keyed on, over keys of different sizes. {@code legacyHexString}
+ * is the 128 bit hex string the ring was keyed on before. Run with {@code -prof gc} in {@code -Djmh.args}
+ * to check that hashing bytes, or a key encoded into a buffer of the caller, does not allocate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashFunctionBenchmark {
+
+    @Param({"8", "32", "128", "1024"})
+    private int keySize;
+
+    @Param({"cityhash", "murmur3", "xxhash"})
+    private String function;
+
+    private HashFunction hashFunction;
+    private CityHash cityHash;
+    private String key;
+    private byte[] bytes;
+    private ByteBuffer directBuffer;
+    private byte[] encodeBuffer;
+
+    @Setup
+    public void setUp() {
+        hashFunction = switch (function) {
+            case "murmur3" -> new Murmur3();
+            case "xxhash" -> new XxHash64();
+            default -> new CityHash();
+        };
+        cityHash = new CityHash();
+        StringBuilder builder = new StringBuilder(keySize);
+        for (int i = 0; i < keySize; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        key = builder.toString();
+        bytes = key.getBytes(StandardCharsets.UTF_8);
+        directBuffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        encodeBuffer = new byte[KeyBytes.maxUtf8Length(key)];
+    }
+
+    @Benchmark
+    public long bytes() {
+        return hashFunction.hash64(bytes, 0, bytes.length);
+    }
+
+    @Benchmark
+    public long charSequence() {
+        return hashFunction.hash64(key);
+    }
+
+    @Benchmark
+    public long charSequenceIntoBuffer() {
+        return hashFunction.hash64(key, encodeBuffer);
+    }
+
+    @Benchmark
+    public long directBuffer() {
+        return hashFunction.hash64(directBuffer);
+    }
+
+    @Benchmark
+    public String legacyHexString() {
+        return cityHash.hash(key);
+    }
+}
@@ -0,0 +1,117 @@
+package com.distributedkeyvaluestore.consistenthash;
+
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.Quorum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the lookup of the replicas of a key in the array backed {@link HashManager} with the
+ * {@link TreeMap} ring it replaced, from the smallest ring of 3 nodes to a ring of 500 nodes. With
+ * {@code -prof gc}, {@code arrayRing} allocates only the list it returns: the key is encoded into a pooled buffer.
+ * <p>
+ * Run with {@code mvn -Pbenchmark compile exec:exec}, benchmark arguments can be passed in {@code -Djmh.args}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashManagerBenchmark {
+
+    @Param({"3", "16", "64", "256", "500"})
+    private int nodeCount;
+
+    private HashManager<DynamoNode> hashManager;
+    private TreeMapRing treeMapRing;
+    private String[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Quorum.setReplicas(3);
+        CityHash hashFunction = new CityHash();
+        hashManager = new HashManager<>(hashFunction);
+        treeMapRing = new TreeMapRing(hashFunction);
+        for (int i = 1; i <= nodeCount; i++) {
+            DynamoNode node = new DynamoNode("10.5." + (i / 256) + "." + (i % 256), i == 1, i);
+            hashManager.addNode(node);
+            treeMapRing.addNode(node);
+        }
+        keys = new String[1024];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "object-" + i + ".txt";
+        }
+    }
+
+    @Benchmark
+    public ArrayList<DynamoNode> arrayRing() {
+        return hashManager.getNodes(nextKey());
+    }
+
+    @Benchmark
+    public ArrayList<DynamoNode> treeMapRing() {
+        return treeMapRing.getNodes(nextKey());
+    }
+
+    private String nextKey() {
+        next = (next + 1) & (keys.length - 1);
+        return keys[next];
+    }
+
+    /**
+     * The lookup of the ring before it was backed by arrays
+     */
+    private static class TreeMapRing {
+
+        private final TreeMap<String, VirtualNode<DynamoNode>> ring = new TreeMap<>();
+        private final CityHash hashFunction;
+
+        TreeMapRing(CityHash hashFunction) {
+            this.hashFunction = hashFunction;
+        }
+
+        void addNode(DynamoNode pNode) {
+            for (int i = 0; i < 100; i++) {
+                VirtualNode<DynamoNode> vNode = new VirtualNode<>(pNode, i);
+                ring.put(hashFunction.hash(vNode.getAddress()), vNode);
+            }
+        }
+
+        ArrayList<DynamoNode> getNodes(String objectKey) {
+            String hash = hashFunction.hash(objectKey);
+            SortedMap<String, VirtualNode<DynamoNode>> tailMap = ring.tailMap(hash);
+            ArrayList<DynamoNode> nodesList = new ArrayList<>();
+            int i = 0;
+
+            String nodeHash = (!tailMap.isEmpty()) ? tailMap.firstKey() : ring.firstKey();
+            VirtualNode<DynamoNode> firstNode = ring.get(nodeHash);
+            while (i < Quorum.getReplicas()) {
+                VirtualNode<DynamoNode> node = ring.get(nodeHash);
+                if (!nodesList.contains(node.getPhysicalNode())) {
+                    nodesList.add(node.getPhysicalNode());
+                    i++;
+                } else if (node == firstNode) {
+                    break;
+                }
+                nodeHash = (ring.higherKey(nodeHash) != null ? ring.higherKey(nodeHash) : ring.firstKey());
+            }
+            return nodesList;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.distributedkeyvaluestore.models;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link VectorClock} operations on the read and write paths for replication factors of 3, 5 and 7:
+ * comparing the versions of a read quorum, merging them, writing a new version, encoding a clock to and from
+ * a storage record, and to and from the string sent in headers and between replicas. The clocks have one
+ * entry per replica, and the versions compared are concurrent, which is the worst case of the comparison.
+ * <p>
+ * Run with {@code mvn -Pbenchmark compile exec:exec -Djmh.args="VectorClockBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorClockBenchmark {
+
+    @Param({"3", "5", "7"})
+    private int replicationFactor;
+
+    private VectorClock first;
+    private VectorClock second;
+    private byte[] encoded;
+    private String header;
+
+    @Setup
+    public void setUp() {
+        VectorClock context = new VectorClock();
+        for (int node = 1; node <= replicationFactor; node++) {
+            for (int i = 0; i < node * 10; i++) {
+                context = context.increment(node);
+            }
+        }
+        first = context.increment(1);
+        second = context.increment(replicationFactor);
+        encoded = first.toBytes();
+        header = first.toString();
+    }
+
+    @Benchmark
+    public VectorClock.Ordering compare() {
+        return first.compare(second);
+    }
+
+    @Benchmark
+    public VectorClock merge() {
+        return first.merge(second);
+    }
+
+    @Benchmark
+    public VectorClock increment() {
+        return first.increment(2);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return first.toBytes();
+    }
+
+    @Benchmark
+    public VectorClock decode() {
+        return VectorClock.fromBytes(encoded);
+    }
+
+    @Benchmark
+    public String format() {
+        return first.toString();
+    }
+
+    @Benchmark
+    public VectorClock parse() {
+        return new VectorClock(header);
+    }
+}
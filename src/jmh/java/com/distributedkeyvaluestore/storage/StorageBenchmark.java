@@ -0,0 +1,121 @@
+package com.distributedkeyvaluestore.storage;
+
+import com.distributedkeyvaluestore.models.VectorClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Local storage path of a replica, from 1KB to 100MB values: {@code write} is the append of a new version done
+ * by {@code KeyValueService.createFile}, {@code read} the read of a value into memory done by the replica read
+ * endpoints, and {@code stream} the read streamed to the response by {@code retrieveStream}. Writes overwrite
+ * the same keys, and the log is compacted after every iteration so that the disk does not fill up.
+ * <p>
+ * Run with {@code mvn -Pbenchmark compile exec:exec -Djmh.args="StorageBenchmark"}. The segments are written
+ * under target, the disk behind it is what is measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    private static final int KEYS = 4;
+
+    @Param({"1024", "65536", "1048576", "104857600"})
+    private int valueSize;
+
+    @Param({"group-commit", "interval"})
+    private String syncPolicy;
+
+    private LogStructuredStorageEngine storageEngine;
+    private String folder;
+    private byte[] value;
+    private VectorClock vectorClock;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        storageEngine = new LogStructuredStorageEngine(new SimpleMeterRegistry(), 67108864, 0.5, syncPolicy,
+                1000, 1000);
+        folder = "target" + File.separator + "jmh-storage-" + System.nanoTime();
+        value = new byte[valueSize];
+        new Random(42).nextBytes(value);
+        vectorClock = VectorClock.newVersion(new VectorClock(), 1, 1, System.currentTimeMillis());
+        for (int i = 0; i < KEYS; i++) {
+            storageEngine.write(folder, key(i), value, vectorClock);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void compact() {
+        storageEngine.compact();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        storageEngine.close();
+        try (Stream<Path> files = Files.walk(Path.of(System.getProperty("user.dir"), folder))) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public VectorClock write() {
+        return storageEngine.write(folder, nextKey(), new ByteArrayInputStream(value), value.length,
+                current -> vectorClock);
+    }
+
+    @Benchmark
+    public List<StoredObject> read() {
+        return storageEngine.read(folder, nextKey());
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        List<StoredValue> siblings = storageEngine.open(folder, nextKey());
+        try {
+            siblings.get(0).transferTo(Channels.newChannel(OutputStream.nullOutputStream()));
+            return siblings.get(0).getLength();
+        } finally {
+            StoredValue.closeAll(siblings);
+        }
+    }
+
+    private String nextKey() {
+        next = (next + 1) % KEYS;
+        return key(next);
+    }
+
+    private static String key(int i) {
+        return "object-" + i;
+    }
+}
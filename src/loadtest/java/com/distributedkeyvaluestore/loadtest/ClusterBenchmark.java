@@ -0,0 +1,106 @@
+package com.distributedkeyvaluestore.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts a cluster on this host, loads it with records, then runs a YCSB-style workload against it while
+ * faults are injected, and prints the throughput and latency percentiles of the stores and retrieves.
+ * <p>
+ * Options, as --name=value:
+ * <ul>
+ *     <li>nodes (4), replicas (3): size of the cluster and replicas of every key</li>
+ *     <li>mode (fork): fork to run every node in its own JVM, in-process to run them in this JVM</li>
+ *     <li>workload (a): a 50% reads, b 95% reads, c only reads, write only writes</li>
+ *     <li>records (1000), value-size (1024): keys loaded before the run and bytes of every value</li>
+ *     <li>distribution (zipfian): uniform or zipfian choice of the keys</li>
+ *     <li>consistency: one, quorum, all or a number, sent as X-Consistency-Level, the nodes' defaults if not set</li>
+ *     <li>threads (16), rate (0): client threads and requests per second, 0 to send them as fast as possible</li>
+ *     <li>warmup (10), duration (60), report-interval (5): seconds</li>
+ *     <li>kill: nodes killed during the run as node@second, eg 3@20,4@40</li>
+ *     <li>latency: delay added to the requests of nodes as node:millis@second, eg 2:200@10,2:0@30</li>
+ *     <li>out (target/loadtest): directory of the nodes' data and logs and of the .hgrm latency distributions</li>
+ *     <li>node.*: properties passed to every node, eg --node.hedge.enabled=true</li>
+ * </ul>
+ * Fault times count from the start of the warmup
+ */
+public final class ClusterBenchmark {
+
+    private ClusterBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        int nodes = options.getInt("nodes", 4);
+        int replicas = options.getInt("replicas", 3);
+        boolean fork = !"in-process".equals(options.get("mode", "fork"));
+        long records = options.getLong("records", 1000);
+        Duration warmup = Duration.ofSeconds(options.getLong("warmup", 10));
+        Duration duration = Duration.ofSeconds(options.getLong("duration", 60));
+        Path out = Files.createDirectories(Path.of(options.get("out", "target/loadtest")));
+
+        WorkloadDriver driver;
+        try (LocalCluster cluster = LocalCluster.start(nodes, replicas, fork, out, options.withPrefix("node."))) {
+            driver = new WorkloadDriver(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build(),
+                    cluster::liveAddresses,
+                    Workload.fromName(options.get("workload", "a")),
+                    KeyChooser.of(options.get("distribution", "zipfian"), records),
+                    options.getInt("value-size", 1024),
+                    options.get("consistency", null),
+                    options.getInt("threads", 16),
+                    Double.parseDouble(options.get("rate", "0")));
+            System.out.printf("Started %d nodes (%s), %d replicas%n", nodes, fork ? "fork" : "in-process", replicas);
+            driver.load(records, System.out);
+
+            ScheduledExecutorService faults = Executors.newSingleThreadScheduledExecutor();
+            try {
+                scheduleKills(cluster, faults, options.get("kill", ""));
+                scheduleLatency(cluster, faults, options.get("latency", ""));
+                driver.run(warmup, duration, Duration.ofSeconds(options.getLong("report-interval", 5)), System.out);
+            } finally {
+                faults.shutdownNow();
+            }
+        }
+        driver.report(duration, out, System.out);
+    }
+
+    private static void scheduleKills(LocalCluster cluster, ScheduledExecutorService faults, String kills) {
+        for (String kill : split(kills)) {
+            String[] nodeAndTime = kill.split("@");
+            int node = Integer.parseInt(nodeAndTime[0]);
+            faults.schedule(() -> {
+                System.out.printf("Killing node %d%n", node);
+                cluster.kill(node);
+            }, Long.parseLong(nodeAndTime[1]), TimeUnit.SECONDS);
+        }
+    }
+
+    private static void scheduleLatency(LocalCluster cluster, ScheduledExecutorService faults, String latencies) {
+        for (String latency : split(latencies)) {
+            String[] nodeAndTime = latency.split("@");
+            String[] nodeAndMillis = nodeAndTime[0].split(":");
+            int node = Integer.parseInt(nodeAndMillis[0]);
+            long millis = Long.parseLong(nodeAndMillis[1]);
+            faults.schedule(() -> {
+                System.out.printf("Delaying the requests of node %d by %dms%n", node, millis);
+                try {
+                    cluster.injectLatency(node, millis);
+                } catch (IOException e) {
+                    System.out.printf("Latency not injected: %s%n", e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, Long.parseLong(nodeAndTime[1]), TimeUnit.SECONDS);
+        }
+    }
+
+    private static String[] split(String list) {
+        return list.isBlank() ? new String[0] : list.split(",");
+    }
+}
@@ -0,0 +1,27 @@
+package com.distributedkeyvaluestore.loadtest;
+
+import java.util.Random;
+
+/**
+ * Chooses the record an operation reads or writes, among the records loaded before the run
+ */
+interface KeyChooser {
+
+    /**
+     * @return the number of the record, from 0 to the number of records - 1
+     */
+    long next(Random random);
+
+    static KeyChooser of(String distribution, long records) {
+        return switch (distribution) {
+            case "uniform" -> random -> random.nextLong(records);
+            case "zipfian" -> new ZipfianKeyChooser(records, ZipfianKeyChooser.YCSB_THETA);
+            default -> throw new IllegalArgumentException("Unknown key distribution " + distribution
+                    + ", expected uniform or zipfian");
+        };
+    }
+
+    static String key(long record) {
+        return "user" + record;
+    }
+}
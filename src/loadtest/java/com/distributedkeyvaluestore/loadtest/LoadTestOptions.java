@@ -0,0 +1,53 @@
+package com.distributedkeyvaluestore.loadtest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options of the load test, passed as --name=value arguments
+ */
+final class LoadTestOptions {
+
+    private final Map<String, String> values;
+
+    private LoadTestOptions(Map<String, String> values) {
+        this.values = values;
+    }
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Arguments are --name=value, not " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new LoadTestOptions(values);
+    }
+
+    String get(String name, String defaultValue) {
+        String value = values.get(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+
+    int getInt(String name, int defaultValue) {
+        return Integer.parseInt(get(name, String.valueOf(defaultValue)));
+    }
+
+    long getLong(String name, long defaultValue) {
+        return Long.parseLong(get(name, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * @return the options whose name starts with the prefix, as name=value without the prefix
+     */
+    List<String> withPrefix(String prefix) {
+        return values.entrySet().stream()
+                .filter(option -> option.getKey().startsWith(prefix))
+                .map(option -> option.getKey().substring(prefix.length()) + "=" + option.getValue())
+                .sorted()
+                .toList();
+    }
+}
@@ -0,0 +1,213 @@
+package com.distributedkeyvaluestore.loadtest;
+
+import com.distributedkeyvaluestore.DistributedKeyValueStoreApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster of nodes running on this host, either as separate JVMs or as Spring contexts of this JVM. Every node
+ * gets its own loopback address, 127.0.0.1 for node 1, 127.0.0.2 for node 2 and so on, because the nodes reach
+ * each other on fixed ports (8080 and replication.binary.port). Linux routes the whole 127.0.0.0/8 to the
+ * loopback interface, on macOS the addresses must be added first, eg: sudo ifconfig lo0 alias 127.0.0.2
+ */
+final class LocalCluster implements Closeable {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private final List<ClusterNode> nodes;
+    private final HttpClient httpClient;
+
+    private LocalCluster(List<ClusterNode> nodes, HttpClient httpClient) {
+        this.nodes = nodes;
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Method to start the nodes and wait until all of them serve requests
+     *
+     * @param size       number of nodes
+     * @param replicas   replicas of every key
+     * @param fork       true to run every node in its own JVM, false to run them in this JVM
+     * @param directory  directory the nodes keep their data and logs in
+     * @param properties properties passed to every node, as name=value
+     */
+    static LocalCluster start(int size, int replicas, boolean fork, Path directory, List<String> properties)
+            throws IOException, InterruptedException {
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        List<ClusterNode> nodes = new ArrayList<>();
+        LocalCluster cluster = new LocalCluster(nodes, httpClient);
+        try {
+            for (int number = 1; number <= size; number++) {
+                String address = "127.0.0." + number;
+                List<String> args = new ArrayList<>();
+                args.add(ringArgument(number, size, replicas));
+                args.add("--server.address=" + address);
+                args.add("--faults.enabled=true");
+                args.add("--handoff.folder=hints_" + address.replaceAll("\\.", "_"));
+                properties.forEach(property -> args.add("--" + property));
+                Path nodeDirectory = Files.createDirectories(directory.resolve("node-" + number));
+                nodes.add(fork ? ClusterNode.fork(number, address, nodeDirectory, args)
+                        : ClusterNode.inProcess(number, address, args));
+            }
+            for (ClusterNode node : nodes) {
+                cluster.awaitStarted(node);
+            }
+            return cluster;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            cluster.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the argument the nodes are started with: the replicas, then every node as number_address,
+     * the node itself first
+     */
+    private static String ringArgument(int self, int size, int replicas) {
+        StringBuilder ring = new StringBuilder().append(replicas).append(',').append(self).append("_127.0.0.")
+                .append(self);
+        for (int number = 1; number <= size; number++) {
+            if (number != self) {
+                ring.append(',').append(number).append("_127.0.0.").append(number);
+            }
+        }
+        return ring.toString();
+    }
+
+    /**
+     * @return the addresses of the nodes which were not killed
+     */
+    List<String> liveAddresses() {
+        return nodes.stream().filter(ClusterNode::isAlive).map(ClusterNode::getAddress).toList();
+    }
+
+    /**
+     * Method to stop a node at once: a forked node is killed, a node of this JVM has its context closed
+     */
+    void kill(int number) {
+        node(number).kill();
+    }
+
+    /**
+     * Method to delay every request served by a node, 0 to remove the delay
+     */
+    void injectLatency(int number, long millis) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + node(number).getAddress()
+                        + ":8080/admin/faults/latency?millis=" + millis))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("Latency not injected on node " + number + ": " + response.body());
+        }
+    }
+
+    @Override
+    public void close() {
+        nodes.stream().filter(ClusterNode::isAlive).forEach(ClusterNode::kill);
+    }
+
+    private ClusterNode node(int number) {
+        return nodes.stream().filter(node -> node.getNumber() == number).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No node " + number + " in the cluster"));
+    }
+
+    private void awaitStarted(ClusterNode node) throws InterruptedException {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + node.getAddress() + ":8080/healthCheck"))
+                .timeout(Duration.ofSeconds(2))
+                .build();
+        while (System.nanoTime() < deadline) {
+            if (!node.isAlive()) {
+                throw new IllegalStateException("Node " + node.getNumber() + " exited while starting");
+            }
+            try {
+                if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            TimeUnit.MILLISECONDS.sleep(500);
+        }
+        throw new IllegalStateException("Node " + node.getNumber() + " not started after " + STARTUP_TIMEOUT);
+    }
+
+    /**
+     * A node of the cluster, either a JVM started by the load test or a Spring context of its JVM
+     */
+    private static final class ClusterNode {
+
+        private final int number;
+        private final String address;
+        private final Process process;
+        private final ConfigurableApplicationContext context;
+        private volatile boolean killed;
+
+        private ClusterNode(int number, String address, Process process, ConfigurableApplicationContext context) {
+            this.number = number;
+            this.address = address;
+            this.process = process;
+            this.context = context;
+        }
+
+        static ClusterNode fork(int number, String address, Path directory, List<String> args) throws IOException {
+            List<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(DistributedKeyValueStoreApplication.class.getName());
+            command.addAll(args);
+            Process process = new ProcessBuilder(command)
+                    .directory(directory.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(directory.resolve("node.log").toFile())
+                    .start();
+            return new ClusterNode(number, address, process, null);
+        }
+
+        static ClusterNode inProcess(int number, String address, List<String> args) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                    DistributedKeyValueStoreApplication.class).run(args.toArray(new String[0]));
+            return new ClusterNode(number, address, null, context);
+        }
+
+        int getNumber() {
+            return number;
+        }
+
+        String getAddress() {
+            return address;
+        }
+
+        boolean isAlive() {
+            if (killed) {
+                return false;
+            }
+            return process != null ? process.isAlive() : context.isActive();
+        }
+
+        void kill() {
+            killed = true;
+            if (process != null) {
+                process.destroyForcibly();
+            } else {
+                context.close();
+            }
+        }
+    }
+}
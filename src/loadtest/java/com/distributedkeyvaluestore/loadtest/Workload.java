@@ -0,0 +1,46 @@
+package com.distributedkeyvaluestore.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Mixes of reads and writes, named after the YCSB core workloads they follow
+ */
+enum Workload {
+
+    /**
+     * Update heavy: 50% reads, 50% writes
+     */
+    A("a", 0.5),
+    /**
+     * Read mostly: 95% reads, 5% writes
+     */
+    B("b", 0.95),
+    /**
+     * Read only
+     */
+    C("c", 1.0),
+    /**
+     * Write only
+     */
+    WRITE("write", 0.0);
+
+    private final String name;
+    private final double readProportion;
+
+    Workload(String name, double readProportion) {
+        this.name = name;
+        this.readProportion = readProportion;
+    }
+
+    public double getReadProportion() {
+        return readProportion;
+    }
+
+    public static Workload fromName(String name) {
+        return Arrays.stream(values())
+                .filter(workload -> workload.name.equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown workload " + name
+                        + ", expected one of a, b, c or write"));
+    }
+}
@@ -0,0 +1,288 @@
+package com.distributedkeyvaluestore.loadtest;
+
+import com.distributedkeyvaluestore.models.ConsistencyLevel;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sends the stores and retrieves of a {@link Workload} to the nodes of a cluster from a number of client
+ * threads, every request going to a node picked at random, and records their latency in HdrHistograms.
+ * <p>
+ * Without a target rate every thread sends its next request as soon as the previous one is answered. With
+ * a rate the requests are sent on a fixed schedule and their latency is measured from the time they were due,
+ * so that a stalled cluster shows in the percentiles instead of only slowing the clients (coordinated omission)
+ */
+final class WorkloadDriver {
+
+    private static final String BOUNDARY = "----LoadTestBoundary";
+
+    private final HttpClient httpClient;
+    private final Supplier<List<String>> addresses;
+    private final Workload workload;
+    private final KeyChooser keyChooser;
+    private final int valueSize;
+    private final String consistency;
+    private final int threads;
+    private final double rate;
+    private final OperationStats store = new OperationStats("store");
+    private final OperationStats retrieve = new OperationStats("retrieve");
+
+    /**
+     * @param addresses   the addresses of the nodes the requests may be sent to
+     * @param consistency the X-Consistency-Level of every request, null for the defaults of the nodes
+     * @param rate        requests per second of all threads together, 0 to send them as fast as possible
+     */
+    WorkloadDriver(HttpClient httpClient, Supplier<List<String>> addresses, Workload workload, KeyChooser keyChooser,
+                   int valueSize, String consistency, int threads, double rate) {
+        this.httpClient = httpClient;
+        this.addresses = addresses;
+        this.workload = workload;
+        this.keyChooser = keyChooser;
+        this.valueSize = valueSize;
+        this.consistency = consistency;
+        this.threads = threads;
+        this.rate = rate;
+    }
+
+    /**
+     * Method to store every record once before the run, so that reads find them
+     */
+    void load(long records, PrintStream out) throws InterruptedException {
+        AtomicLong nextRecord = new AtomicLong();
+        OperationStats loaded = new OperationStats("load");
+        long start = System.nanoTime();
+        List<Thread> loaders = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread loader = new Thread(() -> {
+                byte[] value = randomValue();
+                long record;
+                while ((record = nextRecord.getAndIncrement()) < records) {
+                    long sent = System.nanoTime();
+                    loaded.record(store(pickAddress(), KeyChooser.key(record), value), sent, sent);
+                }
+            }, "load-" + i);
+            loader.start();
+            loaders.add(loader);
+        }
+        for (Thread loader : loaders) {
+            loader.join();
+        }
+        Histogram histogram = loaded.interval();
+        out.printf("Loaded %d records in %.1fs, %d failed, p99 %.2fms%n", records,
+                (System.nanoTime() - start) / 1e9, loaded.errors.getAndSet(0),
+                histogram.getValueAtPercentile(99) / 1000.0);
+    }
+
+    /**
+     * Method to run the workload, printing the throughput and latency of every interval. Intervals of the
+     * warmup are printed but left out of the totals
+     */
+    void run(Duration warmup, Duration duration, Duration reportInterval, PrintStream out)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread client = new Thread(() -> drive(end), "client-" + i);
+            client.start();
+            clients.add(client);
+        }
+
+        long nextReport = start + reportInterval.toNanos();
+        while (System.nanoTime() < end) {
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, Math.min(nextReport, end) - System.nanoTime()));
+            long now = System.nanoTime();
+            boolean measured = now > measureFrom;
+            out.printf("[%5.0fs]%s%s%s%n", (now - start) / 1e9, measured ? "" : " warmup",
+                    report(store, measured, reportInterval), report(retrieve, measured, reportInterval));
+            nextReport += reportInterval.toNanos();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        // requests answered after the last report
+        store.total.add(store.interval());
+        retrieve.total.add(retrieve.interval());
+        store.measuredErrors.addAndGet(store.errors.getAndSet(0));
+        retrieve.measuredErrors.addAndGet(retrieve.errors.getAndSet(0));
+    }
+
+    /**
+     * Method to print the totals of the run and write the latency distribution of every operation to
+     * {@code <operation>.hgrm}, which HdrHistogram's plotter reads
+     */
+    void report(Duration duration, Path directory, PrintStream out) throws IOException {
+        out.printf("%-9s %10s %8s %10s %9s %9s %9s %9s %9s %9s%n", "operation", "requests", "errors", "ops/s",
+                "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (OperationStats stats : List.of(store, retrieve)) {
+            Histogram total = stats.total;
+            out.printf("%-9s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", stats.name,
+                    total.getTotalCount(), stats.measuredErrors.get(),
+                    total.getTotalCount() / (duration.toNanos() / 1e9), total.getMean() / 1000.0,
+                    total.getValueAtPercentile(50) / 1000.0, total.getValueAtPercentile(90) / 1000.0,
+                    total.getValueAtPercentile(99) / 1000.0, total.getValueAtPercentile(99.9) / 1000.0,
+                    total.getMaxValue() / 1000.0);
+            if (total.getTotalCount() > 0) {
+                try (PrintStream file = new PrintStream(Files.newOutputStream(directory.resolve(stats.name + ".hgrm")))) {
+                    total.outputPercentileDistribution(file, 1000.0);
+                }
+            }
+        }
+    }
+
+    private void drive(long end) {
+        Random random = ThreadLocalRandom.current();
+        byte[] value = randomValue();
+        long intervalNanos = rate > 0 ? (long) (threads * 1e9 / rate) : 0;
+        long due = System.nanoTime();
+        while (true) {
+            if (intervalNanos > 0) {
+                due += intervalNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    sleep(wait);
+                }
+            } else {
+                due = System.nanoTime();
+            }
+            if (System.nanoTime() >= end) {
+                return;
+            }
+            String key = KeyChooser.key(keyChooser.next(random));
+            long sent = System.nanoTime();
+            if (random.nextDouble() < workload.getReadProportion()) {
+                retrieve.record(retrieve(pickAddress(), key), due, sent);
+            } else {
+                store.record(store(pickAddress(), key, value), due, sent);
+            }
+        }
+    }
+
+    private boolean store(String address, String key, byte[] value) {
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://" + address + ":8080/object/store"))
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .PUT(HttpRequest.BodyPublishers.ofByteArray(multipart(key, value)));
+            if (consistency != null) {
+                request.header(ConsistencyLevel.HEADER, consistency);
+            }
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode() / 100 == 2;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean retrieve(String address, String key) {
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://" + address
+                    + ":8080/object/retrieve/" + URLEncoder.encode(key, StandardCharsets.UTF_8)));
+            if (consistency != null) {
+                request.header(ConsistencyLevel.HEADER, consistency);
+            }
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static byte[] multipart(String key, byte[] value) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(value.length + 256);
+        body.writeBytes(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + key
+                + "\"\r\nContent-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(value);
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    private String pickAddress() {
+        List<String> live = addresses.get();
+        return live.get(ThreadLocalRandom.current().nextInt(live.size()));
+    }
+
+    private byte[] randomValue() {
+        byte[] value = new byte[valueSize];
+        ThreadLocalRandom.current().nextBytes(value);
+        return value;
+    }
+
+    private static String report(OperationStats stats, boolean measured, Duration reportInterval) {
+        Histogram interval = stats.interval();
+        long errors = stats.errors.getAndSet(0);
+        if (measured) {
+            stats.total.add(interval);
+            stats.measuredErrors.addAndGet(errors);
+        }
+        return String.format(" | %s %.0f ops/s p50 %.2fms p99 %.2fms errors %d", stats.name,
+                interval.getTotalCount() / (reportInterval.toNanos() / 1e9), interval.getValueAtPercentile(50) / 1000.0,
+                interval.getValueAtPercentile(99) / 1000.0, errors);
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Latencies of an operation in microseconds: the requests of all threads are recorded in a {@link Recorder},
+     * whose interval histograms are added to the total of the run
+     */
+    private static final class OperationStats {
+
+        private final String name;
+        private final Recorder recorder = new Recorder(3);
+        private final Histogram total = new Histogram(3);
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong measuredErrors = new AtomicLong();
+
+        OperationStats(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param succeeded whether the request succeeded, failed requests are only counted
+         * @param due       when the request was due to be sent
+         * @param sent      when it was sent
+         */
+        void record(boolean succeeded, long due, long sent) {
+            if (succeeded) {
+                recorder.recordValue(Math.max(1, (System.nanoTime() - Math.min(due, sent)) / 1000));
+            } else {
+                errors.incrementAndGet();
+            }
+        }
+
+        Histogram interval() {
+            return recorder.getIntervalHistogram();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.distributedkeyvaluestore.loadtest;
+
+import java.util.Random;
+
+/**
+ * Zipfian distribution of the records, as generated by YCSB (Gray et al., Quickly Generating Billion-Record
+ * Synthetic Databases). The popular records are the lowest ranks, which are scrambled by a hash so that they
+ * are spread over the ring instead of being the first records loaded
+ */
+final class ZipfianKeyChooser implements KeyChooser {
+
+    static final double YCSB_THETA = 0.99;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 1099511628211L;
+
+    private final long records;
+    private final double theta;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+
+    ZipfianKeyChooser(long records, double theta) {
+        this.records = records;
+        this.theta = theta;
+        this.zetaN = zeta(records, theta);
+        this.alpha = 1 / (1 - theta);
+        this.eta = (1 - Math.pow(2.0 / records, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+    }
+
+    @Override
+    public long next(Random random) {
+        return Long.remainderUnsigned(fnv(rank(random.nextDouble())), records);
+    }
+
+    private long rank(double u) {
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < 1 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(records - 1, (long) (records * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    private static long fnv(long value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
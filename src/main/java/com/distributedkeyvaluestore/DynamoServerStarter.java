@@ -1,32 +1,60 @@
 package com.distributedkeyvaluestore;
 
-import com.distributedkeyvaluestore.healthcheck.HealthChecker;
 import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.membership.MembershipService;
 import com.distributedkeyvaluestore.models.DynamoNode;
 import com.distributedkeyvaluestore.models.Quorum;
-import org.jetbrains.annotations.NotNull;
+import com.distributedkeyvaluestore.storage.StorageEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.ApplicationListener;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 
+/**
+ * Recovers the local store and builds the ring before the node serves requests. It runs as the earliest
+ * lifecycle phase, so that the HTTP server and the binary replication server, started in later phases,
+ * never serve a request from a store which is not recovered yet
+ */
 @Component
-public class DynamoServerStarter implements ApplicationListener<ApplicationReadyEvent> {
+public class DynamoServerStarter implements SmartLifecycle {
+
+    /**
+     * Phase of the startup, the servers which serve requests start in later phases
+     */
+    public static final int PHASE = 0;
+
+    private static final Logger logger = LoggerFactory.getLogger(DynamoServerStarter.class);
 
     private final ApplicationArguments appArgs;
     private final HashManager<DynamoNode> hashManager;
+    private final StorageEngine storageEngine;
+    private final MembershipService membershipService;
+    private final boolean join;
+    private volatile boolean running;
 
-    public DynamoServerStarter(ApplicationArguments appArgs, HashManager<DynamoNode> hashManager) {
+    /**
+     * @param join when true the node does not build a ring from its arguments, it waits to be added to the
+     *             running ring with the admin endpoint and only its own address is read from the arguments
+     */
+    public DynamoServerStarter(ApplicationArguments appArgs, HashManager<DynamoNode> hashManager,
+                               StorageEngine storageEngine, MembershipService membershipService,
+                               @Value("${membership.join:false}") boolean join) {
         this.appArgs = appArgs;
         this.hashManager = hashManager;
+        this.storageEngine = storageEngine;
+        this.membershipService = membershipService;
+        this.join = join;
     }
 
     @Override
-    public void onApplicationEvent(@NotNull ApplicationReadyEvent applicationReadyEvent) {
+    public void start() {
+        running = true;
         try {
-            System.out.println("Source arguments" + Arrays.toString(appArgs.getSourceArgs()));
+            logger.info("Source arguments {}", Arrays.toString(appArgs.getSourceArgs()));
             String[] args = appArgs.getSourceArgs()[0].split(",");
             boolean selfAware = true;
             for (int i = 0; i < args.length; i++) {
@@ -34,8 +62,8 @@ public class DynamoServerStarter implements ApplicationListener<ApplicationReady
 
                 if (i == 0) {
                     int replicas = Integer.parseInt(args[i]);
-                    System.out.println("Replicas"+ replicas);
-                    if (replicas <= args.length - 1) {
+                    logger.info("Replicas {}", replicas);
+                    if (join || replicas <= args.length - 1) {
                         Quorum.setReplicas(replicas);
                     } else {
                         throw new IllegalArgumentException("Replicas should be less than number of nodes");
@@ -45,16 +73,39 @@ public class DynamoServerStarter implements ApplicationListener<ApplicationReady
                 String address = arg.split("_")[1];
                 String nodeNumber = arg.split("_")[0];
                 DynamoNode node = new DynamoNode(address, selfAware, Integer.parseInt(nodeNumber));
+                if (selfAware) {
+                    // replay the local log before the node joins the ring and starts serving requests
+                    storageEngine.recover(address.replaceAll("\\.", "_"));
+                    membershipService.setSelf(node);
+                    if (join) {
+                        logger.info("Waiting to be added to the ring as node {}", nodeNumber);
+                        break;
+                    }
+                }
                 hashManager.addNode(node);
                 selfAware = false;
             }
-            System.out.println(hashManager.getRing());
-            System.out.println(hashManager.getRing().size());
+            logger.info("Ring of {} with {} tokens", hashManager.getAllNodes(), hashManager.getTokens().length);
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Startup failed", e);
             System.exit(0);
         }
 
     }
 
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.distributedkeyvaluestore.antientropy;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+@FeignClient(name = "antiEntropyClient", url = "http://this-is-just-a-placeholder")
+public interface AntiEntropyClient {
+
+    @GetMapping(value = "/antientropy/root/{node}")
+    ResponseEntity<Long> getRoot(URI baseUrl, @PathVariable("node") String node);
+
+    @GetMapping(value = "/antientropy/ranges/{node}")
+    ResponseEntity<RangeHashes> getRangeHashes(URI baseUrl, @PathVariable("node") String node);
+
+    @PostMapping(value = "/antientropy/digest/{node}")
+    ResponseEntity<Map<String, String>> getDigest(URI baseUrl, @PathVariable("node") String node,
+                                                  @RequestBody List<Long> tokens);
+}
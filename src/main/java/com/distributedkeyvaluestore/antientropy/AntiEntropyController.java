@@ -0,0 +1,37 @@
+package com.distributedkeyvaluestore.antientropy;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/antientropy")
+@ConditionalOnProperty(name = "antientropy.enabled", havingValue = "true", matchIfMissing = true)
+public class AntiEntropyController {
+
+    private final AntiEntropyService antiEntropyService;
+
+    public AntiEntropyController(AntiEntropyService antiEntropyService) {
+        this.antiEntropyService = antiEntropyService;
+    }
+
+    @GetMapping("/root/{node}")
+    ResponseEntity<Long> getRoot(@PathVariable("node") String node) {
+        return ResponseEntity.of(antiEntropyService.getRangeHashes(node)
+                .map(rangeHashes -> rangeHashes.toMerkleTree().getRoot()));
+    }
+
+    @GetMapping("/ranges/{node}")
+    ResponseEntity<RangeHashes> getRangeHashes(@PathVariable("node") String node) {
+        return ResponseEntity.of(antiEntropyService.getRangeHashes(node));
+    }
+
+    @PostMapping("/digest/{node}")
+    ResponseEntity<Map<String, String>> getDigest(@PathVariable("node") String node,
+                                                  @RequestBody List<Long> tokens) {
+        return ResponseEntity.ok(antiEntropyService.getDigest(tokens));
+    }
+}
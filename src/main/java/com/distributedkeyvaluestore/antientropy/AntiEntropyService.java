@@ -0,0 +1,245 @@
+package com.distributedkeyvaluestore.antientropy;
+
+import com.distributedkeyvaluestore.client.StreamingReplicaClient;
+import com.distributedkeyvaluestore.client.URIHelper;
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.VectorClock;
+import com.distributedkeyvaluestore.storage.StorageEngine;
+import com.distributedkeyvaluestore.storage.StoredValue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Background repair of the replicas a node shares with its peers (anti-entropy).
+ * <p>
+ * Every round the local keys are scanned once to hash each token range of the ring. For every peer a
+ * {@link MerkleTree} is built over the ranges both nodes replicate and its root is compared with the root
+ * of the peer. Only when the roots differ are the range hashes exchanged, and only for the differing ranges
+ * are the vector clocks of the keys exchanged. Objects which are newer here than on the peer, or missing
+ * on the peer, are then streamed to it. The peer repairs this node in its own rounds, so concurrent
+ * versions are left to read repair.
+ * <p>
+ * Disk reads of the scans and bytes sent by repairs are limited by
+ * {@code antientropy.max-keys-per-second} and {@code antientropy.max-repair-bytes-per-second}
+ */
+@Component
+@ConditionalOnProperty(name = "antientropy.enabled", havingValue = "true", matchIfMissing = true)
+public class AntiEntropyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AntiEntropyService.class);
+
+    private final HashManager<DynamoNode> hashManager;
+    private final StorageEngine storageEngine;
+    private final AntiEntropyClient antiEntropyClient;
+    private final StreamingReplicaClient streamingReplicaClient;
+    private final NodeHealth nodeHealth;
+    private final Throttle scanThrottle;
+    private final Throttle repairThrottle;
+    private final Counter keysRepaired;
+    private volatile Map<Long, Long> rangeHashes;
+
+    public AntiEntropyService(HashManager<DynamoNode> hashManager, StorageEngine storageEngine,
+                              AntiEntropyClient antiEntropyClient, StreamingReplicaClient streamingReplicaClient,
+                              NodeHealth nodeHealth, MeterRegistry meterRegistry,
+                              @Value("${antientropy.max-keys-per-second:1000}") double maxKeysPerSecond,
+                              @Value("${antientropy.max-repair-bytes-per-second:1048576}") double maxRepairBytesPerSecond) {
+        this.hashManager = hashManager;
+        this.storageEngine = storageEngine;
+        this.antiEntropyClient = antiEntropyClient;
+        this.streamingReplicaClient = streamingReplicaClient;
+        this.nodeHealth = nodeHealth;
+        this.scanThrottle = new Throttle(maxKeysPerSecond);
+        this.repairThrottle = new Throttle(maxRepairBytesPerSecond);
+        this.keysRepaired = Counter.builder("antientropy.keys.repaired")
+                .description("Objects sent to peers by anti-entropy")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${antientropy.interval-ms:600000}",
+            fixedDelayString = "${antientropy.interval-ms:600000}")
+    public void run() {
+        Optional<DynamoNode> self = self();
+        if (self.isEmpty() || !hashManager.isRingCreated()) {
+            return;
+        }
+        rangeHashes = scan(self.get());
+
+        for (DynamoNode peer : hashManager.getAllNodes()) {
+            if (peer.isSelfAware() || !nodeHealth.isAlive(peer)) {
+                continue;
+            }
+            try {
+                synchronize(self.get(), peer);
+            } catch (Exception e) {
+                logger.warn("Anti-entropy with {} failed: {}", peer.getAddress(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Method to return the hashes of the ranges this node shares with a peer, as of the last scan
+     *
+     * @param peerAddress the address of the peer
+     * @return the range hashes, empty if this node has not scanned its keys yet
+     */
+    public Optional<RangeHashes> getRangeHashes(String peerAddress) {
+        Optional<DynamoNode> self = self();
+        Optional<DynamoNode> peer = hashManager.getAllNodes().stream()
+                .filter(node -> node.getAddress().equals(peerAddress))
+                .findFirst();
+        if (rangeHashes == null || self.isEmpty() || peer.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(rangeHashes(sharedTokens(self.get(), peer.get())));
+    }
+
+    /**
+     * Method to return the vector clocks of the local keys which belong to the given ranges
+     *
+     * @param tokens tokens of the ranges
+     * @return vector clock by key
+     */
+    public Map<String, String> getDigest(List<Long> tokens) {
+        Map<String, String> digest = new HashMap<>();
+        self().ifPresent(self -> digest(self, tokens)
+                .forEach((key, vectorClock) -> digest.put(key, vectorClock.toString())));
+        return digest;
+    }
+
+    private void synchronize(DynamoNode self, DynamoNode peer) {
+        URI peerUri = URIHelper.createURI(peer.getAddress());
+        RangeHashes local = rangeHashes(sharedTokens(self, peer));
+        MerkleTree localTree = local.toMerkleTree();
+
+        Long peerRoot = antiEntropyClient.getRoot(peerUri, self.getAddress()).getBody();
+        if (peerRoot == null || peerRoot == localTree.getRoot()) {
+            return;
+        }
+
+        RangeHashes remote = antiEntropyClient.getRangeHashes(peerUri, self.getAddress()).getBody();
+        if (remote == null || !remote.getTokens().equals(local.getTokens())) {
+            logger.info("Skipping anti-entropy with {}, its view of the ring differs", peer.getAddress());
+            return;
+        }
+        List<Long> differingTokens = localTree.diff(remote.toMerkleTree()).stream()
+                .map(local.getTokens()::get)
+                .toList();
+        logger.info("{} of {} ranges differ from {}", differingTokens.size(), local.getTokens().size(),
+                peer.getAddress());
+
+        Map<String, String> peerDigest = antiEntropyClient.getDigest(peerUri, self.getAddress(), differingTokens)
+                .getBody();
+        Map<String, VectorClock> localDigest = digest(self, differingTokens);
+        localDigest.forEach((key, vectorClock) -> {
+            String peerClock = peerDigest != null ? peerDigest.get(key) : null;
+            // pushed unless the peer has every version stored here, so concurrent versions reach both sides
+            if (peerClock == null || !new VectorClock(peerClock).descends(vectorClock)) {
+                push(self, peer, key);
+            }
+        });
+    }
+
+    /**
+     * Sends every sibling of a key, the peer keeps those it has not seen next to its own
+     */
+    private void push(DynamoNode self, DynamoNode peer, String key) {
+        List<StoredValue> siblings = storageEngine.open(folder(self), key);
+        try {
+            for (StoredValue value : siblings) {
+                repairThrottle.acquire(value.getLength());
+                streamingReplicaClient.storeToReplicaUsingVectorClock(URIHelper.createURI(peer.getAddress()),
+                        folder(peer), key, value::openStream, value.getLength(), value.getVectorClock().toString());
+            }
+            if (!siblings.isEmpty()) {
+                keysRepaired.increment();
+            }
+        } catch (Exception e) {
+            logger.warn("Repair of {} on {} failed: {}", key, peer.getAddress(), e.getMessage());
+        } finally {
+            closeQuietly(siblings);
+        }
+    }
+
+    private static void closeQuietly(List<StoredValue> siblings) {
+        try {
+            StoredValue.closeAll(siblings);
+        } catch (IOException e) {
+            logger.warn("Closing the values of a key failed", e);
+        }
+    }
+
+    /**
+     * Hashes every token range from the vector clocks of the local keys
+     */
+    private Map<Long, Long> scan(DynamoNode self) {
+        Map<Long, Long> hashes = new HashMap<>();
+        String folder = folder(self);
+        for (String key : storageEngine.keys(folder)) {
+            scanThrottle.acquire(1);
+            storageEngine.readVectorClock(folder, key).ifPresent(vectorClock ->
+                    hashes.merge(hashManager.getToken(key), MerkleTree.leafHash(key, vectorClock), (a, b) -> a ^ b));
+        }
+        return hashes;
+    }
+
+    private Map<String, VectorClock> digest(DynamoNode self, List<Long> tokens) {
+        Set<Long> tokenSet = new HashSet<>(tokens);
+        Map<String, VectorClock> digest = new HashMap<>();
+        String folder = folder(self);
+        for (String key : storageEngine.keys(folder)) {
+            if (tokenSet.contains(hashManager.getToken(key))) {
+                scanThrottle.acquire(1);
+                storageEngine.readVectorClock(folder, key).ifPresent(vectorClock -> digest.put(key, vectorClock));
+            }
+        }
+        return digest;
+    }
+
+    private RangeHashes rangeHashes(List<Long> tokens) {
+        Map<Long, Long> hashes = rangeHashes;
+        return new RangeHashes(tokens, tokens.stream().map(token -> hashes.getOrDefault(token, 0L)).toList());
+    }
+
+    /**
+     * Returns the tokens of the ranges replicated by both nodes, in ring order
+     */
+    private List<Long> sharedTokens(DynamoNode self, DynamoNode peer) {
+        return Arrays.stream(hashManager.getTokens())
+                .boxed()
+                .filter(token -> {
+                    List<DynamoNode> nodes = hashManager.getNodesForToken(token);
+                    return contains(nodes, self) && contains(nodes, peer);
+                })
+                .toList();
+    }
+
+    private static boolean contains(List<DynamoNode> nodes, DynamoNode node) {
+        return nodes.stream().anyMatch(candidate -> candidate.getAddress().equals(node.getAddress()));
+    }
+
+    private Optional<DynamoNode> self() {
+        return hashManager.getAllNodes().stream().filter(DynamoNode::isSelfAware).findFirst();
+    }
+
+    private static String folder(DynamoNode node) {
+        return node.getAddress().replaceAll("\\.", "_");
+    }
+}
@@ -0,0 +1,86 @@
+package com.distributedkeyvaluestore.antientropy;
+
+import com.distributedkeyvaluestore.consistenthash.CityHash;
+import com.distributedkeyvaluestore.models.VectorClock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash tree over the token ranges a node shares with a peer. Every leaf is the hash of one range, and
+ * every inner node the hash of its two children, so two trees with the same root hold the same data and
+ * the ranges that differ are found by descending only into the subtrees whose hashes differ
+ */
+public class MerkleTree {
+
+    private final long[][] levels;
+
+    /**
+     * @param leaves the hashes of the ranges, in ring order
+     */
+    public MerkleTree(long[] leaves) {
+        List<long[]> levelList = new ArrayList<>();
+        long[] level = leaves;
+        levelList.add(level);
+        while (level.length > 1) {
+            long[] parents = new long[(level.length + 1) / 2];
+            for (int i = 0; i < parents.length; i++) {
+                long right = 2 * i + 1 < level.length ? level[2 * i + 1] : 0;
+                parents[i] = combine(level[2 * i], right);
+            }
+            levelList.add(parents);
+            level = parents;
+        }
+        this.levels = levelList.toArray(new long[0][]);
+    }
+
+    /**
+     * Method to return the hash contributed by one object to the hash of its range. Range hashes are the
+     * XOR of the hashes of their objects, so they do not depend on the order in which objects are visited
+     */
+    public static long leafHash(String key, VectorClock vectorClock) {
+        byte[] bytes = (key + '\0' + vectorClock).getBytes(StandardCharsets.UTF_8);
+        return CityHash.cityHash64(bytes, 0, bytes.length);
+    }
+
+    public long getRoot() {
+        long[] root = levels[levels.length - 1];
+        return root.length == 0 ? 0 : root[0];
+    }
+
+    /**
+     * Method to find the leaves which differ from the leaves of another tree over the same ranges
+     *
+     * @param other tree with the same number of leaves
+     * @return indexes of the differing leaves, in ring order
+     */
+    public List<Integer> diff(MerkleTree other) {
+        if (levels[0].length != other.levels[0].length) {
+            throw new IllegalArgumentException("Trees are built over different ranges");
+        }
+        List<Integer> differing = new ArrayList<>();
+        if (levels[0].length > 0) {
+            diff(other, levels.length - 1, 0, differing);
+        }
+        return differing;
+    }
+
+    private void diff(MerkleTree other, int level, int index, List<Integer> differing) {
+        if (index >= levels[level].length || levels[level][index] == other.levels[level][index]) {
+            return;
+        }
+        if (level == 0) {
+            differing.add(index);
+            return;
+        }
+        diff(other, level - 1, 2 * index, differing);
+        diff(other, level - 1, 2 * index + 1, differing);
+    }
+
+    private static long combine(long left, long right) {
+        byte[] bytes = ByteBuffer.allocate(2 * Long.BYTES).putLong(left).putLong(right).array();
+        return CityHash.cityHash64(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,33 @@
+package com.distributedkeyvaluestore.antientropy;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * The leaves of a {@link MerkleTree}: the token ranges shared by two nodes and the hash of each range
+ */
+public class RangeHashes {
+
+    private final List<Long> tokens;
+    private final List<Long> hashes;
+
+    @JsonCreator
+    public RangeHashes(@JsonProperty("tokens") List<Long> tokens, @JsonProperty("hashes") List<Long> hashes) {
+        this.tokens = tokens;
+        this.hashes = hashes;
+    }
+
+    public List<Long> getTokens() {
+        return tokens;
+    }
+
+    public List<Long> getHashes() {
+        return hashes;
+    }
+
+    public MerkleTree toMerkleTree() {
+        return new MerkleTree(hashes.stream().mapToLong(Long::longValue).toArray());
+    }
+}
@@ -0,0 +1,42 @@
+package com.distributedkeyvaluestore.antientropy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the rate at which background work (anti-entropy, range streaming) uses a resource, by sleeping
+ * whenever it gets ahead of its budget
+ */
+public class Throttle {
+
+    private final double permitsPerSecond;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long nextFreeNanos = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond the budget, zero or less for no limit
+     */
+    public Throttle(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    public void acquire(long permits) {
+        if (permitsPerSecond <= 0) {
+            return;
+        }
+        long waitNanos;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            waitNanos = nextFreeNanos - now;
+            nextFreeNanos = Math.max(now, nextFreeNanos)
+                    + (long) (permits * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        } finally {
+            lock.unlock();
+        }
+        if (waitNanos > 0) {
+            LockSupport.parkNanos(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.distributedkeyvaluestore.cache;
+
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import com.distributedkeyvaluestore.models.VectorClock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the latest version of hot keys on the coordinator, filled by quorum reads. Bounded by
+ * {@code cache.max-bytes} with {@link SegmentedLru} eviction, and disabled when the budget is 0 or the read
+ * mode is {@link ReadMode#QUORUM}, in which no read is served from it.
+ * <p>
+ * Every write stored on this node invalidates the cached version unless the cached vector clock is newer than
+ * the written one. A quorum read which started before a write to a key of the same stripe does not fill the
+ * cache, so that a read racing a write cannot put back the version the write replaced
+ */
+@Component
+public class ReadCache {
+
+    private static final int STRIPES = 1024;
+    private static final long ENTRY_OVERHEAD_BYTES = 64;
+
+    private final SegmentedLru<String, CachedValue> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLongArray writeStamps = new AtomicLongArray(STRIPES);
+    private final ReadMode readMode;
+    private final long maxStalenessNanos;
+    private final long maxEntryBytes;
+    private final boolean enabled;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    public ReadCache(MeterRegistry meterRegistry,
+                     @Value("${cache.max-bytes:0}") long maxBytes,
+                     @Value("${cache.max-entry-bytes:65536}") long maxEntryBytes,
+                     @Value("${cache.read-mode:quorum}") String readMode,
+                     @Value("${cache.max-staleness-ms:1000}") long maxStalenessMillis) {
+        this.readMode = ReadMode.fromName(readMode);
+        this.enabled = maxBytes > 0 && this.readMode == ReadMode.CACHED;
+        this.entries = new SegmentedLru<>(maxBytes, 0.8, CachedValue::getWeight);
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+        this.maxEntryBytes = maxEntryBytes;
+
+        this.hits = Counter.builder("cache.hits").description("Reads served from the read cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cache.misses").description("Reads the read cache could not serve")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions").description("Entries evicted from the read cache")
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("cache.invalidations")
+                .description("Entries of the read cache invalidated by writes")
+                .register(meterRegistry);
+        Gauge.builder("cache.hit.ratio", this, cache -> {
+                    double requests = cache.hits.count() + cache.misses.count();
+                    return requests == 0 ? 0 : cache.hits.count() / requests;
+                })
+                .description("Share of reads served from the read cache")
+                .register(meterRegistry);
+        Gauge.builder("cache.size.bytes", this, cache -> cache.locked(() -> cache.entries.weight()))
+                .description("Estimated bytes held by the read cache")
+                .register(meterRegistry);
+        Gauge.builder("cache.entries", this, cache -> cache.locked(() -> (long) cache.entries.size()))
+                .description("Entries held by the read cache")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Method to return the cached version of a key, if reads may be served from the cache and the cached
+     * version is within the staleness bound
+     *
+     * @param key the key (file name) of the object
+     * @return the cached version, empty if the read has to go to the replicas
+     */
+    public Optional<FileWithVectorClock> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CachedValue cachedValue = locked(() -> entries.get(key));
+        if (cachedValue == null || System.nanoTime() - cachedValue.getFilledNanos() > maxStalenessNanos) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(cachedValue.getValue());
+    }
+
+    /**
+     * Method to be called before a quorum read, the returned stamp is passed to {@link #fill}
+     */
+    public long stamp(String key) {
+        return writeStamps.get(stripe(key));
+    }
+
+    /**
+     * Method to cache the latest version of a key found by a quorum read
+     *
+     * @param key   the key (file name) of the object
+     * @param value the latest version
+     * @param stamp the stamp taken before the read started
+     */
+    public void fill(String key, FileWithVectorClock value, long stamp) {
+        if (!enabled) {
+            return;
+        }
+        CachedValue cachedValue = new CachedValue(value, ENTRY_OVERHEAD_BYTES + heapBytes(key)
+                + heapBytes(value.getFile()));
+        if (cachedValue.getWeight() > maxEntryBytes) {
+            return;
+        }
+        int evicted = locked(() -> {
+            if (writeStamps.get(stripe(key)) != stamp) {
+                return 0;
+            }
+            return entries.put(key, cachedValue);
+        });
+        evictions.increment(evicted);
+    }
+
+    /**
+     * Method to be called for every write stored on this node. Drops the cached version of the key unless it
+     * is newer than the written version, which happens when an old version is repaired onto this node
+     *
+     * @param key         the key (file name) of the object
+     * @param vectorClock the vector clock of the written version
+     */
+    public void onWrite(String key, VectorClock vectorClock) {
+        if (!enabled) {
+            return;
+        }
+        writeStamps.incrementAndGet(stripe(key));
+        boolean invalidated = locked(() -> {
+            CachedValue cachedValue = entries.peek(key);
+            if (cachedValue == null || cachedValue.getValue().getVectorClock().dominates(vectorClock)) {
+                return false;
+            }
+            entries.remove(key);
+            return true;
+        });
+        if (invalidated) {
+            invalidations.increment();
+        }
+    }
+
+    private <T> T locked(Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the bytes a string holds on the heap, one per character when they are all Latin-1, two otherwise
+     */
+    static long heapBytes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xff) {
+                return 2L * value.length();
+            }
+        }
+        return value.length();
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+
+    private static class CachedValue {
+
+        private final FileWithVectorClock value;
+        private final long weight;
+        private final long filledNanos = System.nanoTime();
+
+        CachedValue(FileWithVectorClock value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        FileWithVectorClock getValue() {
+            return value;
+        }
+
+        long getWeight() {
+            return weight;
+        }
+
+        long getFilledNanos() {
+            return filledNanos;
+        }
+    }
+}
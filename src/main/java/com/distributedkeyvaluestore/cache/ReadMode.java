@@ -0,0 +1,37 @@
+package com.distributedkeyvaluestore.cache;
+
+import java.util.Arrays;
+
+/**
+ * Mode deciding whether a read may be served by the {@link ReadCache} of the coordinator
+ */
+public enum ReadMode {
+    /**
+     * Every read waits for the read quorum, the cache is neither filled nor read
+     */
+    QUORUM("quorum"),
+    /**
+     * A read is served from the cache when the cached value is younger than the configured staleness bound.
+     * Writes coordinated by this node invalidate the cache at once, writes coordinated by other nodes may be
+     * missed for at most the staleness bound
+     */
+    CACHED("cached");
+
+    private final String name;
+
+    ReadMode(String name) {
+        this.name = name;
+    }
+
+    public static ReadMode fromName(String name) {
+        return Arrays.stream(values())
+                .filter(mode -> mode.name.equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown read mode " + name));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,111 @@
+package com.distributedkeyvaluestore.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Segmented LRU bounded by a weight budget. New entries go to the probation segment and are promoted to the
+ * protected segment when they are read again, so a scan of keys read once only evicts other keys read once
+ * and leaves the hot keys in the protected segment. The least recently used protected entries are demoted
+ * back to probation when the protected segment outgrows its share of the budget.
+ * <p>
+ * Not thread safe, {@link ReadCache} guards it with a lock
+ */
+class SegmentedLru<K, V> {
+
+    private final LinkedHashMap<K, V> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, V> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final ToLongFunction<V> weigher;
+    private final long maxWeight;
+    private final long maxProtectedWeight;
+    private long probationWeight;
+    private long protectedWeight;
+
+    /**
+     * @param maxWeight       budget of both segments together
+     * @param protectedShare  share of the budget the protected segment may keep
+     * @param weigher         weight of an entry
+     */
+    SegmentedLru(long maxWeight, double protectedShare, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.maxProtectedWeight = (long) (maxWeight * protectedShare);
+        this.weigher = weigher;
+    }
+
+    V get(K key) {
+        V value = protectedSegment.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = probation.remove(key);
+        if (value == null) {
+            return null;
+        }
+        probationWeight -= weigher.applyAsLong(value);
+        protectedSegment.put(key, value);
+        protectedWeight += weigher.applyAsLong(value);
+        while (protectedWeight > maxProtectedWeight && protectedSegment.size() > 1) {
+            Map.Entry<K, V> eldest = removeEldest(protectedSegment);
+            protectedWeight -= weigher.applyAsLong(eldest.getValue());
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationWeight += weigher.applyAsLong(eldest.getValue());
+        }
+        return value;
+    }
+
+    /**
+     * @return the number of entries evicted to make room
+     */
+    int put(K key, V value) {
+        remove(key);
+        probation.put(key, value);
+        probationWeight += weigher.applyAsLong(value);
+
+        int evicted = 0;
+        while (probationWeight + protectedWeight > maxWeight) {
+            if (!probation.isEmpty()) {
+                probationWeight -= weigher.applyAsLong(removeEldest(probation).getValue());
+            } else {
+                protectedWeight -= weigher.applyAsLong(removeEldest(protectedSegment).getValue());
+            }
+            evicted++;
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns an entry without promoting it, it only becomes the most recently used of its segment
+     */
+    V peek(K key) {
+        V value = protectedSegment.get(key);
+        return value != null ? value : probation.get(key);
+    }
+
+    void remove(K key) {
+        V value = probation.remove(key);
+        if (value != null) {
+            probationWeight -= weigher.applyAsLong(value);
+        }
+        value = protectedSegment.remove(key);
+        if (value != null) {
+            protectedWeight -= weigher.applyAsLong(value);
+        }
+    }
+
+    int size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    long weight() {
+        return probationWeight + protectedWeight;
+    }
+
+    private static <K, V> Map.Entry<K, V> removeEldest(LinkedHashMap<K, V> segment) {
+        Iterator<Map.Entry<K, V>> iterator = segment.entrySet().iterator();
+        Map.Entry<K, V> eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+}
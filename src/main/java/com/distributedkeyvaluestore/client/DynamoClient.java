@@ -1,6 +1,11 @@
 package com.distributedkeyvaluestore.client;
 
+import com.distributedkeyvaluestore.models.ConsistencyLevel;
+import com.distributedkeyvaluestore.models.Deadline;
 import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import com.distributedkeyvaluestore.models.KeyWithVectorClock;
+import com.distributedkeyvaluestore.models.Response;
+import com.distributedkeyvaluestore.models.VectorClock;
 import feign.Param;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.cloud.openfeign.FeignClientsConfiguration;
@@ -10,27 +15,61 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Map;
 
 @FeignClient(name = "dynamoClient", url = "http://this-is-just-a-placeholder")
 public interface DynamoClient {
 
-    @PutMapping(value = "/object/storeToReplicaUsingVectorIndex/{folder}/{vectorIndex}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    void storeToReplicaUsingVectorIndex(URI baseUrl, @Param("file") MultipartFile file,
-                        @PathVariable("folder") String folder,
-                        @PathVariable("vectorIndex") int vectorIndex);
-
     @PutMapping(value = "/object/storeToReplicaUsingVectorClock/{folder}/{vectorClock}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     void storeToReplicaUsingVectorClock(URI baseUrl, @Param("file") MultipartFile file,
                         @PathVariable("folder") String folder,
                         @PathVariable("vectorClock") String vectorClock);
 
+    @PutMapping(value = "/object/storeHint/{owner}/{vectorClock}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    void storeHint(URI baseUrl, @Param("file") MultipartFile file,
+                   @PathVariable("owner") String owner,
+                   @PathVariable("vectorClock") String vectorClock);
+
     @GetMapping(value = "/object/retrieveFromReplica/{folder}/{fileName}")
-    ResponseEntity<FileWithVectorClock> retrieveFromReplica(URI baseUrl, @PathVariable("folder") String folder,
+    ResponseEntity<List<FileWithVectorClock>> retrieveFromReplica(URI baseUrl, @PathVariable("folder") String folder,
                                             @PathVariable("fileName") String fileName);
 
     @PutMapping(value = "/object/store", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    ResponseEntity<String> forwardToNode(URI baseUrl, @Param("file") MultipartFile file);
+    ResponseEntity<String> forwardToNode(URI baseUrl, @Param("file") MultipartFile file,
+                                         @RequestHeader(value = VectorClock.CONTEXT_HEADER, required = false) String context,
+                                         @RequestHeader(ConsistencyLevel.HEADER) String consistency,
+                                         @RequestHeader(Deadline.TIMEOUT_HEADER) long timeoutMillis);
+
+    @PutMapping(value = "/object/batchStoreToReplicaUsingVectorClock/{folder}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    ResponseEntity<List<String>> storeBatchToReplicaUsingVectorClock(URI baseUrl,
+                                                                     @RequestPart("files") MultipartFile[] files,
+                                                                     @PathVariable("folder") String folder,
+                                                                     @RequestParam("vectorClocks") List<String> vectorClocks);
+
+    @PostMapping(value = "/object/batchRetrieveFromReplica/{folder}")
+    ResponseEntity<Map<String, List<FileWithVectorClock>>> retrieveBatchFromReplica(URI baseUrl,
+                                                                                    @PathVariable("folder") String folder,
+                                                                                    @RequestBody List<String> fileNames);
+
+    @GetMapping(value = "/object/scanReplica/{folder}")
+    ResponseEntity<List<KeyWithVectorClock>> scanReplica(URI baseUrl, @PathVariable("folder") String folder,
+                                                         @RequestParam("prefix") String prefix,
+                                                         @RequestParam(value = "startAfter", required = false)
+                                                         String startAfter,
+                                                         @RequestParam("limit") int limit);
+
+    @PutMapping(value = "/object/batchStore", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    ResponseEntity<Map<String, Response<Boolean>>> forwardBatchToNode(URI baseUrl,
+                                                                      @RequestPart("files") MultipartFile[] files,
+                                                                      @RequestHeader(value = ConsistencyLevel.HEADER,
+                                                                              required = false) String consistency,
+                                                                      @RequestHeader(Deadline.TIMEOUT_HEADER) long timeoutMillis);
 }
@@ -0,0 +1,85 @@
+package com.distributedkeyvaluestore.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the requests this node has in flight to every other node to
+ * {@code replication.peer.max-concurrent-requests}, whichever client sends them. A request beyond the limit waits
+ * up to {@code replication.peer.acquire-timeout-ms} for another to end and fails after that, so that a slow node
+ * makes its callers fail fast instead of piling up connections and threads behind it
+ */
+@Component
+public class PeerConcurrencyLimiter {
+
+    private final Map<String, Semaphore> peers = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final int maxConcurrentRequests;
+    private final long acquireTimeoutMillis;
+
+    public PeerConcurrencyLimiter(MeterRegistry meterRegistry,
+                                  @Value("${replication.peer.max-concurrent-requests:64}") int maxConcurrentRequests,
+                                  @Value("${replication.peer.acquire-timeout-ms:1000}") long acquireTimeoutMillis) {
+        this.meterRegistry = meterRegistry;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * Method to count a request to a node until {@link #release} is called for it, waiting while the node has
+     * the maximum number of requests in flight
+     *
+     * @throws IllegalStateException when the node still has the maximum number in flight after the timeout
+     */
+    public void acquire(String address) {
+        Semaphore permits = peers.computeIfAbsent(address, this::newPeer);
+        if (permits.tryAcquire()) {
+            return;
+        }
+        saturated(address, "waited");
+        try {
+            if (permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to call " + address, e);
+        }
+        saturated(address, "rejected");
+        throw new IllegalStateException("Too many requests in flight to " + address);
+    }
+
+    public void release(String address) {
+        Semaphore permits = peers.get(address);
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    private Semaphore newPeer(String address) {
+        Semaphore permits = new Semaphore(maxConcurrentRequests);
+        Gauge.builder("replica.peer.in-flight", permits, semaphore -> maxConcurrentRequests
+                        - semaphore.availablePermits())
+                .description("Requests in flight to a node, at most replication.peer.max-concurrent-requests")
+                .tag("node", address)
+                .register(meterRegistry);
+        return permits;
+    }
+
+    private void saturated(String address, String outcome) {
+        Counter.builder("replica.peer.saturated")
+                .description("Requests which found the maximum number in flight to their node, and waited or failed")
+                .tag("node", address)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
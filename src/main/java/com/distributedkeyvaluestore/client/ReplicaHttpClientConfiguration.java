@@ -0,0 +1,85 @@
+package com.distributedkeyvaluestore.client;
+
+import com.distributedkeyvaluestore.metrics.ReplicaRequestMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OkHttp client of the Feign clients, in place of the one Spring Cloud creates. Connections to the other nodes
+ * are kept alive in one pool and, with {@code replication.http.http2-enabled}, speak HTTP/2 without TLS (h2c), so
+ * that all the requests to a node are multiplexed over one connection. The timeouts are those of the clients
+ * without their own in spring.cloud.openfeign.client.config
+ */
+@Configuration
+public class ReplicaHttpClientConfiguration {
+
+    @Bean(destroyMethod = "evictAll")
+    public ConnectionPool replicaConnectionPool(MeterRegistry meterRegistry,
+                                                @Value("${replication.http.max-idle-connections:32}") int maxIdle,
+                                                @Value("${replication.http.keep-alive-ms:300000}") long keepAliveMillis) {
+        ConnectionPool connectionPool = new ConnectionPool(maxIdle, keepAliveMillis, TimeUnit.MILLISECONDS);
+        Gauge.builder("replica.http.connections", connectionPool,
+                        pool -> pool.connectionCount() - pool.idleConnectionCount())
+                .description("Connections of the Feign clients to other nodes, by state")
+                .tag("state", "active")
+                .register(meterRegistry);
+        Gauge.builder("replica.http.connections", connectionPool, ConnectionPool::idleConnectionCount)
+                .description("Connections of the Feign clients to other nodes, by state")
+                .tag("state", "idle")
+                .register(meterRegistry);
+        return connectionPool;
+    }
+
+    @Bean
+    public OkHttpClient replicaOkHttpClient(ConnectionPool replicaConnectionPool,
+                                            ReplicaRequestMetrics replicaRequestMetrics,
+                                            @Value("${replication.http.http2-enabled:true}") boolean http2Enabled,
+                                            @Value("${replication.http.connect-timeout-ms:2000}") long connectTimeoutMillis,
+                                            @Value("${replication.http.read-timeout-ms:10000}") long readTimeoutMillis) {
+        return new OkHttpClient.Builder()
+                .connectionPool(replicaConnectionPool)
+                .protocols(http2Enabled ? List.of(Protocol.H2_PRIOR_KNOWLEDGE) : List.of(Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .eventListenerFactory(call -> new ConnectionReuseListener(replicaRequestMetrics))
+                .build();
+    }
+
+    /**
+     * Records whether a call was sent on a pooled connection or had to open a new one
+     */
+    private static class ConnectionReuseListener extends EventListener {
+
+        private final ReplicaRequestMetrics replicaRequestMetrics;
+        private boolean connected;
+
+        ConnectionReuseListener(ReplicaRequestMetrics replicaRequestMetrics) {
+            this.replicaRequestMetrics = replicaRequestMetrics;
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connected = true;
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            replicaRequestMetrics.recordConnection("okhttp", call.request().url().host(), !connected);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.distributedkeyvaluestore.client;
+
+import com.distributedkeyvaluestore.metrics.ReplicaRequestMetrics;
+import com.distributedkeyvaluestore.models.ConsistencyLevel;
+import com.distributedkeyvaluestore.models.Deadline;
+import com.distributedkeyvaluestore.models.VectorClock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Client for node to node transfers of large objects. Unlike the Feign {@link DynamoClient}, which buffers
+ * every request and response body in memory, values are streamed from and to disk. Requests which only wait
+ * for a small response time out after replication.http.read-timeout-ms, uploads after
+ * replication.http.stream-timeout-ms as their response only comes once the whole value is sent
+ */
+@Component
+public class StreamingReplicaClient {
+
+    public static final String VECTOR_CLOCK_HEADER = "X-Vector-Clock";
+    public static final String HINTED_OWNER_HEADER = "X-Hinted-Owner";
+
+    private static final String BOUNDARY = "----DynamoStreamingBoundary";
+
+    private final HttpClient httpClient;
+    private final ReplicaRequestMetrics replicaRequestMetrics;
+    private final PeerConcurrencyLimiter peerConcurrencyLimiter;
+    private final Duration readTimeout;
+    private final Duration streamTimeout;
+
+    public StreamingReplicaClient(ReplicaRequestMetrics replicaRequestMetrics,
+                                  PeerConcurrencyLimiter peerConcurrencyLimiter,
+                                  @Value("${replication.http.http2-enabled:true}") boolean http2Enabled,
+                                  @Value("${replication.http.connect-timeout-ms:2000}") long connectTimeoutMillis,
+                                  @Value("${replication.http.read-timeout-ms:10000}") long readTimeoutMillis,
+                                  @Value("${replication.http.stream-timeout-ms:300000}") long streamTimeoutMillis) {
+        this.replicaRequestMetrics = replicaRequestMetrics;
+        this.peerConcurrencyLimiter = peerConcurrencyLimiter;
+        this.readTimeout = Duration.ofMillis(readTimeoutMillis);
+        this.streamTimeout = Duration.ofMillis(streamTimeoutMillis);
+        // connections are kept alive and reused by the client, over HTTP/2 the requests to a node share one
+        this.httpClient = HttpClient.newBuilder()
+                .version(http2Enabled ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+    }
+
+    public static Supplier<InputStream> streamOf(MultipartFile file) {
+        return () -> {
+            try {
+                return file.getInputStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    public void storeToReplicaUsingVectorClock(URI baseUrl, String folder, String fileName,
+                                               Supplier<InputStream> value, long length, String vectorClock) {
+        send(streamToReplica(baseUrl, folder, fileName, value, length)
+                .header(VECTOR_CLOCK_HEADER, vectorClock)
+                .build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    /**
+     * Method to store a write meant for a replica which is down on the given node, as a hint
+     * for the replica in the {@link #HINTED_OWNER_HEADER} header
+     */
+    public void storeHint(URI baseUrl, String owner, String fileName, Supplier<InputStream> value, long length,
+                          String vectorClock) {
+        send(streamToReplica(baseUrl, owner.replaceAll("\\.", "_"), fileName, value, length)
+                .header(VECTOR_CLOCK_HEADER, vectorClock)
+                .header(HINTED_OWNER_HEADER, owner)
+                .build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    /**
+     * Method to open a stream over the value of an object stored on a replica.
+     * The vector clock of the value is returned in the {@link #VECTOR_CLOCK_HEADER} header
+     *
+     * @return the response, whose body must be closed by the caller
+     */
+    public HttpResponse<InputStream> streamFromReplica(URI baseUrl, String folder, String fileName) {
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve("/object/streamFromReplica/" + folder + "/"
+                        + encode(fileName)))
+                .timeout(readTimeout)
+                .GET()
+                .build();
+        return send(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    public String retrieveVectorClockFromReplica(URI baseUrl, String folder, String fileName) {
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve("/object/retrieveVectorClockFromReplica/"
+                        + folder + "/" + encode(fileName)))
+                .timeout(readTimeout)
+                .GET()
+                .build();
+        return send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    /**
+     * Method to forward a store request to the coordinator of an object as a multipart upload
+     * whose file part is streamed from the spooled upload. The coordinator is given the consistency level and the
+     * time left of the request
+     */
+    public ResponseEntity<String> forwardToNode(URI baseUrl, MultipartFile file, String context, String consistency,
+                                                long timeoutMillis) {
+        byte[] preamble = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: " + contentDisposition(file.getOriginalFilename()) + "\r\n"
+                + "Content-Type: " + MediaType.APPLICATION_OCTET_STREAM_VALUE + "\r\n\r\n")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] epilogue = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        Supplier<InputStream> body = () -> new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(preamble), streamOf(file).get(), new ByteArrayInputStream(epilogue))));
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUrl.resolve("/object/store"))
+                .timeout(streamTimeout)
+                .header("Content-Type", MediaType.MULTIPART_FORM_DATA_VALUE + "; boundary=" + BOUNDARY)
+                .header(ConsistencyLevel.HEADER, consistency)
+                .header(Deadline.TIMEOUT_HEADER, String.valueOf(timeoutMillis))
+                .PUT(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(body),
+                        preamble.length + file.getSize() + epilogue.length));
+        if (context != null) {
+            request.header(VectorClock.CONTEXT_HEADER, context);
+        }
+        HttpResponse<String> response = send(request.build(), HttpResponse.BodyHandlers.ofString());
+        HttpHeaders headers = new HttpHeaders();
+        response.headers().firstValue(VECTOR_CLOCK_HEADER).ifPresent(clock -> headers.set(VECTOR_CLOCK_HEADER, clock));
+        return new ResponseEntity<>(response.body(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Method to build the Content-Disposition of the file part of a forwarded upload. The key is sent as an
+     * RFC 5987 filename*, which the coordinator reads, and as a quoted filename with its quotes and backslashes
+     * escaped and the characters a quoted string cannot hold replaced, so that no key breaks the part headers
+     */
+    static String contentDisposition(String fileName) {
+        StringBuilder quoted = new StringBuilder(fileName.length());
+        for (char c : fileName.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else {
+                quoted.append(c < 0x20 || c > 0x7e ? '_' : c);
+            }
+        }
+        String encoded = URLEncoder.encode(fileName, StandardCharsets.UTF_8).replace("+", "%20").replace("*", "%2A");
+        return "form-data; name=\"file\"; filename=\"" + quoted + "\"; filename*=UTF-8''" + encoded;
+    }
+
+    private HttpRequest.Builder streamToReplica(URI baseUrl, String folder, String fileName,
+                                                Supplier<InputStream> value, long length) {
+        return HttpRequest.newBuilder(baseUrl.resolve("/object/streamToReplica/" + folder + "/" + encode(fileName)))
+                .timeout(streamTimeout)
+                .header("Content-Type", MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                .PUT(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(value), length));
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        peerConcurrencyLimiter.acquire(request.uri().getHost());
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            HttpResponse<T> response = httpClient.send(request, bodyHandler);
+            if (response.statusCode() / 100 != 2) {
+                error = "status_" + response.statusCode();
+                if (response.body() instanceof InputStream stream) {
+                    stream.close();
+                }
+                throw new IOException("Request to " + request.uri() + " failed with status " + response.statusCode());
+            }
+            return response;
+        } catch (IOException e) {
+            error = error != null ? error : e.getClass().getSimpleName();
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            error = e.getClass().getSimpleName();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calling " + request.uri(), e);
+        } finally {
+            replicaRequestMetrics.record("streaming", operationOf(request), request.uri().getHost(),
+                    System.nanoTime() - start, error);
+            peerConcurrencyLimiter.release(request.uri().getHost());
+        }
+    }
+
+    /**
+     * @return the endpoint called by a request, eg: streamToReplica for /object/streamToReplica/...
+     */
+    private static String operationOf(HttpRequest request) {
+        String[] path = request.uri().getPath().split("/");
+        return path.length > 2 ? path[2] : request.uri().getPath();
+    }
+
+    private static String encode(String fileName) {
+        return URLEncoder.encode(fileName, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
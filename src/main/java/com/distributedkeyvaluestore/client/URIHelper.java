@@ -1,15 +1,23 @@
 package com.distributedkeyvaluestore.client;
 
 import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class URIHelper {
 
+    /**
+     * Base URI of every node a request was sent to, so that a request does not parse the URI of its node again.
+     * There is one per node address the cluster ever had
+     */
+    private static final Map<String, URI> BASE_URIS = new ConcurrentHashMap<>();
+
     private URIHelper() {
 
     }
 
     public static URI createURI(String hostName) {
-        return URI.create("http://" + hostName + ":8080");
+        return BASE_URIS.computeIfAbsent(hostName, host -> URI.create("http://" + host + ":8080"));
     }
 
 }
@@ -1,10 +1,12 @@
 package com.distributedkeyvaluestore.consistenthash;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.Base64;
 
 @Component
+@ConditionalOnProperty(name = "hashing.function", havingValue = "cityhash", matchIfMissing = true)
 public class CityHash implements HashFunction {
 
     private static final long k0 = 0xc3a5c85c97cb3127L;
@@ -12,26 +14,12 @@ public class CityHash implements HashFunction {
     private static final long k2 = 0x9ae16a3b2f90404fL;
     private static final long k3 = 0xc949d7c7509e6557L;
 
-    private static long toLongLE(byte[] b, int i) {
-        return (((long)b[i+7] << 56) +
-                ((long)(b[i+6] & 255) << 48) +
-                ((long)(b[i+5] & 255) << 40) +
-                ((long)(b[i+4] & 255) << 32) +
-                ((long)(b[i+3] & 255) << 24) +
-                ((b[i+2] & 255) << 16) +
-                ((b[i+1] & 255) <<  8) +
-                ((b[i+0] & 255) <<  0));
-    }
-    private  static int toIntLE(byte[] b, int i) {
-        return (((b[i+3] & 255) << 24) + ((b[i+2] & 255) << 16) + ((b[i+1] & 255) << 8) + ((b[i+0] & 255) << 0));
-    }
-
     private static long fetch64(byte[] s, int pos) {
-        return toLongLE(s, pos);
+        return LittleEndian.getLong(s, pos);
     }
 
     private static int fetch32(byte[] s, int pos) {
-        return toIntLE(s, pos);
+        return LittleEndian.getInt(s, pos);
     }
 
     private static long rotate(long val, int shift) {
@@ -162,27 +150,57 @@ public class CityHash implements HashFunction {
         long y = fetch64(s, pos + len - 16) + fetch64(s, pos + len - 56);
         long z = hashLen16(fetch64(s, pos + len - 48) + len, fetch64(s, pos + len - 24));
 
-        long [] v = weakHashLen32WithSeeds(s, pos + len - 64, len, z);
-        long [] w = weakHashLen32WithSeeds(s, pos + len - 32, y + k1, x);
+        // weakHashLen32WithSeeds inlined into (v0, v1) and (w0, w1), so that long keys do not allocate
+        long a;
+        long b;
+        long c;
+        int p = pos + len - 64;
+        a = len + fetch64(s, p);
+        b = rotate(z + a + fetch64(s, p + 24), 21);
+        c = a;
+        a += fetch64(s, p + 8) + fetch64(s, p + 16);
+        long v0 = a + fetch64(s, p + 24);
+        long v1 = b + rotate(a, 44) + c;
+
+        p = pos + len - 32;
+        a = y + k1 + fetch64(s, p);
+        b = rotate(x + a + fetch64(s, p + 24), 21);
+        c = a;
+        a += fetch64(s, p + 8) + fetch64(s, p + 16);
+        long w0 = a + fetch64(s, p + 24);
+        long w1 = b + rotate(a, 44) + c;
         x = x * k1 + fetch64(s, pos + 0);
 
         len = (len - 1) & (~63);
         do {
-            x = rotate(x + y + v[0] + fetch64(s, pos + 8), 37) * k1;
-            y = rotate(y + v[1] + fetch64(s, pos + 48), 42) * k1;
-            x ^= w[1];
-            y += v[0] + fetch64(s, pos + 40);
-            z = rotate(z + w[0], 33) * k1;
-            v = weakHashLen32WithSeeds(s, pos + 0, v[1] * k1, x + w[0]);
-            w = weakHashLen32WithSeeds(s, pos + 32, z + w[1], y + fetch64(s, pos + 16));
+            x = rotate(x + y + v0 + fetch64(s, pos + 8), 37) * k1;
+            y = rotate(y + v1 + fetch64(s, pos + 48), 42) * k1;
+            x ^= w1;
+            y += v0 + fetch64(s, pos + 40);
+            z = rotate(z + w0, 33) * k1;
+
+            a = v1 * k1 + fetch64(s, pos);
+            b = rotate(x + w0 + a + fetch64(s, pos + 24), 21);
+            c = a;
+            a += fetch64(s, pos + 8) + fetch64(s, pos + 16);
+            v0 = a + fetch64(s, pos + 24);
+            v1 = b + rotate(a, 44) + c;
+
+            a = z + w1 + fetch64(s, pos + 32);
+            b = rotate(y + fetch64(s, pos + 16) + a + fetch64(s, pos + 56), 21);
+            c = a;
+            a += fetch64(s, pos + 40) + fetch64(s, pos + 48);
+            w0 = a + fetch64(s, pos + 56);
+            w1 = b + rotate(a, 44) + c;
+
             { long swap = z; z = x; x = swap; }
             pos += 64;
             len -= 64;
         } while (len != 0);
 
         return hashLen16(
-                hashLen16(v[0], w[0]) + shiftMix(y) * k1 + z,
-                hashLen16(v[1], w[1]) + x
+                hashLen16(v0, w0) + shiftMix(y) * k1 + z,
+                hashLen16(v1, w1) + x
         );
 
     }
@@ -314,11 +332,19 @@ public class CityHash implements HashFunction {
 
     }
 
-    @Override
+    /**
+     * Method to return the 128 bit hash of a key as a hex string, as the ring used before it was keyed on
+     * {@link #hash64(byte[], int, int)}
+     */
     public String hash(String key) {
 
         byte[] arr = key.getBytes();
         long[] longs = cityHash128(arr, 0, arr.length);
         return Long.toHexString(longs[0]) + Long.toHexString(longs[1]);
     }
+
+    @Override
+    public long hash64(byte[] bytes, int offset, int length) {
+        return cityHash64(bytes, offset, length);
+    }
 }
@@ -1,14 +1,56 @@
 package com.distributedkeyvaluestore.consistenthash;
 
+import java.nio.ByteBuffer;
+
 /**
- * Interface to be used for building a hash function
+ * Interface to be used for building a hash function. The 64 bit hash values place keys and nodes on
+ * the ring, so every node of a cluster has to use the same function
  */
 public interface HashFunction {
     /**
-     * Method to return the hash value for a given key
+     * Method to return a 64 bit hash value for a range of bytes
+     *
+     * @param bytes  the array holding the bytes to be hashed
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return the hash value
+     */
+    long hash64(byte[] bytes, int offset, int length);
+
+    /**
+     * Method to return a 64 bit hash value for the remaining bytes of a buffer, without moving its position
+     *
+     * @param buffer the bytes to be hashed
+     * @return the hash value
+     */
+    default long hash64(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return hash64(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        return hash64(KeyBytes.copy(buffer), 0, buffer.remaining());
+    }
+
+    /**
+     * Method to return a 64 bit hash value for the UTF-8 encoding of a key, used for placing keys and
+     * nodes on the ring
      *
      * @param key the key to be hashed
      * @return the hash value
      */
-    String hash(String key);
+    default long hash64(CharSequence key) {
+        return hash64(key, null);
+    }
+
+    /**
+     * Method to return a 64 bit hash value for the UTF-8 encoding of a key, encoded into a buffer of the
+     * caller. Callers hashing many keys pass the same buffer, which is only used when it is large enough
+     *
+     * @param key    the key to be hashed
+     * @param buffer the buffer the key is encoded into, or null to encode it into a new one
+     * @return the hash value
+     */
+    default long hash64(CharSequence key, byte[] buffer) {
+        byte[] bytes = KeyBytes.ensureCapacity(buffer, KeyBytes.maxUtf8Length(key));
+        return hash64(bytes, 0, KeyBytes.encodeUtf8(key, bytes));
+    }
 }
@@ -19,31 +19,57 @@ package com.distributedkeyvaluestore.consistenthash;
 import com.distributedkeyvaluestore.exception.RingEmptyException;
 import com.distributedkeyvaluestore.models.Node;
 import com.distributedkeyvaluestore.models.Quorum;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Class for managing the hashing of nodes and data objects into nodes in a consistent manner
+ * Class for managing the hashing of nodes and data objects into nodes in a consistent manner.
+ * Lookups read an immutable {@link RingSnapshot} without locking, membership changes build a new
+ * snapshot and publish it atomically.
+ * <p>
+ * While nodes join or leave, the ring they will form is kept as a pending ring next to the current one.
+ * Reads are served by the current ring, writes also go to the replicas the pending ring adds
  *
  * @param <T> An object that extends the {@link Node} interface
  */
 @Component
 public class HashManager<T extends Node> {
 
-    private final TreeMap<String, VirtualNode<T>> ring;
+    private final AtomicReference<Ring<T>> ring;
+    private final ReentrantLock membershipLock;
     private final HashFunction hashFunction;
     private final int vNodeCount;
-    private List<T> allNodes;
+    private final Timer lookupTimer;
+    private final KeyBufferPool keyBuffers;
 
+    /**
+     * Creates a hash manager which does not time its lookups, for benchmarks
+     */
     public HashManager(@Nonnull HashFunction hashFunction) {
+        this(hashFunction, null);
+    }
+
+    @Autowired
+    public HashManager(@Nonnull HashFunction hashFunction, MeterRegistry meterRegistry) {
         this.hashFunction = hashFunction;
-        this.ring = new TreeMap<>();
-        this.allNodes = new ArrayList<>();
+        this.lookupTimer = meterRegistry == null ? null : Timer.builder("ring.lookup")
+                .description("Time taken to find the replicas of a key on the ring")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.ring = new AtomicReference<>(new Ring<>(RingSnapshot.empty(), null));
+        this.membershipLock = new ReentrantLock();
+        // keys of up to 341 chars, the longest any of them can encode to in 1 KB, are hashed without allocating
+        this.keyBuffers = new KeyBufferPool(2 * Runtime.getRuntime().availableProcessors(), 1024);
 
         this.vNodeCount = 100;
     }
@@ -54,11 +80,30 @@ public class HashManager<T extends Node> {
      * @param pNode the physical node to be added to the ring
      */
     public void addNode(T pNode) {
-        for (int i = 0; i < vNodeCount; i++) {
-            VirtualNode<T> vNode = new VirtualNode<>(pNode, i);
-            ring.put(hashFunction.hash(vNode.getAddress()), vNode);
+        membershipLock.lock();
+        try {
+            Ring<T> current = ring.get();
+            List<T> nodes = new ArrayList<>(current.snapshot().getNodes());
+            nodes.add(pNode);
+            ring.set(new Ring<>(build(nodes), current.pending()));
+        } finally {
+            membershipLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the nodes of the ring
+     *
+     * @param nodes        the physical nodes of the ring
+     * @param pendingNodes the physical nodes of the ring being moved to, null if no change is in progress
+     */
+    public void setNodes(List<T> nodes, List<T> pendingNodes) {
+        membershipLock.lock();
+        try {
+            ring.set(new Ring<>(build(nodes), pendingNodes != null ? build(pendingNodes) : null));
+        } finally {
+            membershipLock.unlock();
         }
-        allNodes.add(pNode);
     }
 
     /**
@@ -68,42 +113,119 @@ public class HashManager<T extends Node> {
      * @return list of nodes to which the object will be hashed
      */
     public ArrayList<T> getNodes(@Nonnull String objectKey) {
-        if (ring.isEmpty()) {
-            throw new RingEmptyException("Hash ring is empty");
+        long start = System.nanoTime();
+        RingSnapshot<T> snapshot = snapshot();
+        ArrayList<T> nodes = new ArrayList<>(
+                snapshot.preferenceList(snapshot.indexOf(hash(objectKey))));
+        if (lookupTimer != null) {
+            lookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
-        String hash = hashFunction.hash(objectKey);
-        SortedMap<String, VirtualNode<T>> tailMap = ring.tailMap(hash);
-        ArrayList<T> nodesList = new ArrayList<>();
-        int i = 0;
-
-        String nodeHash = (!tailMap.isEmpty()) ? tailMap.firstKey() : ring.firstKey();
-        VirtualNode<T> firstNode = ring.get(nodeHash);
-        while (i < Quorum.getReplicas()) {
-            VirtualNode<T> node = ring.get(nodeHash);
-            if (!nodesList.contains(node.getPhysicalNode())) {
-                // if physical node was not already added, add it
-                nodesList.add(node.getPhysicalNode());
-                i++;
-            } else if (node == firstNode) {
-                break;
-            }
-
-            // get key for next node; loop around if higherKey does not exist
-            nodeHash = (ring.higherKey(nodeHash) != null ? ring.higherKey(nodeHash) : ring.firstKey());
+        return nodes;
+    }
+
+    /**
+     * Method that returns the nodes which replicate a data object in the pending ring but not in the
+     * current one. They receive the writes of the object while its range is streamed to them
+     *
+     * @param objectKey the key of the object to be hashed
+     * @return the replicas added by the pending ring, empty if no change is in progress
+     */
+    public List<T> getPendingReplicas(@Nonnull String objectKey) {
+        Ring<T> current = ring.get();
+        if (current.pending() == null || current.pending().isEmpty()) {
+            return List.of();
         }
+        long hash = hash(objectKey);
+        List<T> replicas = current.snapshot().isEmpty() ? List.of()
+                : current.snapshot().preferenceList(current.snapshot().indexOf(hash));
+        return current.pending().preferenceList(current.pending().indexOf(hash)).stream()
+                .filter(node -> replicas.stream().noneMatch(replica -> replica.getAddress().equals(node.getAddress())))
+                .toList();
+    }
 
-        return nodesList;
+    /**
+     * @return the nodes of the ring being moved to, empty if no change is in progress
+     */
+    public Optional<List<T>> getPendingNodes() {
+        return Optional.ofNullable(ring.get().pending()).map(RingSnapshot::getNodes);
     }
 
-    public boolean isRingCreated() {
-        return !ring.isEmpty();
+    /**
+     * Method that returns the nodes that follow the replicas of a data object on the ring.
+     * They take the writes of replicas which are down (sloppy quorum)
+     *
+     * @param objectKey the key of the object to be hashed
+     * @return list of nodes following the replicas of the object, in ring order
+     */
+    public List<T> getFallbackNodes(@Nonnull String objectKey) {
+        RingSnapshot<T> snapshot = snapshot();
+        List<T> nodesList = snapshot.walk(snapshot.indexOf(hash(objectKey)), snapshot.getNodes().size());
+        return nodesList.subList(Math.min(Quorum.getReplicas(), nodesList.size()), nodesList.size());
+    }
+
+    /**
+     * Method that returns the token of the virtual node owning a data object. Every token identifies
+     * the range of the ring between the previous token and itself
+     *
+     * @param objectKey the key of the object to be hashed
+     * @return the token of the range the object belongs to
+     */
+    public long getToken(@Nonnull String objectKey) {
+        RingSnapshot<T> snapshot = snapshot();
+        return snapshot.token(snapshot.indexOf(hash(objectKey)));
+    }
+
+    /**
+     * Method that returns the nodes to which the data objects of a token range are hashed
+     *
+     * @param token the token of the range
+     * @return list of nodes to which the objects of the range are hashed
+     */
+    public List<T> getNodesForToken(long token) {
+        RingSnapshot<T> snapshot = snapshot();
+        return snapshot.preferenceList(snapshot.indexOf(token));
     }
 
-    public TreeMap<String, VirtualNode<T>> getRing() {
-        return ring;
+    /**
+     * @return the tokens of the ring, in ring order
+     */
+    public long[] getTokens() {
+        return ring.get().snapshot().tokens();
+    }
+
+    public boolean isRingCreated() {
+        return !ring.get().snapshot().isEmpty();
     }
 
     public List<T> getAllNodes() {
-        return allNodes;
+        return ring.get().snapshot().getNodes();
+    }
+
+    private long hash(String objectKey) {
+        byte[] buffer = keyBuffers.acquire(KeyBytes.maxUtf8Length(objectKey));
+        try {
+            return hashFunction.hash64(objectKey, buffer);
+        } finally {
+            keyBuffers.release(buffer);
+        }
+    }
+
+    private RingSnapshot<T> build(List<T> nodes) {
+        return RingSnapshot.build(nodes, hashFunction, vNodeCount, Quorum.getReplicas());
+    }
+
+    private RingSnapshot<T> snapshot() {
+        RingSnapshot<T> snapshot = ring.get().snapshot();
+        if (snapshot.isEmpty()) {
+            throw new RingEmptyException("Hash ring is empty");
+        }
+        return snapshot;
+    }
+
+    /**
+     * The current ring and the ring being moved to, published together so that a lookup never sees
+     * the pending ring of one change with the current ring of another
+     */
+    private record Ring<T extends Node>(RingSnapshot<T> snapshot, RingSnapshot<T> pending) {
     }
 }
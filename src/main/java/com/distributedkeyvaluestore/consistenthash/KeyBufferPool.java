@@ -0,0 +1,60 @@
+package com.distributedkeyvaluestore.consistenthash;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Buffers the keys of ring lookups are encoded into before hashing, shared by the threads looking up keys.
+ * Requests run on virtual threads, which live for one request only, so a buffer per thread would be allocated
+ * on every lookup all the same. A thread takes a buffer out of a slot and puts it back once the key is hashed;
+ * when every slot it tries is taken, or the key does not fit, {@link #acquire} returns null and the key is
+ * encoded into a new buffer
+ */
+final class KeyBufferPool {
+
+    private final AtomicReferenceArray<byte[]> slots;
+    private final int bufferBytes;
+
+    KeyBufferPool(int slotCount, int bufferBytes) {
+        this.slots = new AtomicReferenceArray<>(slotCount);
+        this.bufferBytes = bufferBytes;
+        for (int i = 0; i < slotCount; i++) {
+            slots.set(i, new byte[bufferBytes]);
+        }
+    }
+
+    /**
+     * @return a buffer of at least {@code capacity} bytes, to be released after use, or null if none is free
+     */
+    byte[] acquire(int capacity) {
+        if (capacity > bufferBytes) {
+            return null;
+        }
+        int start = start();
+        for (int i = 0; i < slots.length(); i++) {
+            byte[] buffer = slots.getAndSet((start + i) % slots.length(), null);
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Puts back a buffer returned by {@link #acquire}, null being ignored
+     */
+    void release(byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        int start = start();
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.compareAndSet((start + i) % slots.length(), null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    private int start() {
+        return (int) ((Thread.currentThread().threadId() & Integer.MAX_VALUE) % slots.length());
+    }
+}
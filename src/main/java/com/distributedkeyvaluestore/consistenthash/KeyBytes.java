@@ -0,0 +1,73 @@
+package com.distributedkeyvaluestore.consistenthash;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encoding of the keys into bytes before hashing. Keys are encoded into a buffer the caller owns, so that
+ * hashing many keys, like the virtual nodes of a ring, reuses one buffer. Keys are encoded the same way as
+ * {@code String.getBytes(UTF_8)}, unpaired surrogates becoming {@code '?'}
+ */
+final class KeyBytes {
+
+    private KeyBytes() {
+    }
+
+    /**
+     * Returns the given buffer when it holds at least {@code capacity} bytes, otherwise a new one which does
+     */
+    static byte[] ensureCapacity(byte[] buffer, int capacity) {
+        return buffer != null && buffer.length >= capacity ? buffer : new byte[capacity];
+    }
+
+    /**
+     * Copies the remaining bytes of a buffer into an array, without moving its position
+     */
+    static byte[] copy(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(buffer.position(), bytes);
+        return bytes;
+    }
+
+    /**
+     * Encodes a key as UTF-8 into a buffer of at least {@link #maxUtf8Length} bytes
+     *
+     * @return the number of bytes written, starting at index 0
+     */
+    static int encodeUtf8(CharSequence key, byte[] buffer) {
+        int length = key.length();
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (c >>> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                char low = i + 1 < length ? key.charAt(i + 1) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    int codePoint = Character.toCodePoint(c, low);
+                    buffer[position++] = (byte) (0xf0 | (codePoint >>> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+                    i++;
+                } else {
+                    buffer[position++] = '?';
+                }
+            } else {
+                buffer[position++] = (byte) (0xe0 | (c >>> 12));
+                buffer[position++] = (byte) (0x80 | ((c >>> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return position;
+    }
+
+    /**
+     * @return the largest number of bytes a key of the given length encodes to
+     */
+    static int maxUtf8Length(CharSequence key) {
+        return 3 * key.length();
+    }
+}
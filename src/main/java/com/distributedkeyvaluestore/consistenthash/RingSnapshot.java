@@ -0,0 +1,130 @@
+package com.distributedkeyvaluestore.consistenthash;
+
+import com.distributedkeyvaluestore.models.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable view of the hash ring. The tokens of the virtual nodes are kept sorted in a {@code long[]} with
+ * the owning physical node of every token in a parallel array, and the preference list of every token range
+ * is computed once when the snapshot is built, so a lookup is a binary search and an array read
+ *
+ * @param <T> An object that extends the {@link Node} interface
+ */
+final class RingSnapshot<T extends Node> {
+
+    private final List<T> nodes;
+    private final long[] tokens;
+    private final List<T> owners;
+    private final List<List<T>> preferenceLists;
+
+    private RingSnapshot(List<T> nodes, long[] tokens, List<T> owners, int replicas) {
+        this.nodes = nodes;
+        this.tokens = tokens;
+        this.owners = owners;
+        this.preferenceLists = new ArrayList<>(tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+            preferenceLists.add(List.copyOf(walk(i, replicas)));
+        }
+    }
+
+    static <T extends Node> RingSnapshot<T> empty() {
+        return new RingSnapshot<>(List.of(), new long[0], List.of(), 0);
+    }
+
+    /**
+     * Builds the ring of the given physical nodes
+     *
+     * @param nodes        the physical nodes
+     * @param hashFunction the hash function placing the virtual nodes on the ring
+     * @param vNodeCount   the number of virtual nodes of every physical node
+     * @param replicas     the length of the preference lists
+     */
+    static <T extends Node> RingSnapshot<T> build(List<T> nodes, HashFunction hashFunction, int vNodeCount,
+                                                  int replicas) {
+        List<VirtualNode<T>> vNodes = new ArrayList<>(nodes.size() * vNodeCount);
+        for (T pNode : nodes) {
+            for (int i = 0; i < vNodeCount; i++) {
+                vNodes.add(new VirtualNode<>(pNode, i));
+            }
+        }
+        long[] hashes = new long[vNodes.size()];
+        Integer[] order = new Integer[vNodes.size()];
+        byte[] buffer = new byte[256];
+        for (int i = 0; i < vNodes.size(); i++) {
+            hashes[i] = hashFunction.hash64(vNodes.get(i).getAddress(), buffer);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> hashes[i]));
+
+        long[] tokens = new long[order.length];
+        List<T> owners = new ArrayList<>(order.length);
+        int count = 0;
+        for (Integer i : order) {
+            if (count > 0 && tokens[count - 1] == hashes[i]) {
+                // two virtual nodes with the same token, the later one takes it as before with the TreeMap ring
+                owners.set(count - 1, vNodes.get(i).getPhysicalNode());
+                continue;
+            }
+            tokens[count++] = hashes[i];
+            owners.add(vNodes.get(i).getPhysicalNode());
+        }
+        return new RingSnapshot<>(List.copyOf(nodes), Arrays.copyOf(tokens, count), owners, replicas);
+    }
+
+    boolean isEmpty() {
+        return tokens.length == 0;
+    }
+
+    List<T> getNodes() {
+        return nodes;
+    }
+
+    int size() {
+        return tokens.length;
+    }
+
+    long token(int index) {
+        return tokens[index];
+    }
+
+    long[] tokens() {
+        return tokens.clone();
+    }
+
+    /**
+     * @return the index of the first token at or after the hash, wrapping around the ring
+     */
+    int indexOf(long hash) {
+        int index = Arrays.binarySearch(tokens, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == tokens.length ? 0 : index;
+    }
+
+    List<T> preferenceList(int index) {
+        return preferenceLists.get(index);
+    }
+
+    /**
+     * Walks the ring from a token collecting distinct physical nodes
+     *
+     * @param index the index of the token to start from
+     * @param count the number of physical nodes wanted
+     * @return at most {@code count} physical nodes, in ring order
+     */
+    List<T> walk(int index, int count) {
+        List<T> nodesList = new ArrayList<>(Math.min(count, nodes.size()));
+        for (int step = 0; step < tokens.length && nodesList.size() < count; step++) {
+            T owner = owners.get((index + step) % tokens.length);
+            if (!nodesList.contains(owner)) {
+                nodesList.add(owner);
+            }
+        }
+        return nodesList;
+    }
+}
@@ -0,0 +1,91 @@
+package com.distributedkeyvaluestore.consistenthash;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * xxHash64, giving the same values as {@code XXH64} of the reference implementation
+ */
+@Component
+@ConditionalOnProperty(name = "hashing.function", havingValue = "xxhash")
+public class XxHash64 implements HashFunction {
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private final long seed;
+
+    public XxHash64() {
+        this(0);
+    }
+
+    public XxHash64(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public long hash64(byte[] bytes, int offset, int length) {
+        int position = offset;
+        int end = offset + length;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, LittleEndian.getLong(bytes, position));
+                v2 = round(v2, LittleEndian.getLong(bytes, position + 8));
+                v3 = round(v3, LittleEndian.getLong(bytes, position + 16));
+                v4 = round(v4, LittleEndian.getLong(bytes, position + 24));
+                position += 32;
+            } while (position <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+                    + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + P5;
+        }
+        hash += length;
+
+        while (position + 8 <= end) {
+            hash ^= round(0, LittleEndian.getLong(bytes, position));
+            hash = Long.rotateLeft(hash, 27) * P1 + P4;
+            position += 8;
+        }
+        if (position + 4 <= end) {
+            hash ^= (LittleEndian.getInt(bytes, position) & 0xffffffffL) * P1;
+            hash = Long.rotateLeft(hash, 23) * P2 + P3;
+            position += 4;
+        }
+        while (position < end) {
+            hash ^= (bytes[position] & 0xff) * P5;
+            hash = Long.rotateLeft(hash, 11) * P1;
+            position++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= P2;
+        hash ^= hash >>> 29;
+        hash *= P3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long accumulator, long input) {
+        return Long.rotateLeft(accumulator + input * P2, 31) * P1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        return (accumulator ^ round(0, value)) * P1 + P4;
+    }
+}
@@ -0,0 +1,7 @@
+package com.distributedkeyvaluestore.exception;
+
+public class ConsistencyLevelException extends RuntimeException {
+    public ConsistencyLevelException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.distributedkeyvaluestore.exception;
+
+public class MembershipException extends RuntimeException {
+    public MembershipException(String message) {
+        super(message);
+    }
+}
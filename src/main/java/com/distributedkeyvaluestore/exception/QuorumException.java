@@ -0,0 +1,7 @@
+package com.distributedkeyvaluestore.exception;
+
+public class QuorumException extends RuntimeException {
+    public QuorumException(String message) {
+        super(message);
+    }
+}
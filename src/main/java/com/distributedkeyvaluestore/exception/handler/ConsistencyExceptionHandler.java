@@ -23,7 +23,8 @@ public class ConsistencyExceptionHandler extends ResponseEntityExceptionHandler
 
         ResponseEntity<Response<List<FileWithVectorClock>>> response = ResponseEntity
                 .badRequest()
-                .body(new Response<>(fileWithVectorClocks, "Eventual consistency failed, Please retry "));
+                .body(new Response<>(fileWithVectorClocks,
+                        "Concurrent versions of the object were written, read them with retrieve"));
 
         return handleExceptionInternal(ex, response, new HttpHeaders(), HttpStatus.INTERNAL_SERVER_ERROR, request);
     }
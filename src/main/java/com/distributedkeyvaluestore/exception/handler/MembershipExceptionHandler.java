@@ -0,0 +1,19 @@
+package com.distributedkeyvaluestore.exception.handler;
+
+import com.distributedkeyvaluestore.exception.MembershipException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
+
+@ControllerAdvice
+public class MembershipExceptionHandler extends ResponseEntityExceptionHandler {
+
+    @ExceptionHandler(MembershipException.class)
+    protected ResponseEntity<Object> handleException(MembershipException ex, WebRequest request) {
+        return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.CONFLICT, request);
+    }
+}
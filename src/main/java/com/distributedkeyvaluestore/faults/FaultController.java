@@ -0,0 +1,33 @@
+package com.distributedkeyvaluestore.faults;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/faults")
+@ConditionalOnProperty(name = "faults.enabled", havingValue = "true")
+public class FaultController {
+
+    private final FaultInjector faultInjector;
+
+    public FaultController(FaultInjector faultInjector) {
+        this.faultInjector = faultInjector;
+    }
+
+    @PostMapping("/latency")
+    ResponseEntity<String> injectLatency(@RequestParam("millis") long millis) {
+        faultInjector.setLatencyMillis(millis);
+        return ResponseEntity.ok("Requests are delayed by " + faultInjector.getLatencyMillis() + "ms");
+    }
+
+    @DeleteMapping
+    ResponseEntity<String> clearFaults() {
+        faultInjector.setLatencyMillis(0);
+        return ResponseEntity.ok("Faults cleared");
+    }
+}
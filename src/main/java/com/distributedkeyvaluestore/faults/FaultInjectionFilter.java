@@ -0,0 +1,37 @@
+package com.distributedkeyvaluestore.faults;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Delays the object requests served over HTTP by the latency of the {@link FaultInjector}
+ */
+@Component
+@ConditionalOnProperty(name = "faults.enabled", havingValue = "true")
+public class FaultInjectionFilter extends OncePerRequestFilter {
+
+    private final FaultInjector faultInjector;
+
+    public FaultInjectionFilter(FaultInjector faultInjector) {
+        this.faultInjector = faultInjector;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/object/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        faultInjector.delay();
+        filterChain.doFilter(request, response);
+    }
+}
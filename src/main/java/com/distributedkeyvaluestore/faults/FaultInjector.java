@@ -0,0 +1,39 @@
+package com.distributedkeyvaluestore.faults;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency added to every request the node serves, over HTTP and the binary transport, to test how the
+ * cluster behaves when a node is slow. It is 0 unless set through the /admin/faults endpoints, which exist
+ * only with faults.enabled=true
+ */
+@Component
+public class FaultInjector {
+
+    private volatile long latencyMillis;
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = Math.max(0, latencyMillis);
+    }
+
+    /**
+     * Method to hold the calling request for the injected latency
+     */
+    public void delay() {
+        long millis = latencyMillis;
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.distributedkeyvaluestore.gossip;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.net.URI;
+
+@FeignClient(name = "gossipClient", url = "http://this-is-just-a-placeholder")
+public interface GossipClient {
+
+    @PostMapping(value = "/gossip")
+    ResponseEntity<GossipMessage> gossip(URI baseUrl, @RequestBody GossipMessage message);
+}
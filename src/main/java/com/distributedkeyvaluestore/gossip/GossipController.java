@@ -0,0 +1,20 @@
+package com.distributedkeyvaluestore.gossip;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/gossip")
+public class GossipController {
+
+    private final GossipService gossipService;
+
+    public GossipController(GossipService gossipService) {
+        this.gossipService = gossipService;
+    }
+
+    @PostMapping
+    ResponseEntity<GossipMessage> gossip(@RequestBody GossipMessage message) {
+        return ResponseEntity.ok(gossipService.receive(message));
+    }
+}
@@ -0,0 +1,36 @@
+package com.distributedkeyvaluestore.gossip;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * The heartbeat table of a node and the version of its ring, exchanged with one peer every gossip round
+ */
+public class GossipMessage {
+
+    private final String from;
+    private final long ringVersion;
+    private final Map<String, Heartbeat> heartbeats;
+
+    @JsonCreator
+    public GossipMessage(@JsonProperty("from") String from, @JsonProperty("ringVersion") long ringVersion,
+                         @JsonProperty("heartbeats") Map<String, Heartbeat> heartbeats) {
+        this.from = from;
+        this.ringVersion = ringVersion;
+        this.heartbeats = heartbeats;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public long getRingVersion() {
+        return ringVersion;
+    }
+
+    public Map<String, Heartbeat> getHeartbeats() {
+        return heartbeats;
+    }
+}
@@ -0,0 +1,188 @@
+package com.distributedkeyvaluestore.gossip;
+
+import com.distributedkeyvaluestore.client.URIHelper;
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.membership.MembershipService;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Failure detection by gossip. Every round a node increments its own heartbeat and exchanges its table of
+ * heartbeats with {@code gossip.fanout} random peers which are up, and now and then with one which is down
+ * so that its recovery is noticed. Both sides keep the newer heartbeat of every node, so a heartbeat reaches
+ * every node in O(log N) rounds while every node sends a constant number of messages per round.
+ * <p>
+ * Whenever the heartbeat of a node advances it is fed to a {@link PhiAccrualFailureDetector}, and a node whose
+ * phi exceeds {@code gossip.phi-threshold} is marked down in {@link NodeHealth}, which replica writes and reads
+ * consult to skip it. The ring version is gossiped too, so that a node which missed a membership change
+ * receives the current ring
+ */
+@Component
+public class GossipService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GossipService.class);
+
+    private final HashManager<DynamoNode> hashManager;
+    private final NodeHealth nodeHealth;
+    private final GossipClient gossipClient;
+    private final MembershipService membershipService;
+    private final PhiAccrualFailureDetector failureDetector;
+    private final Map<String, Heartbeat> heartbeats = new ConcurrentHashMap<>();
+    private final double phiThreshold;
+    private final int fanout;
+    private final long generation = System.currentTimeMillis();
+
+    public GossipService(HashManager<DynamoNode> hashManager, NodeHealth nodeHealth, GossipClient gossipClient,
+                         MembershipService membershipService,
+                         @Value("${gossip.interval-ms:1000}") long intervalMillis,
+                         @Value("${gossip.phi-threshold:8}") double phiThreshold,
+                         @Value("${gossip.min-std-deviation-ms:500}") double minStdDeviationMillis,
+                         @Value("${gossip.fanout:1}") int fanout) {
+        this.hashManager = hashManager;
+        this.nodeHealth = nodeHealth;
+        this.gossipClient = gossipClient;
+        this.membershipService = membershipService;
+        this.failureDetector = new PhiAccrualFailureDetector(intervalMillis, minStdDeviationMillis);
+        this.phiThreshold = phiThreshold;
+        this.fanout = fanout;
+    }
+
+    @Scheduled(initialDelayString = "${gossip.interval-ms:1000}", fixedDelayString = "${gossip.interval-ms:1000}")
+    public void gossip() {
+        Optional<DynamoNode> self = self();
+        if (self.isEmpty()) {
+            return;
+        }
+        heartbeats.compute(self.get().getAddress(), (address, heartbeat) ->
+                new Heartbeat(generation, heartbeat != null && heartbeat.getGeneration() == generation
+                        ? heartbeat.getVersion() + 1 : 0));
+
+        Map<String, DynamoNode> peers = peers();
+        List<DynamoNode> live = new ArrayList<>();
+        List<DynamoNode> down = new ArrayList<>();
+        peers.values().forEach(peer -> (nodeHealth.isAlive(peer) ? live : down).add(peer));
+
+        Collections.shuffle(live);
+        live.stream().limit(fanout).forEach(peer -> exchange(self.get(), peer));
+        if (!down.isEmpty() && ThreadLocalRandom.current().nextDouble() < down.size() / (live.size() + 1.0)) {
+            exchange(self.get(), down.get(ThreadLocalRandom.current().nextInt(down.size())));
+        }
+        convict(peers);
+    }
+
+    /**
+     * Method to merge the heartbeats gossiped by a peer
+     *
+     * @return the heartbeat table of this node after the merge, for the peer to merge in turn
+     */
+    public GossipMessage receive(GossipMessage message) {
+        merge(message.getHeartbeats());
+        return new GossipMessage(self().map(DynamoNode::getAddress).orElse(null), membershipService.getVersion(),
+                new HashMap<>(heartbeats));
+    }
+
+    private void exchange(DynamoNode self, DynamoNode peer) {
+        try {
+            GossipMessage reply = gossipClient.gossip(URIHelper.createURI(peer.getAddress()),
+                    new GossipMessage(self.getAddress(), membershipService.getVersion(), new HashMap<>(heartbeats)))
+                    .getBody();
+            if (reply == null) {
+                return;
+            }
+            merge(reply.getHeartbeats());
+            if (reply.getRingVersion() < membershipService.getVersion()) {
+                membershipService.sendRing(peer);
+            }
+        } catch (Exception e) {
+            // the failure detector notices when the peer stays unreachable
+        }
+    }
+
+    private void merge(Map<String, Heartbeat> remoteHeartbeats) {
+        if (remoteHeartbeats == null) {
+            return;
+        }
+        String selfAddress = self().map(DynamoNode::getAddress).orElse(null);
+        Map<String, DynamoNode> peers = peers();
+        long now = System.nanoTime();
+        remoteHeartbeats.forEach((address, remote) -> {
+            if (address.equals(selfAddress)) {
+                return;
+            }
+            Heartbeat local = heartbeats.get(address);
+            if (!remote.isNewerThan(local) || !replace(address, local, remote)) {
+                return;
+            }
+            if (local != null && local.getGeneration() != remote.getGeneration()) {
+                failureDetector.remove(address);
+            }
+            failureDetector.heartbeat(address, now);
+            DynamoNode peer = peers.get(address);
+            if (peer != null && nodeHealth.markUp(peer)) {
+                logger.info("Node with ip : {} is back up", address);
+            }
+        });
+    }
+
+    private boolean replace(String address, Heartbeat local, Heartbeat remote) {
+        return local == null ? heartbeats.putIfAbsent(address, remote) == null
+                : heartbeats.replace(address, local, remote);
+    }
+
+    private void convict(Map<String, DynamoNode> peers) {
+        long now = System.nanoTime();
+        peers.forEach((address, peer) -> {
+            // a peer never heard from is suspected from the time it was first seen in the ring
+            failureDetector.track(address, now);
+            double phi = failureDetector.phi(address, now);
+            nodeHealth.setSuspicion(peer, phi);
+            if (phi > phiThreshold && nodeHealth.isAlive(peer)) {
+                nodeHealth.markDown(peer);
+                logger.warn("Node with ip : {} is down, phi {}", address, String.format("%.1f", phi));
+            }
+        });
+        String selfAddress = self().map(DynamoNode::getAddress).orElse(null);
+        heartbeats.keySet().removeIf(address -> {
+            boolean gone = !peers.containsKey(address) && !address.equals(selfAddress);
+            if (gone) {
+                failureDetector.remove(address);
+                nodeHealth.removeSuspicion(address);
+            }
+            return gone;
+        });
+    }
+
+    /**
+     * @return the other nodes of the current and the pending ring, by address
+     */
+    private Map<String, DynamoNode> peers() {
+        Map<String, DynamoNode> peers = new LinkedHashMap<>();
+        hashManager.getAllNodes().forEach(node -> peers.put(node.getAddress(), node));
+        hashManager.getPendingNodes().ifPresent(nodes -> nodes.forEach(node ->
+                peers.putIfAbsent(node.getAddress(), node)));
+        peers.values().removeIf(DynamoNode::isSelfAware);
+        return peers;
+    }
+
+    /**
+     * A node waiting to join is not in its own ring yet, but its heartbeat is gossiped by the nodes it joins
+     */
+    private Optional<DynamoNode> self() {
+        return membershipService.getSelf();
+    }
+}
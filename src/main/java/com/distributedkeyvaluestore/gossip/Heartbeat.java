@@ -0,0 +1,38 @@
+package com.distributedkeyvaluestore.gossip;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Heartbeat of a node as spread by gossip. The generation is the start time of the node, so that the
+ * heartbeats of a restarted node are newer than the ones it sent before the restart
+ */
+public class Heartbeat {
+
+    private final long generation;
+    private final long version;
+
+    @JsonCreator
+    public Heartbeat(@JsonProperty("generation") long generation, @JsonProperty("version") long version) {
+        this.generation = generation;
+        this.version = version;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isNewerThan(Heartbeat other) {
+        return other == null || generation > other.generation
+                || (generation == other.generation && version > other.version);
+    }
+
+    @Override
+    public String toString() {
+        return generation + ":" + version;
+    }
+}
@@ -0,0 +1,130 @@
+package com.distributedkeyvaluestore.gossip;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Phi accrual failure detector (Hayashibara et al.). Instead of a fixed timeout, every node gets a suspicion
+ * level phi computed from the time since its heartbeat last advanced and the distribution of the intervals
+ * between its earlier heartbeats: phi = -log10(P(the next heartbeat comes even later)). A phi of 8 means a
+ * one in 10^8 chance that the node is still up. Intervals are taken as normally distributed, with the
+ * logistic approximation of the normal CDF used by Akka
+ */
+class PhiAccrualFailureDetector {
+
+    private static final int MAX_SAMPLES = 1000;
+
+    private final Map<String, ArrivalWindow> windows = new ConcurrentHashMap<>();
+    private final double firstIntervalMillis;
+    private final double minStdDeviationMillis;
+
+    /**
+     * @param firstIntervalMillis   interval assumed before a second heartbeat has been seen
+     * @param minStdDeviationMillis lower bound of the standard deviation, so that very regular heartbeats do
+     *                              not make phi jump at the first small delay
+     */
+    PhiAccrualFailureDetector(double firstIntervalMillis, double minStdDeviationMillis) {
+        this.firstIntervalMillis = firstIntervalMillis;
+        this.minStdDeviationMillis = minStdDeviationMillis;
+    }
+
+    /**
+     * Records that the heartbeat of a node advanced
+     */
+    void heartbeat(String address, long nowNanos) {
+        windows.computeIfAbsent(address, key -> new ArrivalWindow()).add(nowNanos);
+    }
+
+    /**
+     * Starts watching a node as if a heartbeat had arrived now, so that a node which is never heard from is
+     * suspected too. Does nothing for a node which is watched already
+     */
+    void track(String address, long nowNanos) {
+        windows.computeIfAbsent(address, key -> {
+            ArrivalWindow window = new ArrivalWindow();
+            window.add(nowNanos);
+            return window;
+        });
+    }
+
+    /**
+     * @return the suspicion level of a node, 0 for a node no heartbeat has been seen from
+     */
+    double phi(String address, long nowNanos) {
+        ArrivalWindow window = windows.get(address);
+        return window == null ? 0 : window.phi(nowNanos);
+    }
+
+    /**
+     * Forgets the heartbeats of a node, after it restarted or left the ring
+     */
+    void remove(String address) {
+        windows.remove(address);
+    }
+
+    private class ArrivalWindow {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final double[] intervals = new double[MAX_SAMPLES];
+        private int count;
+        private int next;
+        private double sum;
+        private double sumOfSquares;
+        private long lastArrivalNanos = -1;
+
+        void add(long nowNanos) {
+            lock.lock();
+            try {
+                if (lastArrivalNanos < 0) {
+                    addInterval(firstIntervalMillis);
+                } else {
+                    addInterval((nowNanos - lastArrivalNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1));
+                }
+                lastArrivalNanos = nowNanos;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        double phi(long nowNanos) {
+            double elapsedMillis;
+            double mean;
+            double stdDeviation;
+            lock.lock();
+            try {
+                if (count == 0) {
+                    return 0;
+                }
+                elapsedMillis = (nowNanos - lastArrivalNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+                mean = sum / count;
+                stdDeviation = Math.sqrt(Math.max(sumOfSquares / count - mean * mean, 0));
+            } finally {
+                lock.unlock();
+            }
+            stdDeviation = Math.max(stdDeviation, minStdDeviationMillis);
+
+            double y = (elapsedMillis - mean) / stdDeviation;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            if (elapsedMillis > mean) {
+                return -Math.log10(e / (1.0 + e));
+            }
+            return -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+
+        private void addInterval(double interval) {
+            if (count == MAX_SAMPLES) {
+                double oldest = intervals[next];
+                sum -= oldest;
+                sumOfSquares -= oldest * oldest;
+            } else {
+                count++;
+            }
+            intervals[next] = interval;
+            next = (next + 1) % MAX_SAMPLES;
+            sum += interval;
+            sumOfSquares += interval * interval;
+        }
+    }
+}
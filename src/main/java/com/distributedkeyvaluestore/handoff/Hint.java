@@ -0,0 +1,73 @@
+package com.distributedkeyvaluestore.handoff;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A write held for a node which was down, as read back from its {@link HintLog}
+ */
+public class Hint {
+
+    private final String key;
+    private final String vectorClock;
+    private final FileChannel channel;
+    private final long valuePosition;
+    private final long length;
+
+    Hint(String key, String vectorClock, FileChannel channel, long valuePosition, long length) {
+        this.key = key;
+        this.vectorClock = vectorClock;
+        this.channel = channel;
+        this.valuePosition = valuePosition;
+        this.length = length;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getVectorClock() {
+        return vectorClock;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Method to open a stream over the value of the hint, read straight from the hint log
+     */
+    public InputStream openStream() {
+        return new InputStream() {
+            private long position = valuePosition;
+            private final long end = valuePosition + length;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (position >= end) {
+                    return -1;
+                }
+                int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+                if (count < 0) {
+                    return -1;
+                }
+                position += count;
+                return count;
+            }
+        };
+    }
+
+    public byte[] readValue() throws IOException {
+        try (InputStream value = openStream()) {
+            return value.readAllBytes();
+        }
+    }
+}
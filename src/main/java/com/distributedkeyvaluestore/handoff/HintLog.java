@@ -0,0 +1,396 @@
+package com.distributedkeyvaluestore.handoff;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append only log of the writes held for one node while it is down, a folder of segment files. Every hint
+ * is stored as
+ * <pre>
+ * | key length (4) | clock length (4) | value length (8) | key | vector clock | value |
+ * </pre>
+ * Hints are appended to the last segment, and a new segment is started once it reaches the segment size.
+ * They are replayed in the order they were written, and a segment is deleted once every hint in it has been
+ * replayed, so that the log shrinks while the node catches up even when writes keep arriving. The last
+ * segment is truncated instead once it has been replayed. A restart during a replay replays the hints of the
+ * first segment again from its start, which is harmless as replaying a hint stores the same value with the
+ * same vector clock.
+ * <p>
+ * The log holds at most its byte budget, a hint which would exceed it is refused, and the segments whose
+ * newest hint is older than the age limit are dropped by {@link #expire}, so that a node which never comes
+ * back does not fill the disk. Anti-entropy repairs the writes whose hints were refused or dropped
+ */
+class HintLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(HintLog.class);
+    private static final int HEADER_SIZE = 16;
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock replayLock = new ReentrantLock();
+    private final AtomicLong pendingHints = new AtomicLong();
+    // guarded by appendLock
+    private long bytes;
+    // offset of the next hint to replay in the first segment, guarded by replayLock
+    private long replayOffset;
+
+    private HintLog(Path directory, long segmentBytes, long maxBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Opens the hint log in the given folder, counting the hints it holds and dropping torn tails
+     *
+     * @param segmentBytes size from which hints are appended to a new segment
+     * @param maxBytes     size of the segments above which hints are refused
+     */
+    static HintLog open(Path directory, long segmentBytes, long maxBytes) throws IOException {
+        Files.createDirectories(directory);
+        HintLog hintLog = new HintLog(directory, segmentBytes, maxBytes);
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            files.forEach(paths::add);
+        }
+        // the names are zero padded sequence numbers, so that they sort in the order the segments were started
+        paths.sort(null);
+        for (Path path : paths) {
+            Segment segment = Segment.open(path, sequenceOf(path));
+            segment.recover();
+            hintLog.segments.addLast(segment);
+            hintLog.bytes += segment.committedSize;
+            hintLog.pendingHints.addAndGet(segment.pendingHints.get());
+        }
+        if (hintLog.segments.isEmpty()) {
+            hintLog.segments.addLast(hintLog.startSegment(0));
+        }
+        return hintLog;
+    }
+
+    /**
+     * @throws IOException when the value is shorter than its length, or the log has no room left for it
+     */
+    void append(String key, String vectorClock, InputStream value, long length) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] clockBytes = vectorClock.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + clockBytes.length)
+                .putInt(keyBytes.length)
+                .putInt(clockBytes.length)
+                .putLong(length)
+                .put(keyBytes)
+                .put(clockBytes)
+                .flip();
+        long hintBytes = header.remaining() + length;
+
+        appendLock.lock();
+        try {
+            if (bytes + hintBytes > maxBytes) {
+                throw new IOException("Hint log " + directory.getFileName() + " is full, " + bytes + " of "
+                        + maxBytes + " bytes held");
+            }
+            Segment segment = segments.getLast();
+            if (segment.committedSize >= segmentBytes) {
+                segment = startSegment(segment.sequence + 1);
+                segments.addLast(segment);
+            }
+            long start = segment.committedSize;
+            long position = start;
+            while (header.hasRemaining()) {
+                position += segment.channel.write(header, position);
+            }
+            ReadableByteChannel source = Channels.newChannel(value);
+            long end = position + length;
+            while (position < end) {
+                long transferred = segment.channel.transferFrom(source, position, end - position);
+                if (transferred <= 0) {
+                    segment.channel.truncate(start);
+                    throw new IOException("Hint value ended after " + (position - start) + " of " + length + " bytes");
+                }
+                position += transferred;
+            }
+            segment.channel.force(false);
+            // a replay only reads up to the committed size, never a hint which is still being written
+            segment.committedSize = end;
+            segment.lastAppendMillis = System.currentTimeMillis();
+            segment.pendingHints.incrementAndGet();
+            bytes += hintBytes;
+            pendingHints.incrementAndGet();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Replays at most {@code maxHints} hints, stopping at the first hint the handler fails on
+     *
+     * @return the number of hints replayed
+     * @throws IOException when the handler fails, the hint it failed on is replayed next time
+     */
+    int replay(int maxHints, HintHandler handler) throws IOException {
+        replayLock.lock();
+        try {
+            int replayed = 0;
+            Segment segment = firstSegment();
+            while (replayed < maxHints) {
+                long size = segment.committedSize;
+                if (replayOffset >= size) {
+                    if (!dropReplayed(segment)) {
+                        break;
+                    }
+                    segment = firstSegment();
+                    continue;
+                }
+                long next = segment.nextHintPosition(replayOffset, size);
+                if (next < 0) {
+                    throw new IOException("Corrupt hint at " + replayOffset + " of " + segment.path);
+                }
+                handler.handle(segment.readHint(replayOffset));
+                replayOffset = next;
+                segment.pendingHints.decrementAndGet();
+                pendingHints.decrementAndGet();
+                replayed++;
+            }
+            dropReplayed(segment);
+            return replayed;
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the segments whose newest hint was written before the cutoff, without replaying them
+     *
+     * @return the number of hints dropped
+     */
+    long expire(long cutoffMillis) throws IOException {
+        replayLock.lock();
+        try {
+            appendLock.lock();
+            try {
+                long dropped = 0;
+                while (segments.getFirst().lastAppendMillis < cutoffMillis && bytes > 0) {
+                    Segment segment = segments.getFirst();
+                    dropped += segment.pendingHints.get();
+                    pendingHints.addAndGet(-segment.pendingHints.get());
+                    replayOffset = 0;
+                    if (!removeFirst(segment)) {
+                        break;
+                    }
+                }
+                return dropped;
+            } finally {
+                appendLock.unlock();
+            }
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    long getPendingHints() {
+        return pendingHints.get();
+    }
+
+    /**
+     * @return the bytes held by the segments, replayed hints included until their segment is dropped
+     */
+    long getBytes() {
+        appendLock.lock();
+        try {
+            return bytes;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    void close() throws IOException {
+        appendLock.lock();
+        try {
+            for (Segment segment : segments) {
+                segment.channel.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private Segment firstSegment() {
+        appendLock.lock();
+        try {
+            return segments.getFirst();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the first segment once every hint in it has been replayed
+     *
+     * @return whether there is a next segment to replay
+     */
+    private boolean dropReplayed(Segment segment) throws IOException {
+        appendLock.lock();
+        try {
+            if (replayOffset < segment.committedSize) {
+                return false;
+            }
+            replayOffset = 0;
+            return removeFirst(segment);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the first segment, or truncates it when it is the segment hints are appended to. Called with
+     * both locks held, or with the append lock held by the replay
+     *
+     * @return whether a segment follows it
+     */
+    private boolean removeFirst(Segment segment) throws IOException {
+        bytes -= segment.committedSize;
+        segment.pendingHints.set(0);
+        if (segments.size() == 1) {
+            segment.channel.truncate(0);
+            segment.committedSize = 0;
+            return false;
+        }
+        segments.removeFirst();
+        segment.channel.close();
+        Files.delete(segment.path);
+        forceDirectory(directory);
+        return true;
+    }
+
+    private Segment startSegment(long sequence) throws IOException {
+        Segment segment = Segment.open(directory.resolve(String.format("%020d", sequence) + SEGMENT_SUFFIX),
+                sequence);
+        forceDirectory(directory);
+        return segment;
+    }
+
+    private static long sequenceOf(Path path) {
+        String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Forces the entries of a directory, the segments started in it or deleted from it, to disk
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    @FunctionalInterface
+    interface HintHandler {
+        void handle(Hint hint) throws IOException;
+    }
+
+    /**
+     * A file of the log. Its size and hint count change under the append lock, and are read by the replay
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final long sequence;
+        private final FileChannel channel;
+        private final AtomicLong pendingHints = new AtomicLong();
+        private volatile long committedSize;
+        private volatile long lastAppendMillis;
+
+        private Segment(Path path, long sequence, FileChannel channel) {
+            this.path = path;
+            this.sequence = sequence;
+            this.channel = channel;
+        }
+
+        static Segment open(Path path, long sequence) throws IOException {
+            Segment segment = new Segment(path, sequence, FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE));
+            segment.lastAppendMillis = Files.getLastModifiedTime(path).toMillis();
+            return segment;
+        }
+
+        /**
+         * Counts the hints of the segment and drops a torn tail
+         */
+        void recover() throws IOException {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long next = nextHintPosition(position, size);
+                if (next < 0) {
+                    logger.warn("Dropping torn hint at {} of {}", position, path);
+                    channel.truncate(position);
+                    break;
+                }
+                pendingHints.incrementAndGet();
+                position = next;
+            }
+            committedSize = position;
+        }
+
+        Hint readHint(long position) throws IOException {
+            ByteBuffer header = readFully(position, HEADER_SIZE);
+            int keyLength = header.getInt();
+            int clockLength = header.getInt();
+            long valueLength = header.getLong();
+            ByteBuffer keyAndClock = readFully(position + HEADER_SIZE, keyLength + clockLength);
+            String key = new String(keyAndClock.array(), 0, keyLength, StandardCharsets.UTF_8);
+            String vectorClock = new String(keyAndClock.array(), keyLength, clockLength, StandardCharsets.UTF_8);
+            return new Hint(key, vectorClock, channel, position + HEADER_SIZE + keyLength + clockLength, valueLength);
+        }
+
+        /**
+         * @return the position of the hint after the one at {@code position}, or -1 if the hint is incomplete
+         */
+        long nextHintPosition(long position, long size) throws IOException {
+            if (position + HEADER_SIZE > size) {
+                return -1;
+            }
+            ByteBuffer header = readFully(position, HEADER_SIZE);
+            int keyLength = header.getInt();
+            int clockLength = header.getInt();
+            long valueLength = header.getLong();
+            if (keyLength < 0 || clockLength < 0 || valueLength < 0) {
+                return -1;
+            }
+            long next = position + HEADER_SIZE + keyLength + clockLength + valueLength;
+            return next <= size ? next : -1;
+        }
+
+        private ByteBuffer readFully(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of hint log");
+                }
+            }
+            return buffer.flip();
+        }
+    }
+}
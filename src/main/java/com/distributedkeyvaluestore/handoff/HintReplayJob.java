@@ -0,0 +1,37 @@
+package com.distributedkeyvaluestore.handoff;
+
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands the hints held for nodes over to them once {@link NodeHealth} sees them up again, and drops those
+ * held too long for nodes which did not come back
+ */
+@Component
+public class HintReplayJob {
+
+    private final HashManager<DynamoNode> hashManager;
+    private final NodeHealth nodeHealth;
+    private final HintedHandoffManager hintedHandoffManager;
+
+    public HintReplayJob(HashManager<DynamoNode> hashManager, NodeHealth nodeHealth,
+                         HintedHandoffManager hintedHandoffManager) {
+        this.hashManager = hashManager;
+        this.nodeHealth = nodeHealth;
+        this.hintedHandoffManager = hintedHandoffManager;
+    }
+
+    @Scheduled(initialDelayString = "${handoff.replay-interval-ms:10000}",
+            fixedDelayString = "${handoff.replay-interval-ms:10000}")
+    public void replayHints() {
+        hintedHandoffManager.expireHints();
+        for (DynamoNode node : hashManager.getAllNodes()) {
+            if (!node.isSelfAware() && nodeHealth.isAlive(node) && hintedHandoffManager.hasHints(node)) {
+                hintedHandoffManager.replay(node);
+            }
+        }
+    }
+}
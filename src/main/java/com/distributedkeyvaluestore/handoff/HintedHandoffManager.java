@@ -0,0 +1,204 @@
+package com.distributedkeyvaluestore.handoff;
+
+import com.distributedkeyvaluestore.client.StreamingReplicaClient;
+import com.distributedkeyvaluestore.client.URIHelper;
+import com.distributedkeyvaluestore.exception.WriteException;
+import com.distributedkeyvaluestore.keyvalue.CommonMultipartFile;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.transport.ReplicaTransport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the writes which were meant for a node that was down, and hands them over to the node
+ * once it is back (hinted handoff). Every node has its own {@link HintLog}, a folder named after its address
+ * under the hints folder
+ */
+@Component
+public class HintedHandoffManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(HintedHandoffManager.class);
+
+    private final Map<String, HintLog> hintLogs = new ConcurrentHashMap<>();
+    private final ReplicaTransport replicaTransport;
+    private final StreamingReplicaClient streamingReplicaClient;
+    private final Path hintsFolder;
+    private final int replayBatchSize;
+    private final long segmentBytes;
+    private final long maxBytesPerNode;
+    private final long maxAgeMillis;
+    private final long streamingThresholdBytes;
+    private final Counter hintsStored;
+    private final Counter hintsReplayed;
+    private final Counter hintsExpired;
+
+    public HintedHandoffManager(ReplicaTransport replicaTransport, StreamingReplicaClient streamingReplicaClient,
+                                MeterRegistry meterRegistry,
+                                @Value("${handoff.folder:hints}") String hintsFolder,
+                                @Value("${handoff.replay-batch-size:100}") int replayBatchSize,
+                                @Value("${handoff.segment-bytes:67108864}") long segmentBytes,
+                                @Value("${handoff.max-bytes-per-node:1073741824}") long maxBytesPerNode,
+                                @Value("${handoff.max-age-ms:10800000}") long maxAgeMillis,
+                                @Value("${replication.streaming-threshold-bytes:1048576}") long streamingThresholdBytes) {
+        this.replicaTransport = replicaTransport;
+        this.streamingReplicaClient = streamingReplicaClient;
+        this.hintsFolder = Paths.get(System.getProperty("user.dir") + File.separator + hintsFolder);
+        this.replayBatchSize = replayBatchSize;
+        this.segmentBytes = segmentBytes;
+        this.maxBytesPerNode = maxBytesPerNode;
+        this.maxAgeMillis = maxAgeMillis;
+        this.streamingThresholdBytes = streamingThresholdBytes;
+
+        this.hintsStored = Counter.builder("handoff.hints.stored")
+                .description("Hints stored for nodes which were down")
+                .register(meterRegistry);
+        this.hintsReplayed = Counter.builder("handoff.hints.replayed")
+                .description("Hints handed over to their node")
+                .register(meterRegistry);
+        this.hintsExpired = Counter.builder("handoff.hints.expired")
+                .description("Hints dropped without being handed over, as their node stayed down too long")
+                .register(meterRegistry);
+        Gauge.builder("handoff.hints.pending", hintLogs,
+                        logs -> logs.values().stream().mapToLong(HintLog::getPendingHints).sum())
+                .description("Hints waiting to be handed over")
+                .register(meterRegistry);
+        Gauge.builder("handoff.hints.bytes", hintLogs,
+                        logs -> logs.values().stream().mapToLong(HintLog::getBytes).sum())
+                .description("Bytes held by the hint logs")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens the hint logs left by a previous run, so that their hints are replayed
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        Files.createDirectories(hintsFolder);
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(hintsFolder, Files::isDirectory)) {
+            for (Path folder : folders) {
+                String owner = folder.getFileName().toString();
+                HintLog hintLog = HintLog.open(folder, segmentBytes, maxBytesPerNode);
+                hintLogs.put(owner, hintLog);
+                logger.info("{} hints pending for {}", hintLog.getPendingHints(), owner);
+            }
+        }
+    }
+
+    /**
+     * Method to store a write for a node which is down
+     *
+     * @param owner       address of the node the write was meant for
+     * @param key         the key (file name) of the object
+     * @param vectorClock the vector clock of the write
+     * @param value       stream of the contents of the object
+     * @param length      the number of bytes to be read from the stream
+     */
+    public void storeHint(String owner, String key, String vectorClock, InputStream value, long length) {
+        try {
+            hintLog(owner).append(key, vectorClock, value, length);
+            hintsStored.increment();
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Hint of {} for {} not stored", key, owner, e);
+            throw new WriteException("Write operation failed: Hint write failed");
+        }
+    }
+
+    public boolean hasHints(DynamoNode owner) {
+        HintLog hintLog = hintLogs.get(owner.getAddress());
+        return hintLog != null && hintLog.getPendingHints() > 0;
+    }
+
+    /**
+     * Method to hand the hints held for a node over to it, in batches of {@code handoff.replay-batch-size}.
+     * Stops at the first hint which cannot be delivered, which is retried on the next call
+     *
+     * @param owner the node the hints were meant for
+     */
+    public void replay(DynamoNode owner) {
+        HintLog hintLog = hintLogs.get(owner.getAddress());
+        if (hintLog == null) {
+            return;
+        }
+        String folder = owner.getAddress().replaceAll("\\.", "_");
+        try {
+            int replayed;
+            do {
+                replayed = hintLog.replay(replayBatchSize, hint -> {
+                    deliver(owner, folder, hint);
+                    hintsReplayed.increment();
+                });
+                logger.info("Handed {} hints over to {}", replayed, owner.getAddress());
+            } while (replayed == replayBatchSize);
+        } catch (Exception e) {
+            logger.warn("Hinted handoff to {} failed: {}", owner.getAddress(), e.getMessage());
+        }
+    }
+
+    /**
+     * Method to drop the hints held longer than {@code handoff.max-age-ms} for a node which is still down,
+     * the writes they held are left to anti-entropy
+     */
+    public void expireHints() {
+        long cutoffMillis = System.currentTimeMillis() - maxAgeMillis;
+        hintLogs.forEach((owner, hintLog) -> {
+            try {
+                long expired = hintLog.expire(cutoffMillis);
+                if (expired > 0) {
+                    hintsExpired.increment(expired);
+                    logger.warn("Dropped {} hints held for {} longer than {} ms", expired, owner, maxAgeMillis);
+                }
+            } catch (IOException e) {
+                logger.error("Expiring the hints of {} failed", owner, e);
+            }
+        });
+    }
+
+    private void deliver(DynamoNode owner, String folder, Hint hint) throws IOException {
+        if (hint.getLength() > streamingThresholdBytes) {
+            streamingReplicaClient.storeToReplicaUsingVectorClock(URIHelper.createURI(owner.getAddress()), folder,
+                    hint.getKey(), hint::openStream, hint.getLength(), hint.getVectorClock());
+        } else {
+            replicaTransport.storeToReplicaUsingVectorClock(owner, new CommonMultipartFile(hint.readValue(),
+                    hint.getKey()), folder, hint.getVectorClock());
+        }
+    }
+
+    private HintLog hintLog(String owner) {
+        return hintLogs.computeIfAbsent(owner, address -> {
+            try {
+                return HintLog.open(hintsFolder.resolve(address), segmentBytes, maxBytesPerNode);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        hintLogs.values().forEach(hintLog -> {
+            try {
+                hintLog.close();
+            } catch (IOException e) {
+                logger.error("Closing a hint log failed", e);
+            }
+        });
+    }
+}
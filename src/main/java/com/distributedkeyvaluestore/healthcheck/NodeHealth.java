@@ -0,0 +1,52 @@
+package com.distributedkeyvaluestore.healthcheck;
+
+import com.distributedkeyvaluestore.models.DynamoNode;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Liveness of the other nodes as judged by the gossip failure detector. Nodes are assumed to be up
+ * until they are convicted
+ */
+@Component
+public class NodeHealth {
+
+    private final Set<String> downNodes = ConcurrentHashMap.newKeySet();
+    private final Map<String, Double> suspicion = new ConcurrentHashMap<>();
+
+    public boolean isAlive(DynamoNode node) {
+        return node.isSelfAware() || !downNodes.contains(node.getAddress());
+    }
+
+    /**
+     * @return true if the node was down before
+     */
+    public boolean markUp(DynamoNode node) {
+        return downNodes.remove(node.getAddress());
+    }
+
+    public void markDown(DynamoNode node) {
+        downNodes.add(node.getAddress());
+    }
+
+    /**
+     * Method to record the suspicion level (phi) of a node computed by the failure detector
+     */
+    public void setSuspicion(DynamoNode node, double phi) {
+        suspicion.put(node.getAddress(), phi);
+    }
+
+    /**
+     * @return the last suspicion level (phi) of a node, 0 for this node and nodes not checked yet
+     */
+    public double getSuspicion(DynamoNode node) {
+        return node.isSelfAware() ? 0 : suspicion.getOrDefault(node.getAddress(), 0.0);
+    }
+
+    public void removeSuspicion(String address) {
+        suspicion.remove(address);
+    }
+}
@@ -0,0 +1,109 @@
+package com.distributedkeyvaluestore.hedging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides when a hedged read sends its request to one more replica. A read waits {@code hedge.delay-percentile}
+ * of the recent replica latencies, at least {@code hedge.min-delay-ms}, before hedging. Hedges are paid from a
+ * budget which every read adds {@code hedge.max-ratio} to, up to {@code hedge.max-burst}, so that at most that
+ * ratio of the reads send a hedge even when every replica is slow
+ */
+@Component
+public class HedgePolicy {
+
+    private static final int MIN_SAMPLES = 20;
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ReplicaLatencyTracker latencyTracker;
+    private final boolean enabled;
+    private final double delayPercentile;
+    private final long minDelayNanos;
+    private final long defaultDelayNanos;
+    private final double maxRatio;
+    private final double maxBurst;
+    private final Counter sent;
+    private final Counter throttled;
+    private final ReentrantLock lock = new ReentrantLock();
+    private double budget;
+    private volatile long delayNanos;
+    private long delayRefreshedNanos;
+
+    public HedgePolicy(ReplicaLatencyTracker latencyTracker, MeterRegistry meterRegistry,
+                       @Value("${hedge.enabled:false}") boolean enabled,
+                       @Value("${hedge.delay-percentile:95}") double delayPercentile,
+                       @Value("${hedge.min-delay-ms:2}") long minDelayMillis,
+                       @Value("${hedge.default-delay-ms:50}") long defaultDelayMillis,
+                       @Value("${hedge.max-ratio:0.1}") double maxRatio,
+                       @Value("${hedge.max-burst:10}") double maxBurst) {
+        this.latencyTracker = latencyTracker;
+        this.enabled = enabled;
+        this.delayPercentile = delayPercentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.defaultDelayNanos = TimeUnit.MILLISECONDS.toNanos(defaultDelayMillis);
+        this.maxRatio = maxRatio;
+        this.maxBurst = maxBurst;
+        this.budget = maxBurst;
+        this.delayNanos = defaultDelayNanos;
+        this.delayRefreshedNanos = System.nanoTime();
+
+        this.sent = Counter.builder("hedge.sent")
+                .description("Hedge requests sent to one more replica by reads waiting for a slow replica")
+                .register(meterRegistry);
+        this.throttled = Counter.builder("hedge.throttled")
+                .description("Hedge requests not sent because the hedge budget was spent (hedge.max-ratio)")
+                .register(meterRegistry);
+        Gauge.builder("hedge.delay", this, policy -> policy.delayNanos / 1_000_000.0)
+                .description("Time in milliseconds a read waits for its replicas before sending a hedge")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Method to start a hedged read, adding its share to the hedge budget
+     *
+     * @return the time to wait for a response before sending a hedge
+     */
+    public long startRead() {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            budget = Math.min(maxBurst, budget + maxRatio);
+            if (now - delayRefreshedNanos > DELAY_REFRESH_NANOS) {
+                long percentile = latencyTracker.percentileNanos(delayPercentile, MIN_SAMPLES);
+                delayNanos = percentile < 0 ? defaultDelayNanos : Math.max(minDelayNanos, percentile);
+                delayRefreshedNanos = now;
+            }
+            return delayNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return whether a read may send a hedge, which is then taken from the budget
+     */
+    public boolean tryHedge() {
+        lock.lock();
+        try {
+            if (budget < 1) {
+                throttled.increment();
+                return false;
+            }
+            budget--;
+        } finally {
+            lock.unlock();
+        }
+        sent.increment();
+        return true;
+    }
+}
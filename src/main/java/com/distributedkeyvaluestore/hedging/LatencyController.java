@@ -0,0 +1,24 @@
+package com.distributedkeyvaluestore.hedging;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin")
+public class LatencyController {
+
+    private final ReplicaLatencyTracker latencyTracker;
+
+    public LatencyController(ReplicaLatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    @GetMapping("/replicas/latency")
+    ResponseEntity<Map<String, ReplicaLatencyTracker.ReplicaLatency>> getLatency() {
+        return ResponseEntity.ok(latencyTracker.getStats());
+    }
+}
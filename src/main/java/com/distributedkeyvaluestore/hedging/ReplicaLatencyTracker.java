@@ -0,0 +1,214 @@
+package com.distributedkeyvaluestore.hedging;
+
+import com.distributedkeyvaluestore.models.DynamoNode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Latency of the reads sent to every replica, as an exponentially weighted moving average (EWMA) per node, and
+ * the latencies of the last {@code latency.window-size} reads of all nodes for percentiles. A node whose last
+ * read is older than {@code latency.stale-after-ms} is ranked as if it was never read, so that a node which was
+ * slow once is tried again. The requests of any kind in flight to every node are counted as its load
+ */
+@Component
+public class ReplicaLatencyTracker {
+
+    private final Map<String, NodeLatency> nodes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final double alpha;
+    private final long staleAfterNanos;
+    private final long[] window;
+    private final ReentrantLock windowLock = new ReentrantLock();
+    private int windowNext;
+    private int windowCount;
+
+    public ReplicaLatencyTracker(MeterRegistry meterRegistry,
+                                 @Value("${latency.ewma-alpha:0.2}") double alpha,
+                                 @Value("${latency.stale-after-ms:10000}") long staleAfterMillis,
+                                 @Value("${latency.window-size:1024}") int windowSize) {
+        this.meterRegistry = meterRegistry;
+        this.alpha = alpha;
+        this.staleAfterNanos = TimeUnit.MILLISECONDS.toNanos(staleAfterMillis);
+        this.window = new long[windowSize];
+    }
+
+    /**
+     * Method to record the time a replica took to answer a read, or to fail it
+     */
+    public void record(DynamoNode node, long latencyNanos) {
+        long now = System.nanoTime();
+        NodeLatency previous = nodes.get(node.getAddress());
+        nodes.compute(node.getAddress(), (address, latency) -> latency == null
+                ? new NodeLatency(latencyNanos, 1, now)
+                : latency.next(latencyNanos, alpha, now));
+        if (previous == null) {
+            Gauge.builder("replica.latency.ewma", this, tracker -> tracker.ewmaMillis(node.getAddress()))
+                    .description("Moving average of the read latency of a replica, in milliseconds")
+                    .tag("node", node.getAddress())
+                    .register(meterRegistry);
+        }
+
+        windowLock.lock();
+        try {
+            window[windowNext] = latencyNanos;
+            windowNext = (windowNext + 1) % window.length;
+            windowCount = Math.min(windowCount + 1, window.length);
+        } finally {
+            windowLock.unlock();
+        }
+    }
+
+    /**
+     * Method to count a request sent to a node until {@link #endRequest} is called for it
+     */
+    public void startRequest(DynamoNode node) {
+        inFlight.computeIfAbsent(node.getAddress(), address -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public void endRequest(DynamoNode node) {
+        AtomicInteger requests = inFlight.get(node.getAddress());
+        if (requests != null) {
+            requests.decrementAndGet();
+        }
+    }
+
+    public int getInFlight(DynamoNode node) {
+        AtomicInteger requests = inFlight.get(node.getAddress());
+        return requests != null ? requests.get() : 0;
+    }
+
+    /**
+     * @return the moving average of the read latency of a node, 0 when it has no recent reads
+     */
+    public double getEwmaNanos(DynamoNode node) {
+        return currentEwmaNanos(node.getAddress(), System.nanoTime());
+    }
+
+    /**
+     * @return the nodes ordered from the fastest to the slowest, nodes without recent reads first
+     */
+    public List<DynamoNode> rank(List<DynamoNode> replicas) {
+        long now = System.nanoTime();
+        return replicas.stream()
+                .sorted(Comparator.comparingDouble(node -> currentEwmaNanos(node.getAddress(), now)))
+                .toList();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency of the recent reads below which {@code percentile} of them are, or -1 when fewer than
+     * {@code minSamples} reads were recorded
+     */
+    public long percentileNanos(double percentile, int minSamples) {
+        long[] samples;
+        windowLock.lock();
+        try {
+            if (windowCount < minSamples || windowCount == 0) {
+                return -1;
+            }
+            samples = Arrays.copyOf(window, windowCount);
+        } finally {
+            windowLock.unlock();
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(percentile / 100 * samples.length) - 1;
+        return samples[Math.max(0, Math.min(index, samples.length - 1))];
+    }
+
+    /**
+     * @return the latency of every node read so far, by address
+     */
+    public Map<String, ReplicaLatency> getStats() {
+        long now = System.nanoTime();
+        Map<String, ReplicaLatency> stats = new TreeMap<>();
+        nodes.forEach((address, latency) -> stats.put(address, new ReplicaLatency(
+                latency.ewmaNanos / 1_000_000, latency.samples,
+                TimeUnit.NANOSECONDS.toMillis(now - latency.lastSampleNanos),
+                now - latency.lastSampleNanos > staleAfterNanos,
+                inFlight.getOrDefault(address, new AtomicInteger()).get())));
+        return stats;
+    }
+
+    private double ewmaMillis(String address) {
+        NodeLatency latency = nodes.get(address);
+        return latency != null ? latency.ewmaNanos / 1_000_000 : 0;
+    }
+
+    private double currentEwmaNanos(String address, long now) {
+        NodeLatency latency = nodes.get(address);
+        if (latency == null || now - latency.lastSampleNanos > staleAfterNanos) {
+            return 0;
+        }
+        return latency.ewmaNanos;
+    }
+
+    private static class NodeLatency {
+
+        private final double ewmaNanos;
+        private final long samples;
+        private final long lastSampleNanos;
+
+        NodeLatency(double ewmaNanos, long samples, long lastSampleNanos) {
+            this.ewmaNanos = ewmaNanos;
+            this.samples = samples;
+            this.lastSampleNanos = lastSampleNanos;
+        }
+
+        NodeLatency next(long latencyNanos, double alpha, long now) {
+            return new NodeLatency(alpha * latencyNanos + (1 - alpha) * ewmaNanos, samples + 1, now);
+        }
+    }
+
+    /**
+     * Latency of the reads of a replica, as returned by /admin/replicas/latency
+     */
+    public static class ReplicaLatency {
+
+        private final double ewmaMillis;
+        private final long samples;
+        private final long millisSinceLastSample;
+        private final boolean stale;
+        private final int inFlight;
+
+        ReplicaLatency(double ewmaMillis, long samples, long millisSinceLastSample, boolean stale, int inFlight) {
+            this.ewmaMillis = ewmaMillis;
+            this.samples = samples;
+            this.millisSinceLastSample = millisSinceLastSample;
+            this.stale = stale;
+            this.inFlight = inFlight;
+        }
+
+        public double getEwmaMillis() {
+            return ewmaMillis;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        public long getMillisSinceLastSample() {
+            return millisSinceLastSample;
+        }
+
+        public boolean isStale() {
+            return stale;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.cache.ReadCache;
+import com.distributedkeyvaluestore.client.DynamoClient;
+import com.distributedkeyvaluestore.client.URIHelper;
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.exception.ReadException;
+import com.distributedkeyvaluestore.exception.RingEmptyException;
+import com.distributedkeyvaluestore.exception.WriteException;
+import com.distributedkeyvaluestore.handoff.HintedHandoffManager;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.models.ConsistencyLevel;
+import com.distributedkeyvaluestore.models.Deadline;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import com.distributedkeyvaluestore.models.Quorum;
+import com.distributedkeyvaluestore.models.Response;
+import com.distributedkeyvaluestore.models.VectorClock;
+import com.distributedkeyvaluestore.transport.ReplicaTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Multi-key reads and writes. The keys of a batch are grouped by the replicas they are stored on and every
+ * replica receives one request carrying all of its keys, instead of one request per key. The quorum is still
+ * evaluated per key and every key gets its own result, so that a key which fails does not fail the batch
+ */
+@Component
+public class BatchKeyValueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchKeyValueService.class);
+
+    private final HashManager<DynamoNode> hashManager;
+    private final KeyValueService keyValueService;
+    private final QuorumCoordinator quorumCoordinator;
+    private final ReplicaTransport replicaTransport;
+    private final DynamoClient dynamoClient;
+    private final NodeHealth nodeHealth;
+    private final HintedHandoffManager hintedHandoffManager;
+    private final ReadCache readCache;
+    private final ConsistencyPolicy consistencyPolicy;
+    private final CoordinatorSelector coordinatorSelector;
+    private final TaskExecutor taskExecutor;
+    private final int maxKeysPerRequest;
+    private final long maxRequestBytes;
+    private final long streamingThresholdBytes;
+
+    public BatchKeyValueService(HashManager<DynamoNode> hashManager, KeyValueService keyValueService,
+                                QuorumCoordinator quorumCoordinator, ReplicaTransport replicaTransport,
+                                DynamoClient dynamoClient, NodeHealth nodeHealth,
+                                HintedHandoffManager hintedHandoffManager, ReadCache readCache,
+                                ConsistencyPolicy consistencyPolicy, CoordinatorSelector coordinatorSelector,
+                                TaskExecutor taskExecutor,
+                                @Value("${batch.max-keys-per-request:100}") int maxKeysPerRequest,
+                                @Value("${batch.max-request-bytes:8388608}") long maxRequestBytes,
+                                @Value("${replication.streaming-threshold-bytes:1048576}") long streamingThresholdBytes) {
+        this.hashManager = hashManager;
+        this.keyValueService = keyValueService;
+        this.quorumCoordinator = quorumCoordinator;
+        this.replicaTransport = replicaTransport;
+        this.dynamoClient = dynamoClient;
+        this.nodeHealth = nodeHealth;
+        this.hintedHandoffManager = hintedHandoffManager;
+        this.readCache = readCache;
+        this.consistencyPolicy = consistencyPolicy;
+        this.coordinatorSelector = coordinatorSelector;
+        this.taskExecutor = taskExecutor;
+        this.maxKeysPerRequest = maxKeysPerRequest;
+        this.maxRequestBytes = maxRequestBytes;
+        this.streamingThresholdBytes = streamingThresholdBytes;
+    }
+
+    /**
+     * Method to read several objects. Every replica which is up, this node included, is sent one request
+     * for all of its keys, and the wait ends as soon as every key has its read quorum
+     *
+     * @param consistency the consistency level of every key, or null for the level configured for the key
+     * @return the versions of every key, or the reason its read failed
+     */
+    public Map<String, Response<List<FileWithVectorClock>>> retrieve(List<String> fileNames,
+                                                                     ConsistencyLevel consistency, Deadline deadline) {
+        Set<String> keys = new LinkedHashSet<>(fileNames);
+        Map<String, Response<List<FileWithVectorClock>>> cached = new HashMap<>();
+        Map<String, Long> cacheStamps = new HashMap<>();
+        Map<String, Integer> readQuorums = new HashMap<>();
+        Map<String, DynamoNode> replicas = new LinkedHashMap<>();
+        Map<String, List<String>> keysByReplica = new LinkedHashMap<>();
+        try {
+            for (String fileName : keys) {
+                ConsistencyLevel level = consistencyPolicy.readLevel(fileName, consistency);
+                Optional<FileWithVectorClock> cachedFile = ConsistencyPolicy.allowsCachedRead(consistency, level)
+                        ? readCache.get(fileName) : Optional.empty();
+                if (cachedFile.isPresent()) {
+                    cached.put(fileName, new Response<>(List.of(cachedFile.get()), null));
+                    continue;
+                }
+                cacheStamps.put(fileName, readCache.stamp(fileName));
+                readQuorums.put(fileName, ConsistencyPolicy.required(level));
+                for (DynamoNode node : hashManager.getNodes(fileName)) {
+                    if (node.isSelfAware() || nodeHealth.isAlive(node)) {
+                        replicas.putIfAbsent(node.getAddress(), node);
+                        keysByReplica.computeIfAbsent(node.getAddress(), address -> new ArrayList<>()).add(fileName);
+                    }
+                }
+            }
+        } catch (RingEmptyException | IllegalArgumentException e) {
+            throw new ReadException("Read operation failed, " + e.getMessage());
+        }
+
+        List<ReplicaRequest<String>> requests = new ArrayList<>();
+        keysByReplica.forEach((address, replicaKeys) -> partition(replicaKeys, fileName -> 0)
+                .forEach(chunk -> requests.add(new ReplicaRequest<>(replicas.get(address), chunk))));
+
+        Map<ReplicaRequest<String>, Map<String, List<FileWithVectorClock>>> responses = quorumCoordinator.awaitEach(
+                requests, deadline, this::retrieveFromReplica,
+                received -> cacheStamps.keySet().stream().allMatch(fileName -> received.values().stream()
+                        .filter(files -> files.containsKey(fileName)).count() >= readQuorums.get(fileName)));
+
+        Map<String, Map<FileWithVectorClock, DynamoNode>> versions = new HashMap<>();
+        responses.forEach((request, files) -> files.forEach((fileName, siblings) -> {
+            if (cacheStamps.containsKey(fileName)) {
+                siblings.forEach(sibling -> versions.computeIfAbsent(fileName, key -> new HashMap<>())
+                        .put(sibling, request.getNode()));
+            }
+        }));
+
+        Map<String, Response<List<FileWithVectorClock>>> results = new LinkedHashMap<>();
+        for (String fileName : keys) {
+            results.put(fileName, cached.containsKey(fileName) ? cached.get(fileName)
+                    : resolve(fileName, versions.getOrDefault(fileName, Map.of()), cacheStamps.get(fileName),
+                    readQuorums.get(fileName), deadline));
+        }
+        return results;
+    }
+
+    private Map<String, List<FileWithVectorClock>> retrieveFromReplica(ReplicaRequest<String> request) {
+        DynamoNode node = request.getNode();
+        if (node.isSelfAware()) {
+            return keyValueService.retrieveObjectsInternal(folderOf(node), request.getItems());
+        }
+        return replicaTransport.retrieveBatchFromReplica(node, folderOf(node), request.getItems());
+    }
+
+    private Response<List<FileWithVectorClock>> resolve(String fileName, Map<FileWithVectorClock, DynamoNode> versions,
+                                                        long cacheStamp, int readQuorum, Deadline deadline) {
+        long replicas = versions.values().stream().distinct().count();
+        if (replicas < readQuorum) {
+            return new Response<>(null, "Read operation failed: Read quorum condition failed, " + replicas
+                    + " of " + Quorum.getReplicas() + " replicas returned " + fileName);
+        }
+        List<FileWithVectorClock> siblings = keyValueService.resolveSiblings(fileName,
+                keyValueService.ensureEventualConsistency(fileName, new HashMap<>(versions)));
+        if (siblings.size() == 1) {
+            readCache.fill(fileName, siblings.get(0), cacheStamp);
+        }
+        return new Response<>(siblings, null);
+    }
+
+    /**
+     * Method to store several objects. The keys this node is a replica of are coordinated here: they are
+     * stored locally and every other replica is sent one request for all of its keys. The other keys are
+     * forwarded as one batch per coordinator. Objects above the streaming threshold are stored as single writes,
+     * sent together with the batch requests and bound by the same deadline
+     *
+     * @param consistency the consistency level of every key, or null for the level configured for the key
+     * @return the outcome of every key
+     */
+    public Map<String, Response<Boolean>> store(List<MultipartFile> files, ConsistencyLevel consistency,
+                                                Deadline deadline) {
+        Map<String, MultipartFile> batch = new LinkedHashMap<>();
+        for (MultipartFile file : files) {
+            if (batch.putIfAbsent(file.getOriginalFilename(), file) != null) {
+                throw new WriteException("Write operation failed: " + file.getOriginalFilename()
+                        + " appears more than once in the batch");
+            }
+        }
+
+        Map<String, Response<Boolean>> results = new HashMap<>();
+        Map<String, KeyWrite> writes = new LinkedHashMap<>();
+        Map<String, DynamoNode> nodesByAddress = new HashMap<>();
+        Map<String, List<KeyWrite>> writesByReplica = new LinkedHashMap<>();
+        Map<String, List<MultipartFile>> filesByCoordinator = new LinkedHashMap<>();
+        List<MultipartFile> largeFiles = new ArrayList<>();
+        for (MultipartFile file : batch.values()) {
+            String fileName = file.getOriginalFilename();
+            if (file.getSize() > streamingThresholdBytes) {
+                largeFiles.add(file);
+                continue;
+            }
+            try {
+                // the requests the batch does not wait for are sent after the upload is deleted. Values below the
+                // streaming threshold are copied to memory, which needs no release
+                MultipartFile value = DetachedValue.detach(file, streamingThresholdBytes);
+                List<DynamoNode> nodes = hashManager.getNodes(fileName).stream()
+                        .sorted(Comparator.comparing(DynamoNode::getNumber))
+                        .collect(Collectors.toList());
+                Optional<DynamoNode> self = nodes.stream().filter(DynamoNode::isSelfAware).findFirst();
+                if (self.isEmpty()) {
+                    // a coordinator already forwarded other keys of the batch takes this one as well, so that
+                    // the keys still share requests, otherwise the least loaded replica
+                    List<DynamoNode> coordinators = coordinatorSelector.rank(nodes);
+                    DynamoNode coordinator = coordinators.stream()
+                            .filter(node -> filesByCoordinator.containsKey(node.getAddress()))
+                            .findFirst()
+                            .orElse(coordinators.isEmpty() ? nodes.get(0) : coordinators.get(0));
+                    nodesByAddress.putIfAbsent(coordinator.getAddress(), coordinator);
+                    filesByCoordinator.computeIfAbsent(coordinator.getAddress(), address -> new ArrayList<>())
+                            .add(value);
+                    continue;
+                }
+                ConsistencyLevel level = consistencyPolicy.writeLevel(fileName, consistency);
+                int writeQuorum = ConsistencyPolicy.required(level);
+                VectorClock vectorClock = keyValueService.createFile(value, folderOf(self.get()),
+                        self.get().getNumber(), null);
+                nodes.remove(self.get());
+                KeyWrite write = new KeyWrite(value, self.get(), nodes, vectorClock, writeQuorum,
+                        consistencyPolicy.countsHints(level));
+                writes.put(fileName, write);
+                for (DynamoNode node : nodes) {
+                    if (nodeHealth.isAlive(node)) {
+                        nodesByAddress.putIfAbsent(node.getAddress(), node);
+                        writesByReplica.computeIfAbsent(node.getAddress(), address -> new ArrayList<>()).add(write);
+                    }
+                }
+            } catch (RingEmptyException | WriteException | IllegalArgumentException e) {
+                results.put(fileName, new Response<>(false, "Write operation failed, " + e.getMessage()));
+            } catch (IOException e) {
+                logger.error("Write of {} failed", fileName, e);
+                results.put(fileName, new Response<>(false, "Write operation failed: File write failed"));
+            }
+        }
+
+        List<ReplicaRequest<KeyWrite>> replicaRequests = new ArrayList<>();
+        writesByReplica.forEach((address, replicaWrites) -> partition(replicaWrites, write -> write.getFile().getSize())
+                .forEach(chunk -> replicaRequests.add(new ReplicaRequest<>(nodesByAddress.get(address), chunk))));
+        List<ReplicaRequest<MultipartFile>> forwardRequests = new ArrayList<>();
+        filesByCoordinator.forEach((address, forwarded) -> partition(forwarded, MultipartFile::getSize)
+                .forEach(chunk -> forwardRequests.add(new ReplicaRequest<>(nodesByAddress.get(address), chunk))));
+
+        // a large object is keyed by its upload, the batch requests by their ReplicaRequest
+        Map<Object, Supplier<Map<String, Response<Boolean>>>> senders = new LinkedHashMap<>();
+        replicaRequests.forEach(request -> senders.put(request, () -> storeToReplica(request)));
+        forwardRequests.forEach(request -> senders.put(request, () -> forwardToNode(request, consistency,
+                deadline)));
+        largeFiles.forEach(file -> senders.put(file, () -> storeLargeFile(file, consistency, deadline)));
+        Map<Object, Map<String, Response<Boolean>>> responses = quorumCoordinator.awaitEach(senders.keySet(),
+                deadline, request -> senders.get(request).get(),
+                received -> forwardRequests.stream().allMatch(received::containsKey)
+                        && largeFiles.stream().allMatch(received::containsKey)
+                        && writes.keySet().stream().allMatch(fileName -> 1 + replicaRequests.stream()
+                        .filter(request -> received.getOrDefault(request, Map.of()).containsKey(fileName))
+                        .count() >= writes.get(fileName).getWriteQuorum()));
+
+        for (ReplicaRequest<MultipartFile> request : forwardRequests) {
+            Map<String, Response<Boolean>> forwarded = responses.getOrDefault(request, Map.of());
+            for (MultipartFile file : request.getItems()) {
+                results.put(file.getOriginalFilename(), forwarded.getOrDefault(file.getOriginalFilename(),
+                        new Response<>(false, "Write operation failed: Forwarding to the coordinator "
+                                + request.getNode().getAddress() + " failed")));
+            }
+        }
+        for (ReplicaRequest<KeyWrite> request : replicaRequests) {
+            Map<String, Response<Boolean>> stored = responses.getOrDefault(request, Map.of());
+            request.getItems().stream()
+                    .filter(write -> stored.containsKey(write.getFileName()))
+                    .forEach(write -> write.acknowledge(request.getNode()));
+        }
+        for (MultipartFile file : largeFiles) {
+            results.put(file.getOriginalFilename(), responses.getOrDefault(file, Map.of())
+                    .getOrDefault(file.getOriginalFilename(), new Response<>(false,
+                            "Write operation failed: Deadline passed before the object was stored")));
+        }
+
+        // the keys short of their quorum wait for the hints which may complete it, all of them at once
+        List<KeyWrite> shortOfQuorum = writes.values().stream()
+                .filter(write -> write.getAcknowledgements() < write.getWriteQuorum())
+                .toList();
+        Map<KeyWrite, Response<Boolean>> completed = quorumCoordinator.awaitEach(shortOfQuorum, deadline,
+                this::complete, received -> false);
+        for (KeyWrite write : writes.values()) {
+            results.put(write.getFileName(), shortOfQuorum.contains(write)
+                    ? completed.getOrDefault(write, new Response<>(false, "Write operation failed: Deadline passed "
+                    + "before the replicas which did not acknowledge were handed to other nodes"))
+                    : outcome(write));
+        }
+        handOff(writes.values().stream().filter(write -> !shortOfQuorum.contains(write)).toList(),
+                List.copyOf(writes.values()));
+
+        Map<String, Response<Boolean>> orderedResults = new LinkedHashMap<>();
+        batch.keySet().forEach(fileName -> orderedResults.put(fileName, results.get(fileName)));
+        return orderedResults;
+    }
+
+    private Map<String, Response<Boolean>> storeToReplica(ReplicaRequest<KeyWrite> request) {
+        DynamoNode node = request.getNode();
+        List<KeyWrite> writes = request.getItems();
+        List<String> stored = replicaTransport.storeBatchToReplicaUsingVectorClock(node,
+                writes.stream().map(KeyWrite::getFile).toList(), folderOf(node),
+                writes.stream().map(write -> write.getVectorClock().toString()).toList());
+        Map<String, Response<Boolean>> acknowledged = new HashMap<>();
+        stored.forEach(fileName -> acknowledged.put(fileName, new Response<>(true, node.getAddress())));
+        return acknowledged;
+    }
+
+    private Map<String, Response<Boolean>> storeLargeFile(MultipartFile file, ConsistencyLevel consistency,
+                                                          Deadline deadline) {
+        Response<Boolean> response;
+        try {
+            response = new Response<>(true, keyValueService.store(file, null, consistency, deadline).getBody());
+        } catch (WriteException e) {
+            response = new Response<>(false, e.getMessage());
+        }
+        return Map.of(file.getOriginalFilename(), response);
+    }
+
+    private Map<String, Response<Boolean>> forwardToNode(ReplicaRequest<MultipartFile> request,
+                                                         ConsistencyLevel consistency, Deadline deadline) {
+        if (deadline.isExpired()) {
+            throw new WriteException("Write operation failed: Deadline passed before forwarding to the coordinator");
+        }
+        Map<String, Response<Boolean>> results = dynamoClient.forwardBatchToNode(
+                URIHelper.createURI(request.getNode().getAddress()),
+                request.getItems().toArray(new MultipartFile[0]), consistency != null ? consistency.toString() : null,
+                deadline.remainingMillis()).getBody();
+        return results != null ? results : Map.of();
+    }
+
+    /**
+     * Hands the writes of the replicas which did not acknowledge to other nodes, as {@link KeyValueService#store}
+     * does. As long as the key has its quorum without them, a replica known to be down gets a hint kept on
+     * this node, which costs no request, and a replica which failed or is slow is left to anti-entropy
+     */
+    private Response<Boolean> complete(KeyWrite write) {
+        int writeQuorum = write.getWriteQuorum();
+        FallbackNodes fallbackNodes = keyValueService.fallbackNodes(write.getFileName());
+        for (DynamoNode node : write.getReplicas()) {
+            if (write.isAcknowledgedBy(node)) {
+                continue;
+            }
+            if (write.getAcknowledgements() < writeQuorum) {
+                try {
+                    DynamoNode fallbackNode = keyValueService.storeHint(write.getFile(), node,
+                            write.getVectorClock().toString(), fallbackNodes);
+                    if (write.countsHints()) {
+                        write.acknowledge(fallbackNode);
+                    }
+                } catch (WriteException e) {
+                    logger.warn("Hint of {} for {} not stored: {}", write.getFileName(), node.getAddress(),
+                            e.getMessage());
+                }
+            } else if (!nodeHealth.isAlive(node)) {
+                try (InputStream value = write.getFile().getInputStream()) {
+                    hintedHandoffManager.storeHint(node.getAddress(), write.getFileName(),
+                            write.getVectorClock().toString(), value, write.getFile().getSize());
+                } catch (IOException | WriteException e) {
+                    logger.error("Hint of {} for {} not stored", write.getFileName(), node.getAddress(), e);
+                }
+            }
+        }
+        return outcome(write);
+    }
+
+    /**
+     * Completes, after the response, the keys which had their quorum and sends every key to the replicas a
+     * membership change adds. Neither changes the outcome of a key
+     */
+    private void handOff(List<KeyWrite> acknowledged, List<KeyWrite> writes) {
+        if (writes.isEmpty()) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> {
+                acknowledged.forEach(this::complete);
+                writes.forEach(write -> keyValueService.storeToPendingReplicas(write.getFile(),
+                        write.getVectorClock()));
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Hand-off of the batch to the replicas which did not acknowledge not scheduled: {}",
+                    e.getMessage());
+        }
+    }
+
+    private Response<Boolean> outcome(KeyWrite write) {
+        int writeQuorum = write.getWriteQuorum();
+        if (write.getAcknowledgements() < writeQuorum) {
+            return new Response<>(false, "Write operation failed: Write quorum condition failed, "
+                    + write.getAcknowledgements() + " of " + Quorum.getReplicas() + " replicas acknowledged");
+        }
+        return new Response<>(true, "Write operation succeeded on node number " + write.getCoordinator().getNumber()
+                + " with ip " + write.getCoordinator().getAddress());
+    }
+
+    /**
+     * Splits the keys sent to one node into requests of at most batch.max-keys-per-request keys and
+     * batch.max-request-bytes bytes, so that a request stays within the frame size of the replica transport
+     */
+    private <T> List<List<T>> partition(List<T> items, ToLongFunction<T> weigher) {
+        List<List<T>> chunks = new ArrayList<>();
+        List<T> chunk = new ArrayList<>();
+        long chunkBytes = 0;
+        for (T item : items) {
+            long bytes = weigher.applyAsLong(item);
+            if (!chunk.isEmpty() && (chunk.size() == maxKeysPerRequest || chunkBytes + bytes > maxRequestBytes)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+            chunk.add(item);
+            chunkBytes += bytes;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static String folderOf(DynamoNode node) {
+        return node.getAddress().replaceAll("\\.", "_");
+    }
+
+    /**
+     * One request of a batch to a node. Compared by identity, a node can receive several requests
+     */
+    private static class ReplicaRequest<T> {
+
+        private final DynamoNode node;
+        private final List<T> items;
+
+        ReplicaRequest(DynamoNode node, List<T> items) {
+            this.node = node;
+            this.items = items;
+        }
+
+        DynamoNode getNode() {
+            return node;
+        }
+
+        List<T> getItems() {
+            return items;
+        }
+    }
+
+    /**
+     * A key of the batch coordinated by this node, with the replicas which acknowledged it
+     */
+    private static class KeyWrite {
+
+        private final MultipartFile file;
+        private final DynamoNode coordinator;
+        private final List<DynamoNode> replicas;
+        private final VectorClock vectorClock;
+        private final int writeQuorum;
+        private final boolean countsHints;
+        private final Set<String> acknowledgedBy = new HashSet<>();
+        private int acknowledgements = 1;
+
+        KeyWrite(MultipartFile file, DynamoNode coordinator, List<DynamoNode> replicas, VectorClock vectorClock,
+                 int writeQuorum, boolean countsHints) {
+            this.file = file;
+            this.coordinator = coordinator;
+            this.replicas = replicas;
+            this.vectorClock = vectorClock;
+            this.writeQuorum = writeQuorum;
+            this.countsHints = countsHints;
+        }
+
+        void acknowledge(DynamoNode node) {
+            acknowledgedBy.add(node.getAddress());
+            acknowledgements++;
+        }
+
+        boolean isAcknowledgedBy(DynamoNode node) {
+            return acknowledgedBy.contains(node.getAddress());
+        }
+
+        int getAcknowledgements() {
+            return acknowledgements;
+        }
+
+        MultipartFile getFile() {
+            return file;
+        }
+
+        String getFileName() {
+            return file.getOriginalFilename();
+        }
+
+        DynamoNode getCoordinator() {
+            return coordinator;
+        }
+
+        List<DynamoNode> getReplicas() {
+            return replicas;
+        }
+
+        VectorClock getVectorClock() {
+            return vectorClock;
+        }
+
+        int getWriteQuorum() {
+            return writeQuorum;
+        }
+
+        boolean countsHints() {
+            return countsHints;
+        }
+    }
+}
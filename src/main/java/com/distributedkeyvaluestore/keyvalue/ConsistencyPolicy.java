@@ -0,0 +1,122 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.models.ConsistencyLevel;
+import com.distributedkeyvaluestore.models.Quorum;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consistency levels of the reads and writes which do not set one. The level of a key is the level of the
+ * longest configured prefix of the key, or the default level when no prefix matches. Prefixes are configured as
+ * comma separated prefix=level pairs, eg: consistency.write-prefixes=audit_=all
+ * <p>
+ * A write to a replica which is down is handed to a fallback node as a hint (sloppy quorum). The hint counts
+ * toward the replicas a write waits for, except at {@link ConsistencyLevel#ALL}, which waits for every home
+ * replica, and at every level with consistency.strict-quorum=true
+ */
+@Component
+public class ConsistencyPolicy {
+
+    private final ConsistencyLevel defaultReadLevel;
+    private final ConsistencyLevel defaultWriteLevel;
+    private final List<Map.Entry<String, ConsistencyLevel>> readPrefixes;
+    private final List<Map.Entry<String, ConsistencyLevel>> writePrefixes;
+    private final boolean strictQuorum;
+
+    public ConsistencyPolicy(@Value("${consistency.read:quorum}") String defaultReadLevel,
+                             @Value("${consistency.write:quorum}") String defaultWriteLevel,
+                             @Value("${consistency.read-prefixes:}") String readPrefixes,
+                             @Value("${consistency.write-prefixes:}") String writePrefixes,
+                             @Value("${consistency.strict-quorum:false}") boolean strictQuorum) {
+        this.defaultReadLevel = ConsistencyLevel.fromName(defaultReadLevel);
+        this.defaultWriteLevel = ConsistencyLevel.fromName(defaultWriteLevel);
+        this.readPrefixes = parsePrefixes(readPrefixes);
+        this.writePrefixes = parsePrefixes(writePrefixes);
+        this.strictQuorum = strictQuorum;
+    }
+
+    /**
+     * @param requested the level set by the client, or null
+     * @return the consistency level of a read of the key
+     */
+    public ConsistencyLevel readLevel(String key, ConsistencyLevel requested) {
+        return requested != null ? requested : levelOf(key, readPrefixes, defaultReadLevel);
+    }
+
+    /**
+     * @param requested the level set by the client, or null
+     * @return the consistency level of a write of the key
+     */
+    public ConsistencyLevel writeLevel(String key, ConsistencyLevel requested) {
+        return requested != null ? requested : levelOf(key, writePrefixes, defaultWriteLevel);
+    }
+
+    /**
+     * @return whether a hint stored on a fallback node counts toward the replicas a write at the level waits for
+     */
+    public boolean countsHints(ConsistencyLevel level) {
+        return !strictQuorum && !ConsistencyLevel.ALL.equals(level);
+    }
+
+    /**
+     * Method to tell whether a read may be served from the read cache of the coordinator, with
+     * cache.read-mode=cached. A read at the level configured for its key, or at {@link ConsistencyLevel#ONE},
+     * may be: a client asking for a stronger level than configured gets the answer of that many replicas
+     *
+     * @param requested the level set by the client, or null
+     * @param level     the level of the read
+     */
+    public static boolean allowsCachedRead(ConsistencyLevel requested, ConsistencyLevel level) {
+        return requested == null || ConsistencyLevel.ONE.equals(level);
+    }
+
+    /**
+     * Method to return the number of replicas which must respond at a level
+     *
+     * @throws IllegalArgumentException when the level requires more replicas than an object has
+     */
+    public static int required(ConsistencyLevel level) {
+        int required = level.required(Quorum.getReplicas());
+        if (required > Quorum.getReplicas()) {
+            throw new IllegalArgumentException("Consistency level " + level + " requires more than the "
+                    + Quorum.getReplicas() + " replicas of an object");
+        }
+        return required;
+    }
+
+    private static ConsistencyLevel levelOf(String key, List<Map.Entry<String, ConsistencyLevel>> prefixes,
+                                            ConsistencyLevel defaultLevel) {
+        for (Map.Entry<String, ConsistencyLevel> prefix : prefixes) {
+            if (key != null && key.startsWith(prefix.getKey())) {
+                return prefix.getValue();
+            }
+        }
+        return defaultLevel;
+    }
+
+    /**
+     * @return the prefixes, longest first so that the first match is the longest
+     */
+    private static List<Map.Entry<String, ConsistencyLevel>> parsePrefixes(String prefixes) {
+        List<Map.Entry<String, ConsistencyLevel>> parsed = new ArrayList<>();
+        for (String pair : prefixes.split(",")) {
+            if (pair.isBlank()) {
+                continue;
+            }
+            int separator = pair.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Consistency prefix " + pair + " is not of the form prefix=level");
+            }
+            parsed.add(Map.entry(pair.substring(0, separator).trim(),
+                    ConsistencyLevel.fromName(pair.substring(separator + 1))));
+        }
+        parsed.sort(Comparator.comparingInt((Map.Entry<String, ConsistencyLevel> prefix) -> prefix.getKey().length())
+                .reversed());
+        return parsed;
+    }
+}
@@ -0,0 +1,75 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.hedging.ReplicaLatencyTracker;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses the replica a write which does not reach one of its replicas is forwarded to. Every replica which is
+ * up is scored by its load: the requests this node has in flight to it, the moving average of its latency and
+ * the suspicion of the failure detector. The coordinator is the better of two replicas picked at random, which
+ * spreads the writes of a key over its replicas instead of sending all of them to the replica with the lowest
+ * number, and still avoids a loaded replica
+ */
+@Component
+public class CoordinatorSelector {
+
+    /**
+     * Latency counted for a replica without recent reads, so that its load still weighs in its score
+     */
+    private static final double MIN_LATENCY_NANOS = 1_000_000;
+
+    private final ReplicaLatencyTracker latencyTracker;
+    private final NodeHealth nodeHealth;
+
+    public CoordinatorSelector(ReplicaLatencyTracker latencyTracker, NodeHealth nodeHealth) {
+        this.latencyTracker = latencyTracker;
+        this.nodeHealth = nodeHealth;
+    }
+
+    /**
+     * @param replicas the replicas of a key
+     * @return the replica to coordinate a write of the key
+     */
+    public DynamoNode select(List<DynamoNode> replicas) {
+        List<DynamoNode> alive = replicas.stream().filter(nodeHealth::isAlive).toList();
+        if (alive.isEmpty()) {
+            return replicas.get(0);
+        }
+        if (alive.size() == 1) {
+            return alive.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(alive.size());
+        int second = random.nextInt(alive.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        DynamoNode firstNode = alive.get(first);
+        DynamoNode secondNode = alive.get(second);
+        return score(secondNode) < score(firstNode) ? secondNode : firstNode;
+    }
+
+    /**
+     * @return the replicas which are up, from the best coordinator to the worst
+     */
+    public List<DynamoNode> rank(List<DynamoNode> replicas) {
+        return replicas.stream()
+                .filter(nodeHealth::isAlive)
+                .sorted(Comparator.comparingDouble(this::score))
+                .toList();
+    }
+
+    /**
+     * @return the expected cost of sending a request to the node, lower is better
+     */
+    double score(DynamoNode node) {
+        double latency = Math.max(MIN_LATENCY_NANOS, latencyTracker.getEwmaNanos(node));
+        return (latencyTracker.getInFlight(node) + 1) * latency * (1 + nodeHealth.getSuspicion(node));
+    }
+}
@@ -0,0 +1,156 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.storage.StoredValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Value of a write which outlives the request. The upload of a request is deleted once its response is sent,
+ * while the writes to the replicas a quorum did not wait for, and the hints standing in for them, still run.
+ * Small values are copied to memory. Larger ones are read back from the segment the coordinator stored them in,
+ * through a {@link StoredValue} handle which is closed once every holder has released it: the coordinator holds
+ * one reference, and every background write retains one until it ends. A value which cannot be read back is
+ * copied to a temporary file instead, deleted with the last reference
+ */
+public class DetachedValue implements MultipartFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetachedValue.class);
+
+    private final String fileName;
+    private final long size;
+    private final byte[] bytes;
+    private final Path path;
+    private final StoredValue storedValue;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private DetachedValue(String fileName, long size, byte[] bytes, Path path, StoredValue storedValue) {
+        this.fileName = fileName;
+        this.size = size;
+        this.bytes = bytes;
+        this.path = path;
+        this.storedValue = storedValue;
+    }
+
+    /**
+     * Method to hold a stored value, whose handle is closed with the last reference
+     */
+    public static DetachedValue of(String fileName, StoredValue storedValue) {
+        return new DetachedValue(fileName, storedValue.getLength(), null, null, storedValue);
+    }
+
+    /**
+     * Method to copy an upload, held by the caller until it calls {@link #release}
+     *
+     * @param inMemoryThreshold size above which the value is copied to a temporary file instead of memory
+     */
+    public static DetachedValue detach(MultipartFile file, long inMemoryThreshold) throws IOException {
+        if (file.getSize() <= inMemoryThreshold) {
+            return new DetachedValue(file.getOriginalFilename(), file.getSize(), file.getBytes(), null, null);
+        }
+        Path path = Files.createTempFile("detached-", ".value");
+        try (InputStream value = file.getInputStream()) {
+            Files.copy(value, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new DetachedValue(file.getOriginalFilename(), file.getSize(), null, path, null);
+    }
+
+    /**
+     * Method to take one more reference, before handing the value to a task which may outlive the caller
+     */
+    public DetachedValue retain() {
+        if (references.getAndIncrement() <= 0) {
+            references.decrementAndGet();
+            throw new IllegalStateException("Value of " + fileName + " already released");
+        }
+        return this;
+    }
+
+    /**
+     * Method to drop a reference. The stored value is closed, or the temporary file deleted, with the last one
+     */
+    public void release() {
+        if (references.decrementAndGet() != 0) {
+            return;
+        }
+        try {
+            if (storedValue != null) {
+                storedValue.close();
+            } else if (path != null) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            logger.warn("Value of {} not released", fileName, e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return fileName;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return fileName;
+    }
+
+    @Override
+    public String getContentType() {
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        if (bytes != null) {
+            return bytes;
+        }
+        try (InputStream value = getInputStream()) {
+            return value.readAllBytes();
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (bytes != null) {
+            return new ByteArrayInputStream(bytes);
+        }
+        if (references.get() <= 0) {
+            throw new IllegalStateException("Value of " + fileName + " already released");
+        }
+        return storedValue != null ? storedValue.openStream() : Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        transferTo(dest.toPath());
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException {
+        try (InputStream value = getInputStream()) {
+            Files.copy(value, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.models.DynamoNode;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Supplier;
+
+/**
+ * Nodes which may stand in for the replicas of a write that are down, in ring order. They are looked up on the
+ * ring the first time a replica of the write is found down or fails, so that a write whose replicas all answer
+ * does not walk the ring. Shared by the replica writes of one object, each node takes at most one hint
+ */
+class FallbackNodes {
+
+    private final Supplier<List<DynamoNode>> lookup;
+    private Queue<DynamoNode> nodes;
+
+    FallbackNodes(Supplier<List<DynamoNode>> lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * @return the next node to hand a write to, null when none is left
+     */
+    synchronized DynamoNode poll() {
+        if (nodes == null) {
+            nodes = new ArrayDeque<>(lookup.get());
+        }
+        return nodes.poll();
+    }
+}
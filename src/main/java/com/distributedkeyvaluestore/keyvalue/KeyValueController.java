@@ -1,54 +1,210 @@
 package com.distributedkeyvaluestore.keyvalue;
 
+import com.distributedkeyvaluestore.client.StreamingReplicaClient;
+import com.distributedkeyvaluestore.exception.ConsistencyLevelException;
+import com.distributedkeyvaluestore.handoff.HintedHandoffManager;
+import com.distributedkeyvaluestore.models.ConsistencyLevel;
+import com.distributedkeyvaluestore.models.Deadline;
 import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import com.distributedkeyvaluestore.models.KeyWithVectorClock;
+import com.distributedkeyvaluestore.models.Response;
+import com.distributedkeyvaluestore.models.VectorClock;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/object")
 public class KeyValueController {
 
     private final KeyValueService keyValueService;
+    private final BatchKeyValueService batchKeyValueService;
+    private final QuorumCoordinator quorumCoordinator;
+    private final HintedHandoffManager hintedHandoffManager;
+    private final ScanService scanService;
 
-    public KeyValueController(KeyValueService keyValueService) {
+    public KeyValueController(KeyValueService keyValueService, BatchKeyValueService batchKeyValueService,
+                              QuorumCoordinator quorumCoordinator, HintedHandoffManager hintedHandoffManager,
+                              ScanService scanService) {
         this.keyValueService = keyValueService;
+        this.batchKeyValueService = batchKeyValueService;
+        this.quorumCoordinator = quorumCoordinator;
+        this.hintedHandoffManager = hintedHandoffManager;
+        this.scanService = scanService;
     }
 
     @PutMapping("/store")
-    ResponseEntity<String> storeObject(@RequestParam("file") MultipartFile file) {
-        return keyValueService.store(file);
+    ResponseEntity<String> storeObject(@RequestParam("file") MultipartFile file,
+                                       @RequestHeader(value = VectorClock.CONTEXT_HEADER, required = false)
+                                       String context,
+                                       @RequestHeader(value = ConsistencyLevel.HEADER, required = false)
+                                       String consistency,
+                                       @RequestHeader(value = Deadline.TIMEOUT_HEADER, required = false) Long timeout) {
+        Optional<URI> coordinator = keyValueService.redirectWrite(file.getOriginalFilename());
+        if (coordinator.isPresent()) {
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(coordinator.get()).build();
+        }
+        return keyValueService.store(file, context != null ? new VectorClock(context) : null,
+                consistencyLevelOf(consistency), quorumCoordinator.deadline(timeout));
+    }
+
+    @GetMapping("/scan")
+    ResponseEntity<StreamingResponseBody> scan(@RequestParam(value = "prefix", required = false) String prefix,
+                                               @RequestParam(value = "start", required = false) String start,
+                                               @RequestParam(value = "limit", required = false) Integer limit,
+                                               @RequestHeader(value = Deadline.TIMEOUT_HEADER, required = false)
+                                               Long timeout) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(scanService.scan(prefix, start, limit, quorumCoordinator.deadline(timeout)));
+    }
+
+    @GetMapping("/scanReplica/{folder}")
+    ResponseEntity<List<KeyWithVectorClock>> scanReplica(@PathVariable("folder") String folder,
+                                                         @RequestParam("prefix") String prefix,
+                                                         @RequestParam(value = "startAfter", required = false)
+                                                         String startAfter,
+                                                         @RequestParam("limit") int limit) {
+        return ResponseEntity.ok(scanService.scanInternal(folder, prefix, startAfter, limit));
+    }
+
+    @GetMapping("/coordinators/{fileName}")
+    ResponseEntity<List<String>> getCoordinators(@PathVariable("fileName") String fileName) {
+        return ResponseEntity.ok(keyValueService.getCoordinators(fileName));
     }
 
     @GetMapping("/retrieve/{fileName}")
-    ResponseEntity<List<FileWithVectorClock>> retrieveObject(@PathVariable("fileName") String fileName) {
-        return keyValueService.retrieve(fileName);
+    ResponseEntity<List<FileWithVectorClock>> retrieveObject(@PathVariable("fileName") String fileName,
+                                                             @RequestHeader(value = ConsistencyLevel.HEADER,
+                                                                     required = false) String consistency,
+                                                             @RequestHeader(value = Deadline.TIMEOUT_HEADER,
+                                                                     required = false) Long timeout) {
+        return keyValueService.retrieve(fileName, consistencyLevelOf(consistency),
+                quorumCoordinator.deadline(timeout));
     }
 
-    @PutMapping("/storeToReplicaUsingVectorIndex/{folderName}/{vectorIndex}")
-    ResponseEntity<String> storeToReplica(@RequestParam("file") MultipartFile file,
-                                          @PathVariable("folderName") String folderName,
-                                          @PathVariable("vectorIndex") int vectorIndex) {
-        keyValueService.createFile(file, folderName);
-        keyValueService.createVectorClockForFile(file, folderName, vectorIndex);
-        return ResponseEntity.ok("File created successfully");
+    @GetMapping("/retrieveStream/{fileName}")
+    void retrieveObjectStream(@PathVariable("fileName") String fileName,
+                              @RequestHeader(value = ConsistencyLevel.HEADER, required = false) String consistency,
+                              @RequestHeader(value = Deadline.TIMEOUT_HEADER, required = false) Long timeout,
+                              HttpServletResponse response) {
+        keyValueService.retrieveStream(fileName, consistencyLevelOf(consistency), quorumCoordinator.deadline(timeout),
+                response);
+    }
+
+    @PutMapping("/batchStore")
+    ResponseEntity<Map<String, Response<Boolean>>> batchStoreObjects(@RequestParam("files") List<MultipartFile> files,
+                                                                     @RequestHeader(value = ConsistencyLevel.HEADER,
+                                                                             required = false) String consistency,
+                                                                     @RequestHeader(value = Deadline.TIMEOUT_HEADER,
+                                                                             required = false) Long timeout) {
+        return ResponseEntity.ok(batchKeyValueService.store(files, consistencyLevelOf(consistency),
+                quorumCoordinator.deadline(timeout)));
+    }
+
+    @PostMapping("/batchRetrieve")
+    ResponseEntity<Map<String, Response<List<FileWithVectorClock>>>> batchRetrieveObjects(
+            @RequestBody List<String> fileNames,
+            @RequestHeader(value = ConsistencyLevel.HEADER, required = false) String consistency,
+            @RequestHeader(value = Deadline.TIMEOUT_HEADER, required = false) Long timeout) {
+        return ResponseEntity.ok(batchKeyValueService.retrieve(fileNames, consistencyLevelOf(consistency),
+                quorumCoordinator.deadline(timeout)));
     }
 
     @PutMapping("/storeToReplicaUsingVectorClock/{folderName}/{vectorClock}")
     ResponseEntity<String> storeToReplicaUsingVectorClock(@RequestParam("file") MultipartFile file,
                                           @PathVariable("folderName") String folderName,
                                           @PathVariable("vectorClock") String vectorClock) {
-        keyValueService.createFile(file, folderName);
-        keyValueService.createVectorClockForFile(file, folderName, vectorClock);
+        keyValueService.createFile(file, folderName, vectorClock);
         return ResponseEntity.ok("File created successfully");
     }
 
+    @PutMapping("/storeHint/{owner}/{vectorClock}")
+    ResponseEntity<String> storeHint(@RequestParam("file") MultipartFile file,
+                                     @PathVariable("owner") String owner,
+                                     @PathVariable("vectorClock") String vectorClock) throws IOException {
+        try (InputStream value = file.getInputStream()) {
+            hintedHandoffManager.storeHint(owner, file.getOriginalFilename(), vectorClock, value, file.getSize());
+        }
+        return ResponseEntity.ok("Hint stored successfully");
+    }
+
+    @PutMapping("/batchStoreToReplicaUsingVectorClock/{folderName}")
+    ResponseEntity<List<String>> batchStoreToReplica(@RequestParam("files") List<MultipartFile> files,
+                                                     @PathVariable("folderName") String folderName,
+                                                     @RequestParam("vectorClocks") List<String> vectorClocks) {
+        return ResponseEntity.ok(keyValueService.createFiles(files, folderName, vectorClocks));
+    }
+
+    @PostMapping("/batchRetrieveFromReplica/{folder}")
+    ResponseEntity<Map<String, List<FileWithVectorClock>>> batchRetrieveFromReplica(
+            @PathVariable("folder") String folder, @RequestBody List<String> fileNames) {
+        return ResponseEntity.ok(keyValueService.retrieveObjectsInternal(folder, fileNames));
+    }
+
     @GetMapping("/retrieveFromReplica/{folder}/{fileName}")
-    ResponseEntity<FileWithVectorClock> retrieveFromReplica(@PathVariable("folder") String folder,
+    ResponseEntity<List<FileWithVectorClock>> retrieveFromReplica(@PathVariable("folder") String folder,
                                              @PathVariable("fileName") String fileName) {
         return ResponseEntity.ok(keyValueService.retrieveObjectInternal(folder, fileName));
     }
+
+    @PutMapping("/streamToReplica/{folderName}/{fileName}")
+    ResponseEntity<String> streamToReplica(InputStream value,
+                                           @RequestHeader(HttpHeaders.CONTENT_LENGTH) long length,
+                                           @PathVariable("folderName") String folderName,
+                                           @PathVariable("fileName") String fileName,
+                                           @RequestHeader(value = StreamingReplicaClient.VECTOR_CLOCK_HEADER,
+                                                   required = false) String vectorClock,
+                                           @RequestHeader(value = StreamingReplicaClient.HINTED_OWNER_HEADER,
+                                                   required = false) String hintedOwner) {
+        if (hintedOwner != null && vectorClock != null) {
+            hintedHandoffManager.storeHint(hintedOwner, fileName, vectorClock, value, length);
+        } else if (vectorClock != null) {
+            keyValueService.createFile(fileName, value, length, folderName, vectorClock);
+        } else {
+            return ResponseEntity.badRequest().body("A vector clock is required");
+        }
+        return ResponseEntity.ok("File created successfully");
+    }
+
+    @GetMapping("/streamFromReplica/{folder}/{fileName}")
+    void streamFromReplica(@PathVariable("folder") String folder, @PathVariable("fileName") String fileName,
+                           HttpServletResponse response) {
+        keyValueService.streamObjectInternal(folder, fileName, response);
+    }
+
+    @GetMapping("/retrieveVectorClockFromReplica/{folder}/{fileName}")
+    ResponseEntity<String> retrieveVectorClockFromReplica(@PathVariable("folder") String folder,
+                                                          @PathVariable("fileName") String fileName) {
+        return ResponseEntity.ok(keyValueService.retrieveVectorClockInternal(folder, fileName).toString());
+    }
+
+    /**
+     * @return the consistency level of the header, or null when there is none
+     * @throws ConsistencyLevelException when the header is not a level, or asks for more replicas than an object has
+     */
+    private static ConsistencyLevel consistencyLevelOf(String consistency) {
+        if (consistency == null) {
+            return null;
+        }
+        try {
+            ConsistencyLevel level = ConsistencyLevel.fromName(consistency);
+            ConsistencyPolicy.required(level);
+            return level;
+        } catch (IllegalArgumentException e) {
+            throw new ConsistencyLevelException(e.getMessage());
+        }
+    }
 }
@@ -1,45 +1,131 @@
 package com.distributedkeyvaluestore.keyvalue;
 
+import com.distributedkeyvaluestore.cache.ReadCache;
 import com.distributedkeyvaluestore.client.DynamoClient;
+import com.distributedkeyvaluestore.client.StreamingReplicaClient;
 import com.distributedkeyvaluestore.client.URIHelper;
 import com.distributedkeyvaluestore.consistenthash.HashManager;
 import com.distributedkeyvaluestore.exception.ConsistencyException;
+import com.distributedkeyvaluestore.exception.QuorumException;
 import com.distributedkeyvaluestore.exception.ReadException;
 import com.distributedkeyvaluestore.exception.RingEmptyException;
 import com.distributedkeyvaluestore.exception.WriteException;
+import com.distributedkeyvaluestore.handoff.HintedHandoffManager;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.hedging.HedgePolicy;
+import com.distributedkeyvaluestore.hedging.ReplicaLatencyTracker;
+import com.distributedkeyvaluestore.models.ConsistencyLevel;
+import com.distributedkeyvaluestore.models.Deadline;
 import com.distributedkeyvaluestore.models.DynamoNode;
 import com.distributedkeyvaluestore.models.FileWithVectorClock;
-import com.distributedkeyvaluestore.models.Quorum;
 import com.distributedkeyvaluestore.models.VectorClock;
+import com.distributedkeyvaluestore.readrepair.ReadRepairQueue;
+import com.distributedkeyvaluestore.resolver.SiblingResolvers;
+import com.distributedkeyvaluestore.storage.StorageEngine;
+import com.distributedkeyvaluestore.storage.StoredObject;
+import com.distributedkeyvaluestore.storage.StoredValue;
+import com.distributedkeyvaluestore.transport.ReplicaTransport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletResponse;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
 public class KeyValueService {
 
+    private static final Logger logger = LoggerFactory.getLogger(KeyValueService.class);
+
     private final HashManager<DynamoNode> hashManager;
     private final DynamoClient dynamoClient;
+    private final QuorumCoordinator quorumCoordinator;
+    private final StorageEngine storageEngine;
+    private final StreamingReplicaClient streamingReplicaClient;
+    private final ReplicaTransport replicaTransport;
+    private final NodeHealth nodeHealth;
+    private final HintedHandoffManager hintedHandoffManager;
+    private final ReadCache readCache;
+    private final ReadRepairQueue readRepairQueue;
+    private final SiblingResolvers siblingResolvers;
+    private final ConsistencyPolicy consistencyPolicy;
+    private final ReplicaLatencyTracker latencyTracker;
+    private final HedgePolicy hedgePolicy;
+    private final CoordinatorSelector coordinatorSelector;
     private final TaskExecutor taskExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> mergesInFlight = ConcurrentHashMap.newKeySet();
+    private final long streamingThresholdBytes;
+    private final int maxClockEntries;
+    private final boolean redirectWrites;
 
-    public KeyValueService(HashManager<DynamoNode> hashManager, DynamoClient dynamoClient, TaskExecutor taskExecutor) {
+    public KeyValueService(HashManager<DynamoNode> hashManager, DynamoClient dynamoClient,
+                           QuorumCoordinator quorumCoordinator,
+                           StorageEngine storageEngine, StreamingReplicaClient streamingReplicaClient,
+                           ReplicaTransport replicaTransport, NodeHealth nodeHealth,
+                           HintedHandoffManager hintedHandoffManager, ReadCache readCache,
+                           ReadRepairQueue readRepairQueue, SiblingResolvers siblingResolvers,
+                           ConsistencyPolicy consistencyPolicy, ReplicaLatencyTracker latencyTracker,
+                           HedgePolicy hedgePolicy, CoordinatorSelector coordinatorSelector,
+                           TaskExecutor taskExecutor, MeterRegistry meterRegistry,
+                           @Value("${replication.streaming-threshold-bytes:1048576}") long streamingThresholdBytes,
+                           @Value("${vectorclock.max-entries:10}") int maxClockEntries,
+                           @Value("${coordinator.redirect:false}") boolean redirectWrites) {
         this.hashManager = hashManager;
         this.dynamoClient = dynamoClient;
+        this.quorumCoordinator = quorumCoordinator;
+        this.storageEngine = storageEngine;
+        this.streamingReplicaClient = streamingReplicaClient;
+        this.replicaTransport = replicaTransport;
+        this.nodeHealth = nodeHealth;
+        this.hintedHandoffManager = hintedHandoffManager;
+        this.readCache = readCache;
+        this.readRepairQueue = readRepairQueue;
+        this.siblingResolvers = siblingResolvers;
+        this.consistencyPolicy = consistencyPolicy;
+        this.latencyTracker = latencyTracker;
+        this.hedgePolicy = hedgePolicy;
+        this.coordinatorSelector = coordinatorSelector;
         this.taskExecutor = taskExecutor;
+        this.meterRegistry = meterRegistry;
+        this.streamingThresholdBytes = streamingThresholdBytes;
+        this.maxClockEntries = maxClockEntries;
+        this.redirectWrites = redirectWrites;
     }
 
-    public ResponseEntity<String> store(MultipartFile file) {
+    /**
+     * Method to store an object, coordinated by the first replica which is up. The vector clock of the new
+     * version is returned in the {@link StreamingReplicaClient#VECTOR_CLOCK_HEADER} header
+     *
+     * @param context     the merged vector clocks of the versions the write replaces, as returned by a read.
+     *                    Without it the write replaces every version stored on the coordinator
+     * @param consistency the consistency level requested by the client, or null for the configured one
+     */
+    public ResponseEntity<String> store(MultipartFile file, VectorClock context, ConsistencyLevel consistency,
+                                        Deadline deadline) {
+        ConsistencyLevel level = consistencyPolicy.writeLevel(file.getOriginalFilename(), consistency);
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
             String fileName = file.getOriginalFilename();
+            int writeQuorum = ConsistencyPolicy.required(level);
             List<DynamoNode> nodes = hashManager.getNodes(fileName).stream()
                     .sorted(Comparator.comparing(DynamoNode::getNumber))
                     .collect(Collectors.toList());
@@ -47,248 +133,686 @@ public class KeyValueService {
             Optional<DynamoNode> mayBeFirstNode = nodes.stream().filter(DynamoNode::isSelfAware).findFirst();
             if (mayBeFirstNode.isPresent()) {
                 DynamoNode node = mayBeFirstNode.get();
-                int vectorIndex = nodes.indexOf(node);
-                storeObjectInternal(file, node, vectorIndex);
+                VectorClock vectorClock = storeObjectInternal(file, node, context);
                 nodes.remove(mayBeFirstNode.get());
-                int writeQuorum = Quorum.getWriteQuorum();
                 writeQuorum--;
-                storeToReplicas(file, nodes, writeQuorum, vectorIndex);
-                return ResponseEntity.ok("Write operation succeeded on node number " + node.getNumber() +
+                // the replicas the quorum does not wait for are written after the upload is deleted
+                DetachedValue value = detach(file, node.getAddress().replaceAll("\\.", "_"), vectorClock);
+                try {
+                    storeToReplicas(value, nodes, writeQuorum, vectorClock, consistencyPolicy.countsHints(level),
+                            deadline);
+                    storeToPendingReplicas(value, vectorClock);
+                } finally {
+                    value.release();
+                }
+                return ResponseEntity.ok()
+                        .header(StreamingReplicaClient.VECTOR_CLOCK_HEADER, vectorClock.toString())
+                        .body("Write operation succeeded on node number " + node.getNumber() +
                         " with ip " + node.getAddress());
             } else {
-                return forwardToNode(file, nodes.get(0));
+                return forwardToNode(file, coordinatorSelector.select(nodes), context, level, deadline);
             }
         } catch (RingEmptyException e) {
           throw new WriteException("Write operation failed, " + e.getMessage());
         } catch (WriteException e) {
           throw e;
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Store of {} failed", file.getOriginalFilename(), e);
             throw new WriteException("Write operation failed, " + e.getMessage());
+        } finally {
+            sample.stop(latency("store", level));
         }
     }
 
-    private void storeObjectInternal(MultipartFile file, DynamoNode node, int vectorIndex) {
-        createFile(file, node.getAddress().replaceAll("\\.", "_"));
-        createVectorClockForFile(file, node.getAddress().replaceAll("\\.", "_"), vectorIndex);
+    /**
+     * Method to hold the value of a write for the replicas the quorum does not wait for. A large value is read
+     * back from the segment the coordinator just stored it in, rather than copied again, unless a concurrent
+     * write already replaced it there
+     */
+    private DetachedValue detach(MultipartFile file, String folder, VectorClock vectorClock) throws IOException {
+        if (file.getSize() > streamingThresholdBytes) {
+            StoredValue stored = null;
+            for (StoredValue sibling : storageEngine.open(folder, file.getOriginalFilename())) {
+                if (stored == null && sibling.getVectorClock().equals(vectorClock)) {
+                    stored = sibling;
+                } else {
+                    sibling.close();
+                }
+            }
+            if (stored != null) {
+                return DetachedValue.of(file.getOriginalFilename(), stored);
+            }
+        }
+        return DetachedValue.detach(file, streamingThresholdBytes);
     }
 
-    public void createVectorClockForFile(MultipartFile file, String folder, int vectorIndex) {
-        File dir = new File(System.getProperty("user.dir") + File.separator + folder);
-        File vectorClockData = new File(dir.getAbsolutePath() + File.separator + "vector_clock_" + file.getOriginalFilename());
-        try {
-            VectorClock vectorClock;
-            if (vectorClockData.exists()) {
-                BufferedReader bufferedReader = new BufferedReader(new FileReader(vectorClockData));
-                String clockAsString = bufferedReader.readLine();
-                vectorClock = new VectorClock(clockAsString);
-                bufferedReader.close();
-            } else {
-                vectorClock = new VectorClock();
-            }
-            BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(vectorClockData));
-            vectorClock.incrementClockAtIndex(vectorIndex);
-            stream.write(vectorClock.toString().getBytes());
-            stream.close();
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new WriteException("Vector clock write failed");
+    private VectorClock storeObjectInternal(MultipartFile file, DynamoNode node, VectorClock context) {
+        return createFile(file, node.getAddress().replaceAll("\\.", "_"), node.getNumber(), context);
+    }
+
+    public VectorClock createFile(MultipartFile file, String folder, int coordinator, VectorClock context) {
+        try (InputStream value = file.getInputStream()) {
+            return createFile(file.getOriginalFilename(), value, file.getSize(), folder, coordinator, context);
+        } catch (IOException e) {
+            logger.error("Write of {} failed", file.getOriginalFilename(), e);
+            throw new WriteException("Write operation failed: File write failed");
         }
     }
 
-    public void createVectorClockForFile(MultipartFile file, String folder, String vectorClockAsString) {
-        File dir = new File(System.getProperty("user.dir") + File.separator + folder);
-        File vectorClockData = new File(dir.getAbsolutePath() + File.separator + "vector_clock_" + file.getOriginalFilename());
-        try (BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(vectorClockData))) {
-            VectorClock vectorClock = new VectorClock(vectorClockAsString);
-            stream.write(vectorClock.toString().getBytes());
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new WriteException("Vector clock write failed");
+    public void createFile(MultipartFile file, String folder, String vectorClockAsString) {
+        try (InputStream value = file.getInputStream()) {
+            createFile(file.getOriginalFilename(), value, file.getSize(), folder, vectorClockAsString);
+        } catch (IOException e) {
+            logger.error("Write of {} failed", file.getOriginalFilename(), e);
+            throw new WriteException("Write operation failed: File write failed");
         }
     }
 
-    private ResponseEntity<String> forwardToNode(MultipartFile file, DynamoNode dynamoNode) {
-        return dynamoClient.forwardToNode(URIHelper.createURI(dynamoNode.getAddress()), file);
+    /**
+     * Method to store a new version of an object written by a coordinator. The version replaces the stored
+     * versions its context has seen, and is kept as a sibling of the others
+     *
+     * @param coordinator the number of the coordinator node
+     * @param context     the merged vector clocks of the versions replaced, null to replace every stored version
+     * @return the vector clock of the new version
+     */
+    public VectorClock createFile(String fileName, InputStream value, long length, String folder, int coordinator,
+                                  VectorClock context) {
+        VectorClock vectorClock = storageEngine.write(folder, fileName, value, length, current -> {
+            VectorClock stored = current != null ? current : new VectorClock();
+            VectorClock replaced = context != null ? context : stored;
+            // the counter must be new to every version of the object, not only to those the context has seen
+            long counter = Math.max(stored.maxCounter(coordinator), replaced.maxCounter(coordinator)) + 1;
+            return VectorClock.newVersion(replaced, coordinator, counter, System.currentTimeMillis())
+                    .prune(this::isMember, maxClockEntries);
+        });
+        readCache.onWrite(fileName, vectorClock);
+        return vectorClock;
+    }
+
+    public void createFile(String fileName, InputStream value, long length, String folder,
+                           String vectorClockAsString) {
+        VectorClock vectorClock = new VectorClock(vectorClockAsString);
+        storageEngine.write(folder, fileName, value, length, current -> vectorClock);
+        readCache.onWrite(fileName, vectorClock);
     }
 
-    public void storeToReplicas(MultipartFile file, List<DynamoNode> nodes,
-                                int writeQuorum, int vectorIndex) {
-        final CountDownLatch latch = new CountDownLatch(writeQuorum);
+    private ResponseEntity<String> forwardToNode(MultipartFile file, DynamoNode dynamoNode, VectorClock context,
+                                                 ConsistencyLevel level, Deadline deadline) {
+        String contextAsString = context != null ? context.toString() : null;
+        if (deadline.isExpired()) {
+            throw new WriteException("Write operation failed: Deadline passed before forwarding to the coordinator");
+        }
+        latencyTracker.startRequest(dynamoNode);
         try {
-            for (DynamoNode node : nodes) {
-                String folder = node.getAddress().replaceAll("\\.", "_");
-                CompletableFuture.runAsync(() -> {
-                    try {
-                        dynamoClient.storeToReplicaUsingVectorIndex(URIHelper.createURI(node.getAddress()), file, folder,
-                                vectorIndex);
-                        latch.countDown();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }, taskExecutor);
+            if (file.getSize() > streamingThresholdBytes) {
+                return streamingReplicaClient.forwardToNode(URIHelper.createURI(dynamoNode.getAddress()), file,
+                        contextAsString, level.toString(), deadline.remainingMillis());
             }
-            if (!latch.await(10, TimeUnit.SECONDS)) {
-                throw new WriteException("Write operation failed: Write quorum condition failed");
-            }
-        } catch (WriteException e) {
-            throw e;
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new WriteException("Write operation failed");
+            return dynamoClient.forwardToNode(URIHelper.createURI(dynamoNode.getAddress()), file, contextAsString,
+                    level.toString(), deadline.remainingMillis());
+        } finally {
+            latencyTracker.endRequest(dynamoNode);
         }
     }
 
-    public void createFile(MultipartFile file, String folder) {
-        File dir = new File(System.getProperty("user.dir") + File.separator + folder);
-        File fileToStore = new File(dir.getAbsolutePath() + File.separator + file.getOriginalFilename());
-        if (!dir.exists()) {
-            System.out.println("Trying to create dir");
-            dir.mkdirs();
+    /**
+     * Method to find where a client should send the write of a key, when writes are redirected
+     * ({@code coordinator.redirect}) instead of forwarded by the nodes which are not a replica of the key
+     *
+     * @return the store URL of the coordinator chosen for the key, empty when this node coordinates it
+     */
+    public Optional<URI> redirectWrite(String fileName) {
+        if (!redirectWrites) {
+            return Optional.empty();
         }
-        System.out.println("Directory created");
-        try (BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(fileToStore))) {
-            System.out.println(fileToStore.getAbsolutePath());
-            stream.write(file.getBytes());
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new WriteException("Write operation failed: File write failed");
+        try {
+            ArrayList<DynamoNode> nodes = hashManager.getNodes(fileName);
+            if (nodes.stream().anyMatch(DynamoNode::isSelfAware)) {
+                return Optional.empty();
+            }
+            return Optional.of(URIHelper.createURI(coordinatorSelector.select(nodes).getAddress())
+                    .resolve("/object/store"));
+        } catch (RingEmptyException e) {
+            // the store fails with the reason
+            return Optional.empty();
         }
     }
 
-    public byte[] fetchFile(String folder, String fileName) {
-        File file = new File(System.getProperty("user.dir") + File.separator + folder + File.separator + fileName);
+    /**
+     * @return the URLs of the replicas of a key which are up, from the best coordinator to the worst, for
+     * clients which send their requests to a replica instead of any node
+     */
+    public List<String> getCoordinators(String fileName) {
         try {
-            BufferedInputStream stream = new BufferedInputStream(new FileInputStream(file));
-            byte[] bytes = stream.readAllBytes();
-            stream.close();
-            return bytes;
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new ReadException("Read operation failed: File read failed");
+            return coordinatorSelector.rank(hashManager.getNodes(fileName)).stream()
+                    .map(node -> URIHelper.createURI(node.getAddress()).toString())
+                    .toList();
+        } catch (RingEmptyException e) {
+            throw new ReadException("Read operation failed, " + e.getMessage());
         }
     }
 
-    public VectorClock fetchVectorClock(String folder, String fileName) {
-        File file = new File(System.getProperty("user.dir") + File.separator + folder + File.separator + "vector_clock_" + fileName);
+    /**
+     * Method to store an object on its replicas. A write to a replica which is down goes to the next node
+     * on the ring that is up, which keeps it as a hint for the replica. The writes the quorum does not wait for
+     * keep running after this returns, each holding a reference to the value until it ends
+     *
+     * @param countsHints whether a hint counts toward the write quorum, otherwise only the replicas themselves do
+     */
+    public void storeToReplicas(DetachedValue file, List<DynamoNode> nodes, int writeQuorum, VectorClock vectorClock,
+                                boolean countsHints, Deadline deadline) {
+        if (nodes.size() < writeQuorum) {
+            throw new WriteException("Write operation failed: Write quorum condition failed, Quorum of " + writeQuorum
+                    + " unreachable with " + nodes.size() + " replicas");
+        }
+        FallbackNodes fallbackNodes = fallbackNodes(file.getOriginalFilename());
+        nodes.forEach(node -> file.retain());
         try {
-            BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
-            return new VectorClock(bufferedReader.readLine());
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new ReadException("Read operation failed: Reading from vector clock file failed");
+            quorumCoordinator.await(nodes, writeQuorum, deadline, node -> {
+                try {
+                    if (nodeHealth.isAlive(node)) {
+                        try {
+                            storeToReplica(file, node, vectorClock);
+                            return node;
+                        } catch (Exception e) {
+                            logger.warn("Write to {} failed: {}", node.getAddress(), e.getMessage());
+                        }
+                    }
+                    DynamoNode fallbackNode = storeHint(file, node, vectorClock.toString(), fallbackNodes);
+                    if (!countsHints) {
+                        throw new WriteException("Write for " + node.getAddress() + " only handed to "
+                                + fallbackNode.getAddress());
+                    }
+                    return fallbackNode;
+                } finally {
+                    file.release();
+                }
+            });
+        } catch (QuorumException e) {
+            throw new WriteException("Write operation failed: Write quorum condition failed, " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends the version written by the coordinator, so that every replica stores it with the same vector clock
+     */
+    private void storeToReplica(MultipartFile file, DynamoNode node, VectorClock vectorClock) {
+        String folder = node.getAddress().replaceAll("\\.", "_");
+        latencyTracker.startRequest(node);
+        try {
+            if (file.getSize() > streamingThresholdBytes) {
+                streamingReplicaClient.storeToReplicaUsingVectorClock(URIHelper.createURI(node.getAddress()),
+                        folder, file.getOriginalFilename(), StreamingReplicaClient.streamOf(file),
+                        file.getSize(), vectorClock.toString());
+            } else {
+                replicaTransport.storeToReplicaUsingVectorClock(node, file, folder, vectorClock.toString());
+            }
+        } finally {
+            latencyTracker.endRequest(node);
+        }
+    }
+
+    private boolean isMember(int number) {
+        return hashManager.getAllNodes().stream().anyMatch(node -> node.getNumber() == number);
+    }
+
+    /**
+     * Method to send a write to the replicas a membership change adds, while the range of the object is
+     * streamed to them. They do not count toward the write quorum, a write which fails is kept here as a hint
+     */
+    void storeToPendingReplicas(MultipartFile file, VectorClock vectorClock) {
+        for (DynamoNode node : hashManager.getPendingReplicas(file.getOriginalFilename())) {
+            String folder = node.getAddress().replaceAll("\\.", "_");
+            try {
+                if (file.getSize() > streamingThresholdBytes) {
+                    streamingReplicaClient.storeToReplicaUsingVectorClock(URIHelper.createURI(node.getAddress()),
+                            folder, file.getOriginalFilename(), StreamingReplicaClient.streamOf(file),
+                            file.getSize(), vectorClock.toString());
+                } else {
+                    replicaTransport.storeToReplicaUsingVectorClock(node, file, folder, vectorClock.toString());
+                }
+            } catch (Exception e) {
+                logger.warn("Write to pending replica {} failed: {}", node.getAddress(), e.getMessage());
+                try (InputStream value = file.getInputStream()) {
+                    hintedHandoffManager.storeHint(node.getAddress(), file.getOriginalFilename(),
+                            vectorClock.toString(), value, file.getSize());
+                } catch (IOException | WriteException hintFailure) {
+                    logger.error("Hint for pending replica {} not stored", node.getAddress(), hintFailure);
+                }
+            }
         }
     }
 
-    public ResponseEntity<List<FileWithVectorClock>> retrieve(String fileName) {
+    /**
+     * @return the nodes which are up among those following the replicas of a key, looked up once one is needed
+     */
+    FallbackNodes fallbackNodes(String fileName) {
+        return new FallbackNodes(() -> hashManager.getFallbackNodes(fileName).stream()
+                .filter(nodeHealth::isAlive)
+                .toList());
+    }
+
+    /**
+     * Method to hand a write meant for a replica which is down to the next fallback node that accepts it
+     *
+     * @return the node which stored the hint
+     */
+    DynamoNode storeHint(MultipartFile file, DynamoNode owner, String vectorClock, FallbackNodes fallbackNodes) {
+        DynamoNode fallbackNode;
+        while ((fallbackNode = fallbackNodes.poll()) != null) {
+            try {
+                if (file.getSize() > streamingThresholdBytes) {
+                    streamingReplicaClient.storeHint(URIHelper.createURI(fallbackNode.getAddress()), owner.getAddress(),
+                            file.getOriginalFilename(), StreamingReplicaClient.streamOf(file), file.getSize(),
+                            vectorClock);
+                } else {
+                    replicaTransport.storeHint(fallbackNode, file, owner.getAddress(), vectorClock);
+                }
+                logger.info("Write for {} handed to {}", owner.getAddress(), fallbackNode.getAddress());
+                return fallbackNode;
+            } catch (Exception e) {
+                logger.warn("Hint for {} not stored on {}: {}", owner.getAddress(), fallbackNode.getAddress(),
+                        e.getMessage());
+            }
+        }
+
+        // no other node can stand in for the replica, the hint is kept here so that the replica still
+        // receives the write, but it does not count toward the write quorum
+        try (InputStream value = file.getInputStream()) {
+            hintedHandoffManager.storeHint(owner.getAddress(), file.getOriginalFilename(), vectorClock, value,
+                    file.getSize());
+        } catch (IOException e) {
+            logger.error("Hint for {} not stored", owner.getAddress(), e);
+        }
+        throw new WriteException("Write operation failed: No node left to stand in for " + owner.getAddress());
+    }
+
+    /**
+     * Method to read an object from the replicas required by the consistency level, the local copy counting
+     * as one of them
+     *
+     * @param consistency the consistency level requested by the client, or null for the configured one
+     */
+    public ResponseEntity<List<FileWithVectorClock>> retrieve(String fileName, ConsistencyLevel consistency,
+                                                              Deadline deadline) {
+        ConsistencyLevel level = consistencyPolicy.readLevel(fileName, consistency);
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
+            int readQuorum = ConsistencyPolicy.required(level);
+            Optional<FileWithVectorClock> cached = ConsistencyPolicy.allowsCachedRead(consistency, level)
+                    ? readCache.get(fileName) : Optional.empty();
+            if (cached.isPresent()) {
+                return ResponseEntity.ok()
+                        .header(VectorClock.CONTEXT_HEADER, cached.get().getVectorClock().toString())
+                        .body(List.of(cached.get()));
+            }
+            long cacheStamp = readCache.stamp(fileName);
             ArrayList<DynamoNode> nodes = hashManager.getNodes(fileName);
             Optional<DynamoNode> mayBeFirstNode = nodes.stream().filter(DynamoNode::isSelfAware).findFirst();
-            final Map<FileWithVectorClock, DynamoNode> fileWithVectorClockToNode = Collections.synchronizedMap(new HashMap<>());
+            final Map<FileWithVectorClock, DynamoNode> fileWithVectorClockToNode = new ConcurrentHashMap<>();
 
             if (mayBeFirstNode.isPresent()) {
                 DynamoNode node = mayBeFirstNode.get();
                 String folder = node.getAddress().replaceAll("\\.", "_");
-                FileWithVectorClock fileWithVectorClock = retrieveObjectInternal(folder, fileName);
-                fileWithVectorClockToNode.put(fileWithVectorClock, node);
-                System.out.println("Vector clock from own " + fileWithVectorClock);
+                List<FileWithVectorClock> siblings = retrieveObjectInternal(folder, fileName);
+                siblings.forEach(sibling -> fileWithVectorClockToNode.put(sibling, node));
+                logger.debug("Vector clock from own {}", siblings);
                 nodes.remove(node);
-                int readQuorum = Quorum.getReadQuorum();
                 readQuorum--;
-                fileWithVectorClockToNode.putAll(retrieveFromReplicas(fileName, nodes, readQuorum));
+                fileWithVectorClockToNode.putAll(retrieveFromReplicas(fileName, nodes, readQuorum, deadline));
 
             } else {
-                fileWithVectorClockToNode.putAll(retrieveFromReplicas(fileName, nodes, Quorum.getReadQuorum()));
+                fileWithVectorClockToNode.putAll(retrieveFromReplicas(fileName, nodes, readQuorum, deadline));
             }
-            System.out.println("Before sort" + fileWithVectorClockToNode);
+            logger.debug("Before sort {}", fileWithVectorClockToNode);
 
-            List<FileWithVectorClock> fileWithVectorClocks = ensureEventualConsistency(fileName, fileWithVectorClockToNode);
-            return ResponseEntity.ok(fileWithVectorClocks);
+            List<FileWithVectorClock> siblings = resolveSiblings(fileName,
+                    ensureEventualConsistency(fileName, fileWithVectorClockToNode));
+            if (siblings.size() == 1) {
+                readCache.fill(fileName, siblings.get(0), cacheStamp);
+            }
+            return ResponseEntity.ok()
+                    .header(VectorClock.CONTEXT_HEADER, contextOf(siblings).toString())
+                    .body(siblings);
         } catch (RingEmptyException e) {
             throw new ReadException("Read operation failed, " + e.getMessage());
         } catch (ReadException e) {
             throw e;
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Read of {} failed", fileName, e);
             throw new ReadException("Read operation failed, " + e.getMessage());
+        } finally {
+            sample.stop(latency("retrieve", level));
         }
     }
 
+    /**
+     * Method to reconcile the versions returned by a read. A version which another version descends from is
+     * outdated, the others are the siblings of the object, several when concurrent versions were written. The
+     * replicas which returned an outdated version are repaired when there is a single sibling, siblings are
+     * left to the sibling resolver, to anti-entropy, or to the next write with their context
+     *
+     * @return the siblings, ordered by their number of events
+     */
     @NotNull
-    private List<FileWithVectorClock> ensureEventualConsistency(String fileName, Map<FileWithVectorClock, DynamoNode> fileWithVectorClockToNode) {
-        List<FileWithVectorClock> fileWithVectorClocks = fileWithVectorClockToNode.keySet().stream()
-                .sorted(Comparator.comparing(FileWithVectorClock::getVectorClock)).toList();
-        System.out.println("File clock" + fileWithVectorClockToNode);
-        try {
-            int size = fileWithVectorClocks.size();
-            FileWithVectorClock latest = fileWithVectorClocks.get(size - 1);
-            List<DynamoNode> nodesLaggingBehind = new ArrayList<>();
-
-            int i = size - 2;
-            while (i >= 0) {
-                FileWithVectorClock fileWithVectorClock = fileWithVectorClocks.get(i);
-                if (fileWithVectorClock.getVectorClock().compareTo(latest.getVectorClock()) < 0) {
-                    nodesLaggingBehind.add(fileWithVectorClockToNode.get(fileWithVectorClock));
-                }
-                i--;
+    List<FileWithVectorClock> ensureEventualConsistency(String fileName, Map<FileWithVectorClock, DynamoNode> fileWithVectorClockToNode) {
+        logger.debug("File clock {}", fileWithVectorClockToNode);
+        Set<FileWithVectorClock> versions = fileWithVectorClockToNode.keySet();
+        List<FileWithVectorClock> siblings = new ArrayList<>();
+        for (FileWithVectorClock version : versions) {
+            boolean outdated = versions.stream()
+                    .anyMatch(other -> other.getVectorClock().dominates(version.getVectorClock()));
+            boolean duplicate = siblings.stream()
+                    .anyMatch(sibling -> sibling.getVectorClock().equals(version.getVectorClock()));
+            if (!outdated && !duplicate) {
+                siblings.add(version);
             }
-            updateNodesLaggingBehind(fileName, latest, nodesLaggingBehind);
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new ConsistencyException(fileWithVectorClocks);
         }
+        siblings.sort(Comparator.comparingLong(sibling -> sibling.getVectorClock().events()));
 
-        return fileWithVectorClocks;
+        if (siblings.size() == 1) {
+            FileWithVectorClock latest = siblings.get(0);
+            List<DynamoNode> nodesLaggingBehind = fileWithVectorClockToNode.entrySet().stream()
+                    .filter(entry -> latest.getVectorClock().dominates(entry.getKey().getVectorClock()))
+                    .map(Map.Entry::getValue)
+                    .toList();
+            readRepairQueue.submit(fileName, latest, nodesLaggingBehind);
+        }
+        return siblings;
     }
 
-    private void updateNodesLaggingBehind(String fileName, FileWithVectorClock clockAhead,
-                                          List<DynamoNode> nodesLaggingBehind) {
-        for (DynamoNode node : nodesLaggingBehind) {
-            String folder = node.getAddress().replaceAll("\\.", "_");
-            MultipartFile file = new CommonMultipartFile(clockAhead.getFile().getBytes(), fileName);
-            dynamoClient.storeToReplicaUsingVectorClock(URIHelper.createURI(node.getAddress()), file, folder,
-                    clockAhead.getVectorClock().toString());
+    /**
+     * Method to merge the siblings found by a read with the configured {@link SiblingResolvers resolver}. The
+     * merged value is returned instead of the siblings, with their merged vector clocks as its context, and
+     * written in the background as a version replacing every sibling, so that the read neither waits for nor
+     * fails with that write. One merge of a key is written at a time, reads finding the key while it is written
+     * merge the siblings again without writing them
+     */
+    List<FileWithVectorClock> resolveSiblings(String fileName, List<FileWithVectorClock> siblings) {
+        if (siblings.size() < 2) {
+            return siblings;
+        }
+        String value = siblingResolvers.resolve(fileName, siblings);
+        if (value == null) {
+            return siblings;
+        }
+        VectorClock context = contextOf(siblings);
+        if (mergesInFlight.add(fileName)) {
+            try {
+                taskExecutor.execute(() -> {
+                    try {
+                        store(new CommonMultipartFile(value.getBytes(StandardCharsets.UTF_8), fileName), context,
+                                null, quorumCoordinator.deadline(null));
+                    } catch (WriteException e) {
+                        logger.warn("Write of the merged siblings of {} failed: {}", fileName, e.getMessage());
+                    } finally {
+                        mergesInFlight.remove(fileName);
+                    }
+                });
+            } catch (RuntimeException e) {
+                mergesInFlight.remove(fileName);
+                logger.warn("Write of the merged siblings of {} not scheduled: {}", fileName, e.getMessage());
+            }
+        }
+        String self = hashManager.getAllNodes().stream().filter(DynamoNode::isSelfAware)
+                .map(DynamoNode::getAddress).findFirst().orElse(siblings.get(0).getNode());
+        return List.of(new FileWithVectorClock(value, context, self));
+    }
+
+    /**
+     * @return the context of a write replacing all the siblings, their merged vector clocks
+     */
+    static VectorClock contextOf(List<FileWithVectorClock> siblings) {
+        if (siblings.size() == 1) {
+            return siblings.get(0).getVectorClock();
+        }
+        VectorClock context = new VectorClock();
+        for (FileWithVectorClock sibling : siblings) {
+            context = context.merge(sibling.getVectorClock());
         }
+        return context;
     }
 
-    public FileWithVectorClock retrieveObjectInternal(String folder, String fileName) {
+    /**
+     * @return the siblings of an object stored here, one unless concurrent versions were written
+     */
+    public List<FileWithVectorClock> retrieveObjectInternal(String folder, String fileName) {
         Optional<DynamoNode> node = hashManager.getAllNodes().stream().filter(DynamoNode::isSelfAware).findFirst();
 
         if (node.isPresent()) {
-            byte[] file = fetchFile(folder, fileName);
-            VectorClock vectorClock = fetchVectorClock(folder, fileName);
-            return new FileWithVectorClock(new String(file), vectorClock, node.get().getAddress());
+            List<StoredObject> storedObjects = storageEngine.read(folder, fileName);
+            if (storedObjects.isEmpty()) {
+                throw new ReadException("Read operation failed: File " + fileName + " not found");
+            }
+            return storedObjects.stream()
+                    .map(storedObject -> new FileWithVectorClock(new String(storedObject.getValue()),
+                            storedObject.getVectorClock(), node.get().getAddress()))
+                    .toList();
         }
 
         throw new ReadException("Read operation failed: Unable to retrieve file with vector clock");
     }
 
-    public Map<FileWithVectorClock, DynamoNode> retrieveFromReplicas(String fileName, ArrayList<DynamoNode> nodes, int readQuorum) {
+    /**
+     * Method to read the objects of a batch sent by a coordinator. Objects which are not stored here are left
+     * out of the result, without failing the others
+     */
+    public Map<String, List<FileWithVectorClock>> retrieveObjectsInternal(String folder, List<String> fileNames) {
+        Map<String, List<FileWithVectorClock>> files = new LinkedHashMap<>();
+        for (String fileName : fileNames) {
+            try {
+                files.put(fileName, retrieveObjectInternal(folder, fileName));
+            } catch (ReadException e) {
+                // the coordinator counts the missing object against the read quorum of its key
+            }
+        }
+        return files;
+    }
 
-        final CountDownLatch latch = new CountDownLatch(readQuorum);
+    /**
+     * Method to store the objects of a batch sent by a coordinator. An object which fails to be stored is left
+     * out of the returned keys, without failing the others
+     *
+     * @return the keys of the objects stored
+     */
+    public List<String> createFiles(List<MultipartFile> files, String folder, List<String> vectorClocks) {
+        List<String> stored = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            try {
+                createFile(file, folder, vectorClocks.get(i));
+                stored.add(file.getOriginalFilename());
+            } catch (RuntimeException e) {
+                logger.warn("Write of {} failed: {}", file.getOriginalFilename(), e.getMessage());
+            }
+        }
+        return stored;
+    }
+
+    public Map<FileWithVectorClock, DynamoNode> retrieveFromReplicas(String fileName, ArrayList<DynamoNode> nodes,
+                                                                     int readQuorum, Deadline deadline) {
+        if (readQuorum <= 0) {
+            // the local copy satisfies the consistency level
+            return new HashMap<>();
+        }
         try {
-            final Map<FileWithVectorClock, DynamoNode> fileWithVectorClockToNode = Collections.synchronizedMap(new HashMap<>());
-            for (DynamoNode node : nodes) {
-                CompletableFuture.runAsync(() -> {
-                    try {
-                        String folder = node.getAddress().replaceAll("\\.", "_");
-                        ResponseEntity<FileWithVectorClock> fileWithVectorClockResponseEntity = dynamoClient.retrieveFromReplica(URIHelper.createURI(node.getAddress()), folder, fileName);
-                        fileWithVectorClockToNode.put(fileWithVectorClockResponseEntity.getBody(), node);
-                        latch.countDown();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }, taskExecutor);
+            Map<DynamoNode, List<FileWithVectorClock>> responses = awaitReads(aliveNodes(nodes, readQuorum),
+                    readQuorum, deadline,
+                    node -> replicaTransport.retrieveFromReplica(node, node.getAddress().replaceAll("\\.", "_"),
+                            fileName));
+            final Map<FileWithVectorClock, DynamoNode> fileWithVectorClockToNode = new HashMap<>();
+            responses.forEach((node, siblings) ->
+                    siblings.forEach(sibling -> fileWithVectorClockToNode.put(sibling, node)));
+            return fileWithVectorClockToNode;
+        } catch (QuorumException e) {
+            throw new ReadException("Read quorum condition failed, " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streaming counterpart of {@link #retrieve}: the vector clocks of the read quorum are compared without
+     * transferring any value, and only the latest value is written to the response, either straight from the
+     * local segment or piped from the replica holding it
+     */
+    public void retrieveStream(String fileName, ConsistencyLevel consistency, Deadline deadline,
+                               HttpServletResponse response) {
+        ConsistencyLevel level = consistencyPolicy.readLevel(fileName, consistency);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            int readQuorum = ConsistencyPolicy.required(level);
+            ArrayList<DynamoNode> nodes = hashManager.getNodes(fileName);
+            Optional<DynamoNode> mayBeFirstNode = nodes.stream().filter(DynamoNode::isSelfAware).findFirst();
+            final Map<DynamoNode, VectorClock> vectorClocks = new HashMap<>();
+
+            if (mayBeFirstNode.isPresent()) {
+                DynamoNode node = mayBeFirstNode.get();
+                String folder = node.getAddress().replaceAll("\\.", "_");
+                vectorClocks.put(node, storageEngine.readVectorClock(folder, fileName)
+                        .orElseThrow(() -> new ReadException("Read operation failed: File " + fileName + " not found")));
+                nodes.remove(node);
+                readQuorum--;
             }
-            if (!latch.await(10, TimeUnit.SECONDS)) {
-                throw new ReadException("Read quorum condition failed");
+            vectorClocks.putAll(retrieveVectorClocksFromReplicas(fileName, nodes, readQuorum, deadline));
+
+            Map.Entry<DynamoNode, VectorClock> latest = vectorClocks.entrySet().stream()
+                    .max(Comparator.comparingLong(entry -> entry.getValue().events()))
+                    .orElseThrow(() -> new ReadException("Read quorum condition failed"));
+            if (vectorClocks.values().stream().anyMatch(vectorClock -> !latest.getValue().descends(vectorClock))) {
+                throw new ConsistencyException(vectorClocks.entrySet().stream()
+                        .map(entry -> new FileWithVectorClock(null, entry.getValue(), entry.getKey().getAddress()))
+                        .toList());
             }
-            return fileWithVectorClockToNode;
-        } catch (ReadException e) {
+            DynamoNode latestNode = latest.getKey();
+            String latestFolder = latestNode.getAddress().replaceAll("\\.", "_");
+
+            if (latestNode.isSelfAware()) {
+                streamObjectInternal(latestFolder, fileName, response);
+                List<DynamoNode> nodesLaggingBehind = vectorClocks.entrySet().stream()
+                        .filter(entry -> latest.getValue().dominates(entry.getValue()))
+                        .map(Map.Entry::getKey)
+                        .toList();
+                readRepairQueue.submit(fileName, new FileWithVectorClock(null, latest.getValue(),
+                        latestNode.getAddress()), nodesLaggingBehind);
+            } else {
+                HttpResponse<InputStream> replicaResponse = streamingReplicaClient.streamFromReplica(
+                        URIHelper.createURI(latestNode.getAddress()), latestFolder, fileName);
+                try (InputStream value = replicaResponse.body()) {
+                    response.setHeader(StreamingReplicaClient.VECTOR_CLOCK_HEADER, latest.getValue().toString());
+                    response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+                    replicaResponse.headers().firstValueAsLong("Content-Length")
+                            .ifPresent(response::setContentLengthLong);
+                    value.transferTo(response.getOutputStream());
+                }
+            }
+        } catch (RingEmptyException e) {
+            throw new ReadException("Read operation failed, " + e.getMessage());
+        } catch (ReadException | ConsistencyException e) {
             throw e;
         } catch (Exception e) {
-            e.printStackTrace();
-            throw new ReadException("Read operation failed");
+            logger.error("Read of {} failed", fileName, e);
+            throw new ReadException("Read operation failed, " + e.getMessage());
+        } finally {
+            sample.stop(latency("retrieveStream", level));
+        }
+    }
+
+    /**
+     * Writes the locally stored value of an object to the response in chunks, without loading it into memory,
+     * with its vector clock in the {@link StreamingReplicaClient#VECTOR_CLOCK_HEADER} header
+     */
+    public void streamObjectInternal(String folder, String fileName, HttpServletResponse response) {
+        List<StoredValue> siblings = storageEngine.open(folder, fileName);
+        try {
+            try {
+                if (siblings.isEmpty()) {
+                    throw new ReadException("Read operation failed: File " + fileName + " not found");
+                }
+                if (siblings.size() > 1) {
+                    // a single value is streamed, siblings are read with retrieve
+                    throw new ConsistencyException(siblings.stream()
+                            .map(sibling -> new FileWithVectorClock(null, sibling.getVectorClock(), null))
+                            .toList());
+                }
+                StoredValue value = siblings.get(0);
+                response.setHeader(StreamingReplicaClient.VECTOR_CLOCK_HEADER, value.getVectorClock().toString());
+                response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+                response.setContentLengthLong(value.getLength());
+                OutputStream outputStream = response.getOutputStream();
+                value.transferTo(Channels.newChannel(outputStream));
+            } finally {
+                StoredValue.closeAll(siblings);
+            }
+        } catch (IOException e) {
+            logger.error("Read of {} failed", fileName, e);
+            throw new ReadException("Read operation failed: File read failed");
         }
     }
-}
\ No newline at end of file
+
+    public VectorClock retrieveVectorClockInternal(String folder, String fileName) {
+        return storageEngine.readVectorClock(folder, fileName)
+                .orElseThrow(() -> new ReadException("Read operation failed: File " + fileName + " not found"));
+    }
+
+    public Map<DynamoNode, VectorClock> retrieveVectorClocksFromReplicas(String fileName, List<DynamoNode> nodes,
+                                                                        int readQuorum, Deadline deadline) {
+        if (readQuorum <= 0) {
+            return new HashMap<>();
+        }
+        try {
+            return awaitReads(aliveNodes(nodes, readQuorum), readQuorum, deadline, node -> new VectorClock(
+                    streamingReplicaClient.retrieveVectorClockFromReplica(URIHelper.createURI(node.getAddress()),
+                            node.getAddress().replaceAll("\\.", "_"), fileName)));
+        } catch (QuorumException e) {
+            throw new ReadException("Read quorum condition failed, " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a read to the replicas and waits for the read quorum, recording the latency of every replica. With
+     * hedged reads only the fastest replicas of the quorum are read, and a slow read is hedged to the next one
+     */
+    private <T> Map<DynamoNode, T> awaitReads(List<DynamoNode> nodes, int readQuorum, Deadline deadline,
+                                              Function<DynamoNode, T> read) {
+        Function<DynamoNode, T> timedRead = node -> {
+            latencyTracker.startRequest(node);
+            long start = System.nanoTime();
+            try {
+                return read.apply(node);
+            } finally {
+                latencyTracker.record(node, System.nanoTime() - start);
+                latencyTracker.endRequest(node);
+            }
+        };
+        if (!hedgePolicy.isEnabled()) {
+            return quorumCoordinator.await(nodes, readQuorum, deadline, timedRead);
+        }
+        return quorumCoordinator.awaitHedged(latencyTracker.rank(nodes), readQuorum, deadline,
+                hedgePolicy.startRead(), hedgePolicy::tryHedge, timedRead);
+    }
+
+    /**
+     * Leaves out the replicas which are down, so that reads do not wait for them, and fails the read at once
+     * when too few replicas are up for the quorum
+     */
+    private List<DynamoNode> aliveNodes(List<DynamoNode> nodes, int readQuorum) {
+        List<DynamoNode> aliveNodes = nodes.stream().filter(nodeHealth::isAlive).toList();
+        if (aliveNodes.size() < readQuorum) {
+            throw new ReadException("Read quorum condition failed, " + aliveNodes.size() + " of " + nodes.size()
+                    + " replicas are up");
+        }
+        return aliveNodes;
+    }
+
+    /**
+     * @return the latency histogram of the client requests of an operation at a consistency level
+     */
+    private Timer latency(String operation, ConsistencyLevel level) {
+        return Timer.builder("object.requests")
+                .description("Latency of the client requests, by operation and consistency level")
+                .tag("operation", operation)
+                .tag("consistency", level.toString())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,267 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.exception.QuorumException;
+import com.distributedkeyvaluestore.models.Deadline;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Sends a request to a set of replicas and waits only as long as the outcome of the quorum is unknown:
+ * it returns as soon as the quorum has answered and fails as soon as enough replicas have failed for the
+ * quorum to be unreachable, or when the deadline passes. Requests still running at that point are left to
+ * finish in the background and their responses are ignored
+ */
+@Component
+public class QuorumCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuorumCoordinator.class);
+
+    private final TaskExecutor taskExecutor;
+    private final MeterRegistry meterRegistry;
+    private final long defaultTimeoutMillis;
+
+    public QuorumCoordinator(TaskExecutor taskExecutor, MeterRegistry meterRegistry,
+                             @Value("${quorum.timeout-ms:10000}") long defaultTimeoutMillis) {
+        this.taskExecutor = taskExecutor;
+        this.meterRegistry = meterRegistry;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    /**
+     * Method to create the deadline of a client request
+     *
+     * @param timeoutMillis timeout requested by the client, or null to use the configured one
+     * @return deadline of the request
+     */
+    public Deadline deadline(Long timeoutMillis) {
+        return Deadline.afterMillis(timeoutMillis != null && timeoutMillis > 0 ? timeoutMillis : defaultTimeoutMillis);
+    }
+
+    /**
+     * Method to send a request to every node and wait for the first {@code quorum} successful responses
+     *
+     * @param nodes    nodes to send the request to
+     * @param quorum   number of successful responses required
+     * @param deadline time by which the quorum must be reached
+     * @param request  the request, returning a non null response
+     * @return responses received by the time the quorum was reached, by node
+     * @throws QuorumException when the quorum is unreachable or the deadline passes
+     */
+    public <T> Map<DynamoNode, T> await(List<DynamoNode> nodes, int quorum, Deadline deadline,
+                                        Function<DynamoNode, T> request) {
+        if (nodes.size() < quorum) {
+            throw new QuorumException("Quorum of " + quorum + " unreachable with " + nodes.size() + " replicas");
+        }
+
+        final long start = System.nanoTime();
+        final Map<DynamoNode, T> responses = new ConcurrentHashMap<>();
+        final AtomicInteger failures = new AtomicInteger();
+        final int toleratedFailures = nodes.size() - quorum;
+        final CompletableFuture<Void> outcome = new CompletableFuture<>();
+        if (quorum <= 0) {
+            outcome.complete(null);
+        }
+
+        for (DynamoNode node : nodes) {
+            CompletableFuture.supplyAsync(() -> request.apply(node), taskExecutor).whenComplete((response, failure) -> {
+                if (failure == null) {
+                    responses.put(node, response);
+                    if (responses.size() >= quorum) {
+                        outcome.complete(null);
+                    }
+                } else {
+                    logger.warn("Request to {} failed: {}", node.getAddress(), failure.getMessage());
+                    if (failures.incrementAndGet() > toleratedFailures) {
+                        outcome.completeExceptionally(new QuorumException("Quorum of " + quorum
+                                + " unreachable, " + failures.get() + " of " + nodes.size() + " replicas failed"));
+                    }
+                }
+            });
+        }
+
+        boolean reached = false;
+        try {
+            outcome.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+            reached = true;
+            return new HashMap<>(responses);
+        } catch (TimeoutException e) {
+            throw new QuorumException("Quorum of " + quorum + " not reached before the deadline, "
+                    + responses.size() + " of " + nodes.size() + " replicas responded");
+        } catch (ExecutionException e) {
+            throw (QuorumException) e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QuorumException("Interrupted while waiting for the quorum");
+        } finally {
+            recordWait("all", start, reached);
+        }
+    }
+
+    /**
+     * Method to send a request to the first {@code quorum} nodes only, in the order given, and wait for their
+     * responses. A node which fails is replaced by the next node at once. When no response arrives for
+     * {@code hedgeDelayNanos} and {@code mayHedge} allows it, the request is also sent to the next node as a
+     * hedge, and the first {@code quorum} responses are taken whichever nodes they come from
+     *
+     * @param nodes           nodes to send the request to, the preferred first
+     * @param quorum          number of successful responses required
+     * @param deadline        time by which the quorum must be reached
+     * @param hedgeDelayNanos time without a response after which a hedge is sent
+     * @param mayHedge        whether a hedge may be sent, asked before every hedge
+     * @param request         the request, returning a non null response
+     * @return responses received by the time the quorum was reached, by node
+     * @throws QuorumException when the quorum is unreachable or the deadline passes
+     */
+    public <T> Map<DynamoNode, T> awaitHedged(List<DynamoNode> nodes, int quorum, Deadline deadline,
+                                              long hedgeDelayNanos, BooleanSupplier mayHedge,
+                                              Function<DynamoNode, T> request) {
+        if (nodes.size() < quorum) {
+            throw new QuorumException("Quorum of " + quorum + " unreachable with " + nodes.size() + " replicas");
+        }
+        if (quorum <= 0) {
+            return new HashMap<>();
+        }
+
+        final long start = System.nanoTime();
+        final Map<DynamoNode, T> responses = new ConcurrentHashMap<>();
+        final BlockingQueue<Boolean> completions = new LinkedBlockingQueue<>();
+        int sent = 0;
+        int failures = 0;
+        while (sent < quorum) {
+            send(nodes.get(sent++), request, responses, completions);
+        }
+
+        long nextHedgeNanos = System.nanoTime() + hedgeDelayNanos;
+        boolean reached = false;
+        try {
+            while (true) {
+                long waitNanos = deadline.remainingNanos();
+                if (sent < nodes.size()) {
+                    waitNanos = Math.min(waitNanos, nextHedgeNanos - System.nanoTime());
+                }
+                Boolean succeeded = completions.poll(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+                if (succeeded == null) {
+                    if (deadline.isExpired()) {
+                        throw new QuorumException("Quorum of " + quorum + " not reached before the deadline, "
+                                + responses.size() + " of " + sent + " replicas responded");
+                    }
+                    if (sent < nodes.size() && mayHedge.getAsBoolean()) {
+                        send(nodes.get(sent++), request, responses, completions);
+                    }
+                    nextHedgeNanos = System.nanoTime() + hedgeDelayNanos;
+                } else if (succeeded) {
+                    if (responses.size() >= quorum) {
+                        reached = true;
+                        return new HashMap<>(responses);
+                    }
+                } else {
+                    failures++;
+                    if (nodes.size() - failures < quorum) {
+                        throw new QuorumException("Quorum of " + quorum + " unreachable, " + failures + " of "
+                                + nodes.size() + " replicas failed");
+                    }
+                    if (sent < nodes.size()) {
+                        send(nodes.get(sent++), request, responses, completions);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QuorumException("Interrupted while waiting for the quorum");
+        } finally {
+            recordWait("hedged", start, reached);
+        }
+    }
+
+    private <T> void send(DynamoNode node, Function<DynamoNode, T> request, Map<DynamoNode, T> responses,
+                          BlockingQueue<Boolean> completions) {
+        CompletableFuture.supplyAsync(() -> request.apply(node), taskExecutor).whenComplete((response, failure) -> {
+            if (failure == null) {
+                responses.put(node, response);
+            } else {
+                logger.warn("Request to {} failed: {}", node.getAddress(), failure.getMessage());
+            }
+            completions.add(failure == null);
+        });
+    }
+
+    /**
+     * Method to send a request for every target and wait until all of them have answered, {@code done} holds
+     * for the responses received so far, or the deadline passes. Used by batches, whose quorum is evaluated
+     * per key by the caller, so unlike {@link #await} it does not fail: targets which failed or did not answer
+     * in time are missing from the responses
+     *
+     * @param targets  targets to send a request for
+     * @param deadline time by which the responses are needed
+     * @param request  the request, returning a non null response
+     * @param done     whether the responses received so far are enough
+     * @return responses received by the time the wait ended, by target
+     */
+    public <K, T> Map<K, T> awaitEach(Collection<K> targets, Deadline deadline, Function<K, T> request,
+                                      Predicate<Map<K, T>> done) {
+        final long start = System.nanoTime();
+        final Map<K, T> responses = new ConcurrentHashMap<>();
+        final AtomicInteger completed = new AtomicInteger();
+        final CompletableFuture<Void> outcome = new CompletableFuture<>();
+        if (targets.isEmpty()) {
+            outcome.complete(null);
+        }
+
+        for (K target : targets) {
+            CompletableFuture.supplyAsync(() -> request.apply(target), taskExecutor).whenComplete((response, failure) -> {
+                if (failure == null) {
+                    responses.put(target, response);
+                } else {
+                    logger.warn("Batch request failed: {}", failure.getMessage());
+                }
+                if (completed.incrementAndGet() == targets.size() || done.test(responses)) {
+                    outcome.complete(null);
+                }
+            });
+        }
+
+        boolean reached = false;
+        try {
+            outcome.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+            reached = true;
+        } catch (TimeoutException | ExecutionException e) {
+            // the caller finds out which targets are missing
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        recordWait("each", start, reached);
+        return new HashMap<>(responses);
+    }
+
+    private void recordWait(String mode, long start, boolean reached) {
+        Timer.builder("quorum.wait")
+                .description("Time a coordinator waited for the responses of the replicas")
+                .tag("mode", mode)
+                .tag("outcome", reached ? "reached" : "failed")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,199 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.client.DynamoClient;
+import com.distributedkeyvaluestore.client.URIHelper;
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.exception.ReadException;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.models.Deadline;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.KeyWithVectorClock;
+import com.distributedkeyvaluestore.models.VectorClock;
+import com.distributedkeyvaluestore.storage.StorageEngine;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Lists the keys of the store in order, a page at a time. Keys are spread over all the nodes, so every node
+ * which is up is asked for its first keys after the previous page, and their lists are merge-sorted, the
+ * replicas of a key being listed once with their vector clocks merged. Every node returns at most one page,
+ * and the merged page is written to the response as it is merged
+ */
+@Component
+public class ScanService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanService.class);
+
+    private final HashManager<DynamoNode> hashManager;
+    private final StorageEngine storageEngine;
+    private final DynamoClient dynamoClient;
+    private final NodeHealth nodeHealth;
+    private final QuorumCoordinator quorumCoordinator;
+    private final ObjectMapper objectMapper;
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    public ScanService(HashManager<DynamoNode> hashManager, StorageEngine storageEngine, DynamoClient dynamoClient,
+                       NodeHealth nodeHealth, QuorumCoordinator quorumCoordinator, ObjectMapper objectMapper,
+                       @Value("${scan.default-limit:100}") int defaultLimit,
+                       @Value("${scan.max-limit:1000}") int maxLimit) {
+        this.hashManager = hashManager;
+        this.storageEngine = storageEngine;
+        this.dynamoClient = dynamoClient;
+        this.nodeHealth = nodeHealth;
+        this.quorumCoordinator = quorumCoordinator;
+        this.objectMapper = objectMapper;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Method to list a page of keys. The page is written as {"keys": [{"key", "vectorClock"}...],
+     * "continuation": token}, the token being null on the last page
+     *
+     * @param prefix       prefix of the keys listed, null for every key
+     * @param continuation the continuation token of the previous page, null for the first page
+     * @param limit        maximum number of keys of the page, null for scan.default-limit
+     */
+    public StreamingResponseBody scan(String prefix, String continuation, Integer limit, Deadline deadline) {
+        String keyPrefix = prefix != null ? prefix : "";
+        String startAfter = continuation != null ? decode(continuation) : null;
+        int pageSize = Math.min(maxLimit, limit != null && limit > 0 ? limit : defaultLimit);
+
+        List<DynamoNode> nodes = hashManager.getAllNodes().stream().filter(nodeHealth::isAlive).toList();
+        Map<DynamoNode, List<KeyWithVectorClock>> pages = quorumCoordinator.awaitEach(nodes, deadline,
+                node -> scanNode(node, keyPrefix, startAfter, pageSize), received -> false);
+        if (pages.isEmpty()) {
+            throw new ReadException("Read operation failed: No node answered the scan");
+        }
+        nodes.stream().filter(node -> !pages.containsKey(node))
+                .forEach(node -> logger.warn("Scan of {} failed, its keys are left out", node.getAddress()));
+
+        return outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("keys");
+            String lastKey = null;
+            int count = 0;
+            Iterator<KeyWithVectorClock> keys = merge(pages.values());
+            while (count < pageSize && keys.hasNext()) {
+                KeyWithVectorClock key = keys.next();
+                generator.writeStartObject();
+                generator.writeStringField("key", key.getKey());
+                generator.writeStringField("vectorClock", key.getVectorClock().toString());
+                generator.writeEndObject();
+                lastKey = key.getKey();
+                count++;
+            }
+            generator.writeEndArray();
+            if (count == pageSize) {
+                generator.writeStringField("continuation", encode(lastKey));
+            } else {
+                generator.writeNullField("continuation");
+            }
+            generator.writeEndObject();
+            generator.flush();
+        };
+    }
+
+    public List<KeyWithVectorClock> scanInternal(String folder, String prefix, String startAfter, int limit) {
+        return storageEngine.scan(folder, prefix, startAfter, Math.min(maxLimit, limit));
+    }
+
+    private List<KeyWithVectorClock> scanNode(DynamoNode node, String prefix, String startAfter, int limit) {
+        String folder = node.getAddress().replaceAll("\\.", "_");
+        if (node.isSelfAware()) {
+            return scanInternal(folder, prefix, startAfter, limit);
+        }
+        List<KeyWithVectorClock> keys = dynamoClient.scanReplica(URIHelper.createURI(node.getAddress()), folder,
+                prefix, startAfter, limit).getBody();
+        return keys != null ? keys : List.of();
+    }
+
+    /**
+     * @return the keys of the sorted lists in order, a key found on several nodes once with the merge of
+     * their vector clocks
+     */
+    static Iterator<KeyWithVectorClock> merge(Iterable<List<KeyWithVectorClock>> lists) {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparing(Cursor::key));
+        for (List<KeyWithVectorClock> list : lists) {
+            Cursor cursor = new Cursor(list.iterator());
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !cursors.isEmpty();
+            }
+
+            @Override
+            public KeyWithVectorClock next() {
+                Cursor cursor = cursors.poll();
+                String key = cursor.key();
+                VectorClock vectorClock = cursor.current.getVectorClock();
+                requeue(cursor);
+                while (!cursors.isEmpty() && cursors.peek().key().equals(key)) {
+                    Cursor duplicate = cursors.poll();
+                    vectorClock = vectorClock.merge(duplicate.current.getVectorClock());
+                    requeue(duplicate);
+                }
+                return new KeyWithVectorClock(key, vectorClock);
+            }
+
+            private void requeue(Cursor cursor) {
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+        };
+    }
+
+    private static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String continuation) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(continuation), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ReadException("Read operation failed: Invalid continuation token " + continuation);
+        }
+    }
+
+    /**
+     * Position in the sorted keys of a node
+     */
+    private static class Cursor {
+
+        private final Iterator<KeyWithVectorClock> keys;
+        private KeyWithVectorClock current;
+
+        Cursor(Iterator<KeyWithVectorClock> keys) {
+            this.keys = keys;
+        }
+
+        boolean advance() {
+            current = keys.hasNext() ? keys.next() : null;
+            return current != null;
+        }
+
+        String key() {
+            return current.getKey();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.distributedkeyvaluestore.membership;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    private final MembershipService membershipService;
+
+    public AdminController(MembershipService membershipService) {
+        this.membershipService = membershipService;
+    }
+
+    @GetMapping("/ring")
+    ResponseEntity<RingView> getRing() {
+        return ResponseEntity.ok(membershipService.getRingView());
+    }
+
+    @PostMapping("/nodes/{number}/{address}")
+    ResponseEntity<String> join(@PathVariable("number") int number, @PathVariable("address") String address) {
+        membershipService.join(number, address);
+        return ResponseEntity.ok("Node " + address + " joined the ring");
+    }
+
+    @PostMapping("/nodes/{address}/decommission")
+    ResponseEntity<String> decommission(@PathVariable("address") String address) {
+        membershipService.decommission(address);
+        return ResponseEntity.ok("Node " + address + " left the ring");
+    }
+
+    @DeleteMapping("/nodes/{address}")
+    ResponseEntity<String> remove(@PathVariable("address") String address) {
+        membershipService.remove(address);
+        return ResponseEntity.ok("Node " + address + " removed from the ring");
+    }
+}
@@ -0,0 +1,19 @@
+package com.distributedkeyvaluestore.membership;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.net.URI;
+
+@FeignClient(name = "membershipClient", url = "http://this-is-just-a-placeholder")
+public interface MembershipClient {
+
+    @PutMapping(value = "/membership/ring")
+    void applyRing(URI baseUrl, @RequestBody RingView ringView);
+
+    @PostMapping(value = "/membership/stream")
+    ResponseEntity<Integer> streamPendingRanges(URI baseUrl);
+}
@@ -0,0 +1,28 @@
+package com.distributedkeyvaluestore.membership;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Endpoints used by the coordinator of a membership change
+ */
+@RestController
+@RequestMapping("/membership")
+public class MembershipController {
+
+    private final MembershipService membershipService;
+
+    public MembershipController(MembershipService membershipService) {
+        this.membershipService = membershipService;
+    }
+
+    @PutMapping("/ring")
+    void applyRing(@RequestBody RingView ringView) {
+        membershipService.apply(ringView);
+    }
+
+    @PostMapping("/stream")
+    ResponseEntity<Integer> streamPendingRanges() {
+        return ResponseEntity.ok(membershipService.streamPendingRanges());
+    }
+}
@@ -0,0 +1,396 @@
+package com.distributedkeyvaluestore.membership;
+
+import com.distributedkeyvaluestore.antientropy.Throttle;
+import com.distributedkeyvaluestore.client.StreamingReplicaClient;
+import com.distributedkeyvaluestore.client.URIHelper;
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.exception.MembershipException;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.Quorum;
+import com.distributedkeyvaluestore.storage.StorageEngine;
+import com.distributedkeyvaluestore.storage.StoredValue;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adds nodes to and removes nodes from the ring while the cluster is running.
+ * <p>
+ * The node receiving the admin request coordinates the change in two steps. It first sends every node a
+ * {@link RingView} holding the ring being moved to as pending ring, so that writes also go to the replicas
+ * the change adds while reads are still served by the current replicas. Every node then streams the keys of
+ * the token ranges which gain a replica to the new replica, and once all nodes are done the pending ring
+ * becomes the current ring on every node. A key is streamed by the first of its current replicas which is up,
+ * so every range is sent once, and the nodes stream in parallel under {@code membership.stream-bytes-per-second}
+ */
+@Component
+public class MembershipService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MembershipService.class);
+
+    private final HashManager<DynamoNode> hashManager;
+    private final StorageEngine storageEngine;
+    private final MembershipClient membershipClient;
+    private final StreamingReplicaClient streamingReplicaClient;
+    private final NodeHealth nodeHealth;
+    private final Throttle streamThrottle;
+    private final ExecutorService streamers;
+    private final int streamThreads;
+    private final ExecutorService requests;
+    private final ReentrantLock changeLock = new ReentrantLock();
+    private final ReentrantLock viewLock = new ReentrantLock();
+    private volatile long version;
+    private volatile DynamoNode self;
+
+    public MembershipService(HashManager<DynamoNode> hashManager, StorageEngine storageEngine,
+                             MembershipClient membershipClient, StreamingReplicaClient streamingReplicaClient,
+                             NodeHealth nodeHealth,
+                             @Value("${membership.stream-threads:4}") int streamThreads,
+                             @Value("${membership.stream-bytes-per-second:10485760}") double streamBytesPerSecond) {
+        this.hashManager = hashManager;
+        this.storageEngine = storageEngine;
+        this.membershipClient = membershipClient;
+        this.streamingReplicaClient = streamingReplicaClient;
+        this.nodeHealth = nodeHealth;
+        this.streamThrottle = new Throttle(streamBytesPerSecond);
+        this.streamers = Executors.newFixedThreadPool(streamThreads, daemonThreads("membership-stream-"));
+        this.streamThreads = streamThreads;
+        this.requests = Executors.newCachedThreadPool(daemonThreads("membership-request-"));
+    }
+
+    /**
+     * Method to set the node this process runs, before any ring view is applied
+     */
+    public void setSelf(DynamoNode self) {
+        this.self = self;
+    }
+
+    public Optional<DynamoNode> getSelf() {
+        return Optional.ofNullable(self);
+    }
+
+    /**
+     * @return the version of the ring applied by this node
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public RingView getRingView() {
+        return new RingView(version, members(hashManager.getAllNodes()),
+                hashManager.getPendingNodes().map(MembershipService::members).orElse(null));
+    }
+
+    /**
+     * Method to replace the ring of this node with a view sent by the coordinator of a change
+     *
+     * @param ringView the view to be applied
+     * @return false if the view is older than the ring of this node, which is kept
+     */
+    public boolean apply(RingView ringView) {
+        viewLock.lock();
+        try {
+            if (ringView.getVersion() <= version) {
+                return false;
+            }
+            hashManager.setNodes(nodes(ringView.getNodes()),
+                    ringView.getPendingNodes() != null ? nodes(ringView.getPendingNodes()) : null);
+            version = ringView.getVersion();
+            logger.info("Applied ring version {}: {}{}", version, hashManager.getAllNodes(),
+                    hashManager.getPendingNodes().map(nodes -> ", moving to " + nodes).orElse(""));
+            return true;
+        } finally {
+            viewLock.unlock();
+        }
+    }
+
+    /**
+     * Method to add a node to the ring. The node must be running, and started with {@code membership.join=true}
+     *
+     * @param number  the number of the new node
+     * @param address the address of the new node
+     */
+    public void join(int number, String address) {
+        List<DynamoNode> nodes = new ArrayList<>(hashManager.getAllNodes());
+        if (find(nodes, address).isPresent()) {
+            throw new MembershipException("Node " + address + " is already part of the ring");
+        }
+        if (nodes.stream().anyMatch(node -> node.getNumber() == number)) {
+            throw new MembershipException("Node number " + number + " is already taken");
+        }
+        nodes.add(new DynamoNode(address, false, number));
+        change(nodes);
+    }
+
+    /**
+     * Method to remove a node from the ring after its ranges are streamed to the nodes taking them over.
+     * The node can be shut down once this returns
+     *
+     * @param address the address of the node
+     */
+    public void decommission(String address) {
+        change(without(address));
+    }
+
+    /**
+     * Method to remove a node which is gone for good from the ring, without streaming its ranges. Its new
+     * replicas receive the objects through read repair and anti-entropy
+     *
+     * @param address the address of the node
+     */
+    public void remove(String address) {
+        List<DynamoNode> nodes = without(address);
+        if (!changeLock.tryLock()) {
+            throw new MembershipException("Another membership change is in progress");
+        }
+        try {
+            requireNoPendingChange();
+            publish(nodes, null, false);
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    private void change(List<DynamoNode> nodes) {
+        if (!changeLock.tryLock()) {
+            throw new MembershipException("Another membership change is in progress");
+        }
+        try {
+            requireNoPendingChange();
+            List<DynamoNode> current = hashManager.getAllNodes();
+            publish(current, nodes, true);
+            try {
+                int streamed = streamPendingRangesOnAllNodes(current);
+                logger.info("Streamed {} objects to their new replicas", streamed);
+            } catch (RuntimeException e) {
+                publish(current, null, false);
+                throw new MembershipException("Membership change rolled back, streaming failed: " + e.getMessage());
+            }
+            publish(nodes, null, false);
+        } finally {
+            changeLock.unlock();
+        }
+    }
+
+    /**
+     * Method to stream the local objects of the ranges which gain a replica in the pending ring to that replica.
+     * Only as many transfers as there are stream threads are in flight at once, and none is started once one
+     * of them failed
+     *
+     * @return the number of objects streamed
+     */
+    public int streamPendingRanges() {
+        DynamoNode node = self;
+        if (node == null || hashManager.getPendingNodes().isEmpty()) {
+            return 0;
+        }
+        String folder = folder(node);
+        AtomicInteger streamed = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Semaphore inFlight = new Semaphore(streamThreads);
+        keys:
+        for (String key : storageEngine.keys(folder)) {
+            List<DynamoNode> targets = hashManager.getPendingReplicas(key);
+            if (targets.isEmpty() || !isStreamSource(node, key)) {
+                continue;
+            }
+            for (DynamoNode target : targets) {
+                inFlight.acquireUninterruptibly();
+                if (failure.get() != null) {
+                    inFlight.release();
+                    break keys;
+                }
+                CompletableFuture.runAsync(() -> {
+                    if (push(folder, key, target)) {
+                        streamed.incrementAndGet();
+                    }
+                }, streamers).whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        failure.compareAndSet(null, e);
+                    }
+                    inFlight.release();
+                });
+            }
+        }
+        // every permit is back once the last transfer ended
+        inFlight.acquireUninterruptibly(streamThreads);
+        if (failure.get() != null) {
+            throw failure.get() instanceof CompletionException e ? e : new CompletionException(failure.get());
+        }
+        return streamed.get();
+    }
+
+    /**
+     * Method to send the current ring to a node which missed changes while it was down
+     */
+    public void sendRing(DynamoNode node) {
+        try {
+            membershipClient.applyRing(URIHelper.createURI(node.getAddress()), getRingView());
+        } catch (Exception e) {
+            logger.warn("Ring not sent to {}: {}", node.getAddress(), e.getMessage());
+        }
+    }
+
+    /**
+     * Applies a new version of the ring here and sends it to every node of the old, current and pending ring
+     *
+     * @param required whether every node which is up has to apply the view
+     */
+    private void publish(List<DynamoNode> nodes, List<DynamoNode> pendingNodes, boolean required) {
+        Map<String, DynamoNode> recipients = new LinkedHashMap<>();
+        hashManager.getAllNodes().forEach(node -> recipients.put(node.getAddress(), node));
+        nodes.forEach(node -> recipients.putIfAbsent(node.getAddress(), node));
+        if (pendingNodes != null) {
+            pendingNodes.forEach(node -> recipients.putIfAbsent(node.getAddress(), node));
+        }
+
+        RingView ringView = new RingView(version + 1, members(nodes),
+                pendingNodes != null ? members(pendingNodes) : null);
+        apply(ringView);
+        for (DynamoNode node : recipients.values()) {
+            if (isSelf(node)) {
+                continue;
+            }
+            try {
+                membershipClient.applyRing(URIHelper.createURI(node.getAddress()), ringView);
+            } catch (Exception e) {
+                logger.warn("Ring version {} not applied by {}: {}", ringView.getVersion(), node.getAddress(),
+                        e.getMessage());
+                if (required && nodeHealth.isAlive(node)) {
+                    publish(hashManager.getAllNodes(), null, false);
+                    throw new MembershipException("Node " + node.getAddress() + " did not apply the new ring");
+                }
+            }
+        }
+    }
+
+    private int streamPendingRangesOnAllNodes(List<DynamoNode> nodes) {
+        List<CompletableFuture<Integer>> streams = nodes.stream()
+                .filter(nodeHealth::isAlive)
+                .map(node -> CompletableFuture.supplyAsync(() -> {
+                    if (isSelf(node)) {
+                        return streamPendingRanges();
+                    }
+                    Integer streamed = membershipClient.streamPendingRanges(URIHelper.createURI(node.getAddress()))
+                            .getBody();
+                    return streamed != null ? streamed : 0;
+                }, requests))
+                .toList();
+        try {
+            return streams.stream().mapToInt(CompletableFuture::join).sum();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * @return true if the object was streamed, false if it is no longer stored here
+     */
+    private boolean push(String folder, String key, DynamoNode target) {
+        List<StoredValue> siblings = storageEngine.open(folder, key);
+        try {
+            try {
+                for (StoredValue value : siblings) {
+                    streamThrottle.acquire(value.getLength());
+                    streamingReplicaClient.storeToReplicaUsingVectorClock(URIHelper.createURI(target.getAddress()),
+                            folder(target), key, value::openStream, value.getLength(),
+                            value.getVectorClock().toString());
+                }
+            } finally {
+                StoredValue.closeAll(siblings);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return !siblings.isEmpty();
+    }
+
+    /**
+     * Only the first current replica of a key which is up streams it, so that it is sent once
+     */
+    private boolean isStreamSource(DynamoNode node, String key) {
+        return hashManager.getNodes(key).stream()
+                .filter(nodeHealth::isAlive)
+                .findFirst()
+                .filter(source -> source.getAddress().equals(node.getAddress()))
+                .isPresent();
+    }
+
+    private List<DynamoNode> without(String address) {
+        List<DynamoNode> nodes = new ArrayList<>(hashManager.getAllNodes());
+        DynamoNode node = find(nodes, address)
+                .orElseThrow(() -> new MembershipException("Node " + address + " is not part of the ring"));
+        nodes.remove(node);
+        if (nodes.size() < Quorum.getReplicas()) {
+            throw new MembershipException("The ring needs at least " + Quorum.getReplicas() + " nodes");
+        }
+        return nodes;
+    }
+
+    private void requireNoPendingChange() {
+        if (hashManager.getPendingNodes().isPresent()) {
+            throw new MembershipException("A membership change is in progress");
+        }
+    }
+
+    private List<DynamoNode> nodes(List<RingView.Member> members) {
+        return members.stream()
+                .map(member -> new DynamoNode(member.getAddress(), isSelf(member.getAddress()), member.getNumber()))
+                .toList();
+    }
+
+    private static List<RingView.Member> members(List<DynamoNode> nodes) {
+        return nodes.stream().map(node -> new RingView.Member(node.getNumber(), node.getAddress())).toList();
+    }
+
+    private boolean isSelf(DynamoNode node) {
+        return isSelf(node.getAddress());
+    }
+
+    private boolean isSelf(String address) {
+        return self != null && self.getAddress().equals(address);
+    }
+
+    private static Optional<DynamoNode> find(List<DynamoNode> nodes, String address) {
+        return nodes.stream().filter(node -> node.getAddress().equals(address)).findFirst();
+    }
+
+    private static String folder(DynamoNode node) {
+        return node.getAddress().replaceAll("\\.", "_");
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PreDestroy
+    public void close() {
+        streamers.shutdownNow();
+        requests.shutdownNow();
+    }
+}
@@ -0,0 +1,62 @@
+package com.distributedkeyvaluestore.membership;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * The membership of the ring as sent between nodes. A view replaces the ring of a node only if its version
+ * is newer than the version the node has applied
+ */
+public class RingView {
+
+    private final long version;
+    private final List<Member> nodes;
+    private final List<Member> pendingNodes;
+
+    /**
+     * @param version      version of the view, incremented by every change
+     * @param nodes        the nodes of the current ring
+     * @param pendingNodes the nodes of the ring being moved to, null if no change is in progress
+     */
+    @JsonCreator
+    public RingView(@JsonProperty("version") long version, @JsonProperty("nodes") List<Member> nodes,
+                    @JsonProperty("pendingNodes") List<Member> pendingNodes) {
+        this.version = version;
+        this.nodes = nodes;
+        this.pendingNodes = pendingNodes;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Member> getNodes() {
+        return nodes;
+    }
+
+    public List<Member> getPendingNodes() {
+        return pendingNodes;
+    }
+
+    public static class Member {
+
+        private final int number;
+        private final String address;
+
+        @JsonCreator
+        public Member(@JsonProperty("number") int number, @JsonProperty("address") String address) {
+            this.number = number;
+            this.address = address;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+    }
+}
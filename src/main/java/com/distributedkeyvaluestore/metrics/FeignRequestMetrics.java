@@ -0,0 +1,50 @@
+package com.distributedkeyvaluestore.metrics;
+
+import feign.Capability;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * Records the requests of every Feign client in {@link ReplicaRequestMetrics}. A response with an error
+ * status is counted as a failure, as Feign turns it into an exception for the caller
+ */
+@Component
+public class FeignRequestMetrics implements Capability {
+
+    private final ReplicaRequestMetrics replicaRequestMetrics;
+
+    public FeignRequestMetrics(ReplicaRequestMetrics replicaRequestMetrics) {
+        this.replicaRequestMetrics = replicaRequestMetrics;
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        return (request, options) -> {
+            long start = System.nanoTime();
+            try {
+                Response response = client.execute(request, options);
+                record(request, start, response.status() >= 400 ? "status_" + response.status() : null);
+                return response;
+            } catch (IOException | RuntimeException e) {
+                record(request, start, e.getClass().getSimpleName());
+                throw e;
+            }
+        };
+    }
+
+    private void record(Request request, long start, String error) {
+        String client = "feign";
+        String operation = "unknown";
+        if (request.requestTemplate() != null && request.requestTemplate().methodMetadata() != null) {
+            client = request.requestTemplate().feignTarget().name();
+            operation = request.requestTemplate().methodMetadata().method().getName();
+        }
+        replicaRequestMetrics.record(client, operation, URI.create(request.url()).getHost(),
+                System.nanoTime() - start, error);
+    }
+}
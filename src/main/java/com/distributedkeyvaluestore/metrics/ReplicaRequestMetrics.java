@@ -0,0 +1,71 @@
+package com.distributedkeyvaluestore.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and errors of the requests a node sends to the other nodes, by client, operation and node. Every
+ * client of the node records its requests here: the Feign clients through {@link FeignRequestMetrics}, the
+ * binary transport and the streaming client directly
+ */
+@Component
+public class ReplicaRequestMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public ReplicaRequestMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Method to record a request sent to a node
+     *
+     * @param client    the client which sent it, eg: binary or dynamoClient
+     * @param operation the operation requested, eg: retrieveFromReplica
+     * @param node      the address of the node
+     * @param nanos     the time the request took to succeed or fail
+     * @param error     why the request failed, the name of its exception or its status, null when it succeeded
+     */
+    public void record(String client, String operation, String node, long nanos, String error) {
+        Timer.builder("replica.requests")
+                .description("Requests sent to other nodes")
+                .tag("client", client)
+                .tag("operation", operation)
+                .tag("node", node)
+                .tag("outcome", error == null ? "success" : "error")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (error != null) {
+            Counter.builder("replica.errors")
+                    .description("Requests sent to other nodes which failed, by cause")
+                    .tag("client", client)
+                    .tag("operation", operation)
+                    .tag("node", node)
+                    .tag("error", error)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    /**
+     * Method to record the connection a request to a node was sent on
+     *
+     * @param client the client which sent it, eg: binary or okhttp
+     * @param node   the address of the node
+     * @param reused true when an open connection was reused, false when one was opened for the request
+     */
+    public void recordConnection(String client, String node, boolean reused) {
+        Counter.builder("replica.connections")
+                .description("Connections requests to other nodes were sent on, reused or newly opened")
+                .tag("client", client)
+                .tag("node", node)
+                .tag("reused", String.valueOf(reused))
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,78 @@
+package com.distributedkeyvaluestore.models;
+
+import java.util.Objects;
+
+/**
+ * Number of replicas which must answer a read, or acknowledge a write, before the client gets its response:
+ * one, a majority (quorum), all of them, or a fixed number of replicas
+ */
+public final class ConsistencyLevel {
+
+    /**
+     * Header in which a client may pass the consistency level of a request: one, quorum, all or a number
+     */
+    public static final String HEADER = "X-Consistency-Level";
+
+    public static final ConsistencyLevel ONE = new ConsistencyLevel("one", 1);
+    public static final ConsistencyLevel QUORUM = new ConsistencyLevel("quorum", 0);
+    public static final ConsistencyLevel ALL = new ConsistencyLevel("all", 0);
+
+    private final String name;
+    private final int count;
+
+    private ConsistencyLevel(String name, int count) {
+        this.name = name;
+        this.count = count;
+    }
+
+    public static ConsistencyLevel fromName(String name) {
+        for (ConsistencyLevel level : new ConsistencyLevel[]{ONE, QUORUM, ALL}) {
+            if (level.name.equalsIgnoreCase(name.trim())) {
+                return level;
+            }
+        }
+        try {
+            int count = Integer.parseInt(name.trim());
+            if (count > 0) {
+                return new ConsistencyLevel(String.valueOf(count), count);
+            }
+        } catch (NumberFormatException e) {
+            // not a number of replicas either
+        }
+        throw new IllegalArgumentException("Unknown consistency level " + name);
+    }
+
+    /**
+     * Method to return the number of replicas which must respond at this level
+     *
+     * @param replicas no. of replicas of an object
+     * @return no. of successful responses required
+     */
+    public int required(int replicas) {
+        if (this == QUORUM) {
+            return (replicas / 2) + 1;
+        }
+        if (this == ALL) {
+            return replicas;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof ConsistencyLevel other && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
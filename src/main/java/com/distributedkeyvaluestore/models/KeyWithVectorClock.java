@@ -0,0 +1,23 @@
+package com.distributedkeyvaluestore.models;
+
+/**
+ * A key found by a scan, with the vector clock of its versions
+ */
+public class KeyWithVectorClock {
+
+    private String key;
+    private VectorClock vectorClock;
+
+    public KeyWithVectorClock(String key, VectorClock vectorClock) {
+        this.key = key;
+        this.vectorClock = vectorClock;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public VectorClock getVectorClock() {
+        return vectorClock;
+    }
+}
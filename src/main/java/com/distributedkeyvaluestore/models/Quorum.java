@@ -1,7 +1,8 @@
 package com.distributedkeyvaluestore.models;
 
 /**
- * Class which defines global definition of number of replicas, read quorum and write quorum
+ * Class which defines global definition of number of replicas. The number of replicas a read or a write waits
+ * for is given by its {@link ConsistencyLevel}
  */
 public class Quorum {
 
@@ -26,24 +27,4 @@ public class Quorum {
     public static int getReplicas() {
         return replicas;
     }
-
-    /**
-     * Method to return the number of nodes from which a read request
-     * must be successful to return a success message
-     *
-     * @return read quorum
-     */
-    public static int getReadQuorum() {
-        return (replicas/2) + 1;
-    }
-
-    /**
-     * Method to return the number of nodes into which a write must
-     * be successfully performed to return a success message
-     *
-     * @return write quorum
-     */
-    public static int getWriteQuorum() {
-        return (replicas/2) + 1;
-    }
 }
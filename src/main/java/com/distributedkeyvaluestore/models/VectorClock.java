@@ -1,61 +1,412 @@
 package com.distributedkeyvaluestore.models;
 
-import org.jetbrains.annotations.NotNull;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
 
-import java.util.Comparator;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
 
-public class VectorClock implements Comparable<VectorClock> {
+/**
+ * Dotted version vector tracking the causal history of a version of an object. The history is a version vector
+ * holding, for every node by its number (which stays the same across membership changes), the count of its
+ * events seen, plus at most one dot: an event of a node which is not contiguous with the events of that node in
+ * the vector. A version written on top of a context gets the dot (coordinator, next counter of the coordinator),
+ * so two versions written on top of the same context are concurrent even when one coordinator wrote both.
+ * <p>
+ * A clock also carries the wall-clock time at which its version was written by the coordinator, which takes no part
+ * in the causal order and is only used to pick a winner among concurrent versions.
+ * <p>
+ * Clocks are immutable. As text, used in headers, paths and JSON, the vector {1: 3, 2: 5} with the dot (4, 7),
+ * written at 1700000000000, is {@code 1.3_2.5~4.7@1700000000000}. In storage records clocks are written as
+ * varints by {@link #toBytes}
+ */
+public class VectorClock {
 
-    private final int[] clock = new int[Quorum.getReplicas()];
+    /**
+     * Header carrying the causal context of a write, the merged vector clocks of the versions the write replaces
+     */
+    public static final String CONTEXT_HEADER = "X-Context";
 
-    public VectorClock() {
+    /**
+     * Order of two versions: BEFORE when the other version has seen this one, CONCURRENT when neither has seen
+     * the other
+     */
+    public enum Ordering {
+        BEFORE, AFTER, EQUAL, CONCURRENT
+    }
+
+    private static final byte FORMAT = 1;
+    private static final int[] NO_NODES = new int[0];
+    private static final long[] NO_COUNTERS = new long[0];
 
+    // node numbers in ascending order, with the count of events of every node
+    private final int[] nodes;
+    private final long[] counters;
+    private final int dotNode;
+    private final long dotCounter;
+    private final long timestamp;
+
+    public VectorClock() {
+        this(NO_NODES, NO_COUNTERS, -1, 0, 0);
     }
 
+    @JsonCreator
     public VectorClock(String clockAsString) {
-        String[] individualClock = clockAsString.split("_");
-        int i=0;
-        while (i < Quorum.getReplicas()) {
-            clock[i] = Integer.parseInt(individualClock[i]);
-            i++;
+        int timestampSeparator = clockAsString.indexOf('@');
+        this.timestamp = timestampSeparator < 0 ? 0 : Long.parseLong(clockAsString.substring(timestampSeparator + 1));
+        String[] vectorAndDot = (timestampSeparator < 0 ? clockAsString : clockAsString.substring(0, timestampSeparator))
+                .split("~", -1);
+        String vector = vectorAndDot[0];
+        String[] entries = vector.isEmpty() ? new String[0] : vector.split("_");
+        int[] parsedNodes = new int[entries.length];
+        long[] parsedCounters = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            int separator = entries[i].indexOf('.');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid vector clock " + clockAsString);
+            }
+            parsedNodes[i] = Integer.parseInt(entries[i].substring(0, separator));
+            parsedCounters[i] = Long.parseLong(entries[i].substring(separator + 1));
+            if (i > 0 && parsedNodes[i] <= parsedNodes[i - 1]) {
+                throw new IllegalArgumentException("Invalid vector clock " + clockAsString);
+            }
+        }
+        int parsedDotNode = -1;
+        long parsedDotCounter = 0;
+        if (vectorAndDot.length > 1) {
+            int separator = vectorAndDot[1].indexOf('.');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid vector clock " + clockAsString);
+            }
+            parsedDotNode = Integer.parseInt(vectorAndDot[1].substring(0, separator));
+            parsedDotCounter = Long.parseLong(vectorAndDot[1].substring(separator + 1));
         }
+        this.nodes = parsedNodes;
+        this.counters = parsedCounters;
+        this.dotNode = parsedDotNode;
+        this.dotCounter = parsedDotCounter;
     }
 
-    public void incrementClockAtIndex(int index) {
-        clock[index]++;
+    private VectorClock(int[] nodes, long[] counters, int dotNode, long dotCounter, long timestamp) {
+        this.nodes = nodes;
+        this.counters = counters;
+        this.dotNode = dotNode;
+        this.dotCounter = dotCounter;
+        this.timestamp = timestamp;
     }
 
-    public int[] getClock() {
-        return clock;
+    /**
+     * Method to create the clock of a version written by a node on top of a context
+     *
+     * @param context   the versions the new version replaces, merged
+     * @param node      the number of the coordinator
+     * @param counter   the next counter of the coordinator, higher than any counter of it in a version of the
+     *                  object known to the coordinator
+     * @param timestamp the time of the write on the coordinator, in epoch milliseconds
+     * @return the clock of the new version
+     */
+    public static VectorClock newVersion(VectorClock context, int node, long counter, long timestamp) {
+        if (node < 0) {
+            throw new IllegalArgumentException("Invalid node number " + node);
+        }
+        VectorClock vector = context.merge(new VectorClock());
+        if (counter <= vector.counter(node)) {
+            throw new IllegalArgumentException("Counter " + counter + " of node " + node + " already seen");
+        }
+        if (counter == vector.counter(node) + 1) {
+            // contiguous with the vector, the event is folded into it
+            VectorClock folded = vector.withCounter(node, counter);
+            return new VectorClock(folded.nodes, folded.counters, -1, 0, timestamp);
+        }
+        return new VectorClock(vector.nodes, vector.counters, node, counter, timestamp);
     }
 
-    @Override
-    public String toString() {
-        StringBuilder clockAsString = new StringBuilder();
+    /**
+     * @return the clock of a version written by the node on top of the version of this clock
+     */
+    public VectorClock increment(int node) {
+        return newVersion(this, node, maxCounter(node) + 1, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the count of events of a node in the vector, without the dot
+     */
+    public long counter(int node) {
+        int index = Arrays.binarySearch(nodes, node);
+        return index >= 0 ? counters[index] : 0;
+    }
+
+    /**
+     * @return the highest counter of a node in this clock, dot included
+     */
+    public long maxCounter(int node) {
+        long counter = counter(node);
+        return node == dotNode ? Math.max(counter, dotCounter) : counter;
+    }
+
+    public Ordering compare(VectorClock vectorClock) {
+        boolean before = isCoveredBy(vectorClock);
+        boolean after = vectorClock.isCoveredBy(this);
+        if (before && after) {
+            return Ordering.EQUAL;
+        }
+        if (before) {
+            return Ordering.BEFORE;
+        }
+        return after ? Ordering.AFTER : Ordering.CONCURRENT;
+    }
 
-        for (int i = 0; i < clock.length; i++) {
-            if (i != clock.length - 1) {
-                clockAsString.append(clock[i]).append("_");
+    /**
+     * Method to check if this clock has seen every event of the other clock and at least one more
+     *
+     * @param vectorClock the clock to compare with
+     * @return true if this clock is strictly newer than the other one
+     */
+    public boolean dominates(VectorClock vectorClock) {
+        return compare(vectorClock) == Ordering.AFTER;
+    }
+
+    /**
+     * @return true if this clock has seen every event of the other clock
+     */
+    public boolean descends(VectorClock vectorClock) {
+        return vectorClock.isCoveredBy(this);
+    }
+
+    /**
+     * @return a clock without dot which has seen the events of both clocks, the context of a version replacing
+     * both
+     */
+    public VectorClock merge(VectorClock vectorClock) {
+        int[] mergedNodes = new int[nodes.length + vectorClock.nodes.length + 2];
+        long[] mergedCounters = new long[mergedNodes.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < nodes.length || j < vectorClock.nodes.length) {
+            int node;
+            long counter;
+            if (j == vectorClock.nodes.length || (i < nodes.length && nodes[i] < vectorClock.nodes[j])) {
+                node = nodes[i];
+                counter = counters[i++];
+            } else if (i == nodes.length || vectorClock.nodes[j] < nodes[i]) {
+                node = vectorClock.nodes[j];
+                counter = vectorClock.counters[j++];
             } else {
-                clockAsString.append(clock[i]);
+                node = nodes[i];
+                counter = Math.max(counters[i++], vectorClock.counters[j++]);
             }
+            mergedNodes[size] = node;
+            mergedCounters[size++] = counter;
+        }
+        VectorClock merged = new VectorClock(Arrays.copyOf(mergedNodes, size), Arrays.copyOf(mergedCounters, size),
+                -1, 0, Math.max(timestamp, vectorClock.timestamp));
+        if (dotNode >= 0) {
+            merged = merged.withCounter(dotNode, Math.max(merged.counter(dotNode), dotCounter));
+        }
+        if (vectorClock.dotNode >= 0) {
+            merged = merged.withCounter(vectorClock.dotNode,
+                    Math.max(merged.counter(vectorClock.dotNode), vectorClock.dotCounter));
         }
+        return merged;
+    }
 
-        return clockAsString.toString();
+    /**
+     * Method to drop the entries of nodes which left the ring once the clock has more than maxEntries entries,
+     * those with the fewest events first. Versions whose difference was in a dropped entry may then be taken as
+     * concurrent, or as ordered, which is the price of bounding the size of the clocks
+     *
+     * @param isMember   whether a node number is in the ring
+     * @param maxEntries entries above which the clock is pruned
+     * @return the pruned clock
+     */
+    public VectorClock prune(IntPredicate isMember, int maxEntries) {
+        if (nodes.length <= maxEntries) {
+            return this;
+        }
+        Integer[] byCounter = new Integer[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            byCounter[i] = i;
+        }
+        Arrays.sort(byCounter, (a, b) -> Long.compare(counters[a], counters[b]));
+        boolean[] dropped = new boolean[nodes.length];
+        int remaining = nodes.length;
+        for (int i = 0; i < byCounter.length && remaining > maxEntries; i++) {
+            if (!isMember.test(nodes[byCounter[i]])) {
+                dropped[byCounter[i]] = true;
+                remaining--;
+            }
+        }
+        int[] prunedNodes = new int[remaining];
+        long[] prunedCounters = new long[remaining];
+        for (int i = 0, k = 0; i < nodes.length; i++) {
+            if (!dropped[i]) {
+                prunedNodes[k] = nodes[i];
+                prunedCounters[k++] = counters[i];
+            }
+        }
+        return new VectorClock(prunedNodes, prunedCounters, dotNode, dotCounter, timestamp);
+    }
+
+    /**
+     * @return the number of events in the history of the version. A version has more events than every version
+     * it descends from, so ordering versions by it puts every version after its ancestors
+     */
+    public long events() {
+        long events = dotNode >= 0 ? 1 : 0;
+        for (long counter : counters) {
+            events += counter;
+        }
+        return events;
+    }
+
+    /**
+     * @return the time the version was written by its coordinator, in epoch milliseconds, 0 if unknown
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the number of entries of the vector
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Encodes the clock as: format (1) | entries (varint) | per entry: node minus previous node (varint),
+     * counter (varint) | dot node + 1, 0 without dot (varint) | dot counter (varint, only with a dot) |
+     * timestamp (varint)
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + nodes.length * 3);
+        out.write(FORMAT);
+        writeVarint(out, nodes.length);
+        int previous = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            writeVarint(out, nodes[i] - previous);
+            writeVarint(out, counters[i]);
+            previous = nodes[i];
+        }
+        writeVarint(out, dotNode + 1L);
+        if (dotNode >= 0) {
+            writeVarint(out, dotCounter);
+        }
+        writeVarint(out, timestamp);
+        return out.toByteArray();
+    }
+
+    public static VectorClock fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (bytes.length == 0 || in.get() != FORMAT) {
+            throw new IllegalArgumentException("Unsupported vector clock format");
+        }
+        int size = (int) readVarint(in);
+        int[] nodes = new int[size];
+        long[] counters = new long[size];
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            nodes[i] = previous + (int) readVarint(in);
+            counters[i] = readVarint(in);
+            previous = nodes[i];
+        }
+        int dotNode = (int) readVarint(in) - 1;
+        long dotCounter = dotNode >= 0 ? readVarint(in) : 0;
+        long timestamp = in.hasRemaining() ? readVarint(in) : 0;
+        return new VectorClock(nodes, counters, dotNode, dotCounter, timestamp);
+    }
+
+    private boolean isCoveredBy(VectorClock vectorClock) {
+        int j = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            while (j < vectorClock.nodes.length && vectorClock.nodes[j] < nodes[i]) {
+                j++;
+            }
+            long covered = j < vectorClock.nodes.length && vectorClock.nodes[j] == nodes[i]
+                    ? vectorClock.counters[j] : 0;
+            if (counters[i] > covered) {
+                return false;
+            }
+        }
+        return dotNode < 0 || dotCounter <= vectorClock.counter(dotNode)
+                || (dotNode == vectorClock.dotNode && dotCounter == vectorClock.dotCounter);
+    }
+
+    private VectorClock withCounter(int node, long counter) {
+        int index = Arrays.binarySearch(nodes, node);
+        if (index >= 0) {
+            long[] updatedCounters = counters.clone();
+            updatedCounters[index] = counter;
+            return new VectorClock(nodes, updatedCounters, dotNode, dotCounter, timestamp);
+        }
+        int insertAt = -index - 1;
+        int[] updatedNodes = new int[nodes.length + 1];
+        long[] updatedCounters = new long[nodes.length + 1];
+        System.arraycopy(nodes, 0, updatedNodes, 0, insertAt);
+        System.arraycopy(counters, 0, updatedCounters, 0, insertAt);
+        updatedNodes[insertAt] = node;
+        updatedCounters[insertAt] = counter;
+        System.arraycopy(nodes, insertAt, updatedNodes, insertAt + 1, nodes.length - insertAt);
+        System.arraycopy(counters, insertAt, updatedCounters, insertAt + 1, nodes.length - insertAt);
+        return new VectorClock(updatedNodes, updatedCounters, dotNode, dotCounter, timestamp);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in vector clock");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof VectorClock that)) {
+            return false;
+        }
+        return dotNode == that.dotNode && dotCounter == that.dotCounter && timestamp == that.timestamp
+                && Arrays.equals(nodes, that.nodes) && Arrays.equals(counters, that.counters);
     }
 
     @Override
-    public int compareTo(@NotNull VectorClock vectorClock) {
-        int[] thatClock = vectorClock.getClock();
-        int compare = 0;
-
-        if (this.clock[0] < thatClock[0] || this.clock[1] < thatClock[1]
-                || this.clock[2] < thatClock[2]) {
-            compare = -1;
-        } else if (this.clock[0] > thatClock[0] || this.clock[1] > thatClock[1]
-                || this.clock[2] > thatClock[2]) {
-            compare = 1;
-        }
-        return compare;
+    public int hashCode() {
+        return 31 * (31 * Arrays.hashCode(nodes) + Arrays.hashCode(counters)) + Long.hashCode(dotCounter) + dotNode;
+    }
+
+    @JsonValue
+    @Override
+    public String toString() {
+        StringBuilder clockAsString = new StringBuilder();
+        for (int i = 0; i < nodes.length; i++) {
+            if (i > 0) {
+                clockAsString.append('_');
+            }
+            clockAsString.append(nodes[i]).append('.').append(counters[i]);
+        }
+        if (dotNode >= 0) {
+            clockAsString.append('~').append(dotNode).append('.').append(dotCounter);
+        }
+        if (timestamp > 0) {
+            clockAsString.append('@').append(timestamp);
+        }
+        return clockAsString.toString();
     }
 }
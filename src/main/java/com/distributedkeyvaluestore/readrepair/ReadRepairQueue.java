@@ -0,0 +1,249 @@
+package com.distributedkeyvaluestore.readrepair;
+
+import com.distributedkeyvaluestore.antientropy.Throttle;
+import com.distributedkeyvaluestore.client.StreamingReplicaClient;
+import com.distributedkeyvaluestore.client.URIHelper;
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.keyvalue.CommonMultipartFile;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import com.distributedkeyvaluestore.storage.StorageEngine;
+import com.distributedkeyvaluestore.storage.StoredValue;
+import com.distributedkeyvaluestore.transport.ReplicaTransport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Repairs the replicas a read found lagging behind in the background, so that the client gets its response as
+ * soon as the read quorum is reconciled. Repairs wait in a bounded queue holding at most one repair per key: a
+ * key read again before its repair ran adds its lagging replicas to the waiting repair. A repair which does not
+ * fit in the queue is dropped and left to anti-entropy.
+ * <p>
+ * Only {@code readrepair.chance} of the reads which found lagging replicas schedule a repair, and repairs are
+ * sent at most at {@code readrepair.max-repairs-per-second} and {@code readrepair.max-bytes-per-second}
+ */
+@Component
+public class ReadRepairQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadRepairQueue.class);
+
+    private final HashManager<DynamoNode> hashManager;
+    private final StorageEngine storageEngine;
+    private final ReplicaTransport replicaTransport;
+    private final StreamingReplicaClient streamingReplicaClient;
+    private final Map<String, Repair> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> queue;
+    private final int threads;
+    private final double chance;
+    private final Throttle repairThrottle;
+    private final Throttle bytesThrottle;
+    private final Counter lagging;
+    private final Counter repaired;
+    private final Counter failed;
+    private final Counter dropped;
+    private final Counter skipped;
+    private ExecutorService workers;
+
+    public ReadRepairQueue(HashManager<DynamoNode> hashManager, StorageEngine storageEngine,
+                           ReplicaTransport replicaTransport, StreamingReplicaClient streamingReplicaClient,
+                           MeterRegistry meterRegistry,
+                           @Value("${readrepair.chance:1.0}") double chance,
+                           @Value("${readrepair.queue-capacity:1000}") int queueCapacity,
+                           @Value("${readrepair.threads:2}") int threads,
+                           @Value("${readrepair.max-repairs-per-second:100}") double maxRepairsPerSecond,
+                           @Value("${readrepair.max-bytes-per-second:10485760}") double maxBytesPerSecond) {
+        this.hashManager = hashManager;
+        this.storageEngine = storageEngine;
+        this.replicaTransport = replicaTransport;
+        this.streamingReplicaClient = streamingReplicaClient;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.threads = threads;
+        this.chance = chance;
+        this.repairThrottle = new Throttle(maxRepairsPerSecond);
+        this.bytesThrottle = new Throttle(maxBytesPerSecond);
+
+        this.lagging = Counter.builder("readrepair.lagging")
+                .description("Replicas found lagging behind by reads, whether or not their repair was scheduled")
+                .register(meterRegistry);
+        this.repaired = Counter.builder("readrepair.repaired")
+                .description("Lagging replicas updated by read repair")
+                .register(meterRegistry);
+        this.failed = Counter.builder("readrepair.failed")
+                .description("Read repairs of a replica which failed")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("readrepair.dropped")
+                .description("Read repairs dropped because the queue was full")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("readrepair.skipped")
+                .description("Reads with lagging replicas which did not schedule a repair (readrepair.chance)")
+                .register(meterRegistry);
+        Gauge.builder("readrepair.queue.depth", pending, Map::size)
+                .description("Keys waiting for read repair")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "read-repair-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::run);
+        }
+    }
+
+    /**
+     * Method to schedule the repair of the replicas a read found lagging behind
+     *
+     * @param fileName           the key (file name) of the object
+     * @param latest             the latest version found by the read, its node is the replica holding it
+     * @param nodesLaggingBehind the replicas to be updated
+     */
+    public void submit(String fileName, FileWithVectorClock latest, List<DynamoNode> nodesLaggingBehind) {
+        if (nodesLaggingBehind.isEmpty()) {
+            return;
+        }
+        lagging.increment(nodesLaggingBehind.size());
+        if (chance < 1 && ThreadLocalRandom.current().nextDouble() >= chance) {
+            skipped.increment();
+            return;
+        }
+        boolean[] added = new boolean[1];
+        pending.compute(fileName, (key, waiting) -> {
+            if (waiting == null) {
+                added[0] = true;
+                return new Repair(latest, nodesLaggingBehind);
+            }
+            return waiting.merge(latest, nodesLaggingBehind);
+        });
+        if (added[0] && !queue.offer(fileName)) {
+            pending.remove(fileName);
+            dropped.increment();
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            String fileName;
+            try {
+                fileName = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Repair repair = pending.remove(fileName);
+            if (repair != null) {
+                repair(fileName, repair);
+            }
+        }
+    }
+
+    private void repair(String fileName, Repair repair) {
+        Optional<DynamoNode> self = hashManager.getAllNodes().stream().filter(DynamoNode::isSelfAware).findFirst();
+        boolean latestIsLocal = self.isPresent() && self.get().getAddress().equals(repair.getLatest().getNode());
+        for (DynamoNode node : repair.getNodes().values()) {
+            repairThrottle.acquire(1);
+            try {
+                if (latestIsLocal) {
+                    // the local copy is streamed as stored, instead of round-tripping binary data through a String
+                    repairFromLocalCopy(fileName, folderOf(self.get()), node);
+                } else {
+                    byte[] value = repair.getLatest().getFile().getBytes(StandardCharsets.UTF_8);
+                    bytesThrottle.acquire(value.length);
+                    replicaTransport.storeToReplicaUsingVectorClock(node, new CommonMultipartFile(value, fileName),
+                            folderOf(node), repair.getLatest().getVectorClock().toString());
+                }
+                repaired.increment();
+            } catch (Exception e) {
+                failed.increment();
+                logger.warn("Read repair of {} on {} failed: {}", fileName, node.getAddress(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sends the value stored here, which is at least as new as the version the read found
+     */
+    private void repairFromLocalCopy(String fileName, String localFolder, DynamoNode node) {
+        List<StoredValue> siblings = storageEngine.open(localFolder, fileName);
+        try {
+            try {
+                for (StoredValue value : siblings) {
+                    bytesThrottle.acquire(value.getLength());
+                    streamingReplicaClient.storeToReplicaUsingVectorClock(URIHelper.createURI(node.getAddress()),
+                            folderOf(node), fileName, value::openStream, value.getLength(),
+                            value.getVectorClock().toString());
+                }
+            } finally {
+                StoredValue.closeAll(siblings);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String folderOf(DynamoNode node) {
+        return node.getAddress().replaceAll("\\.", "_");
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * The latest version found for a key and the replicas to be updated with it, by address
+     */
+    private static class Repair {
+
+        private final FileWithVectorClock latest;
+        private final Map<String, DynamoNode> nodes = new LinkedHashMap<>();
+
+        Repair(FileWithVectorClock latest, List<DynamoNode> nodes) {
+            this.latest = latest;
+            nodes.forEach(node -> this.nodes.put(node.getAddress(), node));
+        }
+
+        /**
+         * @return a repair with the newer of both versions, for the replicas of both
+         */
+        Repair merge(FileWithVectorClock otherLatest, List<DynamoNode> otherNodes) {
+            Repair merged = new Repair(otherLatest.getVectorClock().dominates(latest.getVectorClock())
+                    ? otherLatest : latest, otherNodes);
+            nodes.forEach(merged.nodes::putIfAbsent);
+            return merged;
+        }
+
+        FileWithVectorClock getLatest() {
+            return latest;
+        }
+
+        Map<String, DynamoNode> getNodes() {
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.distributedkeyvaluestore.resolver;
+
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the sibling written last according to the clock of its coordinator. Siblings written at the same
+ * millisecond are ordered by their vector clock, so that every coordinator picks the same one
+ */
+@Component
+public class LastWriterWinsResolver implements SiblingResolver {
+
+    @Override
+    public String getName() {
+        return "lww";
+    }
+
+    @Override
+    public String resolve(String key, List<FileWithVectorClock> siblings) {
+        return siblings.stream()
+                .max(Comparator.<FileWithVectorClock>comparingLong(sibling -> sibling.getVectorClock().getTimestamp())
+                        .thenComparing(sibling -> sibling.getVectorClock().toString()))
+                .map(FileWithVectorClock::getFile)
+                .orElse(null);
+    }
+}
@@ -0,0 +1,39 @@
+package com.distributedkeyvaluestore.resolver;
+
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the largest value, which makes a key holding a number a max register. Values are compared as numbers
+ * when all of them are numbers, and as strings otherwise
+ */
+@Component
+public class MaxValueResolver implements SiblingResolver {
+
+    @Override
+    public String getName() {
+        return "max";
+    }
+
+    @Override
+    public String resolve(String key, List<FileWithVectorClock> siblings) {
+        List<String> values = siblings.stream().map(FileWithVectorClock::getFile).toList();
+        Comparator<String> order = values.stream().allMatch(MaxValueResolver::isNumber)
+                ? Comparator.comparing(value -> new BigDecimal(value.trim()))
+                : Comparator.naturalOrder();
+        return values.stream().max(order).orElse(null);
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            new BigDecimal(value.trim());
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
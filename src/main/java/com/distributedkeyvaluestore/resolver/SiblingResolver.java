@@ -0,0 +1,27 @@
+package com.distributedkeyvaluestore.resolver;
+
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+
+import java.util.List;
+
+/**
+ * Server-side merge of the concurrent versions (siblings) of an object found by a read. The merged value is
+ * written back by the coordinator as a version replacing all the siblings, so that the key converges without
+ * the client writing it. Implementations are Spring beans, the one used is selected with {@code siblings.resolver}
+ */
+public interface SiblingResolver {
+
+    /**
+     * @return the name selecting the resolver in {@code siblings.resolver}
+     */
+    String getName();
+
+    /**
+     * Method to merge the siblings of an object
+     *
+     * @param key      the key (file name) of the object
+     * @param siblings the concurrent versions, at least two
+     * @return the merged value, or null to return the siblings to the client
+     */
+    String resolve(String key, List<FileWithVectorClock> siblings);
+}
@@ -0,0 +1,53 @@
+package com.distributedkeyvaluestore.resolver;
+
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Selects the {@link SiblingResolver} named by {@code siblings.resolver} among the resolver beans. With
+ * {@code none} siblings are always returned to the client
+ */
+@Component
+public class SiblingResolvers {
+
+    private static final String NONE = "none";
+
+    private final SiblingResolver resolver;
+    private final Counter resolved;
+    private final Counter returned;
+
+    public SiblingResolvers(List<SiblingResolver> resolvers, MeterRegistry meterRegistry,
+                            @Value("${siblings.resolver:none}") String name) {
+        this.resolver = NONE.equalsIgnoreCase(name) ? null : resolvers.stream()
+                .filter(candidate -> candidate.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown sibling resolver " + name));
+
+        this.resolved = Counter.builder("siblings.resolved")
+                .description("Reads whose siblings were merged by the sibling resolver")
+                .register(meterRegistry);
+        this.returned = Counter.builder("siblings.returned")
+                .description("Reads which returned siblings to the client")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Method to merge the siblings found by a read with the configured resolver
+     *
+     * @return the merged value, or null if the siblings are returned to the client
+     */
+    public String resolve(String key, List<FileWithVectorClock> siblings) {
+        String value = resolver != null ? resolver.resolve(key, siblings) : null;
+        if (value != null) {
+            resolved.increment();
+        } else {
+            returned.increment();
+        }
+        return value;
+    }
+}
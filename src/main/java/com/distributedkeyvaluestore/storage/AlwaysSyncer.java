@@ -0,0 +1,24 @@
+package com.distributedkeyvaluestore.storage;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * {@link LogSyncer} of the {@link SyncPolicy#ALWAYS} policy
+ */
+class AlwaysSyncer implements LogSyncer {
+
+    @Override
+    public void awaitDurable(Segment segment) throws IOException {
+        try {
+            segment.force();
+        } catch (ClosedChannelException e) {
+            // the segment was forced when it was sealed, before compaction could close it
+        }
+    }
+
+    @Override
+    public void close() {
+
+    }
+}
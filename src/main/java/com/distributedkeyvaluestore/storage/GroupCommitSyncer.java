@@ -0,0 +1,135 @@
+package com.distributedkeyvaluestore.storage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link LogSyncer} of the {@link SyncPolicy#GROUP_COMMIT} policy. A flusher thread waits for the first
+ * pending write, lets further writers join the group for at most the configured delay, and then issues a
+ * single force for the whole group
+ */
+class GroupCommitSyncer implements LogSyncer {
+
+    private final long maxDelayNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition writesPending = lock.newCondition();
+    private final List<PendingSync> pending = new ArrayList<>();
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    GroupCommitSyncer(long maxDelayMicros) {
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.flusher = new Thread(this::run, "segment-log-group-commit");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public void awaitDurable(Segment segment) throws IOException {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Segment log is closed");
+            }
+            pending.add(new PendingSync(segment, durable));
+            writesPending.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            durable.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for group commit");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private void run() {
+        while (true) {
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    writesPending.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (maxDelayNanos > 0) {
+                LockSupport.parkNanos(maxDelayNanos);
+            }
+
+            List<PendingSync> group;
+            lock.lock();
+            try {
+                group = new ArrayList<>(pending);
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+            commit(group);
+        }
+    }
+
+    private void commit(List<PendingSync> group) {
+        Set<Segment> segments = new LinkedHashSet<>();
+        group.forEach(pendingSync -> segments.add(pendingSync.segment()));
+
+        IOException failure = null;
+        for (Segment segment : segments) {
+            try {
+                segment.force();
+            } catch (ClosedChannelException e) {
+                // the segment was forced when it was sealed, before compaction could close it
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        for (PendingSync pendingSync : group) {
+            if (failure == null) {
+                pendingSync.durable().complete(null);
+            } else {
+                pendingSync.durable().completeExceptionally(failure);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            writesPending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record PendingSync(Segment segment, CompletableFuture<Void> durable) {
+
+    }
+}
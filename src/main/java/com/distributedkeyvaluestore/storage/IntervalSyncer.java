@@ -0,0 +1,56 @@
+package com.distributedkeyvaluestore.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link LogSyncer} of the {@link SyncPolicy#INTERVAL} policy
+ */
+class IntervalSyncer implements LogSyncer {
+
+    private static final Logger logger = LoggerFactory.getLogger(IntervalSyncer.class);
+
+    private final AtomicReference<Segment> dirty = new AtomicReference<>();
+    private final ScheduledExecutorService scheduler;
+
+    IntervalSyncer(long intervalMillis) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "segment-log-interval-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sync, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void awaitDurable(Segment segment) {
+        dirty.set(segment);
+    }
+
+    private void sync() {
+        Segment segment = dirty.getAndSet(null);
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.force();
+        } catch (ClosedChannelException e) {
+            // the segment was forced when it was sealed, before compaction could close it
+        } catch (IOException e) {
+            logger.error("Periodic sync of segment {} failed", segment.getId(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        sync();
+    }
+}
@@ -0,0 +1,215 @@
+package com.distributedkeyvaluestore.storage;
+
+import com.distributedkeyvaluestore.exception.ReadException;
+import com.distributedkeyvaluestore.exception.WriteException;
+import com.distributedkeyvaluestore.models.KeyWithVectorClock;
+import com.distributedkeyvaluestore.models.VectorClock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link StorageEngine} which appends every object and its vector clock as a single record to the
+ * segment files of the node's data folder, keeping an in-memory index from key to record. The time taken by
+ * every write, including waiting for its sync, and by every read is published as the storage.latency timer
+ */
+@Component
+public class LogStructuredStorageEngine implements StorageEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogStructuredStorageEngine.class);
+
+    private final Map<String, SegmentLog> logs = new ConcurrentHashMap<>();
+    private final long maxSegmentBytes;
+    private final double compactionLiveRatio;
+    private final SyncPolicy syncPolicy;
+    private final long groupCommitMaxDelayMicros;
+    private final long syncIntervalMillis;
+    private final Timer writeTimer;
+    private final Timer readTimer;
+    private final Timer openTimer;
+
+    public LogStructuredStorageEngine(MeterRegistry meterRegistry,
+                                      @Value("${storage.segment-size-bytes:67108864}") long maxSegmentBytes,
+                                      @Value("${storage.compaction-live-ratio:0.5}") double compactionLiveRatio,
+                                      @Value("${storage.sync-policy:group-commit}") String syncPolicy,
+                                      @Value("${storage.group-commit-max-delay-micros:1000}") long groupCommitMaxDelayMicros,
+                                      @Value("${storage.sync-interval-ms:1000}") long syncIntervalMillis) {
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.compactionLiveRatio = compactionLiveRatio;
+        this.syncPolicy = SyncPolicy.fromName(syncPolicy);
+        this.groupCommitMaxDelayMicros = groupCommitMaxDelayMicros;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.writeTimer = latencyTimer(meterRegistry, "write");
+        this.readTimer = latencyTimer(meterRegistry, "read");
+        this.openTimer = latencyTimer(meterRegistry, "open");
+    }
+
+    private static Timer latencyTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("storage.latency")
+                .description("Time taken by the reads and writes of the local segment files")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void recover(String folder) {
+        try {
+            log(folder);
+        } catch (UncheckedIOException e) {
+            logger.error("Recovery of folder {} failed", folder, e);
+            throw new ReadException("Recovery of folder " + folder + " failed");
+        }
+    }
+
+    @Override
+    public void write(String folder, String key, byte[] value, VectorClock vectorClock) {
+        write(folder, key, value, current -> vectorClock);
+    }
+
+    @Override
+    public VectorClock write(String folder, String key, byte[] value, UnaryOperator<VectorClock> clockUpdate) {
+        long start = System.nanoTime();
+        try {
+            return log(folder).append(key, value, clockUpdate);
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Write of {} to folder {} failed", key, folder, e);
+            throw new WriteException("Write operation failed: File write failed");
+        } finally {
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public VectorClock write(String folder, String key, InputStream value, long length,
+                             UnaryOperator<VectorClock> clockUpdate) {
+        if (length > Integer.MAX_VALUE) {
+            throw new WriteException("Write operation failed: File larger than 2GB");
+        }
+        long start = System.nanoTime();
+        try {
+            return log(folder).append(key, Channels.newChannel(value), (int) length, clockUpdate);
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Write of {} to folder {} failed", key, folder, e);
+            throw new WriteException("Write operation failed: File write failed");
+        } finally {
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<StoredObject> read(String folder, String key) {
+        long start = System.nanoTime();
+        try {
+            return log(folder).read(key);
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Read of {} from folder {} failed", key, folder, e);
+            throw new ReadException("Read operation failed: File read failed");
+        } finally {
+            readTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<StoredValue> open(String folder, String key) {
+        long start = System.nanoTime();
+        try {
+            return log(folder).open(key);
+        } catch (UncheckedIOException e) {
+            logger.error("Read of {} from folder {} failed", key, folder, e);
+            throw new ReadException("Read operation failed: File read failed");
+        } finally {
+            openTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Optional<VectorClock> readVectorClock(String folder, String key) {
+        try {
+            return log(folder).readVectorClock(key);
+        } catch (UncheckedIOException e) {
+            logger.error("Read of the vector clock of {} from folder {} failed", key, folder, e);
+            throw new ReadException("Read operation failed: Reading vector clock failed");
+        }
+    }
+
+    @Override
+    public List<String> keys(String folder) {
+        try {
+            return log(folder).keys();
+        } catch (UncheckedIOException e) {
+            logger.error("Listing the keys of folder {} failed", folder, e);
+            throw new ReadException("Read operation failed: Listing keys failed");
+        }
+    }
+
+    @Override
+    public List<KeyWithVectorClock> scan(String folder, String prefix, String startAfter, int limit) {
+        try {
+            return log(folder).scan(prefix, startAfter, limit);
+        } catch (UncheckedIOException e) {
+            logger.error("Scan of folder {} failed", folder, e);
+            throw new ReadException("Read operation failed: Listing keys failed");
+        }
+    }
+
+    @Scheduled(initialDelayString = "${storage.compaction-interval-ms:60000}",
+            fixedDelayString = "${storage.compaction-interval-ms:60000}")
+    public void compact() {
+        logs.forEach((folder, log) -> {
+            try {
+                log.compact(compactionLiveRatio);
+            } catch (Exception e) {
+                logger.error("Compaction of folder {} failed", folder, e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        logs.forEach((folder, log) -> {
+            try {
+                log.close();
+            } catch (IOException e) {
+                logger.error("Closing folder {} failed", folder, e);
+            }
+        });
+    }
+
+    private LogSyncer newSyncer() {
+        return switch (syncPolicy) {
+            case ALWAYS -> new AlwaysSyncer();
+            case GROUP_COMMIT -> new GroupCommitSyncer(groupCommitMaxDelayMicros);
+            case INTERVAL -> new IntervalSyncer(syncIntervalMillis);
+        };
+    }
+
+    private SegmentLog log(String folder) {
+        return logs.computeIfAbsent(folder, f -> {
+            try {
+                return SegmentLog.open(Path.of(System.getProperty("user.dir") + File.separator + f), maxSegmentBytes,
+                        newSyncer());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
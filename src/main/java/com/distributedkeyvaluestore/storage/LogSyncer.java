@@ -0,0 +1,19 @@
+package com.distributedkeyvaluestore.storage;
+
+import java.io.IOException;
+
+/**
+ * Makes appended records durable according to a {@link SyncPolicy}
+ */
+interface LogSyncer {
+
+    /**
+     * Method called by a writer after appending a record, outside the append lock.
+     * Returns once the record is durable under the policy of the syncer
+     *
+     * @param segment the segment the record was appended to
+     */
+    void awaitDurable(Segment segment) throws IOException;
+
+    void close();
+}
@@ -0,0 +1,39 @@
+package com.distributedkeyvaluestore.storage;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Layout of a single record in a segment file:
+ * <pre>
+ * | crc (4) | key length (4) | clock length (4) | value length (4) | key | clock | value |
+ * </pre>
+ * The checksum covers everything after itself, so a record torn by a crash is detected on recovery
+ */
+final class Record {
+
+    static final int HEADER_SIZE = 16;
+
+    private Record() {
+
+    }
+
+    static ByteBuffer[] encode(byte[] key, byte[] clock, byte[] value) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0).putInt(key.length).putInt(clock.length).putInt(value.length);
+
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 4, HEADER_SIZE - 4);
+        crc.update(key);
+        crc.update(clock);
+        crc.update(value);
+        header.putInt(0, (int) crc.getValue());
+        header.flip();
+
+        return new ByteBuffer[]{header, ByteBuffer.wrap(key), ByteBuffer.wrap(clock), ByteBuffer.wrap(value)};
+    }
+
+    static long length(int keyLength, int clockLength, int valueLength) {
+        return (long) HEADER_SIZE + keyLength + clockLength + valueLength;
+    }
+}
@@ -0,0 +1,62 @@
+package com.distributedkeyvaluestore.storage;
+
+import com.distributedkeyvaluestore.models.VectorClock;
+
+/**
+ * In-memory index entry which locates a record of a key inside a segment, together with its vector clock
+ */
+class RecordPointer {
+
+    private final Segment segment;
+    private final long offset;
+    private final int keyLength;
+    private final int clockLength;
+    private final int valueLength;
+    private final VectorClock vectorClock;
+
+    RecordPointer(Segment segment, long offset, int keyLength, int clockLength, int valueLength,
+                  VectorClock vectorClock) {
+        this.segment = segment;
+        this.offset = offset;
+        this.keyLength = keyLength;
+        this.clockLength = clockLength;
+        this.valueLength = valueLength;
+        this.vectorClock = vectorClock;
+    }
+
+    Segment getSegment() {
+        return segment;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    long getClockOffset() {
+        return offset + Record.HEADER_SIZE + keyLength;
+    }
+
+    long getValueOffset() {
+        return getClockOffset() + clockLength;
+    }
+
+    int getKeyLength() {
+        return keyLength;
+    }
+
+    int getClockLength() {
+        return clockLength;
+    }
+
+    int getValueLength() {
+        return valueLength;
+    }
+
+    VectorClock getVectorClock() {
+        return vectorClock;
+    }
+
+    long getRecordLength() {
+        return Record.length(keyLength, clockLength, valueLength);
+    }
+}
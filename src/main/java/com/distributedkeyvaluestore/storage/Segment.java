@@ -0,0 +1,228 @@
+package com.distributedkeyvaluestore.storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only segment file of a {@link SegmentLog}. The log holds one reference to every segment it
+ * owns and each reader holds another while it reads, so a compacted segment is deleted once the last
+ * reader is done with it
+ */
+class Segment {
+
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile long size;
+
+    private Segment(long id, Path path, FileChannel channel) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    static Segment open(Path directory, long id) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        boolean created = Files.notExists(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (created) {
+            // forcing the segment does not make its directory entry durable, a crash would lose the whole file
+            forceDirectory(directory);
+        }
+        return new Segment(id, path, channel);
+    }
+
+    /**
+     * Forces the entries of a directory, the files created in it or deleted from it, to disk
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    static String fileName(long id) {
+        return String.format("segment-%020d.log", id);
+    }
+
+    /**
+     * Appends the buffers at the end of the segment. Callers must serialize appends
+     *
+     * @return the offset at which the buffers were written
+     */
+    long append(ByteBuffer[] buffers) throws IOException {
+        long offset = size;
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        channel.position(offset);
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        size = channel.position();
+        return offset;
+    }
+
+    /**
+     * Appends a record whose value is copied from a channel through a bounded buffer, so that values of any
+     * size are written without being held in memory. Callers must serialize appends
+     *
+     * @return the offset at which the record was written
+     */
+    long appendRecord(byte[] key, byte[] clock, ReadableByteChannel value, int valueLength) throws IOException {
+        long offset = size;
+        ByteBuffer header = ByteBuffer.allocate(Record.HEADER_SIZE);
+        header.putInt(0).putInt(key.length).putInt(clock.length).putInt(valueLength);
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 4, Record.HEADER_SIZE - 4);
+        crc.update(key);
+        crc.update(clock);
+
+        try {
+            long position = offset + Record.HEADER_SIZE;
+            position += writeFully(ByteBuffer.wrap(key), position);
+            position += writeFully(ByteBuffer.wrap(clock), position);
+
+            ByteBuffer chunk = ByteBuffer.allocateDirect(COPY_CHUNK_SIZE);
+            long remaining = valueLength;
+            while (remaining > 0) {
+                chunk.clear();
+                chunk.limit((int) Math.min(COPY_CHUNK_SIZE, remaining));
+                if (value.read(chunk) < 0) {
+                    throw new EOFException("Value ended " + remaining + " bytes before its announced length");
+                }
+                chunk.flip();
+                crc.update(chunk);
+                chunk.rewind();
+                int written = writeFully(chunk, position);
+                position += written;
+                remaining -= written;
+            }
+
+            // the header goes last, so a record torn by a crash fails its checksum on recovery
+            header.putInt(0, (int) crc.getValue());
+            header.flip();
+            writeFully(header, offset);
+            size = position;
+            return offset;
+        } catch (IOException e) {
+            channel.truncate(offset);
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a byte range of another segment without copying it through the heap. Callers must serialize appends
+     *
+     * @return the offset at which the range was written
+     */
+    long appendFrom(Segment source, long position, long count) throws IOException {
+        long offset = size;
+        channel.position(offset);
+        long transferred = 0;
+        while (transferred < count) {
+            transferred += source.channel.transferTo(position + transferred, count - transferred, channel);
+        }
+        size = channel.position();
+        return offset;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Copies a byte range of the segment to a channel with {@link FileChannel#transferTo}, which only avoids
+     * copying through user space when the target is a file or socket channel
+     */
+    void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            transferred += channel.transferTo(position + transferred, count - transferred, target);
+        }
+    }
+
+    private int writeFully(ByteBuffer source, long position) throws IOException {
+        int written = 0;
+        while (source.hasRemaining()) {
+            written += channel.write(source, position + written);
+        }
+        return written;
+    }
+
+    void readFully(ByteBuffer destination, long position) throws IOException {
+        while (destination.hasRemaining()) {
+            int read = channel.read(destination, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of segment " + path);
+            }
+            position += read;
+        }
+    }
+
+    void truncate(long newSize) throws IOException {
+        channel.truncate(newSize);
+        size = newSize;
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Takes a reference that keeps the segment from being deleted
+     *
+     * @return false if the segment was already released by its log and its last reader
+     */
+    boolean retain() {
+        while (true) {
+            int current = references.get();
+            if (current == 0) {
+                return false;
+            }
+            if (references.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drops a reference, deleting the segment file when it was the last one
+     */
+    void release() throws IOException {
+        if (references.decrementAndGet() == 0) {
+            channel.close();
+            Files.deleteIfExists(path);
+            forceDirectory(path.getParent());
+        }
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    AtomicLong getLiveBytes() {
+        return liveBytes;
+    }
+}
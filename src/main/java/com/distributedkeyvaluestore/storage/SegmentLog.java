@@ -0,0 +1,427 @@
+package com.distributedkeyvaluestore.storage;
+
+import com.distributedkeyvaluestore.models.KeyWithVectorClock;
+import com.distributedkeyvaluestore.models.VectorClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Log-structured store of a single data folder. Every write is one append of a {@link Record} to the active
+ * segment, and an in-memory index, a skip list ordered by key for scans, maps each key to its live records.
+ * Segments that are mostly overwritten records are compacted by copying their live records to the active
+ * segment and deleting the old file.
+ * <p>
+ * A key has several live records when concurrent versions of it were written, which are kept as siblings: a
+ * record replaces the records whose vector clocks its clock descends from, and is kept next to the records
+ * concurrent with it. As this only depends on the clocks, replaying the records rebuilds the same siblings.
+ * <p>
+ * The segments double as the write-ahead log of the folder: a write returns once its record is durable
+ * under the {@link LogSyncer} of the log, and {@link #open} replays the segments to rebuild the index
+ */
+class SegmentLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLog.class);
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{20})\\.log");
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String SPOOL_PREFIX = "spool-";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final LogSyncer syncer;
+    private final ConcurrentNavigableMap<String, List<RecordPointer>> index = new ConcurrentSkipListMap<>();
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    // serializes appends, including the records copied by compaction
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private volatile Segment active;
+
+    private SegmentLog(Path directory, long maxSegmentBytes, LogSyncer syncer) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.syncer = syncer;
+    }
+
+    static SegmentLog open(Path directory, long maxSegmentBytes, LogSyncer syncer) throws IOException {
+        if (Files.notExists(directory)) {
+            Files.createDirectories(directory);
+            Segment.forceDirectory(directory.toAbsolutePath().getParent());
+        }
+        SegmentLog log = new SegmentLog(directory, maxSegmentBytes, syncer);
+        log.recover();
+        return log;
+    }
+
+    private void recover() throws IOException {
+        // values being spooled when the node stopped were never acknowledged
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path spool : files.filter(path -> path.getFileName().toString().startsWith(SPOOL_PREFIX)).toList()) {
+                Files.deleteIfExists(spool);
+            }
+        }
+        List<Long> ids;
+        try (Stream<Path> files = Files.list(directory)) {
+            ids = files.map(path -> SEGMENT_NAME.matcher(path.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+
+        for (long id : ids) {
+            Segment segment = Segment.open(directory, id);
+            segments.put(id, segment);
+            long validSize = scan(segment);
+            if (validSize < segment.getSize()) {
+                logger.warn("Truncating torn record in {} at offset {}", Segment.fileName(id), validSize);
+                segment.truncate(validSize);
+            }
+        }
+        active = segments.isEmpty() ? newSegment(1) : segments.lastEntry().getValue();
+    }
+
+    /**
+     * Rebuilds the index from the records of a segment
+     *
+     * @return the offset up to which the segment holds complete, uncorrupted records
+     */
+    private long scan(Segment segment) throws IOException {
+        long position = 0;
+        long size = segment.getSize();
+        ByteBuffer header = ByteBuffer.allocate(Record.HEADER_SIZE);
+
+        while (position + Record.HEADER_SIZE <= size) {
+            header.clear();
+            segment.readFully(header, position);
+            int crc = header.getInt(0);
+            int keyLength = header.getInt(4);
+            int clockLength = header.getInt(8);
+            int valueLength = header.getInt(12);
+            if (keyLength < 0 || clockLength < 0 || valueLength < 0) {
+                break;
+            }
+            long recordLength = Record.length(keyLength, clockLength, valueLength);
+            if (position + recordLength > size || checksum(segment, header, position, recordLength) != crc) {
+                break;
+            }
+
+            ByteBuffer keyAndClock = ByteBuffer.allocate(keyLength + clockLength);
+            segment.readFully(keyAndClock, position + Record.HEADER_SIZE);
+            VectorClock vectorClock = VectorClock.fromBytes(
+                    Arrays.copyOfRange(keyAndClock.array(), keyLength, keyLength + clockLength));
+            updateIndex(new String(keyAndClock.array(), 0, keyLength, StandardCharsets.UTF_8),
+                    new RecordPointer(segment, position, keyLength, clockLength, valueLength, vectorClock));
+            position += recordLength;
+        }
+        return position;
+    }
+
+    private int checksum(Segment segment, ByteBuffer header, long position, long recordLength) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 4, Record.HEADER_SIZE - 4);
+
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        long offset = position + Record.HEADER_SIZE;
+        long end = position + recordLength;
+        while (offset < end) {
+            chunk.clear();
+            chunk.limit((int) Math.min(CHUNK_SIZE, end - offset));
+            segment.readFully(chunk, offset);
+            crc.update(chunk.array(), 0, chunk.limit());
+            offset += chunk.limit();
+        }
+        return (int) crc.getValue();
+    }
+
+    VectorClock append(String key, byte[] value, UnaryOperator<VectorClock> clockUpdate) throws IOException {
+        return append(key, value.length, clockUpdate,
+                (segment, keyBytes, clockBytes) -> segment.append(Record.encode(keyBytes, clockBytes, value)));
+    }
+
+    /**
+     * Appends a record whose value is read from a channel. The value is first spooled to a file of the folder
+     * without holding the append lock, so that a slow or stalled sender only delays its own write, and copied
+     * into the segment from there under the lock
+     */
+    VectorClock append(String key, ReadableByteChannel value, int valueLength,
+                       UnaryOperator<VectorClock> clockUpdate) throws IOException {
+        Path spool = Files.createTempFile(directory, SPOOL_PREFIX, ".tmp");
+        try (FileChannel spooled = FileChannel.open(spool, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            spool(value, spooled, valueLength);
+            spooled.position(0);
+            return append(key, valueLength, clockUpdate,
+                    (segment, keyBytes, clockBytes) -> segment.appendRecord(keyBytes, clockBytes, spooled,
+                            valueLength));
+        }
+    }
+
+    private static void spool(ReadableByteChannel value, FileChannel spooled, int valueLength) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        long remaining = valueLength;
+        while (remaining > 0) {
+            chunk.clear();
+            chunk.limit((int) Math.min(CHUNK_SIZE, remaining));
+            if (value.read(chunk) < 0) {
+                throw new EOFException("Value ended " + remaining + " bytes before its announced length");
+            }
+            chunk.flip();
+            remaining -= chunk.remaining();
+            while (chunk.hasRemaining()) {
+                spooled.write(chunk);
+            }
+        }
+    }
+
+    private VectorClock append(String key, int valueLength, UnaryOperator<VectorClock> clockUpdate,
+                               RecordAppender appender) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        VectorClock vectorClock;
+        Segment segment;
+        appendLock.lock();
+        try {
+            List<RecordPointer> siblings = index.getOrDefault(key, List.of());
+            vectorClock = clockUpdate.apply(siblings.isEmpty() ? null : merge(siblings));
+            if (isObsolete(siblings, vectorClock)) {
+                // a version stored here already has every event of the written one
+                return vectorClock;
+            }
+            byte[] clockBytes = vectorClock.toBytes();
+
+            rollIfFull();
+            segment = active;
+            long offset = appender.append(segment, keyBytes, clockBytes);
+            updateIndex(key, new RecordPointer(segment, offset, keyBytes.length, clockBytes.length, valueLength,
+                    vectorClock));
+        } finally {
+            appendLock.unlock();
+        }
+        // waiting outside the append lock lets concurrent writers share one force
+        syncer.awaitDurable(segment);
+        return vectorClock;
+    }
+
+    List<StoredObject> read(String key) throws IOException {
+        List<RecordPointer> pointers = retain(key);
+        try {
+            List<StoredObject> objects = new ArrayList<>(pointers.size());
+            for (RecordPointer pointer : pointers) {
+                ByteBuffer value = ByteBuffer.allocate(pointer.getValueLength());
+                pointer.getSegment().readFully(value, pointer.getValueOffset());
+                objects.add(new StoredObject(value.array(), pointer.getVectorClock()));
+            }
+            return objects;
+        } finally {
+            release(pointers);
+        }
+    }
+
+    /**
+     * Opens a handle per sibling of a key which streams its value. The caller must close the handles
+     */
+    List<StoredValue> open(String key) {
+        return retain(key).stream()
+                .map(pointer -> new StoredValue(pointer.getSegment(), pointer.getValueOffset(),
+                        pointer.getValueLength(), pointer.getVectorClock()))
+                .toList();
+    }
+
+    /**
+     * @return the vector clock of a key, merged from the clocks of its siblings when it has several
+     */
+    Optional<VectorClock> readVectorClock(String key) {
+        List<RecordPointer> siblings = index.get(key);
+        return siblings == null ? Optional.empty() : Optional.of(merge(siblings));
+    }
+
+    List<String> keys() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * @return the first {@code limit} keys starting with the prefix and greater than {@code startAfter}, in
+     * order, with their merged vector clocks
+     */
+    List<KeyWithVectorClock> scan(String prefix, String startAfter, int limit) {
+        NavigableMap<String, List<RecordPointer>> range = startAfter != null && startAfter.compareTo(prefix) >= 0
+                ? index.tailMap(startAfter, false)
+                : index.tailMap(prefix, true);
+        List<KeyWithVectorClock> keys = new ArrayList<>();
+        for (Map.Entry<String, List<RecordPointer>> entry : range.entrySet()) {
+            if (keys.size() == limit || !entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            keys.add(new KeyWithVectorClock(entry.getKey(), merge(entry.getValue())));
+        }
+        return keys;
+    }
+
+    private static VectorClock merge(List<RecordPointer> siblings) {
+        VectorClock merged = siblings.get(0).getVectorClock();
+        for (int i = 1; i < siblings.size(); i++) {
+            merged = merged.merge(siblings.get(i).getVectorClock());
+        }
+        return merged;
+    }
+
+    private static boolean isObsolete(List<RecordPointer> siblings, VectorClock vectorClock) {
+        return siblings.stream().anyMatch(sibling -> sibling.getVectorClock().descends(vectorClock));
+    }
+
+    /**
+     * Looks up the records of a key and takes a reference on their segments. If compaction released a segment
+     * in between, the index already points to the copied record and the lookup is retried
+     */
+    private List<RecordPointer> retain(String key) {
+        while (true) {
+            List<RecordPointer> pointers = index.getOrDefault(key, List.of());
+            int retained = 0;
+            while (retained < pointers.size() && pointers.get(retained).getSegment().retain()) {
+                retained++;
+            }
+            if (retained == pointers.size()) {
+                return pointers;
+            }
+            try {
+                release(pointers.subList(0, retained));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static void release(List<RecordPointer> pointers) throws IOException {
+        for (RecordPointer pointer : pointers) {
+            pointer.getSegment().release();
+        }
+    }
+
+    /**
+     * Compacts every sealed segment whose share of live records dropped below the given ratio
+     *
+     * @param liveRatioThreshold segments with a smaller ratio of live bytes to total bytes are compacted
+     */
+    void compact(double liveRatioThreshold) throws IOException {
+        for (Segment segment : segments.values()) {
+            if (segment == active || segment.getSize() == 0) {
+                continue;
+            }
+            double liveRatio = (double) segment.getLiveBytes().get() / segment.getSize();
+            if (liveRatio < liveRatioThreshold) {
+                compact(segment);
+            }
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        List<Map.Entry<String, RecordPointer>> liveRecords = index.entrySet().stream()
+                .flatMap(entry -> entry.getValue().stream()
+                        .filter(pointer -> pointer.getSegment() == segment)
+                        .map(pointer -> Map.entry(entry.getKey(), pointer)))
+                .toList();
+
+        for (Map.Entry<String, RecordPointer> entry : liveRecords) {
+            appendLock.lock();
+            try {
+                RecordPointer pointer = entry.getValue();
+                List<RecordPointer> siblings = index.get(entry.getKey());
+                if (siblings == null || !siblings.contains(pointer)) {
+                    // overwritten since the live records were collected
+                    continue;
+                }
+                rollIfFull();
+                Segment target = active;
+                long offset = target.appendFrom(segment, pointer.getOffset(), pointer.getRecordLength());
+                replaceInIndex(entry.getKey(), pointer, new RecordPointer(target, offset, pointer.getKeyLength(),
+                        pointer.getClockLength(), pointer.getValueLength(), pointer.getVectorClock()));
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        // the copies must be on disk before the only other copy is deleted
+        active.force();
+        segments.remove(segment.getId());
+        segment.release();
+        logger.info("Compacted {} in {}", Segment.fileName(segment.getId()), directory);
+    }
+
+    void close() throws IOException {
+        syncer.close();
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    /**
+     * Indexes a record, which replaces the records of its key it descends from. A record which is older than a
+     * record of its key already indexed is left out
+     */
+    private void updateIndex(String key, RecordPointer pointer) {
+        List<RecordPointer> siblings = index.getOrDefault(key, List.of());
+        if (isObsolete(siblings, pointer.getVectorClock())) {
+            return;
+        }
+        List<RecordPointer> updated = new ArrayList<>(siblings.size() + 1);
+        for (RecordPointer sibling : siblings) {
+            if (pointer.getVectorClock().descends(sibling.getVectorClock())) {
+                sibling.getSegment().getLiveBytes().addAndGet(-sibling.getRecordLength());
+            } else {
+                updated.add(sibling);
+            }
+        }
+        updated.add(pointer);
+        pointer.getSegment().getLiveBytes().addAndGet(pointer.getRecordLength());
+        index.put(key, List.copyOf(updated));
+    }
+
+    private void replaceInIndex(String key, RecordPointer previous, RecordPointer copy) {
+        List<RecordPointer> updated = new ArrayList<>(index.get(key));
+        updated.set(updated.indexOf(previous), copy);
+        copy.getSegment().getLiveBytes().addAndGet(copy.getRecordLength());
+        previous.getSegment().getLiveBytes().addAndGet(-previous.getRecordLength());
+        index.put(key, List.copyOf(updated));
+    }
+
+    private void rollIfFull() throws IOException {
+        if (active.getSize() >= maxSegmentBytes) {
+            // a sealed segment is never forced by the syncer again
+            active.force();
+            active = newSegment(active.getId() + 1);
+        }
+    }
+
+    private Segment newSegment(long id) throws IOException {
+        Segment segment = Segment.open(directory, id);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    @FunctionalInterface
+    private interface RecordAppender {
+        long append(Segment segment, byte[] key, byte[] clock) throws IOException;
+    }
+}
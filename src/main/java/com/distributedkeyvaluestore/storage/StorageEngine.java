@@ -0,0 +1,113 @@
+package com.distributedkeyvaluestore.storage;
+
+import com.distributedkeyvaluestore.models.KeyWithVectorClock;
+import com.distributedkeyvaluestore.models.VectorClock;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+/**
+ * Interface to be used for storing objects and their vector clocks on the local node.
+ * Objects are grouped under a folder, which is the data folder of the node they belong to.
+ * <p>
+ * Concurrent versions of an object are kept as siblings: a write replaces the stored versions its vector clock
+ * descends from, is stored next to the versions concurrent with it, and is dropped when a stored version
+ * already descends from it
+ */
+public interface StorageEngine {
+
+    /**
+     * Method to replay the log of a folder so that everything acknowledged before a restart is readable again.
+     * Must be called before the node starts serving requests for the folder
+     *
+     * @param folder the data folder of the node
+     */
+    void recover(String folder);
+
+    /**
+     * Method to store an object together with its vector clock.
+     * Returns once the object is durable under the configured {@link SyncPolicy}
+     *
+     * @param folder      the data folder of the node
+     * @param key         the key (file name) of the object
+     * @param value       the contents of the object
+     * @param vectorClock the vector clock to be stored with the object
+     */
+    void write(String folder, String key, byte[] value, VectorClock vectorClock);
+
+    /**
+     * Method to store an object with a vector clock derived from the currently stored one.
+     * Reading the current clock and appending the new record happen atomically
+     *
+     * @param folder      the data folder of the node
+     * @param key         the key (file name) of the object
+     * @param value       the contents of the object
+     * @param clockUpdate function receiving the stored vector clock, merged from the siblings (null if the key
+     *                    is new), and returning the vector clock to be stored
+     * @return the vector clock which was stored
+     */
+    VectorClock write(String folder, String key, byte[] value, UnaryOperator<VectorClock> clockUpdate);
+
+    /**
+     * Method to store an object streamed from an input stream, without holding the value in memory
+     *
+     * @param folder      the data folder of the node
+     * @param key         the key (file name) of the object
+     * @param value       stream of the contents of the object
+     * @param length      the number of bytes to be read from the stream
+     * @param clockUpdate function receiving the stored vector clock, merged from the siblings (null if the key
+     *                    is new), and returning the vector clock to be stored
+     * @return the vector clock which was stored
+     */
+    VectorClock write(String folder, String key, InputStream value, long length,
+                      UnaryOperator<VectorClock> clockUpdate);
+
+    /**
+     * Method to read the siblings of an object together with their vector clocks
+     *
+     * @param folder the data folder of the node
+     * @param key    the key (file name) of the object
+     * @return the stored versions, one unless concurrent versions were written, empty if the key is not present
+     */
+    List<StoredObject> read(String folder, String key);
+
+    /**
+     * Method to open a handle per sibling of an object which streams its value from disk. The caller must
+     * close every handle
+     *
+     * @param folder the data folder of the node
+     * @param key    the key (file name) of the object
+     * @return handles to the stored versions, empty if the key is not present
+     */
+    List<StoredValue> open(String folder, String key);
+
+    /**
+     * Method to read only the vector clock of an object
+     *
+     * @param folder the data folder of the node
+     * @param key    the key (file name) of the object
+     * @return the stored vector clock, merged from the siblings, empty if the key is not present
+     */
+    Optional<VectorClock> readVectorClock(String folder, String key);
+
+    /**
+     * Method to list the keys stored in a folder
+     *
+     * @param folder the data folder of the node
+     * @return snapshot of the keys present in the folder
+     */
+    List<String> keys(String folder);
+
+    /**
+     * Method to list the keys of a folder in order, a page at a time
+     *
+     * @param folder     the data folder of the node
+     * @param prefix     prefix of the keys listed, empty for every key
+     * @param startAfter the last key of the previous page, null for the first page
+     * @param limit      maximum number of keys returned
+     * @return the keys with their vector clocks, merged from the siblings
+     */
+    List<KeyWithVectorClock> scan(String folder, String prefix, String startAfter, int limit);
+}
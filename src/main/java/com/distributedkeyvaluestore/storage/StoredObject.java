@@ -0,0 +1,22 @@
+package com.distributedkeyvaluestore.storage;
+
+import com.distributedkeyvaluestore.models.VectorClock;
+
+public class StoredObject {
+
+    private final byte[] value;
+    private final VectorClock vectorClock;
+
+    public StoredObject(byte[] value, VectorClock vectorClock) {
+        this.value = value;
+        this.vectorClock = vectorClock;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public VectorClock getVectorClock() {
+        return vectorClock;
+    }
+}
@@ -0,0 +1,108 @@
+package com.distributedkeyvaluestore.storage;
+
+import com.distributedkeyvaluestore.models.VectorClock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Handle to a stored object which streams its value from the segment it is stored in instead of loading
+ * it into memory. The handle keeps the segment from being deleted by compaction until it is closed
+ */
+public class StoredValue implements Closeable {
+
+    private final Segment segment;
+    private final long valueOffset;
+    private final long length;
+    private final VectorClock vectorClock;
+    private boolean closed;
+
+    StoredValue(Segment segment, long valueOffset, long length, VectorClock vectorClock) {
+        this.segment = segment;
+        this.valueOffset = valueOffset;
+        this.length = length;
+        this.vectorClock = vectorClock;
+    }
+
+    public VectorClock getVectorClock() {
+        return vectorClock;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Method to copy the value to a channel without loading it into memory. A servlet response wrapped in a
+     * channel is written through a user space buffer, the value is not sent with sendfile
+     *
+     * @param target the channel to write the value to
+     */
+    public void transferTo(WritableByteChannel target) throws IOException {
+        segment.transferTo(valueOffset, length, target);
+    }
+
+    /**
+     * Method to read the value as a stream. The stream does not close the handle
+     *
+     * @return stream over the value
+     */
+    public InputStream openStream() {
+        return new InputStream() {
+            private long position;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int count) throws IOException {
+                if (position >= length) {
+                    return -1;
+                }
+                int toRead = (int) Math.min(count, length - position);
+                segment.readFully(ByteBuffer.wrap(bytes, offset, toRead), valueOffset + position);
+                position += toRead;
+                return toRead;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, length - position);
+            }
+        };
+    }
+
+    /**
+     * Method to close the handles of every sibling of an object, even when closing one of them fails
+     *
+     * @param values the handles returned by {@link StorageEngine#open}
+     */
+    public static void closeAll(List<StoredValue> values) throws IOException {
+        IOException failure = null;
+        for (StoredValue value : values) {
+            try {
+                value.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            segment.release();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.distributedkeyvaluestore.storage;
+
+import java.util.Arrays;
+
+/**
+ * Policy deciding when appended records are forced to disk, and therefore when a write is acknowledged
+ */
+public enum SyncPolicy {
+    /**
+     * Every write forces the segment before it is acknowledged
+     */
+    ALWAYS("always"),
+    /**
+     * Concurrent writes wait for a shared force, issued at most a configured delay after the first of them
+     */
+    GROUP_COMMIT("group-commit"),
+    /**
+     * Writes are acknowledged immediately and the segment is forced periodically,
+     * so a power failure may lose the writes of the last interval
+     */
+    INTERVAL("interval");
+
+    private final String name;
+
+    SyncPolicy(String name) {
+        this.name = name;
+    }
+
+    public static SyncPolicy fromName(String name) {
+        return Arrays.stream(values())
+                .filter(policy -> policy.name.equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown sync policy " + name));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
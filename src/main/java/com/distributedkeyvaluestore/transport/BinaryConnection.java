@@ -0,0 +1,142 @@
+package com.distributedkeyvaluestore.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Persistent connection to the {@link BinaryReplicaServer} of a peer. Requests from many threads are
+ * multiplexed over the connection and matched with their responses by request id, so a slow request
+ * does not hold up the ones sent after it
+ */
+class BinaryConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryConnection.class);
+
+    private final SocketChannel channel;
+    private final int maxFrameBytes;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<Long, CompletableFuture<Frame>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private volatile boolean closed;
+
+    private BinaryConnection(SocketChannel channel, int maxFrameBytes) {
+        this.channel = channel;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    static BinaryConnection open(InetSocketAddress address, int connectTimeoutMillis, int maxFrameBytes)
+            throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(address, connectTimeoutMillis);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+
+        BinaryConnection connection = new BinaryConnection(channel, maxFrameBytes);
+        Thread reader = new Thread(connection::readResponses, "binary-replica-client-" + address);
+        reader.setDaemon(true);
+        reader.start();
+        return connection;
+    }
+
+    /**
+     * Sends a request on the connection
+     *
+     * @param opcode  the opcode of the request
+     * @param request function filling the fields of the request frame
+     * @return future completed with the response frame
+     */
+    CompletableFuture<Frame> send(byte opcode, Function<Frame.Builder, Frame.Builder> request) {
+        long requestId = nextRequestId.incrementAndGet();
+        // built before the request is in flight, a request which cannot be built leaves nothing behind
+        Frame.Builder frame = request.apply(Frame.builder(requestId, opcode));
+        CompletableFuture<Frame> response = new CompletableFuture<>();
+        inFlight.put(requestId, response);
+        // the caller may give up on the request, which must not stay in flight forever
+        response.whenComplete((ignored, failure) -> inFlight.remove(requestId));
+
+        writeLock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Connection is closed");
+            }
+            frame.writeTo(channel);
+        } catch (IOException | RuntimeException e) {
+            // a frame written in part leaves the connection out of step with the peer
+            response.completeExceptionally(e);
+            close();
+        } finally {
+            writeLock.unlock();
+        }
+        return response;
+    }
+
+    private void readResponses() {
+        try {
+            while (!closed) {
+                Frame frame;
+                try {
+                    frame = Frame.read(channel, maxFrameBytes);
+                } catch (Frame.TooLargeException e) {
+                    // the frame was skipped, the other requests on the connection are not affected
+                    CompletableFuture<Frame> response = inFlight.get(e.getRequestId());
+                    if (response != null) {
+                        response.completeExceptionally(e);
+                    }
+                    continue;
+                }
+                CompletableFuture<Frame> response = inFlight.get(frame.getRequestId());
+                if (response != null) {
+                    response.complete(frame);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                logger.warn("Connection to {} failed: {}", remoteAddress(), e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Closing the connection to {} failed", remoteAddress(), e);
+        }
+        IOException failure = new IOException("Connection closed");
+        inFlight.values().forEach(response -> response.completeExceptionally(failure));
+    }
+
+    private String remoteAddress() {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "peer";
+        }
+    }
+}
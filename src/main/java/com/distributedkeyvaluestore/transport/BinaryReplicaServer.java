@@ -0,0 +1,302 @@
+package com.distributedkeyvaluestore.transport;
+
+import com.distributedkeyvaluestore.DynamoServerStarter;
+import com.distributedkeyvaluestore.faults.FaultInjector;
+import com.distributedkeyvaluestore.handoff.HintedHandoffManager;
+import com.distributedkeyvaluestore.keyvalue.CommonMultipartFile;
+import com.distributedkeyvaluestore.keyvalue.KeyValueService;
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Server side of the binary replication protocol. Every connection has a reader thread which hands the
+ * requests to a worker pool, so requests multiplexed on one connection are served concurrently and
+ * answered in completion order. A request which finds the queue of the pool full is answered with an error
+ * at once, so that an overloaded replica fails fast instead of holding requests until they time out. No response
+ * is longer than a frame may be: a value which would not fit is answered with {@link Frame#STATUS_TOO_LARGE},
+ * and the coordinator reads it over the streaming client. It starts listening once the
+ * {@link DynamoServerStarter} has recovered the local store
+ */
+@Component
+@ConditionalOnProperty(name = "replication.transport", havingValue = "binary", matchIfMissing = true)
+public class BinaryReplicaServer implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryReplicaServer.class);
+
+    private final KeyValueService keyValueService;
+    private final HintedHandoffManager hintedHandoffManager;
+    private final FaultInjector faultInjector;
+    private final String address;
+    private final int port;
+    private final int maxFrameBytes;
+    private final ThreadPoolExecutor workers;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocketChannel serverChannel;
+
+    public BinaryReplicaServer(KeyValueService keyValueService, HintedHandoffManager hintedHandoffManager,
+                               FaultInjector faultInjector,
+                               @Value("${server.address:}") String address,
+                               @Value("${replication.binary.port:7070}") int port,
+                               @Value("${replication.binary.max-frame-bytes:16777216}") int maxFrameBytes,
+                               @Value("${replication.binary.worker-threads:16}") int workerThreads,
+                               @Value("${replication.binary.worker-queue:1024}") int workerQueue) {
+        this.keyValueService = keyValueService;
+        this.hintedHandoffManager = hintedHandoffManager;
+        this.faultInjector = faultInjector;
+        this.address = address;
+        this.port = port;
+        this.maxFrameBytes = maxFrameBytes;
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerQueue), runnable -> {
+            Thread thread = new Thread(runnable, "binary-replica-worker-" + workerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void start() {
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            // listen on the address of the HTTP server, so that several nodes can run on one host (loopback
+            // addresses)
+            serverChannel.bind(address.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(address, port));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Binary replication server not started on port " + port, e);
+        }
+        Thread acceptor = new Thread(this::acceptConnections, "binary-replica-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Binary replication server listening on port {}", port);
+    }
+
+    private void acceptConnections() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connections.add(channel);
+                Thread reader = new Thread(() -> serve(channel), "binary-replica-server-" + channel.getRemoteAddress());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                logger.error("Accepting a replication connection failed", e);
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        ReentrantLock writeLock = new ReentrantLock();
+        try {
+            while (channel.isOpen()) {
+                Frame request;
+                try {
+                    request = Frame.read(channel, maxFrameBytes);
+                } catch (Frame.TooLargeException e) {
+                    respond(channel, writeLock, Frame.builder(e.getRequestId(), Frame.STATUS_ERROR)
+                            .putString(e.getMessage()));
+                    continue;
+                }
+                try {
+                    workers.execute(() -> {
+                        faultInjector.delay();
+                        respond(channel, writeLock, handle(request));
+                    });
+                } catch (RejectedExecutionException e) {
+                    respond(channel, writeLock, Frame.builder(request.getRequestId(), Frame.STATUS_ERROR)
+                            .putString("Replica overloaded, " + workers.getQueue().size() + " requests queued"));
+                }
+            }
+        } catch (IOException e) {
+            // the peer closed the connection
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    private void respond(SocketChannel channel, ReentrantLock writeLock, Frame.Builder response) {
+        if (response.length() > maxFrameBytes) {
+            response = Frame.builder(response.getRequestId(), Frame.STATUS_ERROR)
+                    .putString("Response of " + response.length() + " bytes exceeds the frame limit");
+        }
+        writeLock.lock();
+        try {
+            response.writeTo(channel);
+        } catch (IOException e) {
+            closeQuietly(channel);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Frame.Builder handle(Frame request) {
+        try {
+            return switch (request.getType()) {
+                case Frame.STORE_USING_VECTOR_CLOCK -> {
+                    String folder = request.readString();
+                    String fileName = request.readString();
+                    String vectorClock = request.readString();
+                    keyValueService.createFile(new CommonMultipartFile(request.readBytes(), fileName), folder,
+                            vectorClock);
+                    yield Frame.builder(request.getRequestId(), Frame.STATUS_OK);
+                }
+                case Frame.STORE_HINT -> {
+                    String owner = request.readString();
+                    String fileName = request.readString();
+                    String vectorClock = request.readString();
+                    byte[] value = request.readBytes();
+                    hintedHandoffManager.storeHint(owner, fileName, vectorClock, new ByteArrayInputStream(value),
+                            value.length);
+                    yield Frame.builder(request.getRequestId(), Frame.STATUS_OK);
+                }
+                case Frame.RETRIEVE -> {
+                    String folder = request.readString();
+                    String fileName = request.readString();
+                    List<FileWithVectorClock> siblings = keyValueService.retrieveObjectInternal(folder, fileName);
+                    Frame.Builder response = Frame.builder(request.getRequestId(), Frame.STATUS_OK)
+                            .putInt(siblings.size());
+                    siblings.forEach(sibling -> putFields(response, siblingFields(sibling)));
+                    yield response.length() <= maxFrameBytes ? response
+                            : Frame.builder(request.getRequestId(), Frame.STATUS_TOO_LARGE)
+                            .putString("Value of " + fileName + " exceeds the frame limit");
+                }
+                case Frame.BATCH_STORE_USING_VECTOR_CLOCK -> {
+                    String folder = request.readString();
+                    int count = request.readInt();
+                    List<MultipartFile> files = new ArrayList<>(count);
+                    List<String> vectorClocks = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        String fileName = request.readString();
+                        vectorClocks.add(request.readString());
+                        files.add(new CommonMultipartFile(request.readBytes(), fileName));
+                    }
+                    List<String> stored = keyValueService.createFiles(files, folder, vectorClocks);
+                    Frame.Builder response = Frame.builder(request.getRequestId(), Frame.STATUS_OK)
+                            .putInt(stored.size());
+                    stored.forEach(response::putString);
+                    yield response;
+                }
+                case Frame.BATCH_RETRIEVE -> {
+                    String folder = request.readString();
+                    int count = request.readInt();
+                    List<String> fileNames = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        fileNames.add(request.readString());
+                    }
+                    yield batchRetrieveResponse(request.getRequestId(),
+                            keyValueService.retrieveObjectsInternal(folder, fileNames));
+                }
+                default -> Frame.builder(request.getRequestId(), Frame.STATUS_ERROR)
+                        .putString("Unknown opcode " + request.getType());
+            };
+        } catch (Exception e) {
+            logger.error("Replication request {} failed", request.getType(), e);
+            return Frame.builder(request.getRequestId(), Frame.STATUS_ERROR)
+                    .putString(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Objects which would make the response larger than a frame may be are left out, the coordinator counts
+     * them as missing on this replica. Every object is sent with the count of its siblings followed by them
+     */
+    private Frame.Builder batchRetrieveResponse(long requestId, Map<String, List<FileWithVectorClock>> files) {
+        Map<String, List<byte[][]>> entries = new LinkedHashMap<>();
+        long length = Long.BYTES + 1 + Integer.BYTES;
+        for (Map.Entry<String, List<FileWithVectorClock>> entry : files.entrySet()) {
+            List<byte[][]> siblings = entry.getValue().stream().map(BinaryReplicaServer::siblingFields).toList();
+            long entryLength = Integer.BYTES + entry.getKey().getBytes(StandardCharsets.UTF_8).length + Integer.BYTES;
+            for (byte[][] sibling : siblings) {
+                for (byte[] field : sibling) {
+                    entryLength += Integer.BYTES + field.length;
+                }
+            }
+            if (length + entryLength > maxFrameBytes) {
+                continue;
+            }
+            length += entryLength;
+            entries.put(entry.getKey(), siblings);
+        }
+        Frame.Builder response = Frame.builder(requestId, Frame.STATUS_OK).putInt(entries.size());
+        entries.forEach((fileName, siblings) -> {
+            response.putString(fileName).putInt(siblings.size());
+            siblings.forEach(sibling -> putFields(response, sibling));
+        });
+        return response;
+    }
+
+    private static byte[][] siblingFields(FileWithVectorClock sibling) {
+        return new byte[][]{
+                sibling.getVectorClock().toString().getBytes(StandardCharsets.UTF_8),
+                sibling.getFile().getBytes(StandardCharsets.UTF_8),
+                sibling.getNode().getBytes(StandardCharsets.UTF_8)};
+    }
+
+    private static void putFields(Frame.Builder response, byte[][] fields) {
+        for (byte[] field : fields) {
+            response.putBytes(field);
+        }
+    }
+
+    private void closeQuietly(SocketChannel channel) {
+        connections.remove(channel);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Closing a replication connection failed", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.warn("Binary replication server not closed", e);
+        }
+        connections.forEach(this::closeQuietly);
+        workers.shutdown();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return serverChannel != null && serverChannel.isOpen();
+    }
+
+    @Override
+    public int getPhase() {
+        return DynamoServerStarter.PHASE + 1;
+    }
+}
@@ -0,0 +1,261 @@
+package com.distributedkeyvaluestore.transport;
+
+import com.distributedkeyvaluestore.client.PeerConcurrencyLimiter;
+import com.distributedkeyvaluestore.client.StreamingReplicaClient;
+import com.distributedkeyvaluestore.client.URIHelper;
+import com.distributedkeyvaluestore.exception.ReadException;
+import com.distributedkeyvaluestore.exception.WriteException;
+import com.distributedkeyvaluestore.metrics.ReplicaRequestMetrics;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import com.distributedkeyvaluestore.models.VectorClock;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * {@link ReplicaTransport} which speaks the binary {@link Frame} protocol over one persistent
+ * connection per peer. A value too large for a frame is read over the {@link StreamingReplicaClient}
+ */
+@Component
+@ConditionalOnProperty(name = "replication.transport", havingValue = "binary", matchIfMissing = true)
+public class BinaryReplicaTransport implements ReplicaTransport {
+
+    private final Map<String, BinaryConnection> connections = new ConcurrentHashMap<>();
+    private final ReplicaRequestMetrics replicaRequestMetrics;
+    private final PeerConcurrencyLimiter peerConcurrencyLimiter;
+    private final StreamingReplicaClient streamingReplicaClient;
+    private final int port;
+    private final int maxFrameBytes;
+    private final int connectTimeoutMillis;
+    private final long requestTimeoutMillis;
+
+    public BinaryReplicaTransport(ReplicaRequestMetrics replicaRequestMetrics,
+                                  PeerConcurrencyLimiter peerConcurrencyLimiter,
+                                  StreamingReplicaClient streamingReplicaClient,
+                                  @Value("${replication.binary.port:7070}") int port,
+                                  @Value("${replication.binary.max-frame-bytes:16777216}") int maxFrameBytes,
+                                  @Value("${replication.binary.connect-timeout-ms:2000}") int connectTimeoutMillis,
+                                  @Value("${replication.binary.request-timeout-ms:10000}") long requestTimeoutMillis) {
+        this.replicaRequestMetrics = replicaRequestMetrics;
+        this.peerConcurrencyLimiter = peerConcurrencyLimiter;
+        this.streamingReplicaClient = streamingReplicaClient;
+        this.port = port;
+        this.maxFrameBytes = maxFrameBytes;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    @Override
+    public void storeToReplicaUsingVectorClock(DynamoNode node, MultipartFile file, String folder, String vectorClock) {
+        byte[] value = readBytes(file);
+        Frame response = call(node, "storeToReplicaUsingVectorClock", Frame.STORE_USING_VECTOR_CLOCK, request -> request
+                .putString(folder)
+                .putString(file.getOriginalFilename())
+                .putString(vectorClock)
+                .putBytes(value));
+        if (response.getType() != Frame.STATUS_OK) {
+            throw new WriteException(response.readString());
+        }
+    }
+
+    @Override
+    public void storeHint(DynamoNode node, MultipartFile file, String owner, String vectorClock) {
+        byte[] value = readBytes(file);
+        Frame response = call(node, "storeHint", Frame.STORE_HINT, request -> request
+                .putString(owner)
+                .putString(file.getOriginalFilename())
+                .putString(vectorClock)
+                .putBytes(value));
+        if (response.getType() != Frame.STATUS_OK) {
+            throw new WriteException(response.readString());
+        }
+    }
+
+    @Override
+    public List<FileWithVectorClock> retrieveFromReplica(DynamoNode node, String folder, String fileName) {
+        Frame response = call(node, "retrieveFromReplica", Frame.RETRIEVE, request -> request
+                .putString(folder)
+                .putString(fileName));
+        if (response.getType() == Frame.STATUS_TOO_LARGE) {
+            return streamFromReplica(node, folder, fileName);
+        }
+        if (response.getType() != Frame.STATUS_OK) {
+            throw new ReadException(response.readString());
+        }
+        return readSiblings(response);
+    }
+
+    /**
+     * Method to read a value which does not fit in a frame. Only a single version can be streamed, a replica
+     * holding siblings of it fails the read
+     */
+    private List<FileWithVectorClock> streamFromReplica(DynamoNode node, String folder, String fileName) {
+        HttpResponse<InputStream> response = streamingReplicaClient.streamFromReplica(
+                URIHelper.createURI(node.getAddress()), folder, fileName);
+        try (InputStream value = response.body()) {
+            VectorClock vectorClock = new VectorClock(response.headers()
+                    .firstValue(StreamingReplicaClient.VECTOR_CLOCK_HEADER)
+                    .orElseThrow(() -> new ReadException("Read operation failed: No vector clock from "
+                            + node.getAddress())));
+            return List.of(new FileWithVectorClock(new String(value.readAllBytes(), StandardCharsets.UTF_8),
+                    vectorClock, node.getAddress()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Read of " + fileName + " from " + node.getAddress() + " failed", e);
+        }
+    }
+
+    @Override
+    public List<String> storeBatchToReplicaUsingVectorClock(DynamoNode node, List<MultipartFile> files, String folder,
+                                                            List<String> vectorClocks) {
+        List<byte[]> values = files.stream().map(BinaryReplicaTransport::readBytes).toList();
+        Frame response = call(node, "storeBatchToReplicaUsingVectorClock",
+                Frame.BATCH_STORE_USING_VECTOR_CLOCK, request -> {
+            request.putString(folder).putInt(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                request.putString(files.get(i).getOriginalFilename())
+                        .putString(vectorClocks.get(i))
+                        .putBytes(values.get(i));
+            }
+            return request;
+        });
+        if (response.getType() != Frame.STATUS_OK) {
+            throw new WriteException(response.readString());
+        }
+        int count = response.readInt();
+        List<String> stored = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            stored.add(response.readString());
+        }
+        return stored;
+    }
+
+    @Override
+    public Map<String, List<FileWithVectorClock>> retrieveBatchFromReplica(DynamoNode node, String folder,
+                                                                           List<String> fileNames) {
+        Frame response = call(node, "retrieveBatchFromReplica", Frame.BATCH_RETRIEVE, request -> {
+            request.putString(folder).putInt(fileNames.size());
+            fileNames.forEach(request::putString);
+            return request;
+        });
+        if (response.getType() != Frame.STATUS_OK) {
+            throw new ReadException(response.readString());
+        }
+        int count = response.readInt();
+        Map<String, List<FileWithVectorClock>> files = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            files.put(response.readString(), readSiblings(response));
+        }
+        return files;
+    }
+
+    private static List<FileWithVectorClock> readSiblings(Frame response) {
+        int count = response.readInt();
+        List<FileWithVectorClock> siblings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            VectorClock vectorClock = new VectorClock(response.readString());
+            String file = new String(response.readBytes(), StandardCharsets.UTF_8);
+            siblings.add(new FileWithVectorClock(file, vectorClock, response.readString()));
+        }
+        return siblings;
+    }
+
+    private Frame call(DynamoNode node, String operation, byte opcode,
+                       Function<Frame.Builder, Frame.Builder> request) {
+        peerConcurrencyLimiter.acquire(node.getAddress());
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            Frame response = await(node, connection(node).send(opcode, request));
+            if (response.getType() == Frame.STATUS_TOO_LARGE) {
+                error = "status_too_large";
+            } else if (response.getType() != Frame.STATUS_OK) {
+                error = "status_error";
+            }
+            return response;
+        } catch (RuntimeException e) {
+            error = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            replicaRequestMetrics.record("binary", operation, node.getAddress(), System.nanoTime() - start, error);
+            peerConcurrencyLimiter.release(node.getAddress());
+        }
+    }
+
+    private Frame await(DynamoNode node, CompletableFuture<Frame> response) {
+        try {
+            return response.get(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            response.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calling " + node.getAddress(), e);
+        } catch (TimeoutException e) {
+            response.cancel(false);
+            throw new IllegalStateException("Request to " + node.getAddress() + " timed out", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Request to " + node.getAddress() + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the open connection to a peer, connecting to it when there is none. The connection is opened
+     * outside the map, so that connecting to a slow or unreachable peer does not hold up the requests to others;
+     * of two threads connecting to the same peer at once, the one which connected second closes its connection
+     */
+    private BinaryConnection connection(DynamoNode node) {
+        String address = node.getAddress();
+        while (true) {
+            BinaryConnection connection = connections.get(address);
+            if (connection != null && connection.isOpen()) {
+                replicaRequestMetrics.recordConnection("binary", address, true);
+                return connection;
+            }
+            BinaryConnection opened;
+            try {
+                opened = BinaryConnection.open(new InetSocketAddress(address, port), connectTimeoutMillis,
+                        maxFrameBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to connect to " + address, e);
+            }
+            boolean installed = connection == null ? connections.putIfAbsent(address, opened) == null
+                    : connections.replace(address, connection, opened);
+            if (installed) {
+                replicaRequestMetrics.recordConnection("binary", address, false);
+                return opened;
+            }
+            opened.close();
+        }
+    }
+
+    private static byte[] readBytes(MultipartFile file) {
+        try {
+            return file.getBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        connections.values().forEach(BinaryConnection::close);
+    }
+}
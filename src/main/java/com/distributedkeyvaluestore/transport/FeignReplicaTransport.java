@@ -0,0 +1,77 @@
+package com.distributedkeyvaluestore.transport;
+
+import com.distributedkeyvaluestore.client.DynamoClient;
+import com.distributedkeyvaluestore.client.PeerConcurrencyLimiter;
+import com.distributedkeyvaluestore.client.URIHelper;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * {@link ReplicaTransport} which calls the HTTP replica endpoints of the {@link DynamoClient}
+ */
+@Component
+@ConditionalOnProperty(name = "replication.transport", havingValue = "feign")
+public class FeignReplicaTransport implements ReplicaTransport {
+
+    private final DynamoClient dynamoClient;
+    private final PeerConcurrencyLimiter peerConcurrencyLimiter;
+
+    public FeignReplicaTransport(DynamoClient dynamoClient, PeerConcurrencyLimiter peerConcurrencyLimiter) {
+        this.dynamoClient = dynamoClient;
+        this.peerConcurrencyLimiter = peerConcurrencyLimiter;
+    }
+
+    @Override
+    public void storeToReplicaUsingVectorClock(DynamoNode node, MultipartFile file, String folder, String vectorClock) {
+        call(node, () -> {
+            dynamoClient.storeToReplicaUsingVectorClock(URIHelper.createURI(node.getAddress()), file, folder,
+                    vectorClock);
+            return null;
+        });
+    }
+
+    @Override
+    public void storeHint(DynamoNode node, MultipartFile file, String owner, String vectorClock) {
+        call(node, () -> {
+            dynamoClient.storeHint(URIHelper.createURI(node.getAddress()), file, owner, vectorClock);
+            return null;
+        });
+    }
+
+    @Override
+    public List<FileWithVectorClock> retrieveFromReplica(DynamoNode node, String folder, String fileName) {
+        return call(node, () -> dynamoClient.retrieveFromReplica(URIHelper.createURI(node.getAddress()), folder,
+                fileName)).getBody();
+    }
+
+    @Override
+    public List<String> storeBatchToReplicaUsingVectorClock(DynamoNode node, List<MultipartFile> files, String folder,
+                                                            List<String> vectorClocks) {
+        return call(node, () -> dynamoClient.storeBatchToReplicaUsingVectorClock(
+                URIHelper.createURI(node.getAddress()), files.toArray(new MultipartFile[0]), folder, vectorClocks))
+                .getBody();
+    }
+
+    @Override
+    public Map<String, List<FileWithVectorClock>> retrieveBatchFromReplica(DynamoNode node, String folder,
+                                                                           List<String> fileNames) {
+        return call(node, () -> dynamoClient.retrieveBatchFromReplica(URIHelper.createURI(node.getAddress()), folder,
+                fileNames)).getBody();
+    }
+
+    private <T> T call(DynamoNode node, Supplier<T> request) {
+        peerConcurrencyLimiter.acquire(node.getAddress());
+        try {
+            return request.get();
+        } finally {
+            peerConcurrencyLimiter.release(node.getAddress());
+        }
+    }
+}
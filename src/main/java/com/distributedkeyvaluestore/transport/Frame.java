@@ -0,0 +1,190 @@
+package com.distributedkeyvaluestore.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message of the binary replication protocol:
+ * <pre>
+ * | frame length (4) | request id (8) | type (1) | fields |
+ * </pre>
+ * The frame length covers everything after itself. Strings and byte arrays are written as a length (4)
+ * followed by their bytes, integers as 4 bytes, and the entries of a batch are preceded by their count (4).
+ * The type of a request is its opcode, the type of a response is its status, and a response carries the
+ * request id of the request it answers. A frame longer than the limit of the reader is skipped, failing only
+ * the request it belongs to
+ */
+final class Frame {
+
+    static final byte STORE_USING_VECTOR_CLOCK = 2;
+    static final byte RETRIEVE = 3;
+    static final byte STORE_HINT = 4;
+    static final byte BATCH_STORE_USING_VECTOR_CLOCK = 5;
+    static final byte BATCH_RETRIEVE = 6;
+
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+    /**
+     * The response would be longer than a frame may be, the value is read over the streaming client instead
+     */
+    static final byte STATUS_TOO_LARGE = 2;
+
+    private static final int HEADER_SIZE = Long.BYTES + 1;
+    private static final int SKIP_BUFFER_SIZE = 64 * 1024;
+
+    private final long requestId;
+    private final byte type;
+    private final ByteBuffer fields;
+
+    private Frame(long requestId, byte type, ByteBuffer fields) {
+        this.requestId = requestId;
+        this.type = type;
+        this.fields = fields;
+    }
+
+    static Builder builder(long requestId, byte type) {
+        return new Builder(requestId, type);
+    }
+
+    static Frame read(ReadableByteChannel channel, int maxFrameBytes) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, length);
+        int frameLength = length.getInt(0);
+        if (frameLength < HEADER_SIZE) {
+            throw new IOException("Invalid frame length " + frameLength);
+        }
+        if (frameLength > maxFrameBytes) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header);
+            skip(channel, frameLength - HEADER_SIZE);
+            throw new TooLargeException(header.getLong(0), frameLength, maxFrameBytes);
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(frameLength);
+        readFully(channel, frame);
+        frame.flip();
+        return new Frame(frame.getLong(), frame.get(), frame.slice());
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed");
+            }
+        }
+    }
+
+    /**
+     * Reads past the fields of a frame which is not read, so that the next frame can be
+     */
+    private static void skip(ReadableByteChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(length, SKIP_BUFFER_SIZE));
+        int remaining = length;
+        while (remaining > 0) {
+            buffer.clear().limit(Math.min(remaining, buffer.capacity()));
+            readFully(channel, buffer);
+            remaining -= buffer.limit();
+        }
+    }
+
+    long getRequestId() {
+        return requestId;
+    }
+
+    byte getType() {
+        return type;
+    }
+
+    String readString() {
+        return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    int readInt() {
+        return fields.getInt();
+    }
+
+    byte[] readBytes() {
+        byte[] bytes = new byte[fields.getInt()];
+        fields.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * A frame longer than the limit of its reader, which was skipped. The connection stays usable
+     */
+    static final class TooLargeException extends IOException {
+
+        private final long requestId;
+
+        private TooLargeException(long requestId, int frameLength, int maxFrameBytes) {
+            super("Frame of " + frameLength + " bytes exceeds the limit of " + maxFrameBytes + " bytes");
+            this.requestId = requestId;
+        }
+
+        long getRequestId() {
+            return requestId;
+        }
+    }
+
+    static final class Builder {
+
+        private final long requestId;
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + HEADER_SIZE);
+        private int length = HEADER_SIZE;
+
+        private Builder(long requestId, byte type) {
+            this.requestId = requestId;
+            header.putInt(0).putLong(requestId).put(type).flip();
+            buffers.add(header);
+        }
+
+        long getRequestId() {
+            return requestId;
+        }
+
+        /**
+         * @return the length of the frame as read by {@link Frame#read}, without its length prefix
+         */
+        int length() {
+            return length;
+        }
+
+        Builder putString(String value) {
+            return putBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Builder putInt(int value) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).putInt(value).flip();
+            buffers.add(buffer);
+            length += Integer.BYTES;
+            return this;
+        }
+
+        Builder putBytes(byte[] value) {
+            putInt(value.length);
+            // the value is written from the caller's array, without copying it into the frame
+            buffers.add(ByteBuffer.wrap(value));
+            length += value.length;
+            return this;
+        }
+
+        /**
+         * Writes the frame with a single gathering write. Callers must serialize writes to the channel
+         */
+        void writeTo(GatheringByteChannel channel) throws IOException {
+            header.putInt(0, length);
+            ByteBuffer[] frame = buffers.toArray(new ByteBuffer[0]);
+            long remaining = Integer.BYTES + (long) length;
+            while (remaining > 0) {
+                remaining -= channel.write(frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.distributedkeyvaluestore.transport;
+
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface for the node to node calls made by a coordinator to the replicas of an object.
+ * The implementation is selected with the replication.transport property
+ */
+public interface ReplicaTransport {
+
+    /**
+     * Method to store an object on a replica together with the given vector clock
+     *
+     * @param node        the replica
+     * @param file        the object to be stored
+     * @param folder      the data folder of the replica
+     * @param vectorClock the vector clock to be stored
+     */
+    void storeToReplicaUsingVectorClock(DynamoNode node, MultipartFile file, String folder, String vectorClock);
+
+    /**
+     * Method to store a write meant for a replica which is down on another node, which hands it over
+     * to the replica once it is back
+     *
+     * @param node        the node standing in for the replica
+     * @param file        the object to be stored
+     * @param owner       the address of the replica
+     * @param vectorClock the vector clock of the write
+     */
+    void storeHint(DynamoNode node, MultipartFile file, String owner, String vectorClock);
+
+    /**
+     * Method to read an object and its vector clock from a replica
+     *
+     * @param node     the replica
+     * @param folder   the data folder of the replica
+     * @param fileName the key of the object
+     * @return the siblings of the object with their vector clocks, one unless concurrent versions were written
+     */
+    List<FileWithVectorClock> retrieveFromReplica(DynamoNode node, String folder, String fileName);
+
+    /**
+     * Method to store several objects on a replica with one request, each together with its vector clock
+     *
+     * @param node         the replica
+     * @param files        the objects to be stored
+     * @param folder       the data folder of the replica
+     * @param vectorClocks the vector clock of every object
+     * @return the keys of the objects the replica stored
+     */
+    List<String> storeBatchToReplicaUsingVectorClock(DynamoNode node, List<MultipartFile> files, String folder,
+                                                     List<String> vectorClocks);
+
+    /**
+     * Method to read several objects and their vector clocks from a replica with one request
+     *
+     * @param node      the replica
+     * @param folder    the data folder of the replica
+     * @param fileNames the keys of the objects
+     * @return the siblings of the objects the replica returned, by key. Objects it does not have are missing
+     */
+    Map<String, List<FileWithVectorClock>> retrieveBatchFromReplica(DynamoNode node, String folder,
+                                                                    List<String> fileNames);
+}
@@ -0,0 +1,49 @@
+package com.distributedkeyvaluestore.antientropy;
+
+import com.distributedkeyvaluestore.models.VectorClock;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MerkleTreeTest {
+
+    @Test
+    void diffFindsOnlyTheRangesWhichDiffer() {
+        long[] leaves = new long[7];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = MerkleTree.leafHash("key" + i, new VectorClock("1.1"));
+        }
+        long[] diverged = leaves.clone();
+        // a newer version in range 2, a missing object in range 6, the last leaf without a sibling
+        diverged[2] ^= MerkleTree.leafHash("key2", new VectorClock("1.1"))
+                ^ MerkleTree.leafHash("key2", new VectorClock("1.2"));
+        diverged[6] = 0;
+
+        MerkleTree tree = new MerkleTree(leaves);
+        assertEquals(tree.getRoot(), new MerkleTree(leaves.clone()).getRoot());
+        assertTrue(tree.diff(new MerkleTree(leaves.clone())).isEmpty());
+        assertNotEquals(tree.getRoot(), new MerkleTree(diverged).getRoot());
+        assertEquals(List.of(2, 6), tree.diff(new MerkleTree(diverged)));
+    }
+
+    @Test
+    void rangeHashDoesNotDependOnTheOrderObjectsAreVisited() {
+        long a = MerkleTree.leafHash("a", new VectorClock("1.1"));
+        long b = MerkleTree.leafHash("b", new VectorClock("2.1"));
+
+        assertEquals(a ^ b, b ^ a);
+        assertNotEquals(a, MerkleTree.leafHash("a", new VectorClock("1.2")));
+    }
+
+    @Test
+    void treesOverDifferentRangesAreNotCompared() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new MerkleTree(new long[4]).diff(new MerkleTree(new long[5])));
+        assertTrue(new MerkleTree(new long[0]).diff(new MerkleTree(new long[0])).isEmpty());
+    }
+}
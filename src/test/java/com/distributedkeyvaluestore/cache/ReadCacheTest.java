@@ -0,0 +1,49 @@
+package com.distributedkeyvaluestore.cache;
+
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import com.distributedkeyvaluestore.models.VectorClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void quorumModeKeepsNothing() {
+        ReadCache readCache = new ReadCache(meterRegistry, 1 << 20, 1 << 16, "quorum", 60_000);
+
+        readCache.fill("key", version("value"), readCache.stamp("key"));
+
+        assertFalse(readCache.isEnabled());
+        assertEquals(0, meterRegistry.get("cache.entries").gauge().value());
+    }
+
+    @Test
+    void cachedModeServesTheFilledVersionUntilAWriteReplacesIt() {
+        ReadCache readCache = new ReadCache(meterRegistry, 1 << 20, 1 << 16, "cached", 60_000);
+        FileWithVectorClock cached = version("value");
+
+        readCache.fill("key", cached, readCache.stamp("key"));
+        assertEquals(Optional.of(cached), readCache.get("key"));
+
+        readCache.onWrite("key", VectorClock.newVersion(cached.getVectorClock(), 1, 2, 2));
+        assertTrue(readCache.get("key").isEmpty());
+    }
+
+    @Test
+    void entriesAreWeighedByTheBytesTheyHold() {
+        assertEquals(5, ReadCache.heapBytes("value"));
+        assertEquals(10, ReadCache.heapBytes("valu€"));
+    }
+
+    private static FileWithVectorClock version(String value) {
+        return new FileWithVectorClock(value, VectorClock.newVersion(new VectorClock(), 1, 1, 1), "10.0.0.1");
+    }
+}
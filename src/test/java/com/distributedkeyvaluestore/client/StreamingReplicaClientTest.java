@@ -0,0 +1,21 @@
+package com.distributedkeyvaluestore.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ContentDisposition;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class StreamingReplicaClientTest {
+
+    @Test
+    void forwardedKeyIsReadBackUnchanged() {
+        String[] keys = {"plain.txt", "quote\"and\\backslash", "line\r\nbreak", "clé_ключ", "a;b=c*"};
+        for (String key : keys) {
+            String header = StreamingReplicaClient.contentDisposition(key);
+
+            assertFalse(header.chars().anyMatch(c -> c < 0x20 || c > 0x7e), header);
+            assertEquals(key, ContentDisposition.parse(header).getFilename());
+        }
+    }
+}
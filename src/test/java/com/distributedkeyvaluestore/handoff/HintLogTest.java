@@ -0,0 +1,164 @@
+package com.distributedkeyvaluestore.handoff;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HintLogTest {
+
+    private static final long MAX_BYTES = 1 << 20;
+
+    @TempDir
+    Path directory;
+
+    private HintLog hintLog;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (hintLog != null) {
+            hintLog.close();
+        }
+    }
+
+    @Test
+    void hintsAreReplayedInOrderAfterARestart() throws IOException {
+        hintLog = HintLog.open(directory, MAX_BYTES, MAX_BYTES);
+        append("a", "first");
+        append("b", "second");
+        hintLog.close();
+
+        hintLog = HintLog.open(directory, MAX_BYTES, MAX_BYTES);
+        assertEquals(2, hintLog.getPendingHints());
+        List<String> replayed = new ArrayList<>();
+        assertEquals(2, hintLog.replay(10, hint -> replayed.add(hint.getKey() + "="
+                + new String(hint.readValue(), StandardCharsets.UTF_8))));
+
+        assertEquals(List.of("a=first", "b=second"), replayed);
+        assertEquals(0, hintLog.getPendingHints());
+        assertEquals(0, hintLog.getBytes());
+    }
+
+    @Test
+    void tornTailHintIsDroppedOnRecovery() throws IOException {
+        hintLog = HintLog.open(directory, MAX_BYTES, MAX_BYTES);
+        append("a", "first");
+        hintLog.close();
+        // a hint whose value was cut short by a crash
+        try (FileChannel segment = FileChannel.open(onlySegment(), StandardOpenOption.APPEND)) {
+            segment.write(ByteBuffer.allocate(16 + 1).putInt(1).putInt(0).putLong(100).put((byte) 'b').flip());
+        }
+
+        hintLog = HintLog.open(directory, MAX_BYTES, MAX_BYTES);
+        assertEquals(1, hintLog.getPendingHints());
+        List<String> replayed = new ArrayList<>();
+        hintLog.replay(10, hint -> replayed.add(hint.getKey()));
+        assertEquals(List.of("a"), replayed);
+        // the hint appended after the torn tail is read back whole
+        append("c", "third");
+        hintLog.replay(10, hint -> replayed.add(hint.getKey()));
+        assertEquals(List.of("a", "c"), replayed);
+    }
+
+    @Test
+    void replayStopsAtTheHintTheHandlerFailsOn() throws IOException {
+        hintLog = HintLog.open(directory, MAX_BYTES, MAX_BYTES);
+        append("a", "first");
+        append("b", "second");
+        append("c", "third");
+        List<String> replayed = new ArrayList<>();
+
+        assertThrows(IOException.class, () -> hintLog.replay(10, hint -> {
+            if (hint.getKey().equals("b")) {
+                throw new IOException("Replica down again");
+            }
+            replayed.add(hint.getKey());
+        }));
+        assertEquals(2, hintLog.getPendingHints());
+
+        hintLog.replay(10, hint -> replayed.add(hint.getKey()));
+        assertEquals(List.of("a", "b", "c"), replayed);
+    }
+
+    @Test
+    void replayedSegmentsAreDeletedWhileWritesKeepArriving() throws IOException {
+        // every hint fills a segment
+        hintLog = HintLog.open(directory, 1, MAX_BYTES);
+        append("a", "first");
+        append("b", "second");
+        append("c", "third");
+        assertEquals(3, segmentCount());
+
+        hintLog.replay(2, hint -> {
+        });
+        append("d", "fourth");
+
+        // the owner never catches up with the writes, the replayed segments are gone all the same
+        assertEquals(2, segmentCount());
+        assertEquals(2, hintLog.getPendingHints());
+        List<String> replayed = new ArrayList<>();
+        hintLog.replay(10, hint -> replayed.add(hint.getKey()));
+        assertEquals(List.of("c", "d"), replayed);
+        assertEquals(1, segmentCount());
+        assertEquals(0, hintLog.getBytes());
+    }
+
+    @Test
+    void hintBeyondTheByteBudgetIsRefused() throws IOException {
+        hintLog = HintLog.open(directory, MAX_BYTES, 64);
+        append("a", "first");
+
+        assertThrows(IOException.class, () -> append("b", "x".repeat(64)));
+        assertEquals(1, hintLog.getPendingHints());
+    }
+
+    @Test
+    void hintsOlderThanTheCutoffAreDropped() throws IOException {
+        hintLog = HintLog.open(directory, 1, MAX_BYTES);
+        append("a", "first");
+        append("b", "second");
+
+        assertEquals(0, hintLog.expire(System.currentTimeMillis() - 60_000));
+        assertEquals(2, hintLog.expire(System.currentTimeMillis() + 60_000));
+        assertEquals(0, hintLog.getPendingHints());
+        assertEquals(0, hintLog.getBytes());
+        assertEquals(0, hintLog.replay(10, hint -> {
+        }));
+    }
+
+    private void append(String key, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        hintLog.append(key, "1:1", new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> segments = Files.list(directory)) {
+            List<Path> paths = segments.toList();
+            assertEquals(1, paths.size());
+            return paths.get(0);
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> segments = Files.list(directory)) {
+            long count = segments.count();
+            assertTrue(count > 0);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.cache.ReadCache;
+import com.distributedkeyvaluestore.client.DynamoClient;
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.exception.WriteException;
+import com.distributedkeyvaluestore.handoff.HintedHandoffManager;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.models.ConsistencyLevel;
+import com.distributedkeyvaluestore.models.Deadline;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.Quorum;
+import com.distributedkeyvaluestore.models.Response;
+import com.distributedkeyvaluestore.models.VectorClock;
+import com.distributedkeyvaluestore.transport.ReplicaTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchKeyValueServiceTest {
+
+    private final DynamoNode self = new DynamoNode("10.0.0.1", true, 1);
+    private final DynamoNode second = new DynamoNode("10.0.0.2", false, 2);
+    private final DynamoNode third = new DynamoNode("10.0.0.3", false, 3);
+
+    @SuppressWarnings("unchecked")
+    private final HashManager<DynamoNode> hashManager = mock(HashManager.class);
+    private final KeyValueService keyValueService = mock(KeyValueService.class);
+    private final ReplicaTransport replicaTransport = mock(ReplicaTransport.class);
+    private final NodeHealth nodeHealth = mock(NodeHealth.class);
+    private final ConsistencyPolicy consistencyPolicy = mock(ConsistencyPolicy.class);
+    private final List<Runnable> background = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Quorum.setReplicas(3);
+        when(hashManager.getNodes(anyString())).thenAnswer(invocation -> new ArrayList<>(List.of(self, second, third)));
+        when(nodeHealth.isAlive(any())).thenReturn(true);
+        when(consistencyPolicy.writeLevel(anyString(), any())).thenReturn(ConsistencyLevel.fromName("2"));
+        when(keyValueService.createFile(any(MultipartFile.class), anyString(), anyInt(), isNull()))
+                .thenReturn(new VectorClock());
+        when(replicaTransport.storeBatchToReplicaUsingVectorClock(any(), anyList(), anyString(), anyList()))
+                .thenAnswer(invocation -> invocation.<List<MultipartFile>>getArgument(1).stream()
+                        .map(MultipartFile::getOriginalFilename)
+                        .toList());
+    }
+
+    @Test
+    void keysOfAReplicaShareOneRequest() {
+        Map<String, Response<Boolean>> results = batchKeyValueService(100, 1 << 20)
+                .store(values("a", "b", "c"), null, Deadline.afterMillis(10000));
+
+        assertTrue(results.values().stream().allMatch(Response::getData));
+        // the batch returns with the quorum, the request to the other replica may still be running
+        verify(replicaTransport, timeout(10000))
+                .storeBatchToReplicaUsingVectorClock(eq(second), anyList(), anyString(), anyList());
+        verify(replicaTransport, timeout(10000))
+                .storeBatchToReplicaUsingVectorClock(eq(third), anyList(), anyString(), anyList());
+    }
+
+    @Test
+    void requestsAreSplitByKeysAndBytes() {
+        batchKeyValueService(2, 1 << 20).store(values("a", "b", "c"), null, Deadline.afterMillis(10000));
+        verify(replicaTransport, timeout(10000).times(2))
+                .storeBatchToReplicaUsingVectorClock(eq(second), anyList(), anyString(), anyList());
+
+        // every value is 5 bytes, two of them exceed a request of 8 bytes
+        batchKeyValueService(100, 8).store(values("d", "e", "f"), null, Deadline.afterMillis(10000));
+        verify(replicaTransport, timeout(10000).times(2 + 3))
+                .storeBatchToReplicaUsingVectorClock(eq(third), anyList(), anyString(), anyList());
+    }
+
+    @Test
+    void largeValuesAreStoredConcurrently() {
+        CountDownLatch stored = new CountDownLatch(2);
+        when(keyValueService.store(any(), isNull(), isNull(), any())).thenAnswer(invocation -> {
+            stored.countDown();
+            // a value stored after the other one finds the latch still closed
+            if (!stored.await(5, TimeUnit.SECONDS)) {
+                throw new WriteException("Write operation failed: stored one by one");
+            }
+            return ResponseEntity.ok("stored");
+        });
+
+        Map<String, Response<Boolean>> results = batchKeyValueService(100, 1 << 20)
+                .store(List.of(value("large-a", "x".repeat(64)), value("large-b", "y".repeat(64))), null,
+                        Deadline.afterMillis(10000));
+
+        assertTrue(results.get("large-a").getData());
+        assertTrue(results.get("large-b").getData());
+    }
+
+    @Test
+    void replicasWhichAreDownAreHandedOffAfterTheResponse() {
+        when(nodeHealth.isAlive(third)).thenReturn(false);
+
+        Map<String, Response<Boolean>> results = batchKeyValueService(100, 1 << 20)
+                .store(values("a"), null, Deadline.afterMillis(10000));
+
+        assertTrue(results.get("a").getData());
+        verify(keyValueService, never()).storeToPendingReplicas(any(), any());
+        assertEquals(1, background.size());
+        background.get(0).run();
+        verify(keyValueService).storeToPendingReplicas(any(), any());
+    }
+
+    private BatchKeyValueService batchKeyValueService(int maxKeysPerRequest, long maxRequestBytes) {
+        return new BatchKeyValueService(hashManager, keyValueService,
+                new QuorumCoordinator(new SimpleAsyncTaskExecutor(), new SimpleMeterRegistry(), 10000),
+                replicaTransport, mock(DynamoClient.class), nodeHealth, mock(HintedHandoffManager.class),
+                mock(ReadCache.class), consistencyPolicy, mock(CoordinatorSelector.class), background::add,
+                maxKeysPerRequest, maxRequestBytes, 32);
+    }
+
+    private static List<MultipartFile> values(String... keys) {
+        List<MultipartFile> values = new ArrayList<>();
+        for (String key : keys) {
+            values.add(value(key, "value"));
+        }
+        return values;
+    }
+
+    private static MultipartFile value(String key, String value) {
+        return new CommonMultipartFile(value.getBytes(StandardCharsets.UTF_8), key);
+    }
+}
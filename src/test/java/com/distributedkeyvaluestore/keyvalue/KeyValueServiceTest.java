@@ -0,0 +1,299 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.cache.ReadCache;
+import com.distributedkeyvaluestore.client.DynamoClient;
+import com.distributedkeyvaluestore.client.StreamingReplicaClient;
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.exception.ReadException;
+import com.distributedkeyvaluestore.exception.WriteException;
+import com.distributedkeyvaluestore.handoff.HintedHandoffManager;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.hedging.HedgePolicy;
+import com.distributedkeyvaluestore.hedging.ReplicaLatencyTracker;
+import com.distributedkeyvaluestore.models.ConsistencyLevel;
+import com.distributedkeyvaluestore.models.Deadline;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import com.distributedkeyvaluestore.models.Quorum;
+import com.distributedkeyvaluestore.models.VectorClock;
+import com.distributedkeyvaluestore.readrepair.ReadRepairQueue;
+import com.distributedkeyvaluestore.resolver.SiblingResolvers;
+import com.distributedkeyvaluestore.storage.StorageEngine;
+import com.distributedkeyvaluestore.storage.StoredValue;
+import com.distributedkeyvaluestore.transport.ReplicaTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KeyValueServiceTest {
+
+    private static final byte[] VALUE = "a value larger than the threshold".getBytes(StandardCharsets.UTF_8);
+
+    private final DynamoNode self = new DynamoNode("10.0.0.1", true, 1);
+    private final DynamoNode fastReplica = new DynamoNode("10.0.0.2", false, 2);
+    private final DynamoNode slowReplica = new DynamoNode("10.0.0.3", false, 3);
+
+    @SuppressWarnings("unchecked")
+    private final HashManager<DynamoNode> hashManager = mock(HashManager.class);
+    private final StorageEngine storageEngine = mock(StorageEngine.class);
+    private final StreamingReplicaClient streamingReplicaClient = mock(StreamingReplicaClient.class);
+    private final NodeHealth nodeHealth = mock(NodeHealth.class);
+    private final ConsistencyPolicy consistencyPolicy = mock(ConsistencyPolicy.class);
+    private final SiblingResolvers siblingResolvers = mock(SiblingResolvers.class);
+    private final ReadCache readCache = mock(ReadCache.class);
+    private final List<Runnable> background = new ArrayList<>();
+    private KeyValueService keyValueService;
+
+    @TempDir
+    Path uploads;
+
+    @BeforeEach
+    void setUp() {
+        Quorum.setReplicas(3);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        keyValueService = new KeyValueService(hashManager, mock(DynamoClient.class),
+                new QuorumCoordinator(new SimpleAsyncTaskExecutor(), meterRegistry, 10000), storageEngine,
+                streamingReplicaClient, mock(ReplicaTransport.class), nodeHealth, mock(HintedHandoffManager.class),
+                readCache, mock(ReadRepairQueue.class), siblingResolvers, consistencyPolicy,
+                mock(ReplicaLatencyTracker.class), mock(HedgePolicy.class), mock(CoordinatorSelector.class),
+                background::add, meterRegistry, 4, 10, false);
+
+        when(hashManager.getNodes("key")).thenReturn(new ArrayList<>(List.of(self, fastReplica, slowReplica)));
+        when(hashManager.getAllNodes()).thenReturn(List.of(self, fastReplica, slowReplica));
+        when(hashManager.getFallbackNodes("key")).thenReturn(List.of());
+        when(hashManager.getPendingReplicas("key")).thenReturn(List.of());
+        when(nodeHealth.isAlive(any())).thenReturn(true);
+        when(consistencyPolicy.writeLevel(eq("key"), any())).thenReturn(ConsistencyLevel.fromName("2"));
+        when(storageEngine.write(anyString(), eq("key"), any(InputStream.class), anyLong(), any()))
+                .thenReturn(new VectorClock());
+    }
+
+    @Test
+    void slowReplicaStoresTheValueAfterTheUploadIsDeleted() throws Exception {
+        Path upload = Files.write(uploads.resolve("upload"), VALUE);
+        CountDownLatch responded = new CountDownLatch(1);
+        CompletableFuture<byte[]> storedOnSlowReplica = new CompletableFuture<>();
+        doAnswer(invocation -> {
+            if (invocation.getArgument(0).toString().contains(slowReplica.getAddress())) {
+                responded.await(10, TimeUnit.SECONDS);
+                Supplier<InputStream> value = invocation.getArgument(3);
+                try (InputStream stream = value.get()) {
+                    storedOnSlowReplica.complete(stream.readAllBytes());
+                } catch (Exception e) {
+                    storedOnSlowReplica.completeExceptionally(e);
+                }
+            }
+            return null;
+        }).when(streamingReplicaClient).storeToReplicaUsingVectorClock(any(), anyString(), eq("key"), any(),
+                anyLong(), anyString());
+
+        keyValueService.store(new UploadedFile("key", upload), null, null, Deadline.afterMillis(10000));
+        // the quorum was reached without the slow replica, and the request ends: its upload is deleted
+        Files.delete(upload);
+        responded.countDown();
+
+        assertArrayEquals(VALUE, storedOnSlowReplica.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void slowReplicaReadsTheValueBackFromTheStoredSegment() throws Exception {
+        StoredValue stored = mock(StoredValue.class);
+        when(stored.getVectorClock()).thenReturn(new VectorClock());
+        when(stored.getLength()).thenReturn((long) VALUE.length);
+        when(stored.openStream()).thenAnswer(invocation -> new ByteArrayInputStream(VALUE));
+        when(storageEngine.open(anyString(), eq("key"))).thenReturn(List.of(stored));
+        Path upload = Files.write(uploads.resolve("upload"), VALUE);
+        CountDownLatch responded = new CountDownLatch(1);
+        CompletableFuture<byte[]> storedOnSlowReplica = new CompletableFuture<>();
+        doAnswer(invocation -> {
+            if (invocation.getArgument(0).toString().contains(slowReplica.getAddress())) {
+                responded.await(10, TimeUnit.SECONDS);
+                Supplier<InputStream> value = invocation.getArgument(3);
+                try (InputStream stream = value.get()) {
+                    storedOnSlowReplica.complete(stream.readAllBytes());
+                } catch (Exception e) {
+                    storedOnSlowReplica.completeExceptionally(e);
+                }
+            }
+            return null;
+        }).when(streamingReplicaClient).storeToReplicaUsingVectorClock(any(), anyString(), eq("key"), any(),
+                anyLong(), anyString());
+
+        keyValueService.store(new UploadedFile("key", upload), null, null, Deadline.afterMillis(10000));
+        Files.delete(upload);
+        responded.countDown();
+
+        assertArrayEquals(VALUE, storedOnSlowReplica.get(10, TimeUnit.SECONDS));
+        // the segment is unpinned once the last replica write has read it
+        verify(stored, timeout(10000)).close();
+    }
+
+    @Test
+    void detachedValueIsReadableUntilItsLastReferenceIsReleased() throws Exception {
+        Path upload = Files.write(uploads.resolve("upload"), VALUE);
+        DetachedValue value = DetachedValue.detach(new UploadedFile("key", upload), 4);
+        Files.delete(upload);
+        value.retain();
+        value.release();
+        assertArrayEquals(VALUE, value.getBytes());
+
+        value.release();
+        assertThrows(IllegalStateException.class, value::getInputStream);
+        assertThrows(IllegalStateException.class, value::retain);
+    }
+
+    @Test
+    void hintedWriteCountsTowardQuorumButNotTowardAll() throws Exception {
+        DynamoNode fallback = new DynamoNode("10.0.0.4", false, 4);
+        when(hashManager.getFallbackNodes("key")).thenReturn(List.of(fallback));
+        when(nodeHealth.isAlive(slowReplica)).thenReturn(false);
+        when(consistencyPolicy.countsHints(any())).thenReturn(true);
+        when(consistencyPolicy.countsHints(ConsistencyLevel.ALL)).thenReturn(false);
+        Path upload = Files.write(uploads.resolve("upload"), VALUE);
+
+        when(consistencyPolicy.writeLevel(eq("key"), any())).thenReturn(ConsistencyLevel.ALL);
+        assertThrows(WriteException.class, () -> keyValueService.store(new UploadedFile("key", upload), null, null,
+                Deadline.afterMillis(10000)));
+
+        // three replicas as well, two of them and the hint of the third
+        when(consistencyPolicy.writeLevel(eq("key"), any())).thenReturn(ConsistencyLevel.fromName("3"));
+        keyValueService.store(new UploadedFile("key", upload), null, null, Deadline.afterMillis(10000));
+        verify(streamingReplicaClient, times(2)).storeHint(any(), eq(slowReplica.getAddress()), eq("key"), any(),
+                anyLong(), anyString());
+    }
+
+    @Test
+    void fallbackNodesAreOnlyLookedUpOnceAReplicaIsDown() throws Exception {
+        Path upload = Files.write(uploads.resolve("upload"), VALUE);
+        when(consistencyPolicy.countsHints(any())).thenReturn(true);
+
+        keyValueService.store(new UploadedFile("key", upload), null, null, Deadline.afterMillis(10000));
+        // both replica writes end before the slow replica is taken down
+        verify(streamingReplicaClient, timeout(10000).times(2)).storeToReplicaUsingVectorClock(any(), anyString(),
+                eq("key"), any(), anyLong(), anyString());
+        verify(hashManager, never()).getFallbackNodes(anyString());
+
+        // the quorum of 2 does not wait for the replica which is down, it is handed over in the background
+        when(nodeHealth.isAlive(slowReplica)).thenReturn(false);
+        keyValueService.store(new UploadedFile("key", upload), null, null, Deadline.afterMillis(10000));
+        verify(hashManager, timeout(10000)).getFallbackNodes("key");
+    }
+
+    @Test
+    void mergedSiblingsAreReturnedBeforeTheyAreWritten() {
+        VectorClock first = VectorClock.newVersion(new VectorClock(), 2, 1, 1);
+        VectorClock second = VectorClock.newVersion(new VectorClock(), 3, 1, 2);
+        List<FileWithVectorClock> siblings = List.of(new FileWithVectorClock("a", first, fastReplica.getAddress()),
+                new FileWithVectorClock("b", second, slowReplica.getAddress()));
+        when(siblingResolvers.resolve("key", siblings)).thenReturn("ab");
+
+        List<FileWithVectorClock> resolved = keyValueService.resolveSiblings("key", siblings);
+        // a second read while the merge is being written does not write it again
+        keyValueService.resolveSiblings("key", siblings);
+
+        assertEquals(1, resolved.size());
+        assertEquals("ab", resolved.get(0).getFile());
+        assertEquals(first.merge(second), resolved.get(0).getVectorClock());
+        verify(storageEngine, never()).write(anyString(), anyString(), any(InputStream.class), anyLong(), any());
+        assertEquals(1, background.size());
+
+        background.get(0).run();
+        verify(storageEngine).write(anyString(), eq("key"), any(InputStream.class), anyLong(), any());
+    }
+
+    @Test
+    void cachedValueIsOnlyServedAtTheConfiguredLevelOrOne() {
+        FileWithVectorClock cached = new FileWithVectorClock("cached", new VectorClock(), self.getAddress());
+        when(readCache.get("key")).thenReturn(Optional.of(cached));
+        when(consistencyPolicy.readLevel("key", null)).thenReturn(ConsistencyLevel.QUORUM);
+        when(consistencyPolicy.readLevel("key", ConsistencyLevel.ONE)).thenReturn(ConsistencyLevel.ONE);
+        when(consistencyPolicy.readLevel("key", ConsistencyLevel.ALL)).thenReturn(ConsistencyLevel.ALL);
+
+        assertEquals(List.of(cached), keyValueService.retrieve("key", null, Deadline.afterMillis(10000)).getBody());
+        assertEquals(List.of(cached), keyValueService.retrieve("key", ConsistencyLevel.ONE,
+                Deadline.afterMillis(10000)).getBody());
+        // the key is stored on no replica, a read which goes to them fails
+        assertThrows(ReadException.class, () -> keyValueService.retrieve("key", ConsistencyLevel.ALL,
+                Deadline.afterMillis(10000)));
+        verify(readCache, times(2)).get("key");
+    }
+
+    /**
+     * Upload spooled to disk by the servlet container, which deletes it once the request ends
+     */
+    private record UploadedFile(String name, Path path) implements MultipartFile {
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return name;
+        }
+
+        @Override
+        public String getContentType() {
+            return null;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public long getSize() {
+            return path.toFile().length();
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return Files.readAllBytes(path);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.copy(path, dest.toPath());
+        }
+    }
+}
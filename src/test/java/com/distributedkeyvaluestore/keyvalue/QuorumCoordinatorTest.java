@@ -0,0 +1,125 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.exception.QuorumException;
+import com.distributedkeyvaluestore.models.Deadline;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuorumCoordinatorTest {
+
+    private final DynamoNode first = new DynamoNode("10.0.0.1", false, 1);
+    private final DynamoNode second = new DynamoNode("10.0.0.2", false, 2);
+    private final DynamoNode third = new DynamoNode("10.0.0.3", false, 3);
+    private final List<DynamoNode> replicas = List.of(first, second, third);
+    private final QuorumCoordinator quorumCoordinator = new QuorumCoordinator(new SimpleAsyncTaskExecutor(),
+            new SimpleMeterRegistry(), 10000);
+    // replicas which have not answered block on it until the test ends
+    private final CountDownLatch stalled = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        stalled.countDown();
+    }
+
+    @Test
+    void returnsOnceTheQuorumHasAnswered() {
+        Map<DynamoNode, String> responses = quorumCoordinator.await(replicas, 2, Deadline.afterMillis(10000),
+                node -> node == third ? stall() : node.getAddress());
+
+        assertEquals(Map.of(first, "10.0.0.1", second, "10.0.0.2"), responses);
+    }
+
+    @Test
+    void failsAsSoonAsTheQuorumIsUnreachable() {
+        long start = System.nanoTime();
+        QuorumException failure = assertThrows(QuorumException.class, () -> quorumCoordinator.await(replicas, 2,
+                Deadline.afterMillis(10000), node -> node == first ? stall() : fail(node)));
+
+        assertTrue(failure.getMessage().contains("2 of 3 replicas failed"), failure.getMessage());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void toleratesFailuresWhileTheQuorumIsReachable() {
+        Map<DynamoNode, String> responses = quorumCoordinator.await(replicas, 2, Deadline.afterMillis(10000),
+                node -> node == first ? fail(node) : node.getAddress());
+
+        assertEquals(Set.of(second, third), responses.keySet());
+    }
+
+    @Test
+    void failsWhenTheDeadlinePasses() {
+        QuorumException failure = assertThrows(QuorumException.class, () -> quorumCoordinator.await(replicas, 2,
+                Deadline.afterMillis(200), node -> node == first ? node.getAddress() : stall()));
+
+        assertTrue(failure.getMessage().contains("1 of 3 replicas responded"), failure.getMessage());
+    }
+
+    @Test
+    void failsWithoutRequestsWhenThereAreTooFewReplicas() {
+        Set<DynamoNode> called = ConcurrentHashMap.newKeySet();
+
+        assertThrows(QuorumException.class, () -> quorumCoordinator.await(List.of(first, second), 3,
+                Deadline.afterMillis(10000), called::add));
+        assertTrue(called.isEmpty());
+    }
+
+    @Test
+    void hedgedReadReplacesAFailedReplicaAndHedgesASlowOne() {
+        Set<DynamoNode> called = ConcurrentHashMap.newKeySet();
+        Map<DynamoNode, String> replaced = quorumCoordinator.awaitHedged(replicas, 1, Deadline.afterMillis(10000),
+                TimeUnit.SECONDS.toNanos(60), () -> false, node -> {
+                    called.add(node);
+                    return node == first ? fail(node) : node.getAddress();
+                });
+        assertEquals(Set.of(second), replaced.keySet());
+        assertFalse(called.contains(third));
+
+        Map<DynamoNode, String> hedged = quorumCoordinator.awaitHedged(replicas, 1, Deadline.afterMillis(10000),
+                TimeUnit.MILLISECONDS.toNanos(50), () -> true, node -> node == first ? stall() : node.getAddress());
+        assertEquals(Set.of(second), hedged.keySet());
+    }
+
+    @Test
+    void hedgedReadWaitsForTheSlowReplicaWhenHedgingIsNotAllowed() {
+        assertThrows(QuorumException.class, () -> quorumCoordinator.awaitHedged(replicas, 1,
+                Deadline.afterMillis(300), TimeUnit.MILLISECONDS.toNanos(50), () -> false,
+                node -> node == first ? stall() : node.getAddress()));
+    }
+
+    @Test
+    void awaitEachStopsOnceTheResponsesAreEnough() {
+        Map<DynamoNode, String> responses = quorumCoordinator.awaitEach(replicas, Deadline.afterMillis(10000),
+                node -> node == third ? stall() : node.getAddress(), received -> received.size() == 2);
+
+        assertEquals(Set.of(first, second), responses.keySet());
+    }
+
+    private String stall() {
+        try {
+            stalled.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "late";
+    }
+
+    private static String fail(DynamoNode node) {
+        throw new IllegalStateException(node.getAddress() + " is down");
+    }
+}
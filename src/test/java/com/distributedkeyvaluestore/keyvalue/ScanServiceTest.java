@@ -0,0 +1,142 @@
+package com.distributedkeyvaluestore.keyvalue;
+
+import com.distributedkeyvaluestore.client.DynamoClient;
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.models.Deadline;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.KeyWithVectorClock;
+import com.distributedkeyvaluestore.models.VectorClock;
+import com.distributedkeyvaluestore.storage.StorageEngine;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ScanServiceTest {
+
+    private final DynamoNode self = new DynamoNode("10.0.0.1", true, 1);
+    private final DynamoNode second = new DynamoNode("10.0.0.2", false, 2);
+    private final DynamoNode third = new DynamoNode("10.0.0.3", false, 3);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // the keys every node holds, by folder
+    private final Map<String, NavigableMap<String, VectorClock>> stored = Map.of(
+            "10_0_0_1", new TreeMap<>(), "10_0_0_2", new TreeMap<>(), "10_0_0_3", new TreeMap<>());
+    private ScanService scanService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        HashManager<DynamoNode> hashManager = mock(HashManager.class);
+        StorageEngine storageEngine = mock(StorageEngine.class);
+        DynamoClient dynamoClient = mock(DynamoClient.class);
+        NodeHealth nodeHealth = mock(NodeHealth.class);
+        when(hashManager.getAllNodes()).thenReturn(List.of(self, second, third));
+        when(nodeHealth.isAlive(any())).thenReturn(true);
+        when(storageEngine.scan(anyString(), anyString(), any(), anyInt())).thenAnswer(invocation ->
+                page(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2),
+                        invocation.getArgument(3)));
+        when(dynamoClient.scanReplica(any(), anyString(), anyString(), any(), anyInt())).thenAnswer(invocation ->
+                ResponseEntity.ok(page(invocation.getArgument(1), invocation.getArgument(2),
+                        invocation.getArgument(3), invocation.getArgument(4))));
+        scanService = new ScanService(hashManager, storageEngine, dynamoClient, nodeHealth,
+                new QuorumCoordinator(new SimpleAsyncTaskExecutor(), new SimpleMeterRegistry(), 10000),
+                objectMapper, 100, 1000);
+    }
+
+    @Test
+    void mergeListsEveryKeyOnceInOrderWithItsClocksMerged() {
+        Iterator<KeyWithVectorClock> merged = ScanService.merge(List.of(
+                List.of(key("a", "1.1"), key("c", "1.2")),
+                List.of(key("b", "2.1"), key("c", "2.3"), key("d", "2.1")),
+                List.of(),
+                List.of(key("c", "1.1_3.4"))));
+
+        List<String> keys = new ArrayList<>();
+        while (merged.hasNext()) {
+            KeyWithVectorClock key = merged.next();
+            keys.add(key.getKey() + "=" + key.getVectorClock());
+        }
+        assertEquals(List.of("a=1.1", "b=2.1", "c=1.2_2.3_3.4", "d=2.1"), keys);
+    }
+
+    @Test
+    void pagesFollowTheContinuationUntilEveryKeyIsListed() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            String key = String.format("user_%02d", i);
+            expected.add(key);
+            // every key is on two of the three nodes, as with 2 replicas
+            stored.get(List.of("10_0_0_1", "10_0_0_2", "10_0_0_3").get(i % 3)).put(key, new VectorClock("1.1"));
+            stored.get(List.of("10_0_0_1", "10_0_0_2", "10_0_0_3").get((i + 1) % 3)).put(key, new VectorClock("1.1"));
+        }
+        stored.get("10_0_0_2").put("other_key", new VectorClock("2.1"));
+
+        List<String> listed = new ArrayList<>();
+        String continuation = null;
+        int pages = 0;
+        do {
+            JsonNode page = page("user_", continuation, 5);
+            assertTrue(page.get("keys").size() <= 5);
+            page.get("keys").forEach(key -> listed.add(key.get("key").asText()));
+            continuation = page.get("continuation").isNull() ? null : page.get("continuation").asText();
+            pages++;
+        } while (continuation != null);
+
+        assertEquals(expected, listed);
+        assertEquals(5, pages);
+    }
+
+    @Test
+    void exactlyFullLastPageIsFollowedByAnEmptyOne() throws Exception {
+        stored.get("10_0_0_2").put("a", new VectorClock("2.1"));
+        stored.get("10_0_0_3").put("b", new VectorClock("3.1"));
+
+        JsonNode first = page(null, null, 2);
+        assertEquals(2, first.get("keys").size());
+        assertFalse(first.get("continuation").isNull());
+
+        JsonNode last = page(null, first.get("continuation").asText(), 2);
+        assertEquals(0, last.get("keys").size());
+        assertTrue(last.get("continuation").isNull());
+    }
+
+    private JsonNode page(String prefix, String continuation, int limit) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        scanService.scan(prefix, continuation, limit, Deadline.afterMillis(10000)).writeTo(body);
+        return objectMapper.readTree(body.toByteArray());
+    }
+
+    private List<KeyWithVectorClock> page(String folder, String prefix, String startAfter, int limit) {
+        NavigableMap<String, VectorClock> keys = stored.get(folder);
+        return (startAfter != null ? keys.tailMap(startAfter, false) : keys).entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(prefix))
+                .limit(limit)
+                .map(entry -> new KeyWithVectorClock(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    private static KeyWithVectorClock key(String key, String vectorClock) {
+        return new KeyWithVectorClock(key, new VectorClock(vectorClock));
+    }
+}
@@ -0,0 +1,110 @@
+package com.distributedkeyvaluestore.membership;
+
+import com.distributedkeyvaluestore.client.StreamingReplicaClient;
+import com.distributedkeyvaluestore.consistenthash.HashManager;
+import com.distributedkeyvaluestore.healthcheck.NodeHealth;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.VectorClock;
+import com.distributedkeyvaluestore.storage.StorageEngine;
+import com.distributedkeyvaluestore.storage.StoredValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MembershipServiceTest {
+
+    private static final int STREAM_THREADS = 2;
+    private static final int KEYS = 50;
+
+    private final DynamoNode self = new DynamoNode("10.0.0.1", true, 1);
+    private final DynamoNode joining = new DynamoNode("10.0.0.4", false, 4);
+
+    @SuppressWarnings("unchecked")
+    private final HashManager<DynamoNode> hashManager = mock(HashManager.class);
+    private final StorageEngine storageEngine = mock(StorageEngine.class);
+    private final StreamingReplicaClient streamingReplicaClient = mock(StreamingReplicaClient.class);
+    private final NodeHealth nodeHealth = mock(NodeHealth.class);
+    private MembershipService membershipService;
+
+    @BeforeEach
+    void setUp() {
+        membershipService = new MembershipService(hashManager, storageEngine, mock(MembershipClient.class),
+                streamingReplicaClient, nodeHealth, STREAM_THREADS, 0);
+        membershipService.setSelf(self);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < KEYS; i++) {
+            keys.add("key-" + i);
+        }
+        when(storageEngine.keys("10_0_0_1")).thenReturn(keys);
+        StoredValue value = storedValue();
+        when(storageEngine.open(anyString(), anyString())).thenReturn(List.of(value));
+        when(hashManager.getPendingNodes()).thenReturn(Optional.of(List.of(self, joining)));
+        when(hashManager.getPendingReplicas(anyString())).thenReturn(List.of(joining));
+        when(hashManager.getNodes(anyString())).thenReturn(new ArrayList<>(List.of(self)));
+        when(nodeHealth.isAlive(any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        membershipService.close();
+    }
+
+    @Test
+    void noMoreTransfersThanStreamThreadsAreInFlight() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(2);
+            inFlight.decrementAndGet();
+            return null;
+        }).when(streamingReplicaClient).storeToReplicaUsingVectorClock(any(), anyString(), anyString(), any(),
+                anyLong(), anyString());
+
+        assertEquals(KEYS, membershipService.streamPendingRanges());
+        assertTrue(maxInFlight.get() <= STREAM_THREADS);
+    }
+
+    @Test
+    void failedTransferStopsTheStreamAndIsRethrown() {
+        AtomicInteger attempts = new AtomicInteger();
+        doAnswer(invocation -> {
+            attempts.incrementAndGet();
+            throw new UncheckedIOException(new IOException("Joining node down"));
+        }).when(streamingReplicaClient).storeToReplicaUsingVectorClock(any(), anyString(), anyString(), any(),
+                anyLong(), anyString());
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> membershipService.streamPendingRanges());
+        assertTrue(failure.getCause() instanceof UncheckedIOException);
+        // the transfers already in flight when the first one failed end, no new one is started
+        assertTrue(attempts.get() < KEYS);
+    }
+
+    private static StoredValue storedValue() {
+        StoredValue value = mock(StoredValue.class);
+        when(value.getLength()).thenReturn(1L);
+        when(value.getVectorClock()).thenReturn(new VectorClock());
+        when(value.openStream()).thenAnswer(invocation -> new ByteArrayInputStream(new byte[]{1}));
+        return value;
+    }
+}
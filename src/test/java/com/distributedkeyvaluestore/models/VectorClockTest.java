@@ -0,0 +1,84 @@
+package com.distributedkeyvaluestore.models;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VectorClockTest {
+
+    @Test
+    void textAndVarintFormsRoundTrip() {
+        String[] clocks = {"", "1.3_2.5~4.7@1700000000000", "3.1~3.5", "1.127_300.128_70000.34359738368"};
+        for (String clock : clocks) {
+            VectorClock parsed = new VectorClock(clock);
+
+            assertEquals(clock, parsed.toString());
+            assertEquals(parsed, VectorClock.fromBytes(parsed.toBytes()));
+        }
+        VectorClock large = VectorClock.newVersion(new VectorClock("2.9"), 7, Long.MAX_VALUE, Long.MAX_VALUE);
+        assertEquals(large, VectorClock.fromBytes(large.toBytes()));
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> VectorClock.fromBytes(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> VectorClock.fromBytes(new byte[]{9, 0, 0, 0}));
+        assertThrows(IllegalArgumentException.class, () -> new VectorClock("2.1_1.1"));
+    }
+
+    @Test
+    void versionsWrittenOnTheSameContextAreConcurrent() {
+        VectorClock context = VectorClock.newVersion(new VectorClock(), 1, 1, 1);
+        VectorClock first = VectorClock.newVersion(context, 1, 2, 2);
+        // the same coordinator writes again on the old context, the new event is kept as a dot
+        VectorClock second = VectorClock.newVersion(context, 1, 3, 3);
+
+        assertEquals("1.2@2", first.toString());
+        assertEquals("1.1~1.3@3", second.toString());
+        assertEquals(VectorClock.Ordering.CONCURRENT, first.compare(second));
+        assertEquals(VectorClock.Ordering.AFTER, first.compare(context));
+        assertEquals(VectorClock.Ordering.BEFORE, context.compare(second));
+    }
+
+    @Test
+    void dotIsOnlyCoveredByAVectorReachingIt() {
+        VectorClock dotted = new VectorClock("1.1~1.3");
+
+        // event 3 of node 1 is not part of a vector which stops at event 2
+        assertEquals(VectorClock.Ordering.CONCURRENT, dotted.compare(new VectorClock("1.2")));
+        assertEquals(VectorClock.Ordering.BEFORE, dotted.compare(new VectorClock("1.3")));
+        assertEquals(3, dotted.maxCounter(1));
+        assertEquals(1, dotted.counter(1));
+        // a dot contiguous with the vector is folded into it
+        assertEquals("1.2_2.1", VectorClock.newVersion(new VectorClock("1.1_2.1"), 1, 2, 0).toString());
+        assertThrows(IllegalArgumentException.class, () -> VectorClock.newVersion(dotted, 1, 1, 0));
+    }
+
+    @Test
+    void versionWrittenOnMergedSiblingsDominatesThem() {
+        VectorClock first = VectorClock.newVersion(new VectorClock("1.1_2.1"), 1, 3, 10);
+        VectorClock second = VectorClock.newVersion(new VectorClock("1.1_2.1"), 2, 2, 20);
+
+        VectorClock merged = first.merge(second);
+        assertEquals("1.3_2.2@20", merged.toString());
+        assertTrue(merged.descends(first) && merged.descends(second));
+
+        VectorClock resolved = VectorClock.newVersion(merged, 2, merged.maxCounter(2) + 1, 30);
+        assertTrue(resolved.dominates(first) && resolved.dominates(second));
+        assertEquals(VectorClock.Ordering.EQUAL, merged.compare(new VectorClock(merged.toString())));
+    }
+
+    @Test
+    void pruneDropsTheSmallestEntriesOfNodesWhichLeft() {
+        VectorClock clock = new VectorClock("1.5_2.1_3.9_4.2_5.7~1.6");
+
+        assertEquals(clock, clock.prune(node -> false, 5));
+        // 2 and 4 left the ring and have the fewest events, the dot is kept
+        VectorClock pruned = clock.prune(node -> node == 1, 3);
+        assertEquals("1.5_3.9_5.7~1.6", pruned.toString());
+        // members are never dropped, even when the clock stays above the limit
+        assertEquals(5, clock.prune(node -> true, 2).size());
+    }
+}
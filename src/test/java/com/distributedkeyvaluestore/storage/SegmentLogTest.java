@@ -0,0 +1,122 @@
+package com.distributedkeyvaluestore.storage;
+
+import com.distributedkeyvaluestore.models.VectorClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogTest {
+
+    @TempDir
+    Path directory;
+
+    private SegmentLog log;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Test
+    void stalledUploadDoesNotBlockOtherWrites() throws Exception {
+        log = SegmentLog.open(directory, 1 << 20, new AlwaysSyncer());
+        byte[] large = new byte[256 * 1024];
+        PipedOutputStream sender = new PipedOutputStream();
+        InputStream body = new PipedInputStream(sender, 1024);
+        CompletableFuture<VectorClock> stalled = CompletableFuture.supplyAsync(() -> {
+            try {
+                return log.append("large", Channels.newChannel(body), large.length, clock -> version(1));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        sender.write(large, 0, 1024);
+
+        // the sender has stopped half way, a write to the same folder still goes through
+        CompletableFuture<VectorClock> other = CompletableFuture.supplyAsync(() -> {
+            try {
+                return log.append("small", "value".getBytes(StandardCharsets.UTF_8), clock -> version(1));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        other.get(5, TimeUnit.SECONDS);
+        assertFalse(stalled.isDone());
+
+        sender.write(large, 1024, large.length - 1024);
+        sender.close();
+        stalled.get(5, TimeUnit.SECONDS);
+        assertArrayEquals(large, log.read("large").get(0).getValue());
+        assertArrayEquals("value".getBytes(StandardCharsets.UTF_8), log.read("small").get(0).getValue());
+    }
+
+    @Test
+    void tornTailRecordIsDroppedOnRecovery() throws Exception {
+        log = SegmentLog.open(directory, 1 << 20, new AlwaysSyncer());
+        log.append("kept", "acknowledged".getBytes(StandardCharsets.UTF_8), clock -> version(1));
+        Path segment = directory.resolve(Segment.fileName(1));
+        long intact = Files.size(segment);
+        log.append("torn", new byte[4096], clock -> version(1));
+        log.close();
+        // the node stopped half way through writing the second record
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(intact + 2048);
+        }
+
+        log = SegmentLog.open(directory, 1 << 20, new AlwaysSyncer());
+        assertEquals(intact, Files.size(segment));
+        assertTrue(log.read("torn").isEmpty());
+        assertArrayEquals("acknowledged".getBytes(StandardCharsets.UTF_8), log.read("kept").get(0).getValue());
+
+        // records appended after the recovery follow the last intact record and survive the next one
+        log.append("after", "recovered".getBytes(StandardCharsets.UTF_8), clock -> version(1));
+        log.close();
+        log = SegmentLog.open(directory, 1 << 20, new AlwaysSyncer());
+        assertEquals(List.of("after", "kept"), log.keys().stream().sorted().toList());
+        assertArrayEquals("recovered".getBytes(StandardCharsets.UTF_8), log.read("after").get(0).getValue());
+    }
+
+    @Test
+    void corruptedTailRecordIsDroppedOnRecovery() throws Exception {
+        log = SegmentLog.open(directory, 1 << 20, new AlwaysSyncer());
+        log.append("kept", "acknowledged".getBytes(StandardCharsets.UTF_8), clock -> version(1));
+        Path segment = directory.resolve(Segment.fileName(1));
+        long intact = Files.size(segment);
+        log.append("corrupted", "half written".getBytes(StandardCharsets.UTF_8), clock -> version(1));
+        log.close();
+        // the length of the record reached the disk, the last bytes of its value did not
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[4]), Files.size(segment) - 4);
+        }
+
+        log = SegmentLog.open(directory, 1 << 20, new AlwaysSyncer());
+        assertEquals(intact, Files.size(segment));
+        assertTrue(log.read("corrupted").isEmpty());
+        assertEquals(1, log.read("kept").size());
+    }
+
+    private static VectorClock version(int node) {
+        return VectorClock.newVersion(new VectorClock(), node, 1, System.currentTimeMillis());
+    }
+}
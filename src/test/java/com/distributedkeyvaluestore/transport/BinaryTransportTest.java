@@ -0,0 +1,211 @@
+package com.distributedkeyvaluestore.transport;
+
+import com.distributedkeyvaluestore.client.PeerConcurrencyLimiter;
+import com.distributedkeyvaluestore.client.StreamingReplicaClient;
+import com.distributedkeyvaluestore.faults.FaultInjector;
+import com.distributedkeyvaluestore.handoff.HintedHandoffManager;
+import com.distributedkeyvaluestore.keyvalue.KeyValueService;
+import com.distributedkeyvaluestore.metrics.ReplicaRequestMetrics;
+import com.distributedkeyvaluestore.models.DynamoNode;
+import com.distributedkeyvaluestore.models.FileWithVectorClock;
+import com.distributedkeyvaluestore.models.VectorClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.channels.Pipe;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BinaryTransportTest {
+
+    private static final String LOOPBACK = "127.0.0.1";
+    private static final VectorClock CLOCK = VectorClock.newVersion(new VectorClock(), 1, 1, 1);
+
+    private final KeyValueService keyValueService = mock(KeyValueService.class);
+    private final StreamingReplicaClient streamingReplicaClient = mock(StreamingReplicaClient.class);
+    // requests which have not been answered block on it until the test ends
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private BinaryReplicaServer server;
+    private BinaryConnection connection;
+
+    @AfterEach
+    void tearDown() {
+        stalled.countDown();
+        if (connection != null) {
+            connection.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void frameRoundTripsItsFields() throws IOException {
+        Pipe pipe = Pipe.open();
+        Frame.builder(42, Frame.RETRIEVE)
+                .putString("folder")
+                .putInt(7)
+                .putBytes(new byte[]{1, 2, 3})
+                .writeTo(pipe.sink());
+
+        Frame frame = Frame.read(pipe.source(), 1024);
+
+        assertEquals(42, frame.getRequestId());
+        assertEquals(Frame.RETRIEVE, frame.getType());
+        assertEquals("folder", frame.readString());
+        assertEquals(7, frame.readInt());
+        assertArrayEquals(new byte[]{1, 2, 3}, frame.readBytes());
+    }
+
+    @Test
+    void responsesAreMatchedToTheirRequestsInCompletionOrder() throws Exception {
+        try (ServerSocketChannel peer = listen()) {
+            connection = connect(peer.socket().getLocalPort(), 1024);
+            CompletableFuture<Frame> first = connection.send(Frame.RETRIEVE, request -> request.putString("first"));
+            CompletableFuture<Frame> second = connection.send(Frame.RETRIEVE, request -> request.putString("second"));
+
+            try (SocketChannel channel = peer.accept()) {
+                Frame firstRequest = Frame.read(channel, 1024);
+                Frame secondRequest = Frame.read(channel, 1024);
+                // the second request is answered first
+                Frame.builder(secondRequest.getRequestId(), Frame.STATUS_OK).putString(secondRequest.readString())
+                        .writeTo(channel);
+                Frame.builder(firstRequest.getRequestId(), Frame.STATUS_OK).putString(firstRequest.readString())
+                        .writeTo(channel);
+
+                assertEquals("first", first.get(10, TimeUnit.SECONDS).readString());
+                assertEquals("second", second.get(10, TimeUnit.SECONDS).readString());
+            }
+        }
+    }
+
+    @Test
+    void oversizedResponseFailsOnlyItsRequest() throws Exception {
+        try (ServerSocketChannel peer = listen()) {
+            connection = connect(peer.socket().getLocalPort(), 1024);
+            CompletableFuture<Frame> large = connection.send(Frame.RETRIEVE, request -> request.putString("large"));
+            CompletableFuture<Frame> small = connection.send(Frame.RETRIEVE, request -> request.putString("small"));
+
+            try (SocketChannel channel = peer.accept()) {
+                Frame largeRequest = Frame.read(channel, 1024);
+                Frame smallRequest = Frame.read(channel, 1024);
+                Frame.builder(largeRequest.getRequestId(), Frame.STATUS_OK).putBytes(new byte[4096]).writeTo(channel);
+                Frame.builder(smallRequest.getRequestId(), Frame.STATUS_OK).putString("small").writeTo(channel);
+
+                ExecutionException failure = assertThrows(ExecutionException.class,
+                        () -> large.get(10, TimeUnit.SECONDS));
+                assertInstanceOf(Frame.TooLargeException.class, failure.getCause());
+                assertEquals("small", small.get(10, TimeUnit.SECONDS).readString());
+                assertTrue(connection.isOpen());
+            }
+        }
+    }
+
+    @Test
+    void requestsBeyondTheWorkerQueueAreRejectedAtOnce() throws Exception {
+        when(keyValueService.retrieveObjectInternal(anyString(), anyString())).thenAnswer(invocation -> {
+            stalled.await(10, TimeUnit.SECONDS);
+            return List.of(new FileWithVectorClock("value", CLOCK, LOOPBACK));
+        });
+        int port = startServer(1024, 1, 1);
+        connection = connect(port, 1024);
+
+        // the first request holds the only worker, the second waits in the queue
+        CompletableFuture<Frame> running = connection.send(Frame.RETRIEVE, request -> retrieve(request, "first"));
+        CompletableFuture<Frame> queued = connection.send(Frame.RETRIEVE, request -> retrieve(request, "second"));
+        Frame rejected = connection.send(Frame.RETRIEVE, request -> retrieve(request, "third"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(Frame.STATUS_ERROR, rejected.getType());
+        assertTrue(rejected.readString().contains("overloaded"));
+        stalled.countDown();
+        assertEquals(Frame.STATUS_OK, running.get(10, TimeUnit.SECONDS).getType());
+        assertEquals(Frame.STATUS_OK, queued.get(10, TimeUnit.SECONDS).getType());
+    }
+
+    @Test
+    void valueLargerThanAFrameIsReadOverTheStreamingClient() throws Exception {
+        String large = "x".repeat(4096);
+        when(keyValueService.retrieveObjectInternal(anyString(), eq("large")))
+                .thenReturn(List.of(new FileWithVectorClock(large, CLOCK, LOOPBACK)));
+        when(keyValueService.retrieveObjectInternal(anyString(), eq("small")))
+                .thenReturn(List.of(new FileWithVectorClock("small", CLOCK, LOOPBACK)));
+        HttpResponse<InputStream> streamed = streamedResponse(large);
+        when(streamingReplicaClient.streamFromReplica(any(), eq("folder"), eq("large"))).thenReturn(streamed);
+        int port = startServer(1024, 2, 16);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BinaryReplicaTransport transport = new BinaryReplicaTransport(new ReplicaRequestMetrics(meterRegistry),
+                new PeerConcurrencyLimiter(meterRegistry, 64, 1000), streamingReplicaClient, port, 1024, 2000,
+                10000);
+        DynamoNode node = new DynamoNode(LOOPBACK, false, 1);
+
+        try {
+            List<FileWithVectorClock> siblings = transport.retrieveFromReplica(node, "folder", "large");
+
+            assertEquals(1, siblings.size());
+            assertEquals(large, siblings.get(0).getFile());
+            assertEquals(CLOCK, siblings.get(0).getVectorClock());
+            // the connection is still used for the values which fit in a frame
+            assertEquals("small", transport.retrieveFromReplica(node, "folder", "small").get(0).getFile());
+        } finally {
+            transport.close();
+        }
+    }
+
+    private int startServer(int maxFrameBytes, int workerThreads, int workerQueue) throws IOException {
+        int port;
+        try (ServerSocketChannel free = listen()) {
+            port = free.socket().getLocalPort();
+        }
+        server = new BinaryReplicaServer(keyValueService, mock(HintedHandoffManager.class), new FaultInjector(),
+                LOOPBACK, port, maxFrameBytes, workerThreads, workerQueue);
+        server.start();
+        return port;
+    }
+
+    private static ServerSocketChannel listen() throws IOException {
+        return ServerSocketChannel.open().bind(new InetSocketAddress(LOOPBACK, 0));
+    }
+
+    private static BinaryConnection connect(int port, int maxFrameBytes) throws IOException {
+        return BinaryConnection.open(new InetSocketAddress(LOOPBACK, port), 2000, maxFrameBytes);
+    }
+
+    private static Frame.Builder retrieve(Frame.Builder request, String fileName) {
+        return request.putString("folder").putString(fileName);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<InputStream> streamedResponse(String value) {
+        HttpResponse<InputStream> response = mock(HttpResponse.class);
+        when(response.body()).thenReturn(new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8)));
+        when(response.headers()).thenReturn(HttpHeaders.of(
+                Map.of(StreamingReplicaClient.VECTOR_CLOCK_HEADER, List.of(CLOCK.toString())), (name, v) -> true));
+        return response;
+    }
+}